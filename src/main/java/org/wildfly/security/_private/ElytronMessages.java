@@ -33,10 +33,12 @@ import java.security.UnrecoverableKeyException;
 import java.security.cert.CertificateException;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.InvalidParameterSpecException;
+import java.util.concurrent.RejectedExecutionException;
 
 import static org.jboss.logging.Logger.Level.DEBUG;
 import static org.jboss.logging.Logger.Level.ERROR;
 import static org.jboss.logging.Logger.Level.WARN;
+import javax.naming.ServiceUnavailableException;
 import javax.net.ssl.SSLException;
 import javax.net.ssl.SSLHandshakeException;
 import javax.net.ssl.SSLProtocolException;
@@ -457,6 +459,46 @@ public interface ElytronMessages extends BasicLogger {
     @Message(id = 1109, value = "Ldap-backed realm is not configured to allow iterate over identities (iterator filter has to be set)")
     RealmUnavailableException ldapRealmNotConfiguredToSupportIteratingOverIdentities();
 
+    @Message(id = 1110, value = "Could not create a row set factory; the javax.sql.rowset implementation must be visible to the class loader of the JDBC realm")
+    IllegalStateException couldNotCreateRowSetFactory(@Cause Throwable cause);
+
+    @Message(id = 1111, value = "Too many token introspections in progress (limit is %d)")
+    RealmUnavailableException oauth2RealmTooManyIntrospections(int limit);
+
+    @Message(id = 1112, value = "Timed out after %2$d ms waiting for an LDAP context from pool \"%1$s\"")
+    ServiceUnavailableException ldapContextPoolExhausted(String poolName, long maxWait);
+
+    @Message(id = 1113, value = "Minimum pool size %d is greater than the maximum pool size %d")
+    IllegalArgumentException invalidMinimumPoolSize(int minSize, int maxSize);
+
+    @LogMessage(level = WARN)
+    @Message(id = 1114, value = "Failed to reload properties file \"%s\"; the previously loaded accounts remain in use")
+    void failedToReloadProperties(Path path, @Cause Throwable cause);
+
+    @Message(id = 1115, value = "Properties-backed realm was not built from files and cannot be reloaded")
+    IllegalStateException legacyPropertiesRealmNotFileBacked();
+
+    @LogMessage(level = WARN)
+    @Message(id = 1116, value = "Failed to write pending identity changes to filesystem realm \"%s\"")
+    void fileSystemRealmFlushFailed(Path root, @Cause Throwable cause);
+
+    @Message(id = 1117, value = "Too many password verifications waiting (limit is %d)")
+    RejectedExecutionException passwordVerificationQueueFull(int limit);
+
+    @LogMessage(level = WARN)
+    @Message(id = 1118, value = "Failed to upgrade the password of identity \"%s\"")
+    void passwordUpgradeFailed(String name, @Cause Throwable cause);
+
+    @Message(id = 1119, value = "Caching realm failed to obtain the principal of identity \"%s\"")
+    RuntimeException cachingRealmFailedToObtainPrincipal(String name, @Cause Throwable cause);
+
+    @Message(id = 1120, value = "The default password verification executor is shared and cannot be shut down")
+    IllegalStateException cannotShutdownDefaultPasswordVerificationExecutor();
+
+    @LogMessage(level = WARN)
+    @Message(id = 1121, value = "OAuth2-based realm allows %d introspections in progress but only %d connections are kept alive per endpoint (system property http.maxConnections); the others are closed after each introspection")
+    void oauth2RealmMoreIntrospectionsThanKeptAliveConnections(int maxInFlight, int maxConnections);
+
     /* keystore package */
 
     @Message(id = 2001, value = "Invalid key store entry password for alias \"%s\"")
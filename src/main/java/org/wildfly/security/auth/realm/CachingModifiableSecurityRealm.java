@@ -0,0 +1,164 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.auth.realm;
+
+import java.security.Principal;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.function.Predicate;
+
+import org.wildfly.security.auth.server.ModifiableRealmIdentity;
+import org.wildfly.security.auth.server.ModifiableSecurityRealm;
+import org.wildfly.security.auth.server.RealmUnavailableException;
+import org.wildfly.security.auth.server.SupportLevel;
+import org.wildfly.security.authz.Attributes;
+import org.wildfly.security.authz.AuthorizationIdentity;
+import org.wildfly.security.credential.Credential;
+import org.wildfly.security.evidence.Evidence;
+
+/**
+ * A {@link CachingSecurityRealm} for a {@link ModifiableSecurityRealm}.  Any change made to an identity through a
+ * {@link ModifiableRealmIdentity} obtained from this realm removes that identity from the cache.
+ */
+public class CachingModifiableSecurityRealm extends CachingSecurityRealm implements ModifiableSecurityRealm {
+
+    private final ModifiableSecurityRealm modifiableRealm;
+
+    /**
+     * Construct a new instance.
+     *
+     * @param realm the realm to cache (must not be {@code null})
+     * @param maxEntries the maximum number of identities to cache (must be at least 1)
+     * @param maxAge the maximum age of a cache entry in milliseconds, or {@code -1} if entries do not expire
+     */
+    public CachingModifiableSecurityRealm(final ModifiableSecurityRealm realm, final int maxEntries, final long maxAge) {
+        super(realm, maxEntries, maxAge);
+        this.modifiableRealm = realm;
+    }
+
+    public ModifiableRealmIdentity getRealmIdentityForUpdate(final String name, final Principal principal, final Evidence evidence) throws RealmUnavailableException {
+        return wrap(modifiableRealm.getRealmIdentityForUpdate(name, principal, evidence), name);
+    }
+
+    public Iterator<ModifiableRealmIdentity> getRealmIdentityIterator() throws RealmUnavailableException {
+        final Iterator<ModifiableRealmIdentity> iterator = modifiableRealm.getRealmIdentityIterator();
+        return new Iterator<ModifiableRealmIdentity>() {
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            public ModifiableRealmIdentity next() {
+                final ModifiableRealmIdentity identity = iterator.next();
+                return wrap(identity, null);
+            }
+        };
+    }
+
+    private ModifiableRealmIdentity wrap(final ModifiableRealmIdentity identity, final String name) {
+        if (identity == ModifiableRealmIdentity.NON_EXISTENT) {
+            return identity;
+        }
+        return new ModifiableRealmIdentity() {
+            public Principal getRealmIdentityPrincipal() {
+                return identity.getRealmIdentityPrincipal();
+            }
+
+            public SupportLevel getCredentialAcquireSupport(final Class<? extends Credential> credentialType, final String algorithmName) throws RealmUnavailableException {
+                return identity.getCredentialAcquireSupport(credentialType, algorithmName);
+            }
+
+            public <C extends Credential> C getCredential(final Class<C> credentialType) throws RealmUnavailableException {
+                return identity.getCredential(credentialType);
+            }
+
+            public <C extends Credential> C getCredential(final Class<C> credentialType, final String algorithmName) throws RealmUnavailableException {
+                return identity.getCredential(credentialType, algorithmName);
+            }
+
+            public SupportLevel getEvidenceVerifySupport(final Class<? extends Evidence> evidenceType, final String algorithmName) throws RealmUnavailableException {
+                return identity.getEvidenceVerifySupport(evidenceType, algorithmName);
+            }
+
+            public boolean verifyEvidence(final Evidence evidence) throws RealmUnavailableException {
+                return identity.verifyEvidence(evidence);
+            }
+
+            public boolean exists() throws RealmUnavailableException {
+                return identity.exists();
+            }
+
+            public AuthorizationIdentity getAuthorizationIdentity() throws RealmUnavailableException {
+                return identity.getAuthorizationIdentity();
+            }
+
+            public void delete() throws RealmUnavailableException {
+                try {
+                    identity.delete();
+                } finally {
+                    invalidate();
+                }
+            }
+
+            public void create() throws RealmUnavailableException {
+                try {
+                    identity.create();
+                } finally {
+                    invalidate();
+                }
+            }
+
+            public void setCredentials(final Collection<? extends Credential> credentials) throws RealmUnavailableException {
+                try {
+                    identity.setCredentials(credentials);
+                } finally {
+                    invalidate();
+                }
+            }
+
+            public void replaceCredentials(final Predicate<? super Credential> replaced, final Collection<? extends Credential> credentials) throws RealmUnavailableException {
+                try {
+                    identity.replaceCredentials(replaced, credentials);
+                } finally {
+                    invalidate();
+                }
+            }
+
+            public void setAttributes(final Attributes attributes) throws RealmUnavailableException {
+                try {
+                    identity.setAttributes(attributes);
+                } finally {
+                    invalidate();
+                }
+            }
+
+            public void dispose() {
+                identity.dispose();
+            }
+
+            private void invalidate() {
+                // identities from the iterator carry no name; we cannot tell which entry is stale
+                if (name == null) {
+                    removeAllFromCache();
+                } else {
+                    removeFromCache(name);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,396 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.auth.realm;
+
+import java.security.Principal;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.wildfly.common.Assert;
+import org.wildfly.security._private.ElytronMessages;
+import org.wildfly.security.auth.server.RealmIdentity;
+import org.wildfly.security.auth.server.RealmUnavailableException;
+import org.wildfly.security.auth.server.SecurityRealm;
+import org.wildfly.security.auth.server.SupportLevel;
+import org.wildfly.security.auth.server.event.RealmAuthenticationEvent;
+import org.wildfly.security.auth.server.event.RealmEvent;
+import org.wildfly.security.authz.AuthorizationIdentity;
+import org.wildfly.security.authz.MapAttributes;
+import org.wildfly.security.credential.Credential;
+import org.wildfly.security.credential.PasswordCredential;
+import org.wildfly.security.evidence.Evidence;
+import org.wildfly.security.evidence.PasswordGuessEvidence;
+
+/**
+ * A realm which wraps another realm and caches the credentials, authorization attributes and existence of its
+ * identities by name and principal.  The cache is bounded in size, evicting the least recently used entry when full,
+ * and entries may optionally expire after a fixed age.
+ * <p>
+ * Only identities which are located by name and principal alone are cached; lookups which supply evidence are passed
+ * directly to the wrapped realm.  Cached entries are removed when an authentication against them fails.  Since a
+ * successful authentication cannot tell that the wrapped realm has changed, whoever changes the wrapped realm
+ * directly must remove the affected entries using {@link #removeFromCache(String)},
+ * {@link #removeFromCache(Principal)} or {@link #removeAllFromCache()}, or configure a maximum age.
+ */
+public class CachingSecurityRealm implements SecurityRealm {
+
+    private static final Object NULL_VALUE = new Object();
+
+    private final SecurityRealm realm;
+    private final int maxEntries;
+    private final long maxAgeNanos;
+    private final LinkedHashMap<CacheKey, CacheEntry> cache;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Construct a new instance.
+     *
+     * @param realm the realm to cache (must not be {@code null})
+     * @param maxEntries the maximum number of identities to cache (must be at least 1)
+     * @param maxAge the maximum age of a cache entry in milliseconds, or {@code -1} if entries do not expire
+     */
+    public CachingSecurityRealm(final SecurityRealm realm, final int maxEntries, final long maxAge) {
+        Assert.checkNotNullParam("realm", realm);
+        Assert.checkMinimumParameter("maxEntries", 1, maxEntries);
+        if (maxAge != -1) {
+            Assert.checkMinimumParameter("maxAge", 1, maxAge);
+        }
+        this.realm = realm;
+        this.maxEntries = maxEntries;
+        this.maxAgeNanos = maxAge == -1 ? -1 : TimeUnit.MILLISECONDS.toNanos(maxAge);
+        this.cache = new LinkedHashMap<CacheKey, CacheEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(final Map.Entry<CacheKey, CacheEntry> eldest) {
+                return size() > CachingSecurityRealm.this.maxEntries;
+            }
+        };
+    }
+
+    public RealmIdentity getRealmIdentity(final String name, final Principal principal, final Evidence evidence) throws RealmUnavailableException {
+        if (name == null || evidence != null) {
+            return realm.getRealmIdentity(name, principal, evidence);
+        }
+        return new CachingRealmIdentity(new CacheKey(name, principal));
+    }
+
+    public SupportLevel getCredentialAcquireSupport(final Class<? extends Credential> credentialType, final String algorithmName) throws RealmUnavailableException {
+        return realm.getCredentialAcquireSupport(credentialType, algorithmName);
+    }
+
+    public SupportLevel getEvidenceVerifySupport(final Class<? extends Evidence> evidenceType, final String algorithmName) throws RealmUnavailableException {
+        return realm.getEvidenceVerifySupport(evidenceType, algorithmName);
+    }
+
+    public void handleRealmEvent(final RealmEvent event) {
+        if (event instanceof RealmAuthenticationEvent && ((RealmAuthenticationEvent) event).isFailure()) {
+            final RealmIdentity realmIdentity = ((RealmAuthenticationEvent) event).getRealmIdentity();
+            if (realmIdentity instanceof CachingRealmIdentity) {
+                removeCacheEntry(((CachingRealmIdentity) realmIdentity).key);
+            }
+        }
+        realm.handleRealmEvent(event);
+    }
+
+    /**
+     * Remove the cached entries for the given identity name, whatever principal they were located with.
+     *
+     * @param name the identity name (must not be {@code null})
+     */
+    public void removeFromCache(final String name) {
+        Assert.checkNotNullParam("name", name);
+        synchronized (cache) {
+            final Iterator<CacheKey> iterator = cache.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (name.equals(iterator.next().name)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the cached entries located with the given principal, whatever identity name they were located with.
+     *
+     * @param principal the principal (must not be {@code null})
+     */
+    public void removeFromCache(final Principal principal) {
+        Assert.checkNotNullParam("principal", principal);
+        synchronized (cache) {
+            final Iterator<CacheKey> iterator = cache.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (principal.equals(iterator.next().principal)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    private void removeCacheEntry(final CacheKey key) {
+        synchronized (cache) {
+            cache.remove(key);
+        }
+    }
+
+    /**
+     * Remove all cached entries.
+     */
+    public void removeAllFromCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Get the number of identities currently held in the cache.
+     *
+     * @return the number of cached identities
+     */
+    public int getCacheSize() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Get the number of lookups which were answered from the cache.
+     *
+     * @return the cache hit count
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Get the number of lookups which had to be passed to the wrapped realm.
+     *
+     * @return the cache miss count
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private CacheEntry getCacheEntry(final CacheKey key) {
+        final long now = System.nanoTime();
+        synchronized (cache) {
+            CacheEntry entry = cache.get(key);
+            if (entry == null || maxAgeNanos != -1 && now - entry.created > maxAgeNanos) {
+                entry = new CacheEntry(now);
+                cache.put(key, entry);
+            }
+            return entry;
+        }
+    }
+
+    static final class CacheKey {
+        private final String name;
+        private final Principal principal;
+        private final int hashCode;
+
+        CacheKey(final String name, final Principal principal) {
+            this.name = name;
+            this.principal = principal;
+            hashCode = name.hashCode() * 31 + (principal == null ? 0 : principal.hashCode());
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(final Object obj) {
+            return obj instanceof CacheKey && equals((CacheKey) obj);
+        }
+
+        boolean equals(final CacheKey other) {
+            return other != null && name.equals(other.name) && (principal == null ? other.principal == null : principal.equals(other.principal));
+        }
+    }
+
+    static final class CacheEntry {
+        final long created;
+        final ConcurrentHashMap<CredentialKey, Object> credentials = new ConcurrentHashMap<>();
+        volatile Boolean exists;
+        volatile Object principal;
+        volatile AuthorizationIdentity authorizationIdentity;
+
+        CacheEntry(final long created) {
+            this.created = created;
+        }
+    }
+
+    static final class CredentialKey {
+        private final Class<? extends Credential> credentialType;
+        private final String algorithmName;
+        private final int hashCode;
+
+        CredentialKey(final Class<? extends Credential> credentialType, final String algorithmName) {
+            this.credentialType = credentialType;
+            this.algorithmName = algorithmName;
+            hashCode = credentialType.hashCode() * 31 + (algorithmName == null ? 0 : algorithmName.hashCode());
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(final Object obj) {
+            return obj instanceof CredentialKey && equals((CredentialKey) obj);
+        }
+
+        boolean equals(final CredentialKey other) {
+            return other != null && credentialType == other.credentialType && (algorithmName == null ? other.algorithmName == null : algorithmName.equals(other.algorithmName));
+        }
+    }
+
+    final class CachingRealmIdentity implements RealmIdentity {
+        private final CacheKey key;
+        private RealmIdentity realmIdentity;
+
+        CachingRealmIdentity(final CacheKey key) {
+            this.key = key;
+        }
+
+        private RealmIdentity getRealmIdentity() throws RealmUnavailableException {
+            RealmIdentity realmIdentity = this.realmIdentity;
+            if (realmIdentity == null) {
+                realmIdentity = this.realmIdentity = realm.getRealmIdentity(key.name, key.principal, null);
+            }
+            return realmIdentity;
+        }
+
+        public Principal getRealmIdentityPrincipal() {
+            final CacheEntry entry = getCacheEntry(key);
+            Object principal = entry.principal;
+            if (principal != null) {
+                hitCount.incrementAndGet();
+            } else {
+                missCount.incrementAndGet();
+                final Principal realmPrincipal;
+                try {
+                    realmPrincipal = getRealmIdentity().getRealmIdentityPrincipal();
+                } catch (RealmUnavailableException e) {
+                    throw ElytronMessages.log.cachingRealmFailedToObtainPrincipal(key.name, e);
+                }
+                entry.principal = principal = realmPrincipal == null ? NULL_VALUE : realmPrincipal;
+            }
+            return principal == NULL_VALUE ? null : (Principal) principal;
+        }
+
+        public SupportLevel getCredentialAcquireSupport(final Class<? extends Credential> credentialType, final String algorithmName) throws RealmUnavailableException {
+            Assert.checkNotNullParam("credentialType", credentialType);
+            final Object cached = getCacheEntry(key).credentials.get(new CredentialKey(credentialType, algorithmName));
+            if (cached != null) {
+                hitCount.incrementAndGet();
+                return cached == NULL_VALUE ? SupportLevel.UNSUPPORTED : SupportLevel.SUPPORTED;
+            }
+            return getRealmIdentity().getCredentialAcquireSupport(credentialType, algorithmName);
+        }
+
+        public <C extends Credential> C getCredential(final Class<C> credentialType) throws RealmUnavailableException {
+            return getCredential(credentialType, null);
+        }
+
+        public <C extends Credential> C getCredential(final Class<C> credentialType, final String algorithmName) throws RealmUnavailableException {
+            Assert.checkNotNullParam("credentialType", credentialType);
+            final CacheEntry entry = getCacheEntry(key);
+            final CredentialKey key = new CredentialKey(credentialType, algorithmName);
+            Object cached = entry.credentials.get(key);
+            if (cached != null) {
+                hitCount.incrementAndGet();
+            } else {
+                missCount.incrementAndGet();
+                final C credential = getRealmIdentity().getCredential(credentialType, algorithmName);
+                cached = credential == null ? NULL_VALUE : credential;
+                entry.credentials.put(key, cached);
+            }
+            return cached == NULL_VALUE ? null : credentialType.cast(cached);
+        }
+
+        public SupportLevel getEvidenceVerifySupport(final Class<? extends Evidence> evidenceType, final String algorithmName) throws RealmUnavailableException {
+            Assert.checkNotNullParam("evidenceType", evidenceType);
+            for (Object cached : getCacheEntry(key).credentials.values()) {
+                if (cached != NULL_VALUE && ((Credential) cached).canVerify(evidenceType, algorithmName)) {
+                    hitCount.incrementAndGet();
+                    return SupportLevel.SUPPORTED;
+                }
+            }
+            return getRealmIdentity().getEvidenceVerifySupport(evidenceType, algorithmName);
+        }
+
+        public boolean verifyEvidence(final Evidence evidence) throws RealmUnavailableException {
+            Assert.checkNotNullParam("evidence", evidence);
+            for (Object cached : getCacheEntry(key).credentials.values()) {
+                if (cached != NULL_VALUE && ((Credential) cached).canVerify(evidence)) {
+                    hitCount.incrementAndGet();
+                    return ((Credential) cached).verify(evidence);
+                }
+            }
+            if (evidence instanceof PasswordGuessEvidence) {
+                // a password guess can be verified locally if the wrapped realm is willing to hand out the password
+                if (getRealmIdentity().getCredentialAcquireSupport(PasswordCredential.class, null).mayBeSupported()) {
+                    final PasswordCredential credential = getCredential(PasswordCredential.class);
+                    if (credential != null && credential.canVerify(evidence)) {
+                        return credential.verify(evidence);
+                    }
+                }
+            }
+            missCount.incrementAndGet();
+            return getRealmIdentity().verifyEvidence(evidence);
+        }
+
+        public boolean exists() throws RealmUnavailableException {
+            final CacheEntry entry = getCacheEntry(key);
+            Boolean exists = entry.exists;
+            if (exists != null) {
+                hitCount.incrementAndGet();
+            } else {
+                missCount.incrementAndGet();
+                entry.exists = exists = Boolean.valueOf(getRealmIdentity().exists());
+            }
+            return exists.booleanValue();
+        }
+
+        public AuthorizationIdentity getAuthorizationIdentity() throws RealmUnavailableException {
+            final CacheEntry entry = getCacheEntry(key);
+            AuthorizationIdentity authorizationIdentity = entry.authorizationIdentity;
+            if (authorizationIdentity != null) {
+                hitCount.incrementAndGet();
+            } else {
+                missCount.incrementAndGet();
+                // snapshot the attributes, as the wrapped realm may otherwise load them lazily
+                final AuthorizationIdentity realmAuthorizationIdentity = getRealmIdentity().getAuthorizationIdentity();
+                entry.authorizationIdentity = authorizationIdentity = AuthorizationIdentity.basicIdentity(new MapAttributes(realmAuthorizationIdentity.getAttributes()).asReadOnly());
+            }
+            return authorizationIdentity;
+        }
+
+        public void dispose() {
+            final RealmIdentity realmIdentity = this.realmIdentity;
+            if (realmIdentity != null) {
+                this.realmIdentity = null;
+                realmIdentity.dispose();
+            }
+        }
+    }
+}
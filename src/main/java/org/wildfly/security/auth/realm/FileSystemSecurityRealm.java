@@ -32,6 +32,8 @@ import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.security.KeyFactory;
 import java.security.NoSuchAlgorithmException;
 import java.security.Principal;
@@ -41,13 +43,27 @@ import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLOutputFactory;
@@ -95,18 +111,64 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm {
     private final Path root;
     private final NameRewriter nameRewriter;
     private final int levels;
+    private final long flushDelay;
+
+    /**
+     * Parsed identities by name, in access order; {@code null} if the index is disabled.  Guarded by {@link #indexLock},
+     * as are {@link #pendingWrites}, {@link #flushScheduled}, {@link #flushExecutor} and {@link #closed}.
+     */
+    private final LinkedHashMap<String, IndexEntry> index;
+    private final Map<String, LoadedIdentity> pendingWrites = new HashMap<>();
+    private final Object indexLock = new Object();
+    private final Object flushLock = new Object();
+    private final AtomicLong indexHitCount = new AtomicLong();
+    private final AtomicLong indexMissCount = new AtomicLong();
+    private boolean flushScheduled;
+    private ScheduledExecutorService flushExecutor;
+    private boolean closed;
 
     /**
      * Construct a new instance.
+     * <p>
+     * If {@code maxIndexEntries} is positive, parsed identities are kept in memory and only parsed again when the
+     * modification time, size or identity of their file changes.  If {@code flushDelay} is zero or more, changes made
+     * with {@link ModifiableRealmIdentity#setCredentials(Collection)} and
+     * {@link ModifiableRealmIdentity#setAttributes(Attributes)} are visible through this realm immediately but are only
+     * written to disk after the delay, so that a burst of changes to an identity costs a single write; call
+     * {@link #flush()} to write pending changes sooner, and {@link #close()} when the realm is no longer used so that
+     * no pending change is lost.
      *
      * @param root the root path of the identity store
      * @param nameRewriter the name rewriter to apply to looked up names
      * @param levels the number of levels of directory hashing to apply
+     * @param maxIndexEntries the maximum number of parsed identities to keep, or {@code 0} to parse on every access
+     * @param flushDelay the delay in milliseconds before changes are written, or {@code -1} to write them immediately
      */
-    public FileSystemSecurityRealm(final Path root, final NameRewriter nameRewriter, final int levels) {
+    public FileSystemSecurityRealm(final Path root, final NameRewriter nameRewriter, final int levels, final int maxIndexEntries, final long flushDelay) {
+        Assert.checkMinimumParameter("maxIndexEntries", 0, maxIndexEntries);
+        Assert.checkMinimumParameter("flushDelay", -1L, flushDelay);
         this.root = root;
         this.nameRewriter = nameRewriter;
         this.levels = levels;
+        this.flushDelay = flushDelay;
+        this.index = maxIndexEntries == 0 ? null : new LinkedHashMap<String, IndexEntry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(final Map.Entry<String, IndexEntry> eldest) {
+                return size() > maxIndexEntries;
+            }
+        };
+    }
+
+    /**
+     * Construct a new instance.
+     *
+     * @param root the root path of the identity store
+     * @param nameRewriter the name rewriter to apply to looked up names
+     * @param levels the number of levels of directory hashing to apply
+     */
+    public FileSystemSecurityRealm(final Path root, final NameRewriter nameRewriter, final int levels) {
+        this(root, nameRewriter, levels, 0, -1);
     }
 
     /**
@@ -116,9 +178,7 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm {
      * @param levels the number of levels of directory hashing to apply
      */
     public FileSystemSecurityRealm(final Path root, final int levels) {
-        this.root = root;
-        this.levels = levels;
-        nameRewriter = NameRewriter.IDENTITY_REWRITER;
+        this(root, NameRewriter.IDENTITY_REWRITER, levels);
     }
 
     /**
@@ -127,9 +187,129 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm {
      * @param root the root path of the identity store
      */
     public FileSystemSecurityRealm(final Path root) {
-        this.root = root;
-        levels = 2;
-        nameRewriter = NameRewriter.IDENTITY_REWRITER;
+        this(root, 2);
+    }
+
+    /**
+     * Write any changes which are waiting for the flush delay to pass.
+     *
+     * @throws RealmUnavailableException if a change could not be written; changes which could not be written remain
+     *  pending
+     */
+    public void flush() throws RealmUnavailableException {
+        synchronized (flushLock) {
+            final Map<String, LoadedIdentity> writes;
+            synchronized (indexLock) {
+                flushScheduled = false;
+                if (pendingWrites.isEmpty()) {
+                    return;
+                }
+                writes = new HashMap<>(pendingWrites);
+            }
+            RealmUnavailableException failure = null;
+            for (Map.Entry<String, LoadedIdentity> entry : writes.entrySet()) {
+                final String name = entry.getKey();
+                try {
+                    new Identity(name, pathFor(name)).writeIdentity(entry.getValue());
+                    synchronized (indexLock) {
+                        // unless it was changed again in the meantime
+                        pendingWrites.remove(name, entry.getValue());
+                    }
+                } catch (RealmUnavailableException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    /**
+     * Write any pending changes and stop the thread which writes changes after the flush delay.  Changes made after the
+     * realm is closed are written immediately.
+     *
+     * @throws RealmUnavailableException if a pending change could not be written; it remains pending and can be retried
+     *  with {@link #flush()}
+     */
+    public void close() throws RealmUnavailableException {
+        final ScheduledExecutorService executor;
+        synchronized (indexLock) {
+            closed = true;
+            executor = flushExecutor;
+            flushExecutor = null;
+        }
+        if (executor != null) {
+            // a scheduled flush which has not started yet is discarded, one in progress is allowed to finish
+            executor.shutdown();
+        }
+        flush();
+    }
+
+    /**
+     * Get the number of changed identities which have not yet been written to disk.
+     *
+     * @return the number of pending writes
+     */
+    public int getPendingWriteCount() {
+        synchronized (indexLock) {
+            return pendingWrites.size();
+        }
+    }
+
+    /**
+     * Get the number of identity loads answered from the in-memory index.
+     *
+     * @return the index hit count
+     */
+    public long getIndexHitCount() {
+        return indexHitCount.get();
+    }
+
+    /**
+     * Get the number of identity loads which had to parse the identity file.
+     *
+     * @return the index miss count
+     */
+    public long getIndexMissCount() {
+        return indexMissCount.get();
+    }
+
+    private void scheduleFlush() {
+        // called with indexLock held
+        if (flushScheduled) {
+            return;
+        }
+        flushScheduled = true;
+        ScheduledExecutorService executor = flushExecutor;
+        if (executor == null) {
+            final ScheduledThreadPoolExecutor newExecutor = new ScheduledThreadPoolExecutor(1, r -> {
+                final Thread thread = new Thread(r, "filesystem-realm-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            newExecutor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+            flushExecutor = executor = newExecutor;
+        }
+        executor.schedule(() -> {
+            try {
+                flush();
+            } catch (RealmUnavailableException e) {
+                ElytronMessages.log.fileSystemRealmFlushFailed(root, e);
+            }
+        }, flushDelay, TimeUnit.MILLISECONDS);
+    }
+
+    private void invalidate(final String name) {
+        if (index != null) {
+            synchronized (indexLock) {
+                index.remove(name);
+            }
+        }
     }
 
     private Path pathFor(final String name) {
@@ -252,6 +432,22 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm {
         }
     }
 
+    /**
+     * Get a stream of all identities in this realm.
+     * <p>
+     * Unlike {@link #getRealmIdentityIterator()}, the stream does not hold directories open between elements, and when
+     * made {@linkplain Stream#parallel() parallel} it splits the hash directories between worker threads so that bulk
+     * operations such as export, import or credential upgrade can use several threads.  A parallel stream runs in the
+     * common fork-join pool unless its terminal operation is invoked from a task submitted to another
+     * {@link java.util.concurrent.ForkJoinPool}.  The stream reflects the content of the realm as it is read; identities
+     * added or removed during the traversal may or may not be included.
+     *
+     * @return the sequential stream of identities
+     */
+    public Stream<ModifiableRealmIdentity> getRealmIdentityStream() {
+        return StreamSupport.stream(new IdentitySpliterator(root, levels), false);
+    }
+
     public SupportLevel getCredentialAcquireSupport(final Class<? extends Credential> credentialType, final String algorithmName) throws RealmUnavailableException {
         return SupportLevel.POSSIBLY_SUPPORTED;
     }
@@ -340,12 +536,21 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm {
         }
 
         public void delete() throws RealmUnavailableException {
-            try {
-                Files.delete(path);
-            } catch (NoSuchFileException e) {
-                throw ElytronMessages.log.fileSystemRealmNotFound(name);
-            } catch (IOException e) {
-                throw ElytronMessages.log.fileSystemRealmDeleteFailed(name, e);
+            // an identity must not be written back by a flush after it has been deleted
+            synchronized (flushLock) {
+                synchronized (indexLock) {
+                    pendingWrites.remove(name);
+                    if (index != null) {
+                        index.remove(name);
+                    }
+                }
+                try {
+                    Files.delete(path);
+                } catch (NoSuchFileException e) {
+                    throw ElytronMessages.log.fileSystemRealmNotFound(name);
+                } catch (IOException e) {
+                    throw ElytronMessages.log.fileSystemRealmDeleteFailed(name, e);
+                }
             }
         }
 
@@ -412,6 +617,7 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm {
                 } catch (IOException ignored) {
                     // nothing we can do
                 }
+                invalidate(name);
                 return;
             }
         }
@@ -427,6 +633,24 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm {
             replaceIdentity(newIdentity);
         }
 
+        public void replaceCredentials(final Predicate<? super Credential> replaced, final Collection<? extends Credential> credentials) throws RealmUnavailableException {
+            Assert.checkNotNullParam("replaced", replaced);
+            Assert.checkNotNullParam("credentials", credentials);
+            final LoadedIdentity loadedIdentity = loadIdentity(false, false);
+            if (loadedIdentity == null) {
+                throw ElytronMessages.log.fileSystemRealmNotFound(name);
+            }
+
+            final List<Credential> newCredentials = new ArrayList<>(credentials);
+            for (Credential credential : loadedIdentity.getCredentials()) {
+                if (! replaced.test(credential)) {
+                    newCredentials.add(credential);
+                }
+            }
+            final LoadedIdentity newIdentity = new LoadedIdentity(name, newCredentials, loadedIdentity.getAttributes());
+            replaceIdentity(newIdentity);
+        }
+
         public void setAttributes(final Attributes attributes) throws RealmUnavailableException {
             Assert.checkNotNullParam("attributes", attributes);
             final LoadedIdentity loadedIdentity = loadIdentity(false, true);
@@ -438,6 +662,29 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm {
         }
 
         private void replaceIdentity(final LoadedIdentity newIdentity) throws RealmUnavailableException {
+            if (flushDelay >= 0) {
+                final LoadedIdentity pending = new LoadedIdentity(name, Collections.unmodifiableList(newIdentity.getCredentials()), new MapAttributes(newIdentity.getAttributes()).asReadOnly());
+                synchronized (indexLock) {
+                    if (! closed) {
+                        pendingWrites.put(name, pending);
+                        if (index != null) {
+                            index.remove(name);
+                        }
+                        scheduleFlush();
+                        return;
+                    }
+                    // closed, so written below; a change left pending by a failed flush must not overwrite it later
+                    pendingWrites.remove(name);
+                }
+            }
+            try {
+                writeIdentity(newIdentity);
+            } finally {
+                invalidate(name);
+            }
+        }
+
+        void writeIdentity(final LoadedIdentity newIdentity) throws RealmUnavailableException {
             for (;;) {
                 final Path tempPath = tempPath();
                 try {
@@ -567,6 +814,48 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm {
         }
 
         private LoadedIdentity loadIdentity(final boolean skipCredentials, final boolean skipAttributes) throws RealmUnavailableException {
+            if (flushDelay >= 0) {
+                final LoadedIdentity pending;
+                synchronized (indexLock) {
+                    pending = pendingWrites.get(name);
+                }
+                if (pending != null) {
+                    return pending;
+                }
+            }
+            if (index == null) {
+                return loadIdentityFromFile(skipCredentials, skipAttributes);
+            }
+            final BasicFileAttributes fileAttributes;
+            try {
+                fileAttributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (NoSuchFileException | FileNotFoundException ignored) {
+                invalidate(name);
+                return null;
+            } catch (IOException e) {
+                throw ElytronMessages.log.fileSystemRealmFailedToOpen(path, name, e);
+            }
+            synchronized (indexLock) {
+                final IndexEntry entry = index.get(name);
+                if (entry != null && entry.matches(fileAttributes)) {
+                    indexHitCount.incrementAndGet();
+                    return entry.identity;
+                }
+            }
+            indexMissCount.incrementAndGet();
+            final LoadedIdentity loaded = loadIdentityFromFile(false, false);
+            if (loaded == null) {
+                invalidate(name);
+                return null;
+            }
+            final LoadedIdentity indexed = new LoadedIdentity(name, Collections.unmodifiableList(loaded.getCredentials()), loaded.getAttributes().asReadOnly());
+            synchronized (indexLock) {
+                index.put(name, new IndexEntry(indexed, fileAttributes));
+            }
+            return indexed;
+        }
+
+        private LoadedIdentity loadIdentityFromFile(final boolean skipCredentials, final boolean skipAttributes) throws RealmUnavailableException {
             try (InputStream inputStream = Files.newInputStream(path, READ)) {
                 final XMLInputFactory inputFactory = XMLInputFactory.newFactory();
                 inputFactory.setProperty(XMLInputFactory.IS_VALIDATING, Boolean.FALSE);
@@ -874,6 +1163,113 @@ public final class FileSystemSecurityRealm implements ModifiableSecurityRealm {
         }
     }
 
+    /**
+     * A spliterator over the identity files of a hashed directory tree.  Each directory is listed in full and closed
+     * before any of its entries are returned; splitting hands over half of the directories not yet listed, or failing
+     * that half of the identity names of the current directory.
+     */
+    final class IdentitySpliterator implements Spliterator<ModifiableRealmIdentity> {
+        private static final int MIN_SPLIT_NAMES = 64;
+
+        private final ArrayDeque<Directory> directories = new ArrayDeque<>();
+        private ArrayDeque<String> names = new ArrayDeque<>();
+
+        IdentitySpliterator(final Path root, final int levels) {
+            directories.add(new Directory(root, levels));
+        }
+
+        private IdentitySpliterator() {
+        }
+
+        public boolean tryAdvance(final Consumer<? super ModifiableRealmIdentity> action) {
+            String name;
+            while ((name = names.poll()) == null) {
+                final Directory directory = directories.pollFirst();
+                if (directory == null) {
+                    return false;
+                }
+                list(directory);
+            }
+            action.accept(getRealmIdentityForUpdate(name, null, null));
+            return true;
+        }
+
+        public Spliterator<ModifiableRealmIdentity> trySplit() {
+            if (directories.size() == 1 && names.isEmpty()) {
+                list(directories.pollFirst());
+            }
+            final IdentitySpliterator split = new IdentitySpliterator();
+            int count = directories.size() / 2;
+            if (count > 0) {
+                while (count-- > 0) {
+                    split.directories.add(directories.pollLast());
+                }
+                return split;
+            }
+            if (directories.isEmpty() && names.size() >= MIN_SPLIT_NAMES) {
+                count = names.size() / 2;
+                while (count-- > 0) {
+                    split.names.add(names.pollLast());
+                }
+                return split;
+            }
+            return null;
+        }
+
+        public long estimateSize() {
+            return directories.isEmpty() ? names.size() : Long.MAX_VALUE;
+        }
+
+        public int characteristics() {
+            return DISTINCT | NONNULL;
+        }
+
+        private void list(final Directory directory) {
+            // names shorter than the number of levels are stored above the deepest level
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory.path)) {
+                for (Path entry : stream) {
+                    final String fileName = entry.getFileName().toString();
+                    if (fileName.endsWith(".xml") && fileName.length() > 4) {
+                        names.add(fileName.substring(0, fileName.length() - 4));
+                    } else if (directory.levels > 0 && fileName.codePointCount(0, fileName.length()) == 1 && ! fileName.equals(".") && Files.isDirectory(entry)) {
+                        directories.add(new Directory(entry, directory.levels - 1));
+                    }
+                }
+            } catch (IOException e) {
+                ElytronMessages.log.debug(e);
+            }
+        }
+    }
+
+    static final class Directory {
+        final Path path;
+        final int levels;
+
+        Directory(final Path path, final int levels) {
+            this.path = path;
+            this.levels = levels;
+        }
+    }
+
+    static final class IndexEntry {
+        final LoadedIdentity identity;
+        private final FileTime lastModifiedTime;
+        private final long size;
+        private final Object fileKey;
+
+        IndexEntry(final LoadedIdentity identity, final BasicFileAttributes fileAttributes) {
+            this.identity = identity;
+            this.lastModifiedTime = fileAttributes.lastModifiedTime();
+            this.size = fileAttributes.size();
+            this.fileKey = fileAttributes.fileKey();
+        }
+
+        boolean matches(final BasicFileAttributes fileAttributes) {
+            // updates replace the file, so the file key changes even if the time and size do not
+            return lastModifiedTime.equals(fileAttributes.lastModifiedTime()) && size == fileAttributes.size() && Objects.equals(fileKey, fileAttributes.fileKey());
+        }
+    }
+
     static class AutoCloseableXMLStreamReaderHolder implements AutoCloseable {
         private final XMLStreamReader xmlStreamReader;
 
@@ -27,6 +27,13 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.Principal;
@@ -38,9 +45,9 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.wildfly.common.Assert;
 import org.wildfly.security.auth.server.RealmIdentity;
@@ -73,20 +80,25 @@ public class LegacyPropertiesSecurityRealm implements SecurityRealm {
     private static final String REALM_COMMENT_PREFIX = "$REALM_NAME=";
     private static final String REALM_COMMENT_SUFFIX = "$";
 
-    private static final Pattern HASHED_PATTERN = Pattern.compile("#??([^#]*)=(([\\da-f]{2})+)$");
-    private static final Pattern PLAIN_PATTERN = Pattern.compile("#??([^#]*)=([^=]*)");
+    private static final long WATCH_SETTLE_TIME = 100; // ms
 
     private final boolean plainText;
-    private final Pattern currentPattern;
 
     private final String groupsAttribute;
 
+    private final Path passwordsFile;
+    private final Path groupsFile;
+
     private final AtomicReference<LoadedState> loadedState = new AtomicReference<>();
+    private final AtomicLong reloadCount = new AtomicLong();
+
+    private volatile WatchService watchService;
 
     private LegacyPropertiesSecurityRealm(Builder builder) throws IOException {
         this.plainText = builder.plainText;
-        currentPattern = plainText ? PLAIN_PATTERN : HASHED_PATTERN;
         groupsAttribute = builder.groupsAttribute;
+        passwordsFile = builder.passwordsFile == null ? null : builder.passwordsFile.toAbsolutePath();
+        groupsFile = builder.groupsFile == null ? null : builder.groupsFile.toAbsolutePath();
     }
 
     @Override
@@ -219,7 +231,11 @@ public class LegacyPropertiesSecurityRealm implements SecurityRealm {
     }
 
     public void load(InputStream passwordsStream, InputStream groupsStream) throws IOException {
+        final long loadStart = System.nanoTime();
+        final LoadedState previous = loadedState.get();
+        final Map<String, AccountEntry> previousLines = previous == null ? Collections.emptyMap() : previous.getLines();
         Map<String, AccountEntry> accounts = new HashMap<>();
+        Map<String, AccountEntry> lines = new HashMap<>();
         Properties groups = new Properties();
         if (groupsStream != null) {
             try (InputStreamReader is = new InputStreamReader(groupsStream, StandardCharsets.UTF_8);) {
@@ -241,16 +257,20 @@ public class LegacyPropertiesSecurityRealm implements SecurityRealm {
                     if (end > -1) {
                         realmName = trimmed.substring(start, end);
                     }
-                } else {
-                    final Matcher matcher = currentPattern.matcher(trimmed);
-                    if (matcher.matches()) {
-                        String accountName = matcher.group(1);
-                        String passwordRepresentation = matcher.group(2);
-                        boolean commented = trimmed.startsWith(COMMENT_PREFIX);
-                        if (commented == false) {
-                            accounts.put(accountName, new AccountEntry(accountName, passwordRepresentation, groups.getProperty(accountName)));
+                } else if (! trimmed.startsWith(COMMENT_PREFIX)) {
+                    AccountEntry accountEntry = previousLines.get(trimmed);
+                    if (accountEntry == null || ! accountEntry.hasGroups(groups.getProperty(accountEntry.getName()))) {
+                        // a new or changed line, or the groups of the account changed
+                        final int separator = findSeparator(trimmed);
+                        if (separator == -1) {
+                            continue;
                         }
+                        String accountName = trimmed.substring(0, separator);
+                        String passwordRepresentation = trimmed.substring(separator + 1);
+                        accountEntry = new AccountEntry(accountName, passwordRepresentation, groups.getProperty(accountName));
                     }
+                    accounts.put(accountEntry.getName(), accountEntry);
+                    lines.put(trimmed, accountEntry);
                 }
             }
         }
@@ -259,7 +279,159 @@ public class LegacyPropertiesSecurityRealm implements SecurityRealm {
             throw log.noRealmFoundInProperties();
         }
 
-        loadedState.set(new LoadedState(accounts, realmName, System.currentTimeMillis()));
+        loadedState.set(new LoadedState(accounts, lines, realmName, System.currentTimeMillis(), System.nanoTime() - loadStart));
+        reloadCount.incrementAndGet();
+    }
+
+    /**
+     * Find the position of the {@code =} separating the account name from the password representation in an
+     * uncommented line, checking the line the same way as the original {@code name=value} patterns: the name may not
+     * contain {@code #}, the value is everything after the last {@code =}, and for hashed files it must be a non-empty
+     * run of lower case hex digit pairs.
+     *
+     * @param line the trimmed line
+     * @return the index of the separator, or {@code -1} if the line does not hold an account
+     */
+    private int findSeparator(final String line) {
+        final int separator = line.lastIndexOf('=');
+        if (separator == -1) {
+            return -1;
+        }
+        final int hash = line.indexOf('#');
+        if (hash != -1 && hash < separator) {
+            return -1;
+        }
+        if (! plainText) {
+            final int length = line.length() - separator - 1;
+            if (length == 0 || (length & 1) != 0) {
+                return -1;
+            }
+            for (int i = separator + 1; i < line.length(); i++) {
+                final char c = line.charAt(i);
+                if (! (c >= '0' && c <= '9' || c >= 'a' && c <= 'f')) {
+                    return -1;
+                }
+            }
+        }
+        return separator;
+    }
+
+    /**
+     * Reload the passwords and groups files this realm was built with.  Lines of the passwords file which are
+     * unchanged since the last load are not parsed again.
+     *
+     * @throws IOException if the files could not be read
+     * @throws IllegalStateException if this realm was not built from files
+     */
+    public void reload() throws IOException {
+        if (passwordsFile == null) {
+            throw log.legacyPropertiesRealmNotFileBacked();
+        }
+        try (InputStream passwordsStream = Files.newInputStream(passwordsFile);
+             InputStream groupsStream = groupsFile == null ? null : Files.newInputStream(groupsFile)) {
+            load(passwordsStream, groupsStream);
+        }
+    }
+
+    /**
+     * Stop watching the passwords and groups files for changes, if this realm is watching them.
+     */
+    public void close() {
+        final WatchService watchService = this.watchService;
+        if (watchService != null) {
+            this.watchService = null;
+            try {
+                watchService.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Get the number of times the realm's accounts have been loaded.
+     *
+     * @return the number of loads
+     */
+    public long getReloadCount() {
+        return reloadCount.get();
+    }
+
+    /**
+     * Get the time taken by the most recent load.
+     *
+     * @param unit the time unit of the returned value (must not be {@code null})
+     * @return the time taken by the most recent load
+     */
+    public long getLastLoadDuration(TimeUnit unit) {
+        Assert.checkNotNullParam("unit", unit);
+        return unit.convert(loadedState.get().getLoadDuration(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the number of accounts currently loaded.
+     *
+     * @return the number of accounts
+     */
+    public int getEntryCount() {
+        return loadedState.get().getAccounts().size();
+    }
+
+    private void startWatching() throws IOException {
+        final WatchService watchService = passwordsFile.getFileSystem().newWatchService();
+        try {
+            final Set<Path> directories = new HashSet<>();
+            directories.add(passwordsFile.getParent());
+            if (groupsFile != null) {
+                directories.add(groupsFile.getParent());
+            }
+            for (Path directory : directories) {
+                directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        } catch (IOException | RuntimeException e) {
+            watchService.close();
+            throw e;
+        }
+        this.watchService = watchService;
+        final Thread thread = new Thread(() -> watch(watchService), "legacy-properties-realm-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch(final WatchService watchService) {
+        try {
+            for (;;) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                // an editor often saves a file with several writes, so let the events settle before reloading once
+                do {
+                    changed |= isWatchedFileChanged(key);
+                } while ((key = watchService.poll(WATCH_SETTLE_TIME, TimeUnit.MILLISECONDS)) != null);
+                if (changed) {
+                    try {
+                        reload();
+                    } catch (IOException | RuntimeException e) {
+                        log.failedToReloadProperties(passwordsFile, e);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // stopped
+        }
+    }
+
+    private boolean isWatchedFileChanged(final WatchKey key) {
+        boolean changed = false;
+        final Path directory = (Path) key.watchable();
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                changed = true;
+            } else {
+                final Path file = directory.resolve((Path) event.context());
+                changed |= file.equals(passwordsFile) || file.equals(groupsFile);
+            }
+        }
+        key.reset();
+        return changed;
     }
 
     public long getLoadTime() {
@@ -274,6 +446,9 @@ public class LegacyPropertiesSecurityRealm implements SecurityRealm {
 
         private InputStream passwordsStream;
         private InputStream groupsStream;
+        private Path passwordsFile;
+        private Path groupsFile;
+        private boolean watchFiles;
         private boolean plainText;
         private String groupsAttribute = "groups";
 
@@ -304,6 +479,45 @@ public class LegacyPropertiesSecurityRealm implements SecurityRealm {
             return this;
         }
 
+        /**
+         * Set the file to load the passwords from. A realm built from files can be reloaded with
+         * {@link LegacyPropertiesSecurityRealm#reload()}. This takes precedence over {@link #setPasswordsStream(InputStream)}.
+         *
+         * @param passwordsFile the file to load the passwords from.
+         * @return this {@link Builder}
+         */
+        public Builder setPasswordsFile(Path passwordsFile) {
+            this.passwordsFile = passwordsFile;
+
+            return this;
+        }
+
+        /**
+         * Set the file to load the group information from. This takes precedence over {@link #setGroupsStream(InputStream)}.
+         *
+         * @param groupsFile the file to load the group information from.
+         * @return this {@link Builder}
+         */
+        public Builder setGroupsFile(Path groupsFile) {
+            this.groupsFile = groupsFile;
+
+            return this;
+        }
+
+        /**
+         * Set if the passwords and groups files should be watched, reloading the realm whenever either is modified.
+         * Only applies when the passwords are loaded from a file; use {@link LegacyPropertiesSecurityRealm#close()} to
+         * stop watching.
+         *
+         * @param watchFiles {@code true} to reload the realm when the files change.
+         * @return this {@link Builder}
+         */
+        public Builder setWatchFiles(boolean watchFiles) {
+            this.watchFiles = watchFiles;
+
+            return this;
+        }
+
         /**
          * Where this realm returns an {@link AuthorizationIdentity} set the key on the Attributes that will be used to hold the
          * group membership information.
@@ -331,7 +545,14 @@ public class LegacyPropertiesSecurityRealm implements SecurityRealm {
 
         public LegacyPropertiesSecurityRealm build() throws IOException {
             LegacyPropertiesSecurityRealm realm = new LegacyPropertiesSecurityRealm(this);
-            realm.load(passwordsStream, groupsStream);
+            if (passwordsFile != null) {
+                realm.reload();
+                if (watchFiles) {
+                    realm.startWatching();
+                }
+            } else {
+                realm.load(passwordsStream, groupsStream);
+            }
 
             return realm;
         }
@@ -341,19 +562,31 @@ public class LegacyPropertiesSecurityRealm implements SecurityRealm {
     private static class LoadedState {
 
         private final Map<String, AccountEntry> accounts;
+        private final Map<String, AccountEntry> lines;
         private final String realmName;
         private final long loadTime;
+        private final long loadDuration;
 
-        private LoadedState(Map<String, AccountEntry> accounts, String realmName, long loadTime) {
+        private LoadedState(Map<String, AccountEntry> accounts, Map<String, AccountEntry> lines, String realmName, long loadTime, long loadDuration) {
             this.accounts = accounts;
+            this.lines = lines;
             this.realmName = realmName;
             this.loadTime = loadTime;
+            this.loadDuration = loadDuration;
         }
 
         public Map<String, AccountEntry> getAccounts() {
             return accounts;
         }
 
+        public Map<String, AccountEntry> getLines() {
+            return lines;
+        }
+
+        public long getLoadDuration() {
+            return loadDuration;
+        }
+
         public String getRealmName() {
             return realmName;
         }
@@ -368,14 +601,20 @@ public class LegacyPropertiesSecurityRealm implements SecurityRealm {
 
         private final String name;
         private final String passwordRepresentation;
+        private final String rawGroups;
         private final Set<String> groups;
 
         private AccountEntry(String name, String passwordRepresentation, String groups) {
             this.name = name;
             this.passwordRepresentation = passwordRepresentation;
+            this.rawGroups = groups;
             this.groups = convertGroups(groups);
         }
 
+        private boolean hasGroups(String groups) {
+            return rawGroups == null ? groups == null : rawGroups.equals(groups);
+        }
+
         private Set<String> convertGroups(String groups) {
             if (groups == null) {
                 return Collections.emptySet();
@@ -0,0 +1,302 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.auth.realm;
+
+import static org.wildfly.security._private.ElytronMessages.log;
+
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.Principal;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.wildfly.common.Assert;
+import org.wildfly.security.auth.server.ModifiableRealmIdentity;
+import org.wildfly.security.auth.server.ModifiableSecurityRealm;
+import org.wildfly.security.auth.server.RealmIdentity;
+import org.wildfly.security.auth.server.RealmUnavailableException;
+import org.wildfly.security.auth.server.SupportLevel;
+import org.wildfly.security.auth.server.event.RealmEvent;
+import org.wildfly.security.authz.AuthorizationIdentity;
+import org.wildfly.security.credential.Credential;
+import org.wildfly.security.credential.PasswordCredential;
+import org.wildfly.security.evidence.Evidence;
+import org.wildfly.security.evidence.PasswordGuessEvidence;
+import org.wildfly.security.password.Password;
+import org.wildfly.security.password.PasswordFactory;
+import org.wildfly.security.password.spec.EncryptablePasswordSpec;
+import org.wildfly.security.password.spec.IteratedSaltedHashPasswordSpec;
+import org.wildfly.security.password.spec.IteratedSaltedPasswordAlgorithmSpec;
+
+/**
+ * A realm which wraps a {@link ModifiableSecurityRealm} and upgrades the stored password of an identity to a target
+ * algorithm and iteration count the next time the identity authenticates with its clear password.
+ * <p>
+ * When a {@link PasswordGuessEvidence} is verified successfully against an identity whose stored password uses another
+ * algorithm, or a lower iteration count than the target parameters, the guess is hashed with the target algorithm and
+ * parameters and written back using {@link ModifiableRealmIdentity#replaceCredentials}.  This allows legacy hashes to
+ * be migrated, or the cost of hashes to be raised, gradually as users log in.  A failure to upgrade a password is logged
+ * and does not affect the authentication.
+ * <p>
+ * Only the upgraded password is replaced: the password credentials of the previous and of the target algorithm are
+ * removed and every other credential is left unchanged.  As an identity cannot list its credentials, the whole
+ * credential set is never rewritten; if the wrapped realm does not support replacing individual credentials, the
+ * upgrade is skipped and counted by {@link #getUpgradeSkippedCount()}.  An {@link UpgradePolicy} may be given to
+ * further restrict which identities are upgraded.
+ */
+public class PasswordUpgradingSecurityRealm implements ModifiableSecurityRealm {
+
+    private final ModifiableSecurityRealm realm;
+    private final String algorithm;
+    private final AlgorithmParameterSpec parameterSpec;
+    private final UpgradePolicy policy;
+    private final AtomicLong upgradeCount = new AtomicLong();
+    private final AtomicLong upgradeFailureCount = new AtomicLong();
+    private final AtomicLong upgradeSkippedCount = new AtomicLong();
+
+    /**
+     * Construct a new instance which upgrades every identity whose password does not match the target.
+     *
+     * @param realm the realm to wrap (must not be {@code null})
+     * @param algorithm the target password algorithm (must not be {@code null})
+     * @param parameterSpec the parameters to generate the target password with, or {@code null} for the algorithm
+     *  defaults
+     */
+    public PasswordUpgradingSecurityRealm(final ModifiableSecurityRealm realm, final String algorithm, final AlgorithmParameterSpec parameterSpec) {
+        this(realm, algorithm, parameterSpec, (identity, password) -> true);
+    }
+
+    /**
+     * Construct a new instance.
+     *
+     * @param realm the realm to wrap (must not be {@code null})
+     * @param algorithm the target password algorithm (must not be {@code null})
+     * @param parameterSpec the parameters to generate the target password with, or {@code null} for the algorithm
+     *  defaults
+     * @param policy the policy deciding which identities whose password does not match the target are upgraded (must not
+     *  be {@code null})
+     */
+    public PasswordUpgradingSecurityRealm(final ModifiableSecurityRealm realm, final String algorithm, final AlgorithmParameterSpec parameterSpec, final UpgradePolicy policy) {
+        Assert.checkNotNullParam("realm", realm);
+        Assert.checkNotNullParam("algorithm", algorithm);
+        Assert.checkNotNullParam("policy", policy);
+        this.realm = realm;
+        this.algorithm = algorithm;
+        this.parameterSpec = parameterSpec;
+        this.policy = policy;
+    }
+
+    public RealmIdentity getRealmIdentity(final String name, final Principal principal, final Evidence evidence) throws RealmUnavailableException {
+        final RealmIdentity identity = realm.getRealmIdentity(name, principal, evidence);
+        if (identity == RealmIdentity.NON_EXISTENT) {
+            return identity;
+        }
+        return new UpgradingRealmIdentity(identity, name, principal, evidence);
+    }
+
+    public SupportLevel getCredentialAcquireSupport(final Class<? extends Credential> credentialType, final String algorithmName) throws RealmUnavailableException {
+        return realm.getCredentialAcquireSupport(credentialType, algorithmName);
+    }
+
+    public SupportLevel getEvidenceVerifySupport(final Class<? extends Evidence> evidenceType, final String algorithmName) throws RealmUnavailableException {
+        return realm.getEvidenceVerifySupport(evidenceType, algorithmName);
+    }
+
+    public void handleRealmEvent(final RealmEvent event) {
+        realm.handleRealmEvent(event);
+    }
+
+    public ModifiableRealmIdentity getRealmIdentityForUpdate(final String name, final Principal principal, final Evidence evidence) throws RealmUnavailableException {
+        return realm.getRealmIdentityForUpdate(name, principal, evidence);
+    }
+
+    public Iterator<ModifiableRealmIdentity> getRealmIdentityIterator() throws RealmUnavailableException {
+        return realm.getRealmIdentityIterator();
+    }
+
+    /**
+     * Get the number of identities whose password has been upgraded.
+     *
+     * @return the number of upgraded identities
+     */
+    public long getUpgradeCount() {
+        return upgradeCount.get();
+    }
+
+    /**
+     * Get the number of password upgrades which failed.
+     *
+     * @return the number of failed upgrades
+     */
+    public long getUpgradeFailureCount() {
+        return upgradeFailureCount.get();
+    }
+
+    /**
+     * Get the number of password upgrades which were skipped because the wrapped realm cannot replace a single
+     * credential.
+     *
+     * @return the number of skipped upgrades
+     */
+    public long getUpgradeSkippedCount() {
+        return upgradeSkippedCount.get();
+    }
+
+    boolean needsUpgrade(final Password password) throws GeneralSecurityException {
+        if (! algorithm.equals(password.getAlgorithm())) {
+            return true;
+        }
+        if (parameterSpec instanceof IteratedSaltedPasswordAlgorithmSpec) {
+            final PasswordFactory passwordFactory = PasswordFactory.getInstance(password.getAlgorithm());
+            if (passwordFactory.convertibleToKeySpec(password, IteratedSaltedHashPasswordSpec.class)) {
+                final IteratedSaltedHashPasswordSpec spec = passwordFactory.getKeySpec(password, IteratedSaltedHashPasswordSpec.class);
+                return spec.getIterationCount() < ((IteratedSaltedPasswordAlgorithmSpec) parameterSpec).getIterationCount();
+            }
+        }
+        return false;
+    }
+
+    void upgrade(final RealmIdentity identity, final String name, final Principal principal, final Evidence lookupEvidence, final char[] guess) {
+        try {
+            final PasswordCredential credential = identity.getCredential(PasswordCredential.class);
+            if (credential == null || ! needsUpgrade(credential.getPassword()) || ! policy.shouldUpgrade(identity, credential.getPassword())) {
+                return;
+            }
+            final Password current = credential.getPassword();
+            // the guess may have been verified against another credential of the identity, such as a one time password
+            if (! matches(current, guess)) {
+                return;
+            }
+            final Password password = PasswordFactory.getInstance(algorithm).generatePassword(new EncryptablePasswordSpec(guess, parameterSpec));
+            final ModifiableRealmIdentity modifiableIdentity = realm.getRealmIdentityForUpdate(name, principal, lookupEvidence);
+            try {
+                if (! modifiableIdentity.exists()) {
+                    return;
+                }
+                final String currentAlgorithm = current.getAlgorithm();
+                try {
+                    modifiableIdentity.replaceCredentials(existing -> {
+                        if (! (existing instanceof PasswordCredential)) {
+                            return false;
+                        }
+                        final String existingAlgorithm = ((PasswordCredential) existing).getAlgorithm();
+                        return existingAlgorithm.equals(currentAlgorithm) || existingAlgorithm.equals(algorithm);
+                    }, Collections.singleton(new PasswordCredential(password)));
+                } catch (UnsupportedOperationException e) {
+                    // rewriting the whole credential set would drop the credentials which cannot be read back
+                    upgradeSkippedCount.incrementAndGet();
+                    log.tracef("Skipped upgrading the password of identity \"%s\" as its realm cannot replace a single credential", name);
+                    return;
+                }
+            } finally {
+                modifiableIdentity.dispose();
+            }
+            upgradeCount.incrementAndGet();
+        } catch (GeneralSecurityException | RealmUnavailableException | RuntimeException e) {
+            upgradeFailureCount.incrementAndGet();
+            log.passwordUpgradeFailed(name, e);
+        }
+    }
+
+    private static boolean matches(final Password password, final char[] guess) throws NoSuchAlgorithmException {
+        try {
+            return PasswordFactory.getInstance(password.getAlgorithm()).verify(password, guess);
+        } catch (InvalidKeyException e) {
+            // the password cannot be verified against a guess
+            return false;
+        }
+    }
+
+    /**
+     * A policy deciding whether the password of an identity which does not match the target algorithm and parameters
+     * should be upgraded.
+     */
+    @FunctionalInterface
+    public interface UpgradePolicy {
+
+        /**
+         * Determine whether the password of the given identity should be upgraded.  This is only called after the
+         * identity has been authenticated with its clear password.
+         *
+         * @param identity the identity being authenticated
+         * @param password the current password of the identity
+         * @return {@code true} to upgrade the password, {@code false} to leave it unchanged
+         * @throws RealmUnavailableException if the realm is not able to handle requests for any reason
+         */
+        boolean shouldUpgrade(RealmIdentity identity, Password password) throws RealmUnavailableException;
+    }
+
+    final class UpgradingRealmIdentity implements RealmIdentity {
+
+        private final RealmIdentity identity;
+        private final String name;
+        private final Principal principal;
+        private final Evidence lookupEvidence;
+
+        UpgradingRealmIdentity(final RealmIdentity identity, final String name, final Principal principal, final Evidence lookupEvidence) {
+            this.identity = identity;
+            this.name = name;
+            this.principal = principal;
+            this.lookupEvidence = lookupEvidence;
+        }
+
+        public Principal getRealmIdentityPrincipal() {
+            return identity.getRealmIdentityPrincipal();
+        }
+
+        public SupportLevel getCredentialAcquireSupport(final Class<? extends Credential> credentialType, final String algorithmName) throws RealmUnavailableException {
+            return identity.getCredentialAcquireSupport(credentialType, algorithmName);
+        }
+
+        public <C extends Credential> C getCredential(final Class<C> credentialType) throws RealmUnavailableException {
+            return identity.getCredential(credentialType);
+        }
+
+        public <C extends Credential> C getCredential(final Class<C> credentialType, final String algorithmName) throws RealmUnavailableException {
+            return identity.getCredential(credentialType, algorithmName);
+        }
+
+        public SupportLevel getEvidenceVerifySupport(final Class<? extends Evidence> evidenceType, final String algorithmName) throws RealmUnavailableException {
+            return identity.getEvidenceVerifySupport(evidenceType, algorithmName);
+        }
+
+        public boolean verifyEvidence(final Evidence evidence) throws RealmUnavailableException {
+            final boolean verified = identity.verifyEvidence(evidence);
+            if (verified && evidence instanceof PasswordGuessEvidence) {
+                upgrade(identity, name, principal, lookupEvidence, ((PasswordGuessEvidence) evidence).getGuess());
+            }
+            return verified;
+        }
+
+        public boolean exists() throws RealmUnavailableException {
+            return identity.exists();
+        }
+
+        public AuthorizationIdentity getAuthorizationIdentity() throws RealmUnavailableException {
+            return identity.getAuthorizationIdentity();
+        }
+
+        public void dispose() {
+            identity.dispose();
+        }
+    }
+}
@@ -28,16 +28,21 @@ import org.wildfly.security.authz.AuthorizationIdentity;
 import org.wildfly.security.authz.MapAttributes;
 import org.wildfly.security.credential.Credential;
 import org.wildfly.security.evidence.Evidence;
+import org.wildfly.security.manager.WildFlySecurityManager;
 
 import javax.sql.DataSource;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetFactory;
+import javax.sql.rowset.RowSetProvider;
 
 import java.security.Principal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 import static org.wildfly.security._private.ElytronMessages.log;
 
@@ -49,6 +54,7 @@ import static org.wildfly.security._private.ElytronMessages.log;
 public class JdbcSecurityRealm implements SecurityRealm {
 
     private final List<QueryConfiguration> queryConfiguration;
+    private volatile RowSetFactory rowSetFactory;
 
     public static JdbcSecurityRealmBuilder builder() {
         return new JdbcSecurityRealmBuilder();
@@ -58,6 +64,26 @@ public class JdbcSecurityRealm implements SecurityRealm {
         this.queryConfiguration = queryConfiguration;
     }
 
+    /**
+     * Get the factory of the row sets holding query results, creating it the first time a query is executed.  The
+     * factory is looked up with the class loader of this realm as the context class loader, so that the lookup does not
+     * depend on the deployment which happens to trigger it.
+     */
+    private RowSetFactory getRowSetFactory() {
+        RowSetFactory rowSetFactory = this.rowSetFactory;
+        if (rowSetFactory == null) {
+            final ClassLoader oldClassLoader = WildFlySecurityManager.setCurrentContextClassLoaderPrivileged(JdbcSecurityRealm.class);
+            try {
+                this.rowSetFactory = rowSetFactory = RowSetProvider.newFactory();
+            } catch (SQLException e) {
+                throw log.couldNotCreateRowSetFactory(e);
+            } finally {
+                WildFlySecurityManager.setCurrentContextClassLoaderPrivileged(oldClassLoader);
+            }
+        }
+        return rowSetFactory;
+    }
+
     @Override
     public RealmIdentity getRealmIdentity(final String name, final Principal principal, final Evidence evidence) throws RealmUnavailableException {
         if (name == null) {
@@ -99,6 +125,9 @@ public class JdbcSecurityRealm implements SecurityRealm {
     private class JdbcRealmIdentity implements RealmIdentity {
 
         private final String name;
+        private CachedRowSet[] results;
+        private int pendingQueries;
+        private Map<DataSource, Connection> connections;
         private JdbcIdentity identity;
 
         public JdbcRealmIdentity(String name) {
@@ -108,11 +137,13 @@ public class JdbcSecurityRealm implements SecurityRealm {
         @Override
         public SupportLevel getCredentialAcquireSupport(final Class<? extends Credential> credentialType, final String algorithmName) throws RealmUnavailableException {
             Assert.checkNotNullParam("credentialType", credentialType);
+            final List<QueryConfiguration> queryConfiguration = JdbcSecurityRealm.this.queryConfiguration;
             SupportLevel support = SupportLevel.UNSUPPORTED;
-            for (QueryConfiguration configuration : JdbcSecurityRealm.this.queryConfiguration) {
+            for (int i = 0; i < queryConfiguration.size(); i ++) {
+                final QueryConfiguration configuration = queryConfiguration.get(i);
                 for (KeyMapper keyMapper : configuration.getColumnMappers(KeyMapper.class)) {
                     if (keyMapper.getCredentialAcquireSupport(credentialType, algorithmName).mayBeSupported()) {
-                        final SupportLevel mapperSupport = executePrincipalQuery(configuration, keyMapper::getCredentialSupport);
+                        final SupportLevel mapperSupport = keyMapper.getCredentialSupport(getResult(i));
                         if (mapperSupport == SupportLevel.SUPPORTED) {
                             return SupportLevel.SUPPORTED;
                         } else if (mapperSupport == SupportLevel.POSSIBLY_SUPPORTED) {
@@ -133,10 +164,12 @@ public class JdbcSecurityRealm implements SecurityRealm {
         @Override
         public <C extends Credential> C getCredential(final Class<C> credentialType, final String algorithmName) throws RealmUnavailableException {
             Assert.checkNotNullParam("credentialType", credentialType);
-            for (QueryConfiguration configuration : JdbcSecurityRealm.this.queryConfiguration) {
+            final List<QueryConfiguration> queryConfiguration = JdbcSecurityRealm.this.queryConfiguration;
+            for (int i = 0; i < queryConfiguration.size(); i ++) {
+                final QueryConfiguration configuration = queryConfiguration.get(i);
                 for (KeyMapper keyMapper : configuration.getColumnMappers(KeyMapper.class)) {
                     if (keyMapper.getCredentialAcquireSupport(credentialType, algorithmName).mayBeSupported()) {
-                        final Credential credential = executePrincipalQuery(configuration, keyMapper::map);
+                        final Credential credential = mapCredential(configuration, keyMapper, getResult(i));
                         if (credentialType.isInstance(credential)) {
                             return credentialType.cast(credential);
                         }
@@ -150,11 +183,13 @@ public class JdbcSecurityRealm implements SecurityRealm {
         @Override
         public SupportLevel getEvidenceVerifySupport(final Class<? extends Evidence> evidenceType, final String algorithmName) throws RealmUnavailableException {
             Assert.checkNotNullParam("evidenceType", evidenceType);
+            final List<QueryConfiguration> queryConfiguration = JdbcSecurityRealm.this.queryConfiguration;
             SupportLevel support = SupportLevel.UNSUPPORTED;
-            for (QueryConfiguration configuration : JdbcSecurityRealm.this.queryConfiguration) {
+            for (int i = 0; i < queryConfiguration.size(); i ++) {
+                final QueryConfiguration configuration = queryConfiguration.get(i);
                 for (KeyMapper keyMapper : configuration.getColumnMappers(KeyMapper.class)) {
                     if (keyMapper.getEvidenceVerifySupport(evidenceType, algorithmName).mayBeSupported()) {
-                        final SupportLevel mapperSupport = executePrincipalQuery(configuration, keyMapper::getCredentialSupport);
+                        final SupportLevel mapperSupport = keyMapper.getCredentialSupport(getResult(i));
                         if (mapperSupport == SupportLevel.SUPPORTED) {
                             return SupportLevel.SUPPORTED;
                         } else if (mapperSupport == SupportLevel.POSSIBLY_SUPPORTED) {
@@ -170,9 +205,11 @@ public class JdbcSecurityRealm implements SecurityRealm {
         @Override
         public boolean verifyEvidence(final Evidence evidence) throws RealmUnavailableException {
             Assert.checkNotNullParam("evidence", evidence);
-            for (QueryConfiguration configuration : JdbcSecurityRealm.this.queryConfiguration) {
+            final List<QueryConfiguration> queryConfiguration = JdbcSecurityRealm.this.queryConfiguration;
+            for (int i = 0; i < queryConfiguration.size(); i ++) {
+                final QueryConfiguration configuration = queryConfiguration.get(i);
                 for (KeyMapper keyMapper : configuration.getColumnMappers(KeyMapper.class)) {
-                    Credential credential = executePrincipalQuery(configuration, keyMapper::map);
+                    Credential credential = mapCredential(configuration, keyMapper, getResult(i));
                     if (credential != null) {
                         if (credential.canVerify(evidence)) {
                             return credential.verify(evidence);
@@ -197,58 +234,140 @@ public class JdbcSecurityRealm implements SecurityRealm {
             return AuthorizationIdentity.basicIdentity(this.identity.attributes);
         }
 
+        @Override
+        public void dispose() {
+            closeConnections();
+            this.results = null;
+            this.identity = null;
+        }
+
         private JdbcIdentity getIdentity() {
             if (this.identity == null) {
-                JdbcSecurityRealm.this.queryConfiguration.stream().map(queryConfiguration -> executePrincipalQuery(queryConfiguration, resultSet -> {
-                    if (resultSet.next()) {
-                        MapAttributes attributes = new MapAttributes();
-
+                final List<QueryConfiguration> queryConfiguration = JdbcSecurityRealm.this.queryConfiguration;
+                MapAttributes attributes = null;
+                for (int i = 0; i < queryConfiguration.size(); i ++) {
+                    final QueryConfiguration configuration = queryConfiguration.get(i);
+                    final ResultSet resultSet = getResult(i);
+                    final MapAttributes queryAttributes;
+                    try {
+                        if (! resultSet.next()) {
+                            continue;
+                        }
+                        queryAttributes = new MapAttributes();
                         do {
-                            queryConfiguration.getColumnMappers(AttributeMapper.class).forEach(attributeMapper -> {
-                                try {
-                                    Object value = attributeMapper.map(resultSet);
-
-                                    if (value != null) {
-                                        attributes.addFirst(attributeMapper.getName(), value.toString());
-                                    }
-                                } catch (SQLException cause) {
-                                    throw log.ldapRealmFailedObtainAttributes(this.name, cause);
+                            for (AttributeMapper attributeMapper : configuration.getColumnMappers(AttributeMapper.class)) {
+                                Object value = attributeMapper.map(resultSet);
+
+                                if (value != null) {
+                                    queryAttributes.addFirst(attributeMapper.getName(), value.toString());
                                 }
-                            });
+                            }
                         } while (resultSet.next());
-
-                        return attributes;
+                    } catch (SQLException cause) {
+                        throw log.ldapRealmFailedObtainAttributes(this.name, cause);
+                    }
+                    if (attributes == null) {
+                        attributes = queryAttributes;
+                    } else {
+                        for (Attributes.Entry entry : queryAttributes.entries()) {
+                            attributes.get(entry.getKey()).addAll(entry);
+                        }
                     }
+                }
+                if (attributes != null) {
+                    this.identity = new JdbcIdentity(attributes);
+                }
+            }
 
-                    return null;
-                })).collect(Collectors.reducing((lAttribute, rAttribute) -> {
-                    MapAttributes attributes = new MapAttributes(lAttribute);
+            return this.identity;
+        }
 
-                    for (Attributes.Entry rEntry : rAttribute.entries()) {
-                        attributes.get(rEntry.getKey()).addAll(rEntry);
-                    }
+        private Credential mapCredential(QueryConfiguration configuration, KeyMapper keyMapper, ResultSet resultSet) {
+            try {
+                return keyMapper.map(resultSet);
+            } catch (SQLException e) {
+                throw log.couldNotExecuteQuery(configuration.getSql(), e);
+            }
+        }
 
-                    return attributes;
-                })).ifPresent(attributes -> this.identity = new JdbcIdentity(attributes));
+        /**
+         * Get the snapshot of the rows returned for this principal by the query at the given index, positioned before
+         * the first row.  Each query is executed the first time its rows are needed.
+         */
+        private ResultSet getResult(int index) {
+            CachedRowSet[] results = this.results;
+            if (results == null) {
+                this.results = results = new CachedRowSet[JdbcSecurityRealm.this.queryConfiguration.size()];
+                this.pendingQueries = results.length;
+            }
+            CachedRowSet result = results[index];
+            if (result == null) {
+                results[index] = result = executePrincipalQuery(index);
+            }
+            try {
+                result.beforeFirst();
+            } catch (SQLException e) {
+                throw log.couldNotExecuteQuery(JdbcSecurityRealm.this.queryConfiguration.get(index).getSql(), e);
             }
+            return result;
+        }
 
-            return this.identity;
+        private CachedRowSet executePrincipalQuery(int index) {
+            final QueryConfiguration configuration = JdbcSecurityRealm.this.queryConfiguration.get(index);
+            boolean executed = false;
+            try {
+                final CachedRowSet result = executePrincipalQuery(configuration, getConnection(configuration));
+                executed = true;
+                return result;
+            } finally {
+                // the connections are only needed until every query of this identity has been executed
+                if (! executed || -- this.pendingQueries == 0) {
+                    closeConnections();
+                }
+            }
         }
 
+        /**
+         * Get the connection to the data source of the given query.  The queries of this identity against the same data
+         * source share one connection, which is held until all of them have been executed or this identity is disposed.
+         * Statements are still prepared again for every identity.
+         */
         private Connection getConnection(QueryConfiguration configuration) {
-            try {
-                DataSource dataSource = configuration.getDataSource();
-                return dataSource.getConnection();
-            } catch (Exception e) {
-                throw log.couldNotOpenConnection(e);
+            final DataSource dataSource = configuration.getDataSource();
+            Map<DataSource, Connection> connections = this.connections;
+            if (connections == null) {
+                this.connections = connections = new IdentityHashMap<>();
+            }
+            Connection connection = connections.get(dataSource);
+            if (connection == null) {
+                try {
+                    connection = dataSource.getConnection();
+                } catch (Exception e) {
+                    throw log.couldNotOpenConnection(e);
+                }
+                connections.put(dataSource, connection);
             }
+            return connection;
         }
 
-        private <E> E executePrincipalQuery(QueryConfiguration configuration, ResultSetCallback<E> resultSetCallback) {
+        private void closeConnections() {
+            final Map<DataSource, Connection> connections = this.connections;
+            if (connections != null) {
+                this.connections = null;
+                for (Connection connection : connections.values()) {
+                    try {
+                        connection.close();
+                    } catch (SQLException ignored) {
+                    }
+                }
+            }
+        }
+
+        private CachedRowSet executePrincipalQuery(QueryConfiguration configuration, Connection connection) {
             String sql = configuration.getSql();
+            RowSetFactory rowSetFactory = getRowSetFactory();
 
             try (
-                    Connection connection = getConnection(configuration);
                     PreparedStatement preparedStatement = connection.prepareStatement(sql)
             ) {
                 preparedStatement.setString(1, name);
@@ -256,7 +375,9 @@ public class JdbcSecurityRealm implements SecurityRealm {
                 try (
                         ResultSet resultSet = preparedStatement.executeQuery()
                 ) {
-                    return resultSetCallback.handle(resultSet);
+                    final CachedRowSet rowSet = rowSetFactory.createCachedRowSet();
+                    rowSet.populate(resultSet);
+                    return rowSet;
                 }
             } catch (SQLException e) {
                 throw log.couldNotExecuteQuery(sql, e);
@@ -274,8 +395,4 @@ public class JdbcSecurityRealm implements SecurityRealm {
             }
         }
     }
-
-    private interface ResultSetCallback<E> {
-        E handle(ResultSet resultSet) throws SQLException;
-    }
 }
@@ -0,0 +1,342 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.auth.realm.ldap;
+
+import static org.wildfly.security._private.ElytronMessages.log;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.naming.AuthenticationException;
+import javax.naming.CommunicationException;
+import javax.naming.NamingException;
+import javax.naming.ServiceUnavailableException;
+import javax.naming.directory.DirContext;
+import javax.naming.ldap.InitialLdapContext;
+
+/**
+ * A bounded pool of connected {@link InitialLdapContext} instances.
+ * <p>
+ * The pool never holds more than its maximum size of contexts, borrowed or idle.  Idle contexts beyond the minimum size
+ * are closed once they have been unused for the idle timeout; the most recently returned context is always borrowed
+ * first so that the least used contexts are the ones which expire.
+ */
+final class DirContextPool implements PooledDirContextFactory.PoolMetrics {
+
+    private static final String[] NO_ATTRIBUTES = new String[] { "1.1" };
+
+    private final String name;
+    private final int minSize;
+    private final long idleTimeoutNanos;
+    private final long maxWait;
+    private final boolean validateOnBorrow;
+    private final Semaphore permits;
+    private final ArrayDeque<Idle> idle = new ArrayDeque<>();
+    private final Set<DirContext> borrowed = ConcurrentHashMap.newKeySet();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong destroyedCount = new AtomicLong();
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong validationFailureCount = new AtomicLong();
+    private final AtomicLong waitTime = new AtomicLong();
+    private final AtomicLong maxWaitTime = new AtomicLong();
+    private int size;
+    private boolean closed;
+
+    /**
+     * Construct a new instance.
+     *
+     * @param name the name of the pool, for logging
+     * @param minSize the number of contexts below which idle contexts are not expired
+     * @param maxSize the maximum number of contexts, borrowed or idle
+     * @param idleTimeout the time in milliseconds after which an idle context is closed
+     * @param maxWait the time in milliseconds to wait for a context when all are borrowed
+     * @param validateOnBorrow {@code true} to check that an idle context is still connected before lending it out
+     */
+    DirContextPool(final String name, final int minSize, final int maxSize, final long idleTimeout, final long maxWait, final boolean validateOnBorrow) {
+        this.name = name;
+        this.minSize = minSize;
+        this.idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeout);
+        this.maxWait = maxWait;
+        this.validateOnBorrow = validateOnBorrow;
+        this.permits = new Semaphore(maxSize, true);
+    }
+
+    /**
+     * Borrow a context from the pool, creating one if no idle context is available.
+     *
+     * @param creator the creator of a new context, used if there is no idle context
+     * @param preparer the preparer of an idle context before it is lent out, may be {@code null}
+     * @return the context
+     * @throws NamingException if no context could be obtained
+     */
+    InitialLdapContext borrow(final ContextCreator creator, final ContextPreparer preparer) throws NamingException {
+        acquire();
+        try {
+            Idle entry;
+            while ((entry = pollIdle()) != null) {
+                final InitialLdapContext context = entry.context;
+                if (validateOnBorrow && ! isValid(context)) {
+                    validationFailureCount.incrementAndGet();
+                    destroy(context);
+                    continue;
+                }
+                if (preparer != null) {
+                    try {
+                        preparer.prepare(context);
+                    } catch (CommunicationException | ServiceUnavailableException e) {
+                        log.debugf(e, "Discarding broken context [%s] from pool [%s]", context, name);
+                        validationFailureCount.incrementAndGet();
+                        destroy(context);
+                        continue;
+                    } catch (AuthenticationException e) {
+                        // the state of a connection after a failed bind depends on the server, so it is not reused
+                        destroy(context);
+                        throw e;
+                    } catch (NamingException | RuntimeException e) {
+                        // the connection itself is still usable
+                        addIdle(context);
+                        throw e;
+                    }
+                }
+                borrowed.add(context);
+                return context;
+            }
+            final InitialLdapContext context = create(creator);
+            borrowed.add(context);
+            return context;
+        } catch (NamingException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Fill the pool with idle contexts up to its minimum size.
+     *
+     * @param creator the creator of the new contexts
+     * @throws NamingException if a context could not be created
+     */
+    void prefill(final ContextCreator creator) throws NamingException {
+        for (;;) {
+            synchronized (idle) {
+                if (closed || size >= minSize || ! permits.tryAcquire()) {
+                    return;
+                }
+            }
+            try {
+                addIdle(create(creator));
+            } finally {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Return a borrowed context to the pool.
+     *
+     * @param context the context
+     * @return {@code true} if the context belonged to this pool, {@code false} otherwise
+     */
+    boolean release(final DirContext context) {
+        if (! borrowed.remove(context)) {
+            return false;
+        }
+        addIdle((InitialLdapContext) context);
+        permits.release();
+        return true;
+    }
+
+    /**
+     * Close a borrowed context rather than returning it to the pool.
+     *
+     * @param context the context
+     * @return {@code true} if the context belonged to this pool, {@code false} otherwise
+     */
+    boolean discard(final DirContext context) {
+        if (! borrowed.remove(context)) {
+            return false;
+        }
+        destroy(context);
+        permits.release();
+        return true;
+    }
+
+    /**
+     * Close all idle contexts; contexts which are currently borrowed are closed when they are returned.
+     */
+    void close() {
+        synchronized (idle) {
+            closed = true;
+            Idle entry;
+            while ((entry = idle.poll()) != null) {
+                destroy(entry.context);
+            }
+        }
+    }
+
+    public int getIdleCount() {
+        synchronized (idle) {
+            return idle.size();
+        }
+    }
+
+    public int getActiveCount() {
+        return borrowed.size();
+    }
+
+    public long getCreatedCount() {
+        return createdCount.get();
+    }
+
+    public long getDestroyedCount() {
+        return destroyedCount.get();
+    }
+
+    public long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    public long getValidationFailureCount() {
+        return validationFailureCount.get();
+    }
+
+    public long getTotalWaitTime(final TimeUnit unit) {
+        return unit.convert(waitTime.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxWaitTime(final TimeUnit unit) {
+        return unit.convert(maxWaitTime.get(), TimeUnit.NANOSECONDS);
+    }
+
+    private void acquire() throws NamingException {
+        final long start = System.nanoTime();
+        boolean acquired = permits.tryAcquire();
+        if (! acquired) try {
+            acquired = permits.tryAcquire(maxWait, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        final long elapsed = System.nanoTime() - start;
+        borrowCount.incrementAndGet();
+        waitTime.addAndGet(elapsed);
+        long max;
+        do {
+            max = maxWaitTime.get();
+        } while (elapsed > max && ! maxWaitTime.compareAndSet(max, elapsed));
+        if (! acquired) {
+            throw log.ldapContextPoolExhausted(name, maxWait);
+        }
+    }
+
+    private InitialLdapContext create(final ContextCreator creator) throws NamingException {
+        synchronized (idle) {
+            size++;
+        }
+        try {
+            final InitialLdapContext context = creator.create();
+            createdCount.incrementAndGet();
+            return context;
+        } catch (NamingException | RuntimeException e) {
+            synchronized (idle) {
+                size--;
+            }
+            throw e;
+        }
+    }
+
+    private void destroy(final DirContext context) {
+        synchronized (idle) {
+            size--;
+        }
+        destroyedCount.incrementAndGet();
+        try {
+            context.close();
+            log.debugf("Context [%s] was closed and removed from pool [%s]", context, name);
+        } catch (NamingException ignored) {
+        }
+    }
+
+    private void addIdle(final InitialLdapContext context) {
+        synchronized (idle) {
+            if (! closed) {
+                idle.addLast(new Idle(context, System.nanoTime()));
+                evictExpired();
+                return;
+            }
+        }
+        destroy(context);
+    }
+
+    private Idle pollIdle() {
+        synchronized (idle) {
+            evictExpired();
+            return idle.pollLast();
+        }
+    }
+
+    private void evictExpired() {
+        // called with the lock held; the oldest entries are at the head
+        final long now = System.nanoTime();
+        final Iterator<Idle> iterator = idle.iterator();
+        while (size > minSize && iterator.hasNext()) {
+            final Idle entry = iterator.next();
+            if (now - entry.since < idleTimeoutNanos) {
+                return;
+            }
+            iterator.remove();
+            destroy(entry.context);
+        }
+    }
+
+    private static boolean isValid(final InitialLdapContext context) {
+        try {
+            context.getAttributes("", NO_ATTRIBUTES);
+            return true;
+        } catch (CommunicationException | ServiceUnavailableException | AuthenticationException e) {
+            log.debugf(e, "Validation of context [%s] failed", context);
+            return false;
+        } catch (NamingException e) {
+            // the server answered, so the connection is alive
+            return true;
+        }
+    }
+
+    interface ContextCreator {
+        InitialLdapContext create() throws NamingException;
+    }
+
+    interface ContextPreparer {
+        void prepare(InitialLdapContext context) throws NamingException;
+    }
+
+    static final class Idle {
+        final InitialLdapContext context;
+        final long since;
+
+        Idle(final InitialLdapContext context, final long since) {
+            this.context = context;
+            this.since = since;
+        }
+    }
+}
@@ -25,7 +25,9 @@ import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -86,6 +88,9 @@ class LdapSecurityRealm implements ModifiableSecurityRealm {
     private final List<CredentialPersister> credentialPersisters;
     private final List<EvidenceVerifier> evidenceVerifiers;
 
+    private final String[] identityAttributes;
+    private final List<List<AttributeMapping>> filteredAttributeSearches;
+
     LdapSecurityRealm(final DirContextFactory dirContextFactory, final NameRewriter nameRewriter,
                       final IdentityMapping identityMapping,
                       final List<CredentialLoader> credentialLoaders,
@@ -101,6 +106,23 @@ class LdapSecurityRealm implements ModifiableSecurityRealm {
         this.credentialLoaders = credentialLoaders;
         this.credentialPersisters = credentialPersisters;
         this.evidenceVerifiers = evidenceVerifiers;
+
+        // attributes of the identity entry itself (including memberOf style attributes) come back with the identity search
+        this.identityAttributes = identityMapping.attributes.stream()
+                .filter(attribute -> attribute.getFilter() == null)
+                .map(AttributeMapping::getLdapName)
+                .distinct()
+                .toArray(String[]::new);
+
+        // filtered mappings which search the same base DN with the same filter are answered by a single search
+        Map<List<String>, List<AttributeMapping>> searches = new LinkedHashMap<>();
+        for (AttributeMapping attribute : identityMapping.attributes) {
+            if (attribute.getFilter() != null) {
+                String searchDn = attribute.getSearchDn() != null ? attribute.getSearchDn() : identityMapping.searchDn;
+                searches.computeIfAbsent(Arrays.asList(searchDn, attribute.getFilter()), key -> new ArrayList<>()).add(attribute);
+            }
+        }
+        this.filteredAttributeSearches = new ArrayList<>(searches.values());
     }
 
     @Override
@@ -501,10 +523,7 @@ class LdapSecurityRealm implements ModifiableSecurityRealm {
 
                 LdapSearch ldapSearch = new LdapSearch(searchDn, String.format("(%s={0})", identityMapping.rdnIdentifier), name);
 
-                ldapSearch.setReturningAttributes(
-                        identityMapping.attributes.stream()
-                                .map(AttributeMapping::getLdapName)
-                                .toArray(String[]::new));
+                ldapSearch.setReturningAttributes(identityAttributes);
 
                 try (
                     Stream<LdapIdentity> identityStream = ldapSearch.search(context)
@@ -552,68 +571,91 @@ class LdapSecurityRealm implements ModifiableSecurityRealm {
 
         private Map<String, Collection<String>> extractFilteredAttributes(SearchResult result, DirContext context) {
             String principalDn = result.getNameInNamespace();
+            Map<AttributeMapping, Collection<String>> values = new IdentityHashMap<>();
 
-            return extractAttributes(attribute -> attribute.getFilter() != null, attribute -> {
-                Collection<String> values = new ArrayList<>();
+            // every search runs on the context already held, so a pooled context is never borrowed while holding another
+            for (List<AttributeMapping> search : filteredAttributeSearches) {
+                values.putAll(searchFilteredAttributes(search, principalDn, context));
+            }
 
-                String searchDn = attribute.getSearchDn();
+            return extractAttributes(attribute -> attribute.getFilter() != null, values::get);
+        }
 
-                if (searchDn == null) {
-                    searchDn = identityMapping.searchDn;
-                }
+        private Map<AttributeMapping, Collection<String>> searchFilteredAttributes(List<AttributeMapping> attributes, String principalDn, DirContext context) {
+            Map<AttributeMapping, Collection<String>> values = new IdentityHashMap<>();
+            for (AttributeMapping attribute : attributes) {
+                values.put(attribute, new ArrayList<>());
+            }
 
-                LdapSearch search = new LdapSearch(searchDn, attribute.getFilter(), principalDn);
+            AttributeMapping first = attributes.get(0);
+            String searchDn = first.getSearchDn();
 
-                search.setReturningAttributes(attribute.getLdapName());
+            if (searchDn == null) {
+                searchDn = identityMapping.searchDn;
+            }
 
-                try (
-                    Stream<SearchResult> searchResult = search.search(context)
-                ) {
-                    searchResult.forEach(entry -> {
-                        String valueRdn = attribute.getRdn();
+            LdapSearch search = new LdapSearch(searchDn, first.getFilter(), principalDn);
 
-                        if (valueRdn != null) {
-                            String entryDn = entry.getNameInNamespace();
+            search.setReturningAttributes(attributes.stream().map(AttributeMapping::getLdapName).distinct().toArray(String[]::new));
 
-                            try {
-                                for (Rdn rdn : new LdapName(entryDn).getRdns()) {
-                                    if (rdn.getType().equalsIgnoreCase(valueRdn)) {
-                                        values.add(rdn.getValue().toString());
-                                        break;
-                                    }
-                                }
-                            } catch (Exception cause) {
-                                throw log.ldapRealmInvalidRdnForAttribute(attribute.getName(), entryDn, valueRdn);
-                            }
-                        } else {
-                            Attributes entryAttributes = entry.getAttributes();
-                            javax.naming.directory.Attribute ldapAttribute = entryAttributes.get(attribute.getLdapName());
-                            NamingEnumeration<?> attributeValues = null;
+            try (
+                Stream<SearchResult> searchResult = search.search(context)
+            ) {
+                searchResult.forEach(entry -> {
+                    for (AttributeMapping attribute : attributes) {
+                        extractFilteredValues(attribute, entry, principalDn, values.get(attribute));
+                    }
+                });
+            } catch (Exception cause) {
+                throw ElytronMessages.log.ldapRealmFailedObtainAttributes(principalDn, cause);
+            }
 
-                            try {
-                                attributeValues = ldapAttribute.getAll();
+            return values;
+        }
 
-                                while (attributeValues.hasMore()) {
-                                    values.add(attributeValues.next().toString());
-                                }
-                            } catch (Exception cause) {
-                                throw ElytronMessages.log.ldapRealmFailedObtainAttributes(principalDn, cause);
-                            } finally {
-                                if (attributeValues != null) {
-                                    try {
-                                        attributeValues.close();
-                                    } catch (NamingException ignore) {
-                                    }
-                                }
-                            }
+        private void extractFilteredValues(AttributeMapping attribute, SearchResult entry, String principalDn, Collection<String> values) {
+            String valueRdn = attribute.getRdn();
+
+            if (valueRdn != null) {
+                String entryDn = entry.getNameInNamespace();
+
+                try {
+                    for (Rdn rdn : new LdapName(entryDn).getRdns()) {
+                        if (rdn.getType().equalsIgnoreCase(valueRdn)) {
+                            values.add(rdn.getValue().toString());
+                            break;
                         }
-                    });
+                    }
                 } catch (Exception cause) {
-                    throw ElytronMessages.log.ldapRealmFailedObtainAttributes(principalDn, cause);
+                    throw log.ldapRealmInvalidRdnForAttribute(attribute.getName(), entryDn, valueRdn);
+                }
+            } else {
+                Attributes entryAttributes = entry.getAttributes();
+                javax.naming.directory.Attribute ldapAttribute = entryAttributes.get(attribute.getLdapName());
+                NamingEnumeration<?> attributeValues = null;
+
+                if (ldapAttribute == null) {
+                    // a search shared with other mappings may match entries without this attribute
+                    return;
                 }
 
-                return values;
-            });
+                try {
+                    attributeValues = ldapAttribute.getAll();
+
+                    while (attributeValues.hasMore()) {
+                        values.add(attributeValues.next().toString());
+                    }
+                } catch (Exception cause) {
+                    throw ElytronMessages.log.ldapRealmFailedObtainAttributes(principalDn, cause);
+                } finally {
+                    if (attributeValues != null) {
+                        try {
+                            attributeValues.close();
+                        } catch (NamingException ignore) {
+                        }
+                    }
+                }
+            }
         }
 
         private Map<String, Collection<String>> extractSingleAttributes(SearchResult searchResult) {
@@ -0,0 +1,112 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.auth.realm.ldap;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link DirContextFactory} which keeps connected contexts in pools rather than opening a new connection for each
+ * request.  Contexts bound as the configured security principal and contexts used to verify the credentials of other
+ * identities are kept in separate pools.
+ */
+public interface PooledDirContextFactory extends DirContextFactory {
+
+    /**
+     * Get the metrics of the pool of contexts bound as the configured security principal.
+     *
+     * @return the metrics of the pool
+     */
+    PoolMetrics getBindPoolMetrics();
+
+    /**
+     * Get the metrics of the pool of contexts used to verify the credentials of other identities.
+     *
+     * @return the metrics of the pool
+     */
+    PoolMetrics getUserBindPoolMetrics();
+
+    /**
+     * Close all idle contexts in both pools.  Contexts which are currently in use are closed when they are returned.
+     */
+    void close();
+
+    /**
+     * The metrics of a context pool.
+     */
+    interface PoolMetrics {
+
+        /**
+         * Get the number of contexts in the pool which are not in use.
+         *
+         * @return the number of idle contexts
+         */
+        int getIdleCount();
+
+        /**
+         * Get the number of contexts from the pool which are in use.
+         *
+         * @return the number of active contexts
+         */
+        int getActiveCount();
+
+        /**
+         * Get the number of contexts the pool has created.
+         *
+         * @return the number of contexts created
+         */
+        long getCreatedCount();
+
+        /**
+         * Get the number of contexts the pool has closed, whether because they expired, failed validation or were discarded.
+         *
+         * @return the number of contexts closed
+         */
+        long getDestroyedCount();
+
+        /**
+         * Get the number of times a context has been requested from the pool.
+         *
+         * @return the number of requests
+         */
+        long getBorrowCount();
+
+        /**
+         * Get the number of idle contexts which were found to be unusable when requested.
+         *
+         * @return the number of validation failures
+         */
+        long getValidationFailureCount();
+
+        /**
+         * Get the total time spent waiting for a context to become available.
+         *
+         * @param unit the time unit of the returned value
+         * @return the total wait time
+         */
+        long getTotalWaitTime(TimeUnit unit);
+
+        /**
+         * Get the longest time spent waiting for a context to become available.
+         *
+         * @param unit the time unit of the returned value
+         * @return the longest wait time
+         */
+        long getMaxWaitTime(TimeUnit unit);
+    }
+}
@@ -20,6 +20,8 @@ package org.wildfly.security.auth.realm.ldap;
 
 import static org.wildfly.security._private.ElytronMessages.log;
 
+import org.wildfly.common.Assert;
+
 import javax.naming.NamingException;
 import javax.naming.directory.DirContext;
 import javax.naming.directory.InitialDirContext;
@@ -44,6 +46,8 @@ public class SimpleDirContextFactoryBuilder {
 
     private static final int DEFAULT_CONNECT_TIMEOUT = 5000; // ms
     private static final int DEFAULT_READ_TIMEOUT = 60000; // ms
+    private static final long DEFAULT_POOL_IDLE_TIMEOUT = 300000; // ms
+    private static final long DEFAULT_POOL_MAX_WAIT = 5000; // ms
 
     private boolean built = false;
     private String initialContextFactory = "com.sun.jndi.ldap.LdapCtxFactory";
@@ -54,6 +58,12 @@ public class SimpleDirContextFactoryBuilder {
     private Properties connectionProperties;
     private int connectTimeout = DEFAULT_CONNECT_TIMEOUT;
     private int readTimeout = DEFAULT_READ_TIMEOUT;
+    private int poolMinSize = 0;
+    private int poolMaxSize = 0;
+    private int userBindPoolMaxSize = -1;
+    private long poolIdleTimeout = DEFAULT_POOL_IDLE_TIMEOUT;
+    private long poolMaxWait = DEFAULT_POOL_MAX_WAIT;
+    private boolean poolValidateOnBorrow = true;
 
     private SimpleDirContextFactoryBuilder() {
     }
@@ -176,6 +186,98 @@ public class SimpleDirContextFactoryBuilder {
         return this;
     }
 
+    /**
+     * <p>Set the maximum number of contexts bound as the security principal to keep in a pool. If set, the built factory is a
+     * {@link PooledDirContextFactory} and contexts passed to {@link DirContextFactory#returnContext(DirContext)} are reused
+     * rather than closed.
+     *
+     * @param poolMaxSize the maximum pool size, or 0 to disable pooling (the default)
+     * @return this builder
+     */
+    public SimpleDirContextFactoryBuilder setPoolMaxSize(int poolMaxSize) {
+        assertNotBuilt();
+        Assert.checkMinimumParameter("poolMaxSize", 0, poolMaxSize);
+        this.poolMaxSize = poolMaxSize;
+
+        return this;
+    }
+
+    /**
+     * Set the number of pooled contexts below which idle contexts are kept open regardless of the idle timeout. This
+     * many contexts are opened when the factory is first used.
+     *
+     * @param poolMinSize the minimum pool size, 0 by default
+     * @return this builder
+     */
+    public SimpleDirContextFactoryBuilder setPoolMinSize(int poolMinSize) {
+        assertNotBuilt();
+        Assert.checkMinimumParameter("poolMinSize", 0, poolMinSize);
+        this.poolMinSize = poolMinSize;
+
+        return this;
+    }
+
+    /**
+     * <p>Set the maximum number of contexts to keep in the separate pool used to verify the credentials of other identities.
+     * Contexts from this pool are re-authenticated over their existing connection for each verification, and a context
+     * passed to {@link DirContextFactory#discardContext(DirContext)} after a verification is kept in this pool.
+     * If not set, the same maximum size as the main pool is used.
+     *
+     * @param userBindPoolMaxSize the maximum size of the user bind pool, or 0 to open a new connection for each verification
+     * @return this builder
+     */
+    public SimpleDirContextFactoryBuilder setUserBindPoolMaxSize(int userBindPoolMaxSize) {
+        assertNotBuilt();
+        Assert.checkMinimumParameter("userBindPoolMaxSize", 0, userBindPoolMaxSize);
+        this.userBindPoolMaxSize = userBindPoolMaxSize;
+
+        return this;
+    }
+
+    /**
+     * Set the time after which an unused pooled context is closed.
+     * If not set, {@value #DEFAULT_POOL_IDLE_TIMEOUT} ms will be used.
+     *
+     * @param poolIdleTimeout the idle timeout in milliseconds
+     * @return this builder
+     */
+    public SimpleDirContextFactoryBuilder setPoolIdleTimeout(long poolIdleTimeout) {
+        assertNotBuilt();
+        Assert.checkMinimumParameter("poolIdleTimeout", 0, poolIdleTimeout);
+        this.poolIdleTimeout = poolIdleTimeout;
+
+        return this;
+    }
+
+    /**
+     * Set the time to wait for a pooled context when the maximum number are already in use.
+     * If not set, {@value #DEFAULT_POOL_MAX_WAIT} ms will be used.
+     *
+     * @param poolMaxWait the maximum wait in milliseconds
+     * @return this builder
+     */
+    public SimpleDirContextFactoryBuilder setPoolMaxWait(long poolMaxWait) {
+        assertNotBuilt();
+        Assert.checkMinimumParameter("poolMaxWait", 0, poolMaxWait);
+        this.poolMaxWait = poolMaxWait;
+
+        return this;
+    }
+
+    /**
+     * Set whether an idle pooled context is checked to still be connected before it is used.
+     * Enabled by default.
+     *
+     * @param poolValidateOnBorrow {@code true} to validate idle contexts before use
+     * @return this builder
+     */
+    public SimpleDirContextFactoryBuilder setPoolValidateOnBorrow(boolean poolValidateOnBorrow) {
+        assertNotBuilt();
+        this.poolValidateOnBorrow = poolValidateOnBorrow;
+
+        return this;
+    }
+
     /**
      * Build this context factory.
      *
@@ -188,7 +290,14 @@ public class SimpleDirContextFactoryBuilder {
             throw log.noProviderUrlSet();
         }
 
+        if (poolMinSize > poolMaxSize) {
+            throw log.invalidMinimumPoolSize(poolMinSize, poolMaxSize);
+        }
+
         built = true;
+        if (poolMaxSize > 0) {
+            return new SimplePooledDirContextFactory();
+        }
         return new SimpleDirContextFactory();
     }
 
@@ -228,10 +337,14 @@ public class SimpleDirContextFactoryBuilder {
                 throw log.couldNotObtainCredential();
             }
 
+            return obtainDirContext(securityPrincipal, securityCredential, mode);
+        }
+
+        DirContext obtainDirContext(String securityPrincipal, char[] securityCredential, ReferralMode mode) throws NamingException {
             return createDirContext(securityPrincipal, securityCredential, mode);
         }
 
-        private DirContext createDirContext(String securityPrincipal, char[] securityCredential, ReferralMode mode) throws NamingException {
+        InitialLdapContext createDirContext(String securityPrincipal, char[] securityCredential, ReferralMode mode) throws NamingException {
             Hashtable<String, String> env = new Hashtable<>();
 
             env.put(InitialDirContext.INITIAL_CONTEXT_FACTORY, initialContextFactory);
@@ -292,4 +405,93 @@ public class SimpleDirContextFactoryBuilder {
 
     }
 
+    private class SimplePooledDirContextFactory extends SimpleDirContextFactory implements PooledDirContextFactory {
+
+        private final DirContextPool bindPool = new DirContextPool("bind", poolMinSize, poolMaxSize, poolIdleTimeout, poolMaxWait, poolValidateOnBorrow);
+        // re-authenticating a context checks its connection anyway
+        private final DirContextPool userBindPool = new DirContextPool("user-bind", 0, userBindPoolMaxSize == -1 ? poolMaxSize : userBindPoolMaxSize, poolIdleTimeout, poolMaxWait, false);
+        private final boolean userBindPooling = userBindPoolMaxSize != 0;
+        private volatile boolean prefilled;
+
+        @Override
+        public DirContext obtainDirContext(ReferralMode mode) throws NamingException {
+            final String referral = mode == null ? ReferralMode.IGNORE.getValue() : mode.getValue();
+            if (! prefilled) {
+                prefilled = true;
+                try {
+                    bindPool.prefill(() -> createDirContext(securityPrincipal, securityCredential.toCharArray(), null));
+                } catch (NamingException e) {
+                    log.debugf(e, "Could not fill the LDAP context pool to its minimum size.");
+                }
+            }
+            return bindPool.borrow(() -> createDirContext(securityPrincipal, securityCredential.toCharArray(), mode),
+                    context -> context.addToEnvironment(InitialDirContext.REFERRAL, referral));
+        }
+
+        @Override
+        DirContext obtainDirContext(String securityPrincipal, char[] securityCredential, ReferralMode mode) throws NamingException {
+            if (! userBindPooling) {
+                return createDirContext(securityPrincipal, securityCredential, mode);
+            }
+            final String referral = mode == null ? ReferralMode.IGNORE.getValue() : mode.getValue();
+            final InitialLdapContext context = userBindPool.borrow(() -> {
+                InitialLdapContext c = createDirContext(securityPrincipal, securityCredential, mode);
+                c.removeFromEnvironment(InitialDirContext.SECURITY_CREDENTIALS);
+                return c;
+            }, c -> {
+                c.addToEnvironment(InitialDirContext.REFERRAL, referral);
+                c.addToEnvironment(InitialDirContext.SECURITY_PRINCIPAL, securityPrincipal);
+                c.addToEnvironment(InitialDirContext.SECURITY_CREDENTIALS, String.valueOf(securityCredential));
+                try {
+                    c.reconnect(null);
+                    log.debugf("[%s] re-authenticated as [%s] over its existing connection.", c, securityPrincipal);
+                } finally {
+                    // the credential is only needed for the bind itself
+                    c.removeFromEnvironment(InitialDirContext.SECURITY_CREDENTIALS);
+                }
+            });
+            return context;
+        }
+
+        @Override
+        public void returnContext(DirContext context) {
+            if (context == null) {
+                return;
+            }
+
+            if (! bindPool.release(context) && ! userBindPool.release(context)) {
+                super.returnContext(context);
+            }
+        }
+
+        @Override
+        public void discardContext(DirContext context) {
+            if (context == null) {
+                return;
+            }
+
+            // a user bind context is discarded because it is bound as the verified account; the user bind pool
+            // re-authenticates it before lending it out again, so it is kept rather than closed
+            if (! bindPool.discard(context) && ! userBindPool.release(context)) {
+                super.discardContext(context);
+            }
+        }
+
+        @Override
+        public PoolMetrics getBindPoolMetrics() {
+            return bindPool;
+        }
+
+        @Override
+        public PoolMetrics getUserBindPoolMetrics() {
+            return userBindPool;
+        }
+
+        @Override
+        public void close() {
+            bindPool.close();
+            userBindPool.close();
+        }
+    }
+
 }
@@ -30,16 +30,29 @@ import org.wildfly.security.authz.AuthorizationIdentity;
 import org.wildfly.security.credential.Credential;
 import org.wildfly.security.evidence.BearerTokenEvidence;
 import org.wildfly.security.evidence.Evidence;
+import org.wildfly.security.manager.WildFlySecurityManager;
 
 import javax.json.JsonObject;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
 
 import static org.wildfly.security.auth.realm.oauth2.OAuth2Util.introspectAccessToken;
 import static org.wildfly.security.auth.realm.oauth2.OAuth2Util.toAttributes;
 
 import java.net.URL;
 import java.security.Principal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * An oAuth2-backed {@link SecurityRealm} based on RFC-7662 in order to verify bearer tokens from a given {@link BearerTokenEvidence}
@@ -49,12 +62,24 @@ import java.security.Principal;
  */
 public class OAuth2SecurityRealm implements SecurityRealm {
 
+    private static final int DEFAULT_MAX_KEPT_ALIVE_CONNECTIONS = 5;
+
     private final URL tokenIntrospectionUrl;
     private final String clientId;
     private final String clientSecret;
     private final String principalClaimName;
-    private final SSLContext sslContext;
     private final HostnameVerifier hostnameVerifier;
+    private final SSLSocketFactory sslSocketFactory;
+    private final int requestTimeout;
+    private final TokenIntrospectionCache tokenCache;
+    private final int maxInFlightIntrospections;
+    private final Semaphore inFlightIntrospections;
+    private final Executor configuredExecutor;
+    private volatile ExecutorService defaultExecutor;
+    private boolean closed;
+    private final AtomicLong introspectionCount = new AtomicLong();
+    private final AtomicLong introspectionTime = new AtomicLong();
+    private final AtomicLong maxIntrospectionTime = new AtomicLong();
 
     public static Builder builder() {
         return new Builder();
@@ -82,8 +107,44 @@ public class OAuth2SecurityRealm implements SecurityRealm {
             }
         }
 
-        this.sslContext = configuration.sslContext;
         this.hostnameVerifier = configuration.hostnameVerifier;
+        // a single socket factory lets HttpURLConnection keep connections (and TLS sessions) alive between requests
+        this.sslSocketFactory = configuration.sslContext == null ? null : configuration.sslContext.getSocketFactory();
+        this.requestTimeout = (int) Math.min(Integer.MAX_VALUE, configuration.requestTimeout);
+
+        if (configuration.tokenCacheMaxEntries > 0) {
+            this.tokenCache = new TokenIntrospectionCache(configuration.tokenCacheMaxEntries, configuration.tokenCacheMaxAge, configuration.inactiveTokenCacheMaxAge);
+        } else {
+            this.tokenCache = null;
+        }
+
+        this.maxInFlightIntrospections = configuration.maxInFlightIntrospections;
+        this.inFlightIntrospections = new Semaphore(configuration.maxInFlightIntrospections);
+        this.configuredExecutor = configuration.introspectionExecutor;
+
+        final int maxKeptAliveConnections = getMaxKeptAliveConnections();
+        if (maxKeptAliveConnections > 0 && maxInFlightIntrospections > maxKeptAliveConnections) {
+            ElytronMessages.log.oauth2RealmMoreIntrospectionsThanKeptAliveConnections(maxInFlightIntrospections, maxKeptAliveConnections);
+        }
+    }
+
+    /**
+     * Get the number of idle connections {@link java.net.HttpURLConnection} keeps alive for each destination, as read by
+     * the JDK from the {@code http.keepAlive} and {@code http.maxConnections} system properties.
+     *
+     * @return the number of connections kept alive, or {@code 0} if keep-alive is disabled
+     */
+    private static int getMaxKeptAliveConnections() {
+        if (! Boolean.parseBoolean(WildFlySecurityManager.getPropertyPrivileged("http.keepAlive", "true"))) {
+            return 0;
+        }
+        try {
+            final int maxConnections = Integer.parseInt(WildFlySecurityManager.getPropertyPrivileged("http.maxConnections", String.valueOf(DEFAULT_MAX_KEPT_ALIVE_CONNECTIONS)));
+            // the JDK ignores values which are not positive
+            return maxConnections > 0 ? maxConnections : DEFAULT_MAX_KEPT_ALIVE_CONNECTIONS;
+        } catch (NumberFormatException e) {
+            return DEFAULT_MAX_KEPT_ALIVE_CONNECTIONS;
+        }
     }
 
     @Override
@@ -105,10 +166,170 @@ public class OAuth2SecurityRealm implements SecurityRealm {
         return SupportLevel.UNSUPPORTED;
     }
 
+    /**
+     * Obtain a realm identity for the given bearer token without blocking the calling thread.  The token is introspected
+     * (or found in the token cache) on the introspection executor, and the returned identity is already resolved so its
+     * methods do not call the token introspection endpoint again.
+     * <p>
+     * If the maximum number of introspections is already in progress, the returned stage completes exceptionally with a
+     * {@link RealmUnavailableException} instead of queueing the request.
+     *
+     * @param evidence the bearer token evidence (must not be {@code null})
+     * @return a stage which completes with the realm identity for the token
+     */
+    public CompletionStage<RealmIdentity> getRealmIdentityAsync(BearerTokenEvidence evidence) {
+        Assert.checkNotNullParam("evidence", evidence);
+        final CompletableFuture<RealmIdentity> future = new CompletableFuture<>();
+        if (! inFlightIntrospections.tryAcquire()) {
+            future.completeExceptionally(ElytronMessages.log.oauth2RealmTooManyIntrospections(maxInFlightIntrospections));
+            return future;
+        }
+        final Runnable task = () -> {
+            try {
+                final OAuth2RealmIdentity identity = new OAuth2RealmIdentity(evidence);
+                identity.getClaims();
+                future.complete(identity);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            } finally {
+                inFlightIntrospections.release();
+            }
+        };
+        try {
+            getIntrospectionExecutor().execute(task);
+        } catch (RuntimeException e) {
+            inFlightIntrospections.release();
+            future.completeExceptionally(ElytronMessages.log.oauth2RealmTokenIntrospectionFailed(e));
+        }
+        return future;
+    }
+
+    /**
+     * Remove all cached token introspection results, if token caching is enabled.
+     */
+    public void clearTokenCache() {
+        if (tokenCache != null) {
+            tokenCache.clear();
+        }
+    }
+
+    /**
+     * Get the number of token lookups which were answered from the token cache, including lookups which waited for an
+     * introspection of the same token already in progress.
+     *
+     * @return the token cache hit count, or {@code 0} if token caching is not enabled
+     */
+    public long getTokenCacheHitCount() {
+        return tokenCache == null ? 0 : tokenCache.getHitCount();
+    }
+
+    /**
+     * Get the number of token lookups which required the token introspection endpoint to be called.
+     *
+     * @return the token cache miss count, or {@code 0} if token caching is not enabled
+     */
+    public long getTokenCacheMissCount() {
+        return tokenCache == null ? 0 : tokenCache.getMissCount();
+    }
+
+    /**
+     * Get the number of calls made to the token introspection endpoint.
+     *
+     * @return the number of calls made to the token introspection endpoint
+     */
+    public long getIntrospectionCount() {
+        return introspectionCount.get();
+    }
+
+    /**
+     * Get the total time spent calling the token introspection endpoint.
+     *
+     * @param unit the time unit of the returned value (must not be {@code null})
+     * @return the total time spent calling the token introspection endpoint
+     */
+    public long getTotalIntrospectionTime(TimeUnit unit) {
+        Assert.checkNotNullParam("unit", unit);
+        return unit.convert(introspectionTime.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Get the longest time taken by a single call to the token introspection endpoint.
+     *
+     * @param unit the time unit of the returned value (must not be {@code null})
+     * @return the longest time taken by a single call to the token introspection endpoint
+     */
+    public long getMaxIntrospectionTime(TimeUnit unit) {
+        Assert.checkNotNullParam("unit", unit);
+        return unit.convert(maxIntrospectionTime.get(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stop the threads used to run introspections started by {@link #getRealmIdentityAsync(BearerTokenEvidence)}, if they
+     * are owned by this realm.  Introspections already in progress are completed, further asynchronous requests fail.
+     */
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            if (defaultExecutor != null) {
+                defaultExecutor.shutdown();
+            }
+        }
+    }
+
+    private Executor getIntrospectionExecutor() {
+        if (configuredExecutor != null) {
+            return configuredExecutor;
+        }
+        ExecutorService executor = defaultExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = defaultExecutor;
+                if (executor == null) {
+                    if (closed) {
+                        throw new RejectedExecutionException();
+                    }
+                    final AtomicInteger threadCount = new AtomicInteger();
+                    // the in-flight limit bounds both the number of threads and the number of queued introspections
+                    final ThreadPoolExecutor threadPool = new ThreadPoolExecutor(maxInFlightIntrospections, maxInFlightIntrospections, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                        final Thread thread = new Thread(r, "oauth2-introspection-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    threadPool.allowCoreThreadTimeOut(true);
+                    defaultExecutor = executor = threadPool;
+                }
+            }
+        }
+        return executor;
+    }
+
     private boolean isBearerTokenEvidence(Class<?> evidenceType) {
         return evidenceType != null && evidenceType.equals(BearerTokenEvidence.class);
     }
 
+    private JsonObject introspectToken(String token) throws RealmUnavailableException {
+        return tokenCache == null ? introspectTokenNoCache(token) : tokenCache.get(token, this::introspectTokenNoCache);
+    }
+
+    private JsonObject introspectTokenNoCache(String token) throws RealmUnavailableException {
+        final long start = System.nanoTime();
+        try {
+            return introspectAccessToken(tokenIntrospectionUrl, clientId, clientSecret, token, sslSocketFactory, hostnameVerifier, requestTimeout);
+        } catch (RealmUnavailableException e) {
+            throw e;
+        } catch (Exception e) {
+            throw ElytronMessages.log.oauth2RealmTokenIntrospectionFailed(e);
+        } finally {
+            final long elapsed = System.nanoTime() - start;
+            introspectionCount.incrementAndGet();
+            introspectionTime.addAndGet(elapsed);
+            long max;
+            do {
+                max = maxIntrospectionTime.get();
+            } while (elapsed > max && ! maxIntrospectionTime.compareAndSet(max, elapsed));
+        }
+    }
+
     final class OAuth2RealmIdentity implements RealmIdentity {
 
         private final BearerTokenEvidence evidence;
@@ -135,7 +356,7 @@ public class OAuth2SecurityRealm implements SecurityRealm {
 
         @Override
         public boolean verifyEvidence(Evidence evidence) throws RealmUnavailableException {
-            return isValidToken(introspectToken());
+            return getClaims() != null;
         }
 
         @Override
@@ -200,18 +421,24 @@ public class OAuth2SecurityRealm implements SecurityRealm {
 
         private JsonObject introspectToken() throws RealmUnavailableException {
             if (this.evidence != null) {
-                try {
-                    return introspectAccessToken(tokenIntrospectionUrl,
-                            clientId, clientSecret, evidence.getToken(), sslContext, hostnameVerifier);
-                } catch (Exception e) {
-                    throw ElytronMessages.log.oauth2RealmTokenIntrospectionFailed(e);
-                }
+                return OAuth2SecurityRealm.this.introspectToken(evidence.getToken());
             }
 
             return null;
         }
     }
 
+    /**
+     * A builder for {@link OAuth2SecurityRealm}.
+     * <p>
+     * Calls to the token introspection endpoint are made with {@link java.net.HttpURLConnection}, so the connections are
+     * pooled by the JVM rather than by the realm and the pool cannot be sized per realm.  An idle connection is kept
+     * alive for reuse only if the {@code http.keepAlive} system property is {@code true} (the default), and at most
+     * {@code http.maxConnections} (by default {@code 5}) idle connections are kept for each endpoint; connections above
+     * that are closed once their introspection completes.  A warning is logged when the realm is built if
+     * {@link #maxInFlightIntrospections(int)} is larger than {@code http.maxConnections}, as introspections running
+     * concurrently then keep opening new connections (and doing new TLS handshakes).
+     */
     public static class Builder {
 
         private String clientId;
@@ -220,6 +447,12 @@ public class OAuth2SecurityRealm implements SecurityRealm {
         private String principalClaimName = "username";
         private SSLContext sslContext;
         private HostnameVerifier hostnameVerifier;
+        private int tokenCacheMaxEntries;
+        private long tokenCacheMaxAge = 60000;
+        private long inactiveTokenCacheMaxAge = 5000;
+        private long requestTimeout = 30000;
+        private int maxInFlightIntrospections = 64;
+        private Executor introspectionExecutor;
 
         /**
          * Construct a new instance.
@@ -300,6 +533,83 @@ public class OAuth2SecurityRealm implements SecurityRealm {
             return this;
         }
 
+        /**
+         * <p>The maximum number of token introspection results to cache. Results are cached by a hash of the token, and concurrent
+         * requests for the same token share a single call to the token introspection endpoint.
+         *
+         * @param maxEntries the maximum number of cached tokens. Defaults to <code>0</code>, which disables caching
+         * @return this instance
+         */
+        public Builder tokenCacheMaxEntries(int maxEntries) {
+            Assert.checkMinimumParameter("maxEntries", 0, maxEntries);
+            this.tokenCacheMaxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * The maximum time for which the result for an active token is cached. A token is never cached past the expiration time
+         * given by its <code>exp</code> claim.
+         *
+         * @param maxAge the maximum age in milliseconds. Defaults to <code>60000</code>
+         * @return this instance
+         */
+        public Builder tokenCacheMaxAge(long maxAge) {
+            Assert.checkMinimumParameter("maxAge", 0, maxAge);
+            this.tokenCacheMaxAge = maxAge;
+            return this;
+        }
+
+        /**
+         * The maximum time for which the result for an inactive token is cached.
+         *
+         * @param maxAge the maximum age in milliseconds. Defaults to <code>5000</code>
+         * @return this instance
+         */
+        public Builder inactiveTokenCacheMaxAge(long maxAge) {
+            Assert.checkMinimumParameter("maxAge", 0, maxAge);
+            this.inactiveTokenCacheMaxAge = maxAge;
+            return this;
+        }
+
+        /**
+         * The time to wait to establish a connection to the token introspection endpoint and for each read of the response.
+         * Connections are kept alive and reused between requests by {@link java.net.HttpURLConnection}, which also applies the
+         * JVM's proxy settings.
+         *
+         * @param requestTimeout the request timeout in milliseconds. Defaults to <code>30000</code>
+         * @return this instance
+         */
+        public Builder requestTimeout(long requestTimeout) {
+            Assert.checkMinimumParameter("requestTimeout", 1, requestTimeout);
+            this.requestTimeout = requestTimeout;
+            return this;
+        }
+
+        /**
+         * The maximum number of introspections started by {@link OAuth2SecurityRealm#getRealmIdentityAsync(BearerTokenEvidence)} which
+         * may be in progress at once. Further requests fail immediately rather than queueing. This should not be larger than the
+         * {@code http.maxConnections} system property, see the {@linkplain Builder builder} description.
+         *
+         * @param maxInFlight the maximum number of introspections in progress. Defaults to <code>64</code>
+         * @return this instance
+         */
+        public Builder maxInFlightIntrospections(int maxInFlight) {
+            Assert.checkMinimumParameter("maxInFlight", 1, maxInFlight);
+            this.maxInFlightIntrospections = maxInFlight;
+            return this;
+        }
+
+        /**
+         * The {@link Executor} used to run introspections started by {@link OAuth2SecurityRealm#getRealmIdentityAsync(BearerTokenEvidence)}.
+         *
+         * @param executor the executor. Defaults to a pool of daemon threads owned by the realm
+         * @return this instance
+         */
+        public Builder introspectionExecutor(Executor executor) {
+            this.introspectionExecutor = executor;
+            return this;
+        }
+
         /**
          * Creates a {@link OAuth2SecurityRealm} instance with all the given configuration.
          *
@@ -33,9 +33,10 @@ import javax.json.JsonString;
 import javax.json.JsonValue;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.HttpsURLConnection;
-import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
 import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -53,6 +54,11 @@ import java.util.Map;
  */
 class OAuth2Util {
 
+    /**
+     * The maximum number of bytes read from a response of the token introspection endpoint.
+     */
+    static final int MAX_RESPONSE_SIZE = 1 << 20;
+
     /**
      * Introspects an OAuth2 Access Token using a RFC-7662 compatible endpoint.
      *
@@ -60,11 +66,13 @@ class OAuth2Util {
      * @param clientId the identifier of a client within the OAUth2 Authorization Server
      * @param clientSecret the secret of the client
      * @param token the access token to introspect
-     * @param sslContext the ssl context
+     * @param sslSocketFactory the socket factory of the ssl context, which should be shared by all requests to the endpoint so
+     *                         that connections can be kept alive and reused
      * @param hostnameVerifier the hostname verifier
+     * @param timeout the connect and read timeout in milliseconds
      * @return a @{JsonObject} representing the response from the introspection endpoint or null if
      */
-    static JsonObject introspectAccessToken(URL tokenIntrospectionUrl, String clientId, String clientSecret, String token, SSLContext sslContext, HostnameVerifier hostnameVerifier) throws RealmUnavailableException {
+    static JsonObject introspectAccessToken(URL tokenIntrospectionUrl, String clientId, String clientSecret, String token, SSLSocketFactory sslSocketFactory, HostnameVerifier hostnameVerifier, int timeout) throws RealmUnavailableException {
         Assert.checkNotNullParam("clientId", clientId);
         Assert.checkNotNullParam("clientSecret", clientSecret);
         Assert.checkNotNullParam("token", token);
@@ -72,7 +80,9 @@ class OAuth2Util {
         HttpURLConnection connection = null;
 
         try {
-            connection = openConnection(tokenIntrospectionUrl, sslContext, hostnameVerifier);
+            connection = openConnection(tokenIntrospectionUrl, sslSocketFactory, hostnameVerifier);
+            connection.setConnectTimeout(timeout);
+            connection.setReadTimeout(timeout);
 
             HashMap<String, String> parameters = new HashMap<>();
 
@@ -83,22 +93,28 @@ class OAuth2Util {
 
             connection.setDoOutput(true);
             connection.setRequestMethod("POST");
+            // a streamed request is never silently resent by HttpURLConnection if a kept alive connection turns out to be stale
+            connection.setFixedLengthStreamingMode(params.length);
             connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
-            connection.setRequestProperty("Content-Length", String.valueOf(params.length));
             connection.setRequestProperty("Authorization", "Basic " + CodePointIterator.ofString(clientId + ":" + clientSecret).asUtf8().base64Encode().drainToString());
 
             try (OutputStream outputStream = connection.getOutputStream()) {
                 outputStream.write(params);
             }
 
-            try (InputStream inputStream = new BufferedInputStream(connection.getInputStream())) {
+            if (connection.getContentLengthLong() > MAX_RESPONSE_SIZE) {
+                throw new IOException("Response from token introspection endpoint exceeds " + MAX_RESPONSE_SIZE + " bytes");
+            }
+
+            // the response is read to the end and closed, not disconnected, so the connection can be kept alive
+            try (InputStream inputStream = new BufferedInputStream(new LimitedInputStream(connection.getInputStream()))) {
                 return Json.createReader(inputStream).readObject();
             }
         } catch (IOException ioe) {
             if (connection != null && connection.getErrorStream() != null) {
                 InputStream errorStream = connection.getErrorStream();
 
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(errorStream))) {
+                try (BufferedReader reader = new BufferedReader(new InputStreamReader(new LimitedInputStream(errorStream)))) {
                     StringBuffer response = reader.lines().reduce(new StringBuffer(), StringBuffer::append, (buffer1, buffer2) -> buffer1);
                     ElytronMessages.log.errorf(ioe, "Unexpected response from token introspection endpoint [%s]. Response: [%s]", tokenIntrospectionUrl, response);
                 } catch (IOException e) {
@@ -144,13 +160,13 @@ class OAuth2Util {
         return value.toString();
     }
 
-    private static HttpURLConnection openConnection(URL url, SSLContext sslContext, HostnameVerifier hostnameVerifier) throws IOException {
+    private static HttpURLConnection openConnection(URL url, SSLSocketFactory sslSocketFactory, HostnameVerifier hostnameVerifier) throws IOException {
         Assert.checkNotNullParam("url", url);
 
         boolean isHttps = url.getProtocol().equalsIgnoreCase("https");
 
         if (isHttps) {
-            if (sslContext == null) {
+            if (sslSocketFactory == null) {
                 throw ElytronMessages.log.oauth2RealmSSLContextNotSpecified(url);
             }
 
@@ -165,7 +181,7 @@ class OAuth2Util {
             if (isHttps) {
                 HttpsURLConnection https = (HttpsURLConnection) connection;
 
-                https.setSSLSocketFactory(sslContext.getSocketFactory());
+                https.setSSLSocketFactory(sslSocketFactory);
                 https.setHostnameVerifier(hostnameVerifier);
             }
 
@@ -187,4 +203,54 @@ class OAuth2Util {
 
         return params.toArray();
     }
+
+    /**
+     * An input stream which fails once more than {@link #MAX_RESPONSE_SIZE} bytes have been read.
+     */
+    static final class LimitedInputStream extends FilterInputStream {
+        private long remaining = MAX_RESPONSE_SIZE;
+
+        LimitedInputStream(InputStream delegate) {
+            super(delegate);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                consumed(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int res = super.read(b, off, (int) Math.min(len, remaining + 1));
+            if (res > 0) {
+                consumed(res);
+            }
+            return res;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long res = super.skip(Math.min(n, remaining + 1));
+            if (res > 0) {
+                consumed(res);
+            }
+            return res;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void consumed(long count) throws IOException {
+            remaining -= count;
+            if (remaining < 0) {
+                throw new IOException("Response from token introspection endpoint exceeds " + MAX_RESPONSE_SIZE + " bytes");
+            }
+        }
+    }
 }
@@ -0,0 +1,205 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.auth.realm.oauth2;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+
+import org.wildfly.security._private.ElytronMessages;
+import org.wildfly.security.auth.server.RealmUnavailableException;
+import org.wildfly.security.util.ByteIterator;
+
+/**
+ * A bounded cache of token introspection results, keyed by a hash of the token so that the tokens themselves are not
+ * retained.  Active tokens are cached until they expire according to their {@code exp} claim or until the maximum age
+ * is reached, whichever comes first; inactive tokens are cached for a separate, usually shorter, age.  Concurrent
+ * lookups of the same token share a single introspection call.
+ */
+final class TokenIntrospectionCache {
+
+    private final int maxEntries;
+    private final long maxAgeNanos;
+    private final long inactiveMaxAgeNanos;
+    private final LinkedHashMap<String, Entry> cache;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Construct a new instance.
+     *
+     * @param maxEntries the maximum number of tokens to cache
+     * @param maxAge the maximum age of the result for an active token, in milliseconds
+     * @param inactiveMaxAge the maximum age of the result for an inactive token, in milliseconds
+     */
+    TokenIntrospectionCache(final int maxEntries, final long maxAge, final long inactiveMaxAge) {
+        this.maxEntries = maxEntries;
+        this.maxAgeNanos = TimeUnit.MILLISECONDS.toNanos(maxAge);
+        this.inactiveMaxAgeNanos = TimeUnit.MILLISECONDS.toNanos(inactiveMaxAge);
+        this.cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > TokenIntrospectionCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the introspection result for the given token, introspecting it if there is no current result in the cache.
+     *
+     * @param token the token (must not be {@code null})
+     * @param introspector the introspector to use on a cache miss
+     * @return the token claims, or {@code null} if the introspection endpoint gave no usable response
+     * @throws RealmUnavailableException if the introspection failed
+     */
+    JsonObject get(final String token, final Introspector introspector) throws RealmUnavailableException {
+        final String key = hash(token);
+        final long now = System.nanoTime();
+        final Entry entry;
+        final boolean owner;
+        synchronized (cache) {
+            final Entry existing = cache.get(key);
+            if (existing == null || existing.isExpired(now)) {
+                entry = new Entry();
+                cache.put(key, entry);
+                owner = true;
+            } else {
+                entry = existing;
+                owner = false;
+            }
+        }
+        if (! owner) {
+            hitCount.incrementAndGet();
+            return entry.await();
+        }
+        missCount.incrementAndGet();
+        final JsonObject claims;
+        try {
+            claims = introspector.introspect(token);
+            if (claims == null) {
+                remove(key, entry);
+            } else if (claims.getBoolean("active", false)) {
+                entry.expiresAt = now + getActiveAge(claims);
+            } else {
+                entry.expiresAt = now + inactiveMaxAgeNanos;
+            }
+        } catch (Throwable t) {
+            // whatever happens, waiters for this token must not be left blocked
+            remove(key, entry);
+            entry.claims.completeExceptionally(t);
+            throw t;
+        }
+        entry.claims.complete(claims);
+        return claims;
+    }
+
+    /**
+     * Remove all cached results.
+     */
+    void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    long getHitCount() {
+        return hitCount.get();
+    }
+
+    long getMissCount() {
+        return missCount.get();
+    }
+
+    private long getActiveAge(final JsonObject claims) {
+        final JsonValue exp = claims.get("exp");
+        if (exp != null && exp.getValueType() == JsonValue.ValueType.NUMBER) {
+            final long remainingMillis = ((JsonNumber) exp).longValue() * 1000L - System.currentTimeMillis();
+            return Math.max(0L, Math.min(maxAgeNanos, TimeUnit.MILLISECONDS.toNanos(remainingMillis)));
+        }
+        return maxAgeNanos;
+    }
+
+    private void remove(final String key, final Entry entry) {
+        synchronized (cache) {
+            if (cache.get(key) == entry) {
+                cache.remove(key);
+            }
+        }
+    }
+
+    private static String hash(final String token) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        return ByteIterator.ofBytes(digest.digest(token.getBytes(UTF_8))).base64Encode().drainToString();
+    }
+
+    interface Introspector {
+        JsonObject introspect(String token) throws RealmUnavailableException;
+    }
+
+    static final class Entry {
+        final CompletableFuture<JsonObject> claims = new CompletableFuture<>();
+        volatile long expiresAt;
+
+        boolean isExpired(final long now) {
+            return claims.isDone() && now - expiresAt >= 0;
+        }
+
+        JsonObject await() throws RealmUnavailableException {
+            boolean intr = false;
+            try {
+                for (;;) try {
+                    return claims.get();
+                } catch (InterruptedException e) {
+                    intr = true;
+                }
+            } catch (ExecutionException e) {
+                final Throwable cause = e.getCause();
+                if (cause instanceof RealmUnavailableException) {
+                    throw (RealmUnavailableException) cause;
+                }
+                throw ElytronMessages.log.oauth2RealmTokenIntrospectionFailed(cause);
+            } finally {
+                if (intr) Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
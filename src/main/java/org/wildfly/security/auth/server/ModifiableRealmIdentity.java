@@ -19,6 +19,7 @@
 package org.wildfly.security.auth.server;
 
 import java.util.Collection;
+import java.util.function.Predicate;
 
 import org.wildfly.common.Assert;
 import org.wildfly.security._private.ElytronMessages;
@@ -58,6 +59,23 @@ public interface ModifiableRealmIdentity extends RealmIdentity {
      */
     void setCredentials(Collection<? extends Credential> credentials) throws RealmUnavailableException;
 
+    /**
+     * Replace some of the credentials of this identity, leaving the others unchanged.  Every existing credential
+     * accepted by the given predicate is removed and the new credentials are stored ahead of the remaining ones.  If
+     * the identity does not exist, an exception is thrown.
+     * <p>
+     * The default implementation throws {@link UnsupportedOperationException}, as an identity is not generally able to
+     * list the credentials it holds.
+     *
+     * @param replaced the predicate selecting the existing credentials to remove
+     * @param credentials the new credentials to store
+     * @throws RealmUnavailableException if updating the credentials fails for some reason
+     * @throws UnsupportedOperationException if this identity cannot replace individual credentials
+     */
+    default void replaceCredentials(Predicate<? super Credential> replaced, Collection<? extends Credential> credentials) throws RealmUnavailableException {
+        throw new UnsupportedOperationException();
+    }
+
     /**
      * Modify the attributes collection of this identity.  If the identity does not exist, an exception is thrown.
      *
@@ -106,6 +124,10 @@ public interface ModifiableRealmIdentity extends RealmIdentity {
             throw ElytronMessages.log.noSuchIdentity();
         }
 
+        public void replaceCredentials(final Predicate<? super Credential> replaced, final Collection<? extends Credential> credentials) throws RealmUnavailableException {
+            throw ElytronMessages.log.noSuchIdentity();
+        }
+
         public void setAttributes(final Attributes attributes) throws RealmUnavailableException {
             throw ElytronMessages.log.noSuchIdentity();
         }
@@ -21,6 +21,7 @@ package org.wildfly.security.auth.server;
 import static org.wildfly.security._private.ElytronMessages.log;
 
 import java.security.Principal;
+import java.util.concurrent.CompletionStage;
 
 import org.wildfly.common.Assert;
 import org.wildfly.security.auth.principal.AnonymousPrincipal;
@@ -28,6 +29,7 @@ import org.wildfly.security.authz.AuthorizationIdentity;
 import org.wildfly.security.credential.AlgorithmCredential;
 import org.wildfly.security.credential.Credential;
 import org.wildfly.security.evidence.Evidence;
+import org.wildfly.security.password.PasswordVerificationExecutor;
 
 /**
  * A representation of a pre-authentication identity.
@@ -117,6 +119,37 @@ public interface RealmIdentity {
      */
     boolean verifyEvidence(Evidence evidence) throws RealmUnavailableException;
 
+    /**
+     * Verify the given evidence against a credential of this identity on the
+     * {@linkplain PasswordVerificationExecutor#getDefault() default verification executor}, so that an expensive
+     * verification does not run on the calling thread.  The identity must not be used or disposed until the returned
+     * stage has completed.
+     *
+     * @param evidence the evidence to verify
+     * @return the stage which is completed with {@code true} if verification was successful or {@code false} otherwise,
+     *  or exceptionally if the realm is unavailable or the verification was rejected
+     * @see PasswordVerificationExecutor#submit(java.util.concurrent.Callable)
+     */
+    default CompletionStage<Boolean> verifyEvidenceAsync(Evidence evidence) {
+        return verifyEvidenceAsync(evidence, PasswordVerificationExecutor.getDefault());
+    }
+
+    /**
+     * Verify the given evidence against a credential of this identity on the given verification executor, so that an
+     * expensive verification does not run on the calling thread.  The identity must not be used or disposed until the
+     * returned stage has completed.
+     *
+     * @param evidence the evidence to verify
+     * @param executor the executor to run the verification on (must not be {@code null})
+     * @return the stage which is completed with {@code true} if verification was successful or {@code false} otherwise,
+     *  or exceptionally if the realm is unavailable or the verification was rejected
+     * @see PasswordVerificationExecutor#submit(java.util.concurrent.Callable)
+     */
+    default CompletionStage<Boolean> verifyEvidenceAsync(Evidence evidence, PasswordVerificationExecutor executor) {
+        Assert.checkNotNullParam("executor", executor);
+        return executor.submit(() -> Boolean.valueOf(verifyEvidence(evidence)));
+    }
+
     /**
      * Determine if the identity exists in lieu of verifying or acquiring a credential.  This method is intended to be
      * used to verify an identity for non-authentication purposes only.
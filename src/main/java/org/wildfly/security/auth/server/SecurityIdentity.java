@@ -29,8 +29,11 @@ import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
@@ -51,6 +54,7 @@ import org.wildfly.security.authz.Attributes;
 import org.wildfly.security.authz.AuthorizationIdentity;
 import org.wildfly.security.authz.RoleMapper;
 import org.wildfly.security.authz.Roles;
+import org.wildfly.security.permission.PermissionUtil;
 
 /**
  * A loaded and authenticated security identity.
@@ -68,6 +72,11 @@ public final class SecurityIdentity {
     private final Map<String, RoleMapper> roleMappers;
     private final PeerIdentity[] peerIdentities;
     private final Instant creationTime;
+    // lazily computed; racing threads may each compute a value but any of them is correct to publish
+    private volatile Roles roles;
+    private volatile Set<String> roleNames;
+    private volatile Map<String, Roles> categoryRoles;
+    private volatile PermissionCollection permissions;
 
     SecurityIdentity(final SecurityDomain securityDomain, final Principal principal, final RealmInfo realmInfo, final AuthorizationIdentity authorizationIdentity, final Map<String, RoleMapper> roleMappers) {
         this.securityDomain = securityDomain;
@@ -87,6 +96,10 @@ public final class SecurityIdentity {
         this.roleMappers = old.roleMappers;
         this.peerIdentities = newPeerIdentities;
         this.creationTime = old.creationTime;
+        this.roles = old.roles;
+        this.roleNames = old.roleNames;
+        this.categoryRoles = old.categoryRoles;
+        this.permissions = old.permissions;
     }
 
     SecurityIdentity(final SecurityIdentity old, final Map<String, RoleMapper> roleMappers) {
@@ -97,6 +110,10 @@ public final class SecurityIdentity {
         this.roleMappers = roleMappers;
         this.peerIdentities = old.peerIdentities;
         this.creationTime = old.creationTime;
+        // the default roles and the permissions do not depend on the role mappers
+        this.roles = old.roles;
+        this.roleNames = old.roleNames;
+        this.permissions = old.permissions;
     }
 
     SecurityDomain getSecurityDomain() {
@@ -343,7 +360,27 @@ public final class SecurityIdentity {
      * @return the roles associated with this identity
      */
     public Roles getRoles() {
-        return this.securityDomain.mapRoles(this);
+        Roles roles = this.roles;
+        if (roles == null) {
+            this.roles = roles = securityDomain.mapRoles(this);
+        }
+        return roles;
+    }
+
+    /**
+     * Get the names of the roles associated with this identity as an immutable set.  Unlike the {@link Roles} returned
+     * by {@link #getRoles()}, the sets of two identities with the same roles are equal, so they may be used as keys.
+     *
+     * @return the names of the roles associated with this identity (not {@code null})
+     */
+    public Set<String> getRoleNames() {
+        Set<String> roleNames = this.roleNames;
+        if (roleNames == null) {
+            final Set<String> names = new HashSet<>();
+            getRoles().forEach(names::add);
+            this.roleNames = roleNames = Collections.unmodifiableSet(names);
+        }
+        return roleNames;
     }
 
     /**
@@ -367,7 +404,22 @@ public final class SecurityIdentity {
      */
     public Roles getRoles(String category, boolean fallbackToDefault) {
         final RoleMapper roleMapper = roleMappers.get(category);
-        return roleMapper == null ? (fallbackToDefault ? getRoles() : Roles.NONE) : roleMapper.mapRoles(securityDomain.mapRoles(this));
+        if (roleMapper == null) {
+            return fallbackToDefault ? getRoles() : Roles.NONE;
+        }
+        Map<String, Roles> categoryRoles = this.categoryRoles;
+        if (categoryRoles == null) {
+            this.categoryRoles = categoryRoles = new ConcurrentHashMap<>(roleMappers.size());
+        }
+        Roles roles = categoryRoles.get(category);
+        if (roles == null) {
+            roles = roleMapper.mapRoles(getRoles());
+            final Roles appearing = categoryRoles.putIfAbsent(category, roles);
+            if (appearing != null) {
+                roles = appearing;
+            }
+        }
+        return roles;
     }
 
     /**
@@ -506,7 +558,11 @@ public final class SecurityIdentity {
      * @return the permissions associated with this identity
      */
     public PermissionCollection getPermissions() {
-        return this.securityDomain.mapPermissions(this);
+        PermissionCollection permissions = this.permissions;
+        if (permissions == null) {
+            this.permissions = permissions = PermissionUtil.compile(securityDomain.mapPermissions(this));
+        }
+        return permissions;
     }
 
     /**
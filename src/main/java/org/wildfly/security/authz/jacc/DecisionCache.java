@@ -0,0 +1,146 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.authz.jacc;
+
+import java.security.Permission;
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A bounded cache of the role based decisions made against one committed policy configuration, keyed by the
+ * principals of the caller's protection domain, the role names of the caller's identity and the permission being
+ * checked.  The role names are compared by value, so that the identities of every request made with the same roles
+ * share their decisions.
+ * <p>
+ * The cache is split into stripes selected by the hash of the key, each of which is a least recently used map with its
+ * own lock, so that concurrent checks of different permissions rarely contend.  An instance belongs to a single
+ * {@link ElytronPolicyConfiguration.Snapshot}, so committing the configuration again discards all of its decisions.
+ */
+final class DecisionCache {
+
+    private static final int STRIPES = 16;
+
+    private final Stripe[] stripes;
+
+    /**
+     * Construct a new instance.
+     *
+     * @param maxEntries the approximate maximum number of decisions to keep
+     */
+    DecisionCache(final int maxEntries) {
+        final int stripeEntries = Math.max(1, (maxEntries + STRIPES - 1) / STRIPES);
+        stripes = new Stripe[STRIPES];
+        for (int i = 0; i < STRIPES; i ++) {
+            stripes[i] = new Stripe(stripeEntries);
+        }
+    }
+
+    /**
+     * Get a cached decision.
+     *
+     * @param key the key of the decision
+     * @return the decision, or {@code null} if it is not cached
+     */
+    Boolean get(final Key key) {
+        final Stripe stripe = stripeOf(key);
+        synchronized (stripe) {
+            return stripe.get(key);
+        }
+    }
+
+    /**
+     * Cache a decision.
+     *
+     * @param key the key of the decision
+     * @param decision the decision
+     */
+    void put(final Key key, final boolean decision) {
+        final Stripe stripe = stripeOf(key);
+        synchronized (stripe) {
+            stripe.put(key, Boolean.valueOf(decision));
+        }
+    }
+
+    /**
+     * Get the number of cached decisions.
+     *
+     * @return the number of cached decisions
+     */
+    int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    private Stripe stripeOf(final Key key) {
+        final int hashCode = key.hashCode();
+        return stripes[(hashCode ^ hashCode >>> 16) & (STRIPES - 1)];
+    }
+
+    static final class Key {
+        private final Principal[] principals;
+        private final Set<String> roleNames;
+        private final Permission permission;
+        private final int hashCode;
+
+        Key(final Principal[] principals, final Set<String> roleNames, final Permission permission) {
+            this.principals = principals;
+            this.roleNames = roleNames;
+            this.permission = permission;
+            this.hashCode = (Arrays.hashCode(principals) * 31 + Objects.hashCode(roleNames)) * 31 + permission.hashCode();
+        }
+
+        public boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (! (obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return hashCode == other.hashCode && permission.equals(other.permission) && Arrays.equals(principals, other.principals) && Objects.equals(roleNames, other.roleNames);
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    static final class Stripe extends LinkedHashMap<Key, Boolean> {
+        private final int maxEntries;
+
+        Stripe(final int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        protected boolean removeEldestEntry(final Map.Entry<Key, Boolean> eldest) {
+            return size() > maxEntries;
+        }
+    }
+}
@@ -29,12 +29,18 @@ import java.util.LinkedHashSet;
 import java.util.Map;
 import java.util.Set;
 
+import org.wildfly.security.permission.PermissionUtil;
+
 import static org.wildfly.common.Assert.checkNotNullParam;
 import static org.wildfly.security._private.ElytronMessages.log;
 
 /**
  * {@link javax.security.jacc.PolicyConfiguration} implementation.
  *
+ * <p>Permissions are added to mutable collections while the configuration is open. On {@link #commit()} they are compiled
+ * into an immutable {@link Snapshot}, which is what policy decisions read, so that checking a permission against an
+ * <i>in service</i> configuration takes no locks.
+ *
  * @author <a href="mailto:psilva@redhat.com">Pedro Igor</a>
  * @see org.wildfly.security.authz.jacc.ElytronPolicyConfigurationFactory
  */
@@ -50,8 +56,9 @@ class ElytronPolicyConfiguration implements PolicyConfiguration {
     }
 
     private final String contextId;
-    private final Map<String, Permissions> rolePermissions = Collections.synchronizedMap(new HashMap<>());
-    private State state = State.OPEN;
+    private final Map<String, Permissions> rolePermissions = new HashMap<>();
+    private volatile State state = State.OPEN;
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
     private Permissions uncheckedPermissions = new Permissions();
     private Permissions excludedPermissions = new Permissions();
     private Set<PolicyConfiguration> linkedPolicies = Collections.synchronizedSet(new LinkedHashSet<>());
@@ -133,6 +140,7 @@ class ElytronPolicyConfiguration implements PolicyConfiguration {
                 throw log.authzInvalidStateForOperation(this.state.name());
             }
 
+            this.snapshot = new Snapshot(this.uncheckedPermissions, this.excludedPermissions, this.rolePermissions);
             transitionTo(State.IN_SERVICE);
         }
     }
@@ -144,6 +152,7 @@ class ElytronPolicyConfiguration implements PolicyConfiguration {
             this.uncheckedPermissions = new Permissions();
             this.excludedPermissions = new Permissions();
             this.rolePermissions.clear();
+            this.snapshot = Snapshot.EMPTY;
             this.linkedPolicies.remove(this);
         }
     }
@@ -155,9 +164,7 @@ class ElytronPolicyConfiguration implements PolicyConfiguration {
 
     @Override
     public boolean inService() {
-        synchronized (this) {
-            return State.IN_SERVICE.equals(this.state);
-        }
+        return State.IN_SERVICE.equals(this.state);
     }
 
     @Override
@@ -215,16 +222,13 @@ class ElytronPolicyConfiguration implements PolicyConfiguration {
         return this.linkedPolicies;
     }
 
-    Permissions getUncheckedPermissions() {
-        return this.uncheckedPermissions;
-    }
-
-    Permissions getExcludedPermissions() {
-        return this.excludedPermissions;
-    }
-
-    Map<String, Permissions> getRolePermissions() {
-        return this.rolePermissions;
+    /**
+     * Get the permissions published by the last {@link #commit()}.
+     *
+     * @return the snapshot of the committed permissions (not {@code null})
+     */
+    Snapshot getSnapshot() {
+        return this.snapshot;
     }
 
     void transitionTo(State state) {
@@ -240,4 +244,63 @@ class ElytronPolicyConfiguration implements PolicyConfiguration {
     private boolean isDeleted() {
         return State.DELETED.equals(this.state);
     }
+
+    /**
+     * An immutable view of the permissions of a committed configuration, with each collection compiled using
+     * {@link PermissionUtil#compile(PermissionCollection)}.
+     */
+    static final class Snapshot {
+
+        static final Snapshot EMPTY = new Snapshot(new Permissions(), new Permissions(), Collections.emptyMap());
+
+        private final PermissionCollection uncheckedPermissions;
+        private final PermissionCollection excludedPermissions;
+        private final Map<String, PermissionCollection> rolePermissions;
+        private volatile DecisionCache decisionCache;
+
+        Snapshot(Permissions uncheckedPermissions, Permissions excludedPermissions, Map<String, Permissions> rolePermissions) {
+            this.uncheckedPermissions = PermissionUtil.compile(uncheckedPermissions);
+            this.excludedPermissions = PermissionUtil.compile(excludedPermissions);
+            Map<String, PermissionCollection> compiled = new HashMap<>(rolePermissions.size());
+            rolePermissions.forEach((roleName, permissions) -> compiled.put(roleName, PermissionUtil.compile(permissions)));
+            this.rolePermissions = Collections.unmodifiableMap(compiled);
+        }
+
+        PermissionCollection getUncheckedPermissions() {
+            return this.uncheckedPermissions;
+        }
+
+        PermissionCollection getExcludedPermissions() {
+            return this.excludedPermissions;
+        }
+
+        Map<String, PermissionCollection> getRolePermissions() {
+            return this.rolePermissions;
+        }
+
+        boolean impliesRole(String roleName, Permission permission) {
+            PermissionCollection permissions = this.rolePermissions.get(roleName);
+
+            return permissions != null && permissions.implies(permission);
+        }
+
+        /**
+         * Get the cache of the role based decisions made against this snapshot, creating it if needed.
+         *
+         * @param maxEntries the maximum number of decisions to keep if the cache is created
+         * @return the decision cache (not {@code null})
+         */
+        DecisionCache getDecisionCache(int maxEntries) {
+            DecisionCache decisionCache = this.decisionCache;
+            if (decisionCache == null) {
+                synchronized (this) {
+                    decisionCache = this.decisionCache;
+                    if (decisionCache == null) {
+                        this.decisionCache = decisionCache = new DecisionCache(maxEntries);
+                    }
+                }
+            }
+            return decisionCache;
+        }
+    }
 }
@@ -19,13 +19,11 @@ package org.wildfly.security.authz.jacc;
 
 import org.wildfly.security.auth.server.SecurityDomain;
 import org.wildfly.security.auth.server.SecurityIdentity;
-import org.wildfly.security.authz.Roles;
 import org.wildfly.security.manager.WildFlySecurityManager;
 
 import javax.security.jacc.EJBMethodPermission;
 import javax.security.jacc.EJBRoleRefPermission;
 import javax.security.jacc.PolicyContext;
-import javax.security.jacc.PolicyContextException;
 import javax.security.jacc.WebResourcePermission;
 import javax.security.jacc.WebRoleRefPermission;
 import javax.security.jacc.WebUserDataPermission;
@@ -39,10 +37,11 @@ import java.security.PrivilegedAction;
 import java.security.ProtectionDomain;
 import java.util.Enumeration;
 import java.util.HashSet;
-import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
 
 import static java.security.AccessController.doPrivileged;
+import static org.wildfly.common.Assert.checkMinimumParameter;
 import static org.wildfly.security._private.ElytronMessages.log;
 
 /**
@@ -60,8 +59,17 @@ public class JaccDelegatingPolicy extends Policy {
     public static final PrivilegedAction<Policy> GET_POLICY_ACTION = () -> Policy.getPolicy();
     private static final String ANY_AUTHENTICATED_USER_ROLE = "**";
 
+    /**
+     * The default maximum number of role based decisions cached for each policy context.
+     */
+    public static final int DEFAULT_DECISION_CACHE_SIZE = 1024;
+
     private final Policy delegate;
     private final Set<Class<? extends Permission>> supportedPermissionTypes = new HashSet<>();
+    private final int decisionCacheSize;
+    private final LongAdder decisionCacheHitCount;
+    private final LongAdder decisionCacheMissCount;
+    private final LongAdder[] decisionTimes;
 
     /**
      * Create a new instance. In this case, the current policy will be automatically obtained and used to delegate method
@@ -69,11 +77,6 @@ public class JaccDelegatingPolicy extends Policy {
      */
     public JaccDelegatingPolicy() {
         this(WildFlySecurityManager.isChecking() ? doPrivileged(GET_POLICY_ACTION) : Policy.getPolicy());
-        this.supportedPermissionTypes.add(WebResourcePermission.class);
-        this.supportedPermissionTypes.add(WebRoleRefPermission.class);
-        this.supportedPermissionTypes.add(WebUserDataPermission.class);
-        this.supportedPermissionTypes.add(EJBMethodPermission.class);
-        this.supportedPermissionTypes.add(EJBRoleRefPermission.class);
     }
 
     /**
@@ -82,25 +85,82 @@ public class JaccDelegatingPolicy extends Policy {
      * @param delegate the policy that will be used to delegate method calls
      */
     public JaccDelegatingPolicy(Policy delegate) {
+        this(delegate, DEFAULT_DECISION_CACHE_SIZE);
+    }
+
+    /**
+     * Create a new instance based on the given {@code delegate}, caching role based decisions.
+     *
+     * <p>For each policy context up to {@code decisionCacheSize} decisions are cached, keyed by the principals and
+     * roles of the caller and the permission being checked. The cached decisions are discarded whenever the policy configuration
+     * is committed again.
+     *
+     * @param delegate the policy that will be used to delegate method calls
+     * @param decisionCacheSize the maximum number of decisions to cache for each policy context, or 0 to disable caching
+     */
+    public JaccDelegatingPolicy(Policy delegate, int decisionCacheSize) {
+        this(delegate, decisionCacheSize, false);
+    }
+
+    /**
+     * Create a new instance based on the given {@code delegate}, caching role based decisions and optionally recording
+     * decision metrics.
+     *
+     * <p>When {@code metricsEnabled} is {@code false} no counters are updated and no time is measured on the decision
+     * path, and the metric getters of this policy always return zero.
+     *
+     * @param delegate the policy that will be used to delegate method calls
+     * @param decisionCacheSize the maximum number of decisions to cache for each policy context, or 0 to disable caching
+     * @param metricsEnabled {@code true} to record the decision cache hit and miss counts and the decision time histogram
+     */
+    public JaccDelegatingPolicy(Policy delegate, int decisionCacheSize, boolean metricsEnabled) {
+        checkMinimumParameter("decisionCacheSize", 0, decisionCacheSize);
         this.delegate = delegate;
+        this.decisionCacheSize = decisionCacheSize;
+        this.supportedPermissionTypes.add(WebResourcePermission.class);
+        this.supportedPermissionTypes.add(WebRoleRefPermission.class);
+        this.supportedPermissionTypes.add(WebUserDataPermission.class);
+        this.supportedPermissionTypes.add(EJBMethodPermission.class);
+        this.supportedPermissionTypes.add(EJBRoleRefPermission.class);
+        if (metricsEnabled) {
+            this.decisionCacheHitCount = new LongAdder();
+            this.decisionCacheMissCount = new LongAdder();
+            this.decisionTimes = new LongAdder[64];
+            for (int i = 0; i < this.decisionTimes.length; i++) {
+                this.decisionTimes[i] = new LongAdder();
+            }
+        } else {
+            this.decisionCacheHitCount = null;
+            this.decisionCacheMissCount = null;
+            this.decisionTimes = null;
+        }
     }
 
     @Override
     public boolean implies(ProtectionDomain domain, Permission permission) {
         try {
             if (isJaccPermission(permission)) {
-                ElytronPolicyConfiguration policyConfiguration = ElytronPolicyConfigurationFactory.getCurrentPolicyConfiguration();
+                long start = this.decisionTimes != null ? System.nanoTime() : 0;
 
-                if (impliesExcludedPermission(permission, policyConfiguration)) {
-                    return false;
-                }
+                try {
+                    ElytronPolicyConfiguration policyConfiguration = ElytronPolicyConfigurationFactory.getCurrentPolicyConfiguration();
+                    ElytronPolicyConfiguration.Snapshot snapshot = policyConfiguration.getSnapshot();
 
-                if (impliesUncheckedPermission(permission, policyConfiguration)) {
-                    return true;
-                }
+                    if (snapshot.getExcludedPermissions().implies(permission)) {
+                        return false;
+                    }
 
-                if (impliesRolePermission(domain, permission, policyConfiguration)) {
-                    return true;
+                    if (snapshot.getUncheckedPermissions().implies(permission)) {
+                        return true;
+                    }
+
+                    if (impliesRolePermission(domain, permission, snapshot)) {
+                        return true;
+                    }
+                } finally {
+                    if (this.decisionTimes != null) {
+                        recordDecisionTime(System.nanoTime() - start);
+                    }
                 }
             }
 
@@ -137,9 +197,46 @@ public class JaccDelegatingPolicy extends Policy {
         return permissions;
     }
 
+    /**
+     * Get the number of role based decisions which were found in the decision cache.
+     *
+     * @return the decision cache hit count, or 0 if metrics are not enabled
+     */
+    public long getDecisionCacheHitCount() {
+        return this.decisionCacheHitCount == null ? 0 : this.decisionCacheHitCount.sum();
+    }
+
+    /**
+     * Get the number of role based decisions which had to be evaluated because they were not in the decision cache.
+     *
+     * @return the decision cache miss count, or 0 if metrics are not enabled
+     */
+    public long getDecisionCacheMissCount() {
+        return this.decisionCacheMissCount == null ? 0 : this.decisionCacheMissCount.sum();
+    }
+
+    /**
+     * Get a histogram of the time taken by JACC policy decisions, including the time to look up the decision cache.
+     * The element at index {@code i} of the returned array is the number of decisions which took at least
+     * 2<sup>i</sup> and less than 2<sup>i+1</sup> nanoseconds, except that the element at index 0 also counts decisions
+     * measured as taking no time.  If metrics are not enabled all the elements are zero.
+     *
+     * @return a copy of the decision time histogram (not {@code null})
+     */
+    public long[] getDecisionTimeHistogram() {
+        long[] histogram = new long[64];
+
+        if (this.decisionTimes != null) {
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = this.decisionTimes[i].sum();
+            }
+        }
+
+        return histogram;
+    }
+
     @Override
     public void refresh() {
-        //TODO: we can probably provide some caching for permissions and checks. In this case, we can use this method to refresh the cache.
         this.delegate.refresh();
     }
 
@@ -167,30 +264,6 @@ public class JaccDelegatingPolicy extends Policy {
         return null;
     }
 
-    private void extractRolesFromCurrentIdentity(Set<String> roles) throws PolicyContextException, ClassNotFoundException {
-        SecurityIdentity identity = getCurrentSecurityIdentity();
-
-        if (identity != null) {
-            Roles identityRoles = identity.getRoles();
-
-            if (identityRoles != null) {
-                for (String roleName : identityRoles) {
-                    roles.add(roleName);
-                }
-            }
-        }
-    }
-
-    private void extractRolesFromProtectionDomain(ProtectionDomain domain, Set<String> roles) {
-        Principal[] domainPrincipals = domain.getPrincipals();
-
-        if (domainPrincipals != null) {
-            for (Principal principal : domainPrincipals) {
-                roles.add(principal.getName());
-            }
-        }
-    }
-
     private PermissionCollection getPermissions(PermissionCollection staticPermissions) {
         Permissions permissions = new Permissions();
 
@@ -198,15 +271,11 @@ public class JaccDelegatingPolicy extends Policy {
 
         try {
             ElytronPolicyConfiguration elytronPolicyConfiguration = ElytronPolicyConfigurationFactory.getCurrentPolicyConfiguration();
-            Permissions uncheckedPermissions = elytronPolicyConfiguration.getUncheckedPermissions();
+            ElytronPolicyConfiguration.Snapshot snapshot = elytronPolicyConfiguration.getSnapshot();
 
-            addPermissions(permissions, uncheckedPermissions);
+            addPermissions(permissions, snapshot.getUncheckedPermissions());
 
-            Map<String, Permissions> rolePermissions = elytronPolicyConfiguration.getRolePermissions();
-
-            synchronized (rolePermissions) {
-                rolePermissions.values().forEach(actualPermission -> addPermissions(permissions, actualPermission));
-            }
+            snapshot.getRolePermissions().values().forEach(actualPermission -> addPermissions(permissions, actualPermission));
 
             SecurityIdentity securityIdentity = getCurrentSecurityIdentity();
 
@@ -220,49 +289,61 @@ public class JaccDelegatingPolicy extends Policy {
         return permissions;
     }
 
-    private boolean impliesRolePermission(ProtectionDomain domain, Permission permission, ElytronPolicyConfiguration policyConfiguration) throws PolicyContextException, ClassNotFoundException {
-        Set<String> roles = new HashSet<>();
-
+    private boolean impliesRolePermission(ProtectionDomain domain, Permission permission, ElytronPolicyConfiguration.Snapshot snapshot) {
         // keep JACC behavior where roles are obtained as Principal instances from a ProtectionDomain
-        extractRolesFromProtectionDomain(domain, roles);
+        Principal[] domainPrincipals = domain.getPrincipals();
 
         // obtain additional roles from the current authenticated identity.
         // in this case the a RoleMapper will be used to map roles from the authenticated identity
-        extractRolesFromCurrentIdentity(roles);
-
-        roles.add(ANY_AUTHENTICATED_USER_ROLE);
+        SecurityIdentity identity = getCurrentSecurityIdentity();
+        Set<String> identityRoles = identity != null ? identity.getRoleNames() : null;
 
-        Map<String, Permissions> rolePermissions = policyConfiguration.getRolePermissions();
+        if (this.decisionCacheSize == 0) {
+            return impliesRolePermission(domainPrincipals, identityRoles, permission, snapshot);
+        }
 
-        synchronized (rolePermissions) {
-            for (String roleName : roles) {
-                Permissions permissions = rolePermissions.get(roleName);
+        DecisionCache decisionCache = snapshot.getDecisionCache(this.decisionCacheSize);
+        DecisionCache.Key key = new DecisionCache.Key(domainPrincipals, identityRoles, permission);
+        Boolean decision = decisionCache.get(key);
 
-                if (permissions != null) {
-                    if (permissions.implies(permission)) {
-                        return true;
-                    }
-                }
+        if (decision != null) {
+            if (this.decisionCacheHitCount != null) {
+                this.decisionCacheHitCount.increment();
             }
+            return decision.booleanValue();
         }
 
-        return false;
+        if (this.decisionCacheMissCount != null) {
+            this.decisionCacheMissCount.increment();
+        }
+        boolean implies = impliesRolePermission(domainPrincipals, identityRoles, permission, snapshot);
+        decisionCache.put(key, implies);
+
+        return implies;
     }
 
-    private boolean impliesUncheckedPermission(Permission permission, ElytronPolicyConfiguration policyConfiguration) {
-        Permissions uncheckedPermissions = policyConfiguration.getUncheckedPermissions();
+    private boolean impliesRolePermission(Principal[] domainPrincipals, Set<String> identityRoles, Permission permission, ElytronPolicyConfiguration.Snapshot snapshot) {
+        if (domainPrincipals != null) {
+            for (Principal principal : domainPrincipals) {
+                if (snapshot.impliesRole(principal.getName(), permission)) {
+                    return true;
+                }
+            }
+        }
 
-        synchronized (uncheckedPermissions) {
-            return uncheckedPermissions.implies(permission);
+        if (identityRoles != null) {
+            for (String roleName : identityRoles) {
+                if (snapshot.impliesRole(roleName, permission)) {
+                    return true;
+                }
+            }
         }
-    }
 
-    private boolean impliesExcludedPermission(Permission permission, ElytronPolicyConfiguration policyConfiguration) {
-        Permissions excludedPermissions = policyConfiguration.getExcludedPermissions();
+        return snapshot.impliesRole(ANY_AUTHENTICATED_USER_ROLE, permission);
+    }
 
-        synchronized (excludedPermissions) {
-            return excludedPermissions.implies(permission);
-        }
+    private void recordDecisionTime(long nanos) {
+        this.decisionTimes[nanos <= 0 ? 0 : 63 - Long.numberOfLeadingZeros(nanos)].increment();
     }
 
     private boolean isJaccPermission(Permission permission) {
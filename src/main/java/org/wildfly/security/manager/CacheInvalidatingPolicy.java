@@ -0,0 +1,76 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.manager;
+
+import java.security.CodeSource;
+import java.security.Permission;
+import java.security.PermissionCollection;
+import java.security.Policy;
+import java.security.ProtectionDomain;
+import java.security.Provider;
+
+/**
+ * A policy which delegates to the JDK's file based policy and invalidates the permission check caches of all threads
+ * whenever it is refreshed.  The security manager installs it in place of the file based policy when the permission
+ * check cache is enabled, and only caches grants while it is installed.
+ */
+final class CacheInvalidatingPolicy extends Policy {
+
+    private final Policy delegate;
+
+    CacheInvalidatingPolicy(final Policy delegate) {
+        this.delegate = delegate;
+    }
+
+    Policy getDelegate() {
+        return delegate;
+    }
+
+    public PermissionCollection getPermissions(final CodeSource codeSource) {
+        return delegate.getPermissions(codeSource);
+    }
+
+    public PermissionCollection getPermissions(final ProtectionDomain domain) {
+        return delegate.getPermissions(domain);
+    }
+
+    public boolean implies(final ProtectionDomain domain, final Permission permission) {
+        return delegate.implies(domain, permission);
+    }
+
+    public void refresh() {
+        try {
+            delegate.refresh();
+        } finally {
+            PermissionCheckCache.invalidateAll();
+        }
+    }
+
+    public Provider getProvider() {
+        return delegate.getProvider();
+    }
+
+    public String getType() {
+        return delegate.getType();
+    }
+
+    public Parameters getParameters() {
+        return delegate.getParameters();
+    }
+}
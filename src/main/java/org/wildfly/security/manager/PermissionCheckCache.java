@@ -0,0 +1,118 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.manager;
+
+import java.security.Permission;
+import java.security.Policy;
+import java.security.ProtectionDomain;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A per-thread cache of the permissions which protection domains were found to grant.  Since each thread has its own
+ * instance, the cache is used without any locking.
+ * <p>
+ * Protection domains do not override {@code equals}, so the weak map of domains is keyed by identity and does not keep
+ * a domain from being collected.  Only permissions of classes loaded by the bootstrap class loader are cached, so that a
+ * cached permission never holds on to the class loader of a deployment.  Denials are never cached, as each one has to
+ * be logged.  When the number of cached permissions reaches the maximum the cache is cleared.
+ * <p>
+ * A grant is only cached while the installed policy is a {@link CacheInvalidatingPolicy}, which wraps the JDK's file
+ * based policy, whose decisions depend on nothing but the protection domain and the permission, and which invalidates
+ * all caches when it is refreshed.  Any other policy, such as a JACC policy which grants permissions to the current
+ * security identity, may decide differently for the same domain on the same thread, so the cache is bypassed for it.
+ * The cache is cleared whenever a different policy is installed, and all caches are invalidated together by
+ * {@link #invalidateAll()}.
+ */
+final class PermissionCheckCache {
+
+    private static final AtomicInteger GENERATION = new AtomicInteger();
+
+    private final int maxEntries;
+    private final WeakHashMap<ProtectionDomain, Set<Permission>> granted = new WeakHashMap<>();
+    private int size;
+    private int generation = GENERATION.get();
+    private Policy policy;
+
+    PermissionCheckCache(final int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Invalidate the caches of all threads.
+     */
+    static void invalidateAll() {
+        GENERATION.incrementAndGet();
+    }
+
+    /**
+     * Determine whether all of the given protection domains imply a permission, using and updating the cache.
+     *
+     * @param policy the currently installed policy, or {@code null} if it is not known
+     * @param permission the permission to check
+     * @param domains the protection domains
+     * @return {@code true} if every domain implies the permission, {@code false} if at least one does not
+     */
+    boolean impliesAll(final Policy policy, final Permission permission, final ProtectionDomain[] domains) {
+        final boolean cacheable = policy instanceof CacheInvalidatingPolicy && permission.getClass().getClassLoader() == null;
+        if (cacheable) {
+            final int generation = GENERATION.get();
+            if (generation != this.generation || policy != this.policy) {
+                clear();
+                this.generation = generation;
+                this.policy = policy;
+            }
+        }
+        for (ProtectionDomain domain : domains) {
+            if (cacheable) {
+                final Set<Permission> permissions = granted.get(domain);
+                if (permissions != null && permissions.contains(permission)) {
+                    continue;
+                }
+            }
+            if (! domain.implies(permission)) {
+                return false;
+            }
+            if (cacheable) {
+                addGranted(domain, permission);
+            }
+        }
+        return true;
+    }
+
+    private void addGranted(final ProtectionDomain domain, final Permission permission) {
+        if (size >= maxEntries) {
+            clear();
+        }
+        Set<Permission> permissions = granted.get(domain);
+        if (permissions == null) {
+            granted.put(domain, permissions = new HashSet<>());
+        }
+        if (permissions.add(permission)) {
+            size++;
+        }
+    }
+
+    private void clear() {
+        granted.clear();
+        size = 0;
+    }
+}
@@ -26,6 +26,7 @@ import java.security.AccessControlContext;
 import java.security.AccessController;
 import java.security.CodeSource;
 import java.security.Permission;
+import java.security.Policy;
 import java.security.Principal;
 import java.security.PrivilegedAction;
 import java.security.PrivilegedActionException;
@@ -83,6 +84,8 @@ public final class WildFlySecurityManager extends SecurityManager {
     private static final Permission ACCESS_DECLARED_MEMBERS_PERMISSION = new RuntimePermission("accessDeclaredMembers");
 
     private static final boolean LOG_ONLY;
+    private static final int PERMISSION_CHECK_CACHE_SIZE;
+    private static final String FILE_POLICY_CLASS_NAME = "sun.security.provider.PolicyFile";
 
     static class Context {
         boolean checking = true;
@@ -90,6 +93,7 @@ public final class WildFlySecurityManager extends SecurityManager {
         ParametricPrivilegedAction<Object, Object> action1;
         ParametricPrivilegedExceptionAction<Object, Object> action2;
         Object parameter;
+        PermissionCheckCache permissionCheckCache;
     }
 
     private static final ThreadLocal<Context> CTX = new ThreadLocal<Context>() {
@@ -124,6 +128,13 @@ public final class WildFlySecurityManager extends SecurityManager {
         hasGetCallerClass = result;
         callerOffset = offset;
         LOG_ONLY = Boolean.parseBoolean(doPrivileged(new ReadPropertyAction("org.wildfly.security.manager.log-only", "false")));
+        int cacheSize;
+        try {
+            cacheSize = Math.max(0, Integer.parseInt(doPrivileged(new ReadPropertyAction("org.wildfly.security.manager.permission-check-cache-size", "0"))));
+        } catch (NumberFormatException ignored) {
+            cacheSize = 0;
+        }
+        PERMISSION_CHECK_CACHE_SIZE = cacheSize;
     }
 
     /**
@@ -266,7 +277,7 @@ public final class WildFlySecurityManager extends SecurityManager {
             ctx.entered = true;
             try {
                 stack = getProtectionDomainStack(context);
-                if (stack != null) {
+                if (stack != null && ! impliedByCache(ctx, perm, stack)) {
                     final ProtectionDomain deniedDomain = findAccessDenial(perm, stack);
                     if (deniedDomain != null) {
                         throw access.accessControlException(perm, perm, deniedDomain.getCodeSource(), deniedDomain.getClassLoader());
@@ -278,6 +289,40 @@ public final class WildFlySecurityManager extends SecurityManager {
         }
     }
 
+    private static boolean impliedByCache(final Context ctx, final Permission permission, final ProtectionDomain[] stack) {
+        if (PERMISSION_CHECK_CACHE_SIZE == 0) {
+            return false;
+        }
+        PermissionCheckCache cache = ctx.permissionCheckCache;
+        if (cache == null) {
+            ctx.permissionCheckCache = cache = new PermissionCheckCache(PERMISSION_CHECK_CACHE_SIZE);
+        }
+        // only reached with ctx.entered set, so the permission checks of getPolicy() and setPolicy() are skipped
+        Policy policy = Policy.getPolicy();
+        if (policy != null && policy.getClass().getName().equals(FILE_POLICY_CLASS_NAME)) {
+            // wrap the file based policy so that refreshing it invalidates the cached grants
+            policy = new CacheInvalidatingPolicy(policy);
+            Policy.setPolicy(policy);
+        }
+        return cache.impliesAll(policy, permission, stack);
+    }
+
+    /**
+     * Discard the results of earlier permission checks cached by all threads.  The permission check cache is only
+     * enabled if the {@code org.wildfly.security.manager.permission-check-cache-size} system property is set to the
+     * maximum number of permissions each thread may cache.  Installing a different policy or refreshing the installed
+     * policy discards the cached results automatically, but the cache should be cleared if the grants of the policy
+     * are changed in any other way.
+     * <p>
+     * Grants are only cached while the JDK's file based policy is installed.  When the cache is enabled, the security
+     * manager replaces that policy with a policy delegating to it, whose {@link java.security.Policy#refresh()}
+     * invalidates the cached results.  Any other policy, such as a JACC policy, may base its decisions on the calling
+     * thread's context, so the cache is bypassed for it.
+     */
+    public static void clearPermissionCheckCache() {
+        PermissionCheckCache.invalidateAll();
+    }
+
     private static ProtectionDomain[] getProtectionDomainStack(final AccessControlContext context) {
         final ProtectionDomain[] stack;
         try {
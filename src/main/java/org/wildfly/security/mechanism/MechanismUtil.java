@@ -61,10 +61,33 @@ public final class MechanismUtil {
      * @return the password
      */
     public static <S extends Password> S getPasswordCredential(String userName, CallbackHandler callbackHandler, Class<S> passwordType, String passwordAlgorithm, AlgorithmParameterSpec defaultParameters) throws AuthenticationMechanismException {
+        return getPasswordCredential(userName, callbackHandler, passwordType, passwordAlgorithm, (passwordFactory, password) -> {
+            if (defaultParameters != null) {
+                return passwordType.cast(passwordFactory.generatePassword(new EncryptablePasswordSpec(password, defaultParameters)));
+            } else {
+                return passwordType.cast(passwordFactory.generatePassword(new ClearPasswordSpec(password)));
+            }
+        });
+    }
+
+    /**
+     * Get a password from a client or server callback, falling back to clear password if needed.  If only a clear
+     * password is available, the given generator is used to produce the password of the required type from it.
+     *
+     * @param userName the user name to report for error reporting purposes (must not be {@code null})
+     * @param callbackHandler the callback handler (must not be {@code null})
+     * @param passwordType the password class (must not be {@code null})
+     * @param passwordAlgorithm the password algorithm name (must not be {@code null})
+     * @param generator the generator of a password from a clear password (must not be {@code null})
+     * @param <S> the password type
+     * @return the password
+     */
+    public static <S extends Password> S getPasswordCredential(String userName, CallbackHandler callbackHandler, Class<S> passwordType, String passwordAlgorithm, PasswordGenerator<S> generator) throws AuthenticationMechanismException {
         Assert.checkNotNullParam("userName", userName);
         Assert.checkNotNullParam("callbackHandler", callbackHandler);
         Assert.checkNotNullParam("passwordType", passwordType);
         Assert.checkNotNullParam("passwordAlgorithm", passwordAlgorithm);
+        Assert.checkNotNullParam("generator", generator);
         try {
             final PasswordFactory passwordFactory = PasswordFactory.getInstance(passwordAlgorithm);
 
@@ -97,11 +120,7 @@ public final class MechanismUtil {
                     if (twoWayPassword != null) {
                         final PasswordFactory clearFactory = PasswordFactory.getInstance(twoWayPassword.getAlgorithm());
                         final ClearPasswordSpec spec = clearFactory.getKeySpec(clearFactory.translate(twoWayPassword), ClearPasswordSpec.class);
-                        if (defaultParameters != null) {
-                            return passwordType.cast(passwordFactory.generatePassword(new EncryptablePasswordSpec(spec.getEncodedPassword(), defaultParameters)));
-                        } else {
-                            return passwordType.cast(passwordFactory.generatePassword(spec));
-                        }
+                        return generator.generatePassword(passwordFactory, spec.getEncodedPassword());
                     }
                 }
             } catch (UnsupportedCallbackException e) {
@@ -117,11 +136,7 @@ public final class MechanismUtil {
                 MechanismUtil.handleCallbacks(passwordAlgorithm, callbackHandler, passwordCallback);
                 final char[] password = passwordCallback.getPassword();
                 if (password != null) {
-                    if (defaultParameters != null) {
-                        return passwordType.cast(passwordFactory.generatePassword(new EncryptablePasswordSpec(password, defaultParameters)));
-                    } else {
-                        return passwordType.cast(passwordFactory.generatePassword(new ClearPasswordSpec(password)));
-                    }
+                    return generator.generatePassword(passwordFactory, password);
                 }
             } catch (UnsupportedCallbackException e) {
                 if (e.getCallback() != passwordCallback) {
@@ -136,6 +151,25 @@ public final class MechanismUtil {
         throw log.mechUnableToRetrievePassword(passwordAlgorithm, userName);
     }
 
+    /**
+     * A generator of a password of a specific type from a clear password.
+     *
+     * @param <S> the password type
+     */
+    @FunctionalInterface
+    public interface PasswordGenerator<S extends Password> {
+
+        /**
+         * Generate a password from the given clear password.
+         *
+         * @param passwordFactory the password factory for the required password algorithm
+         * @param password the clear password
+         * @return the generated password
+         * @throws InvalidKeySpecException if the password could not be generated
+         */
+        S generatePassword(PasswordFactory passwordFactory, char[] password) throws InvalidKeySpecException;
+    }
+
     /**
      * A varargs wrapper method for callback handler invocation.
      *
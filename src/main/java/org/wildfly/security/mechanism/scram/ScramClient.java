@@ -27,7 +27,6 @@ import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.NoSuchElementException;
 import java.util.Random;
-import java.util.concurrent.ThreadLocalRandom;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
@@ -43,7 +42,9 @@ import org.wildfly.security.password.spec.IteratedSaltedPasswordAlgorithmSpec;
 import org.wildfly.security.sasl.util.StringPrep;
 import org.wildfly.security.util.ByteIterator;
 import org.wildfly.security.util.ByteStringBuilder;
+import org.wildfly.security.util.CryptoPrimitiveCache;
 import org.wildfly.security.util.DecodeException;
+import org.wildfly.security.util.SecureRandomSource;
 
 /**
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
@@ -70,7 +71,7 @@ public final class ScramClient {
     }
 
     Random getRandom() {
-        return secureRandom != null ? secureRandom : ThreadLocalRandom.current();
+        return secureRandom != null ? secureRandom : SecureRandomSource.getSecureRandom();
     }
 
     public ScramMechanism getMechanism() {
@@ -239,9 +240,11 @@ public final class ScramClient {
         final byte[] saltedPassword = password.getDigest();
         if (trace) log.tracef("[C] Client salted password: %s", ByteIterator.ofBytes(saltedPassword).hexEncode().drainToString());
 
+        Mac mac = null;
+        MessageDigest messageDigest = null;
         try {
-            final Mac mac = Mac.getInstance(getMechanism().getHmacName());
-            final MessageDigest messageDigest = MessageDigest.getInstance(getMechanism().getMessageDigestName());
+            mac = CryptoPrimitiveCache.getMac(getMechanism().getHmacName());
+            messageDigest = CryptoPrimitiveCache.getMessageDigest(getMechanism().getMessageDigestName());
 
             mac.init(new SecretKeySpec(saltedPassword, mac.getAlgorithm()));
             final byte[] clientKey = mac.doFinal(ScramUtil.CLIENT_KEY_BYTES);
@@ -270,6 +273,9 @@ public final class ScramClient {
             return new ScramFinalClientMessage(initialResponse, initialChallenge, password, clientProof, encoded.toArray(), proofStart);
         } catch (NoSuchAlgorithmException | InvalidKeyException e) {
             throw log.mechMacAlgorithmNotSupported(mechanism.toString(), e);
+        } finally {
+            CryptoPrimitiveCache.release(messageDigest);
+            CryptoPrimitiveCache.release(mac);
         }
     }
 
@@ -300,8 +306,9 @@ public final class ScramClient {
     public void verifyFinalChallenge(final ScramFinalClientMessage finalResponse, final ScramFinalServerMessage finalChallenge) throws AuthenticationMechanismException {
         boolean trace = log.isTraceEnabled();
 
+        Mac mac = null;
         try {
-            final Mac mac = Mac.getInstance(getMechanism().getHmacName());
+            mac = CryptoPrimitiveCache.getMac(getMechanism().getHmacName());
 
             // verify server signature
             ScramDigestPassword password = finalResponse.getPassword();
@@ -325,6 +332,8 @@ public final class ScramClient {
             }
         } catch (IllegalArgumentException | InvalidKeyException | NoSuchAlgorithmException e) {
             throw log.mechMacAlgorithmNotSupported(mechanism.toString(), e);
+        } finally {
+            CryptoPrimitiveCache.release(mac);
         }
     }
 }
@@ -0,0 +1,232 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.mechanism.scram;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.wildfly.common.Assert;
+import org.wildfly.security.password.PasswordFactory;
+import org.wildfly.security.password.interfaces.ScramDigestPassword;
+import org.wildfly.security.password.spec.EncryptablePasswordSpec;
+import org.wildfly.security.password.spec.IteratedSaltedPasswordAlgorithmSpec;
+import org.wildfly.security.util.CryptoPrimitiveCache;
+
+/**
+ * A server-side cache of SCRAM salted passwords derived from clear passwords.
+ * <p>
+ * When the identity store only holds a clear or two-way password, the SCRAM server has to derive the salted password
+ * from it, running the full iterated digest on every authentication.  With this cache the salt, iteration count and
+ * salted password produced for an identity are kept and reused by later authentications of the same identity with the
+ * same mechanism and iteration count, which then only cost the few HMAC operations of the exchange itself.
+ * <p>
+ * Each entry also holds a digest of the clear password it was derived from, so an entry is only used while the stored
+ * password is unchanged; after a credential update the next authentication derives and caches a new salted password.
+ * Entries can also be removed explicitly with {@link #invalidate(String)}.  The cache is bounded, evicting the least
+ * recently used entry, and entries expire after a maximum age.
+ * <p>
+ * An instance is meant to be shared between servers, for example by passing it to the SCRAM SASL server factory using
+ * the {@link org.wildfly.security.sasl.WildFlySasl#SCRAM_DERIVED_KEY_CACHE} property.
+ */
+public final class ScramDerivedKeyCache {
+
+    private final int maxEntries;
+    private final long maxAgeNanos;
+    private final LinkedHashMap<Key, Entry> cache;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Construct a new instance.
+     *
+     * @param maxEntries the maximum number of derived passwords to keep (must be at least 1)
+     * @param maxAge the time in milliseconds after which a derived password is discarded, or {@code -1} to keep it until
+     *  it is evicted
+     */
+    public ScramDerivedKeyCache(final int maxEntries, final long maxAge) {
+        Assert.checkMinimumParameter("maxEntries", 1, maxEntries);
+        Assert.checkMinimumParameter("maxAge", -1L, maxAge);
+        this.maxEntries = maxEntries;
+        this.maxAgeNanos = maxAge == -1 ? -1 : TimeUnit.MILLISECONDS.toNanos(maxAge);
+        this.cache = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(final Map.Entry<Key, Entry> eldest) {
+                return size() > ScramDerivedKeyCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Get the salted password for the given identity and clear password, deriving and caching it if there is no current
+     * entry.
+     *
+     * @param name the name of the identity (must not be {@code null})
+     * @param passwordFactory the password factory for the SCRAM password algorithm (must not be {@code null})
+     * @param iterationCount the iteration count to use for a newly derived password
+     * @param password the clear password (must not be {@code null})
+     * @return the salted password
+     * @throws InvalidKeySpecException if the password could not be derived
+     */
+    ScramDigestPassword getPassword(final String name, final PasswordFactory passwordFactory, final int iterationCount, final char[] password) throws InvalidKeySpecException {
+        final Key key = new Key(name, passwordFactory.getAlgorithm(), iterationCount);
+        final long now = System.nanoTime();
+        final Entry entry;
+        synchronized (cache) {
+            entry = cache.get(key);
+        }
+        if (entry != null && (maxAgeNanos == -1 || now - entry.created < maxAgeNanos)
+                && MessageDigest.isEqual(entry.fingerprint, fingerprint(entry.password.getSalt(), password))) {
+            hitCount.incrementAndGet();
+            return entry.password;
+        }
+        missCount.incrementAndGet();
+        final ScramDigestPassword derived = (ScramDigestPassword) passwordFactory.generatePassword(new EncryptablePasswordSpec(password, new IteratedSaltedPasswordAlgorithmSpec(iterationCount, null)));
+        final Entry newEntry = new Entry(derived, fingerprint(derived.getSalt(), password), now);
+        synchronized (cache) {
+            cache.put(key, newEntry);
+        }
+        return derived;
+    }
+
+    /**
+     * Remove all derived passwords of the given identity, for example after its credentials have been updated.
+     *
+     * @param name the name of the identity (must not be {@code null})
+     */
+    public void invalidate(final String name) {
+        Assert.checkNotNullParam("name", name);
+        synchronized (cache) {
+            final Iterator<Key> iterator = cache.keySet().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().name.equals(name)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove all derived passwords.
+     */
+    public void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    /**
+     * Get the number of derived passwords currently held.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /**
+     * Get the number of authentications which reused a derived password.
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Get the number of authentications which had to derive the salted password.
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private static byte[] fingerprint(final byte[] salt, final char[] password) {
+        final MessageDigest digest;
+        try {
+            digest = CryptoPrimitiveCache.getMessageDigest("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        try {
+            digest.update(salt);
+            final ByteBuffer bytes = UTF_8.encode(CharBuffer.wrap(password));
+            digest.update(bytes.duplicate());
+            if (bytes.hasArray()) {
+                Arrays.fill(bytes.array(), (byte) 0);
+            }
+            return digest.digest();
+        } finally {
+            CryptoPrimitiveCache.release(digest);
+        }
+    }
+
+    static final class Key {
+        final String name;
+        private final String algorithm;
+        private final int iterationCount;
+        private final int hashCode;
+
+        Key(final String name, final String algorithm, final int iterationCount) {
+            this.name = name;
+            this.algorithm = algorithm;
+            this.iterationCount = iterationCount;
+            this.hashCode = Objects.hash(name, algorithm, Integer.valueOf(iterationCount));
+        }
+
+        public int hashCode() {
+            return hashCode;
+        }
+
+        public boolean equals(final Object obj) {
+            return obj instanceof Key && equals((Key) obj);
+        }
+
+        private boolean equals(final Key other) {
+            return this == other || other != null && name.equals(other.name) && algorithm.equals(other.algorithm) && iterationCount == other.iterationCount;
+        }
+    }
+
+    static final class Entry {
+        final ScramDigestPassword password;
+        final byte[] fingerprint;
+        final long created;
+
+        Entry(final ScramDigestPassword password, final byte[] fingerprint, final long created) {
+            this.password = password;
+            this.fingerprint = fingerprint;
+            this.created = created;
+        }
+    }
+}
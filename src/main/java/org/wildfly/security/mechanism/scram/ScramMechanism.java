@@ -93,6 +93,22 @@ public final class ScramMechanism {
     }
 
     public ScramServer createServer(final CallbackHandler callbackHandler, final SecureRandom random, final ChannelBindingCallback bindingCallback, final int minimumIterationCount, final int maximumIterationCount) throws AuthenticationMechanismException {
+        return createServer(callbackHandler, random, bindingCallback, minimumIterationCount, maximumIterationCount, null);
+    }
+
+    /**
+     * Create a SCRAM server for this mechanism.
+     *
+     * @param callbackHandler the callback handler (may not be {@code null})
+     * @param random an optional secure RNG to use (may be {@code null})
+     * @param bindingCallback the optional channel binding callback result (may be {@code null})
+     * @param minimumIterationCount the minimum iteration count to allow
+     * @param maximumIterationCount the maximum iteration count to allow
+     * @param derivedKeyCache the cache of salted passwords derived from clear passwords (may be {@code null})
+     * @return the SCRAM server, or {@code null} if the server cannot be created
+     * @throws AuthenticationMechanismException if there is a problem creating the server
+     */
+    public ScramServer createServer(final CallbackHandler callbackHandler, final SecureRandom random, final ChannelBindingCallback bindingCallback, final int minimumIterationCount, final int maximumIterationCount, final ScramDerivedKeyCache derivedKeyCache) throws AuthenticationMechanismException {
         final byte[] bindingData;
         final String bindingType;
         if (bindingCallback != null) {
@@ -103,7 +119,7 @@ public final class ScramMechanism {
             bindingData = null;
             bindingType = null;
         }
-        return new ScramServer(this, callbackHandler, random, bindingData, bindingType, minimumIterationCount, maximumIterationCount);
+        return new ScramServer(this, callbackHandler, random, bindingData, bindingType, minimumIterationCount, maximumIterationCount, derivedKeyCache);
     }
 
     public int getHashSize() {
@@ -28,10 +28,8 @@ import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
-import java.util.Arrays;
 import java.util.NoSuchElementException;
 import java.util.Random;
-import java.util.concurrent.ThreadLocalRandom;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
@@ -47,9 +45,12 @@ import org.wildfly.security.mechanism.AuthenticationMechanismException;
 import org.wildfly.security.mechanism.MechanismUtil;
 import org.wildfly.security.password.interfaces.ScramDigestPassword;
 import org.wildfly.security.password.spec.IteratedSaltedPasswordAlgorithmSpec;
+import org.wildfly.security.password.util.PasswordCostCalibrator;
 import org.wildfly.security.sasl.util.StringPrep;
 import org.wildfly.security.util.ByteIterator;
 import org.wildfly.security.util.ByteStringBuilder;
+import org.wildfly.security.util.CryptoPrimitiveCache;
+import org.wildfly.security.util.SecureRandomSource;
 
 /**
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
@@ -62,8 +63,9 @@ public final class ScramServer {
     private final String bindingType;
     private final int minimumIterationCount;
     private final int maximumIterationCount;
+    private final ScramDerivedKeyCache derivedKeyCache;
 
-    ScramServer(final ScramMechanism mechanism, final CallbackHandler callbackHandler, final SecureRandom random, final byte[] bindingData, final String bindingType, final int minimumIterationCount, final int maximumIterationCount) {
+    ScramServer(final ScramMechanism mechanism, final CallbackHandler callbackHandler, final SecureRandom random, final byte[] bindingData, final String bindingType, final int minimumIterationCount, final int maximumIterationCount, final ScramDerivedKeyCache derivedKeyCache) {
         this.mechanism = mechanism;
         this.callbackHandler = callbackHandler;
         this.random = random;
@@ -71,6 +73,7 @@ public final class ScramServer {
         this.bindingType = bindingType;
         this.minimumIterationCount = minimumIterationCount;
         this.maximumIterationCount = maximumIterationCount;
+        this.derivedKeyCache = derivedKeyCache;
     }
 
     /**
@@ -193,12 +196,20 @@ public final class ScramServer {
             throw log.mechCallbackHandlerDoesNotSupportUserName(mechanism.toString(), e);
         }
 
-        final ScramDigestPassword password = MechanismUtil.getPasswordCredential(clientMessage.getAuthenticationName(), callbackHandler, ScramDigestPassword.class, mechanism.getPasswordAlgorithm(), new IteratedSaltedPasswordAlgorithmSpec(
-            max(minimumIterationCount, min(maximumIterationCount, ScramDigestPassword.DEFAULT_ITERATION_COUNT)),
-            null
-        ));
+        final String authenticationName = clientMessage.getAuthenticationName();
+        final int defaultIterationCount = max(minimumIterationCount, min(maximumIterationCount, PasswordCostCalibrator.getDefaultIterationCount(mechanism.getPasswordAlgorithm(), ScramDigestPassword.DEFAULT_ITERATION_COUNT)));
+        final ScramDigestPassword password;
+        if (derivedKeyCache == null) {
+            password = MechanismUtil.getPasswordCredential(authenticationName, callbackHandler, ScramDigestPassword.class, mechanism.getPasswordAlgorithm(), new IteratedSaltedPasswordAlgorithmSpec(
+                defaultIterationCount,
+                null
+            ));
+        } else {
+            password = MechanismUtil.getPasswordCredential(authenticationName, callbackHandler, ScramDigestPassword.class, mechanism.getPasswordAlgorithm(),
+                (passwordFactory, clearPassword) -> derivedKeyCache.getPassword(authenticationName, passwordFactory, defaultIterationCount, clearPassword)
+            );
+        }
 
-        final byte[] saltedPasswordBytes = password.getDigest();
         final int iterationCount = password.getIterationCount();
         if (iterationCount < minimumIterationCount) {
             throw log.mechIterationCountIsTooLow(mechanism.toString(), iterationCount, minimumIterationCount);
@@ -209,7 +220,6 @@ public final class ScramServer {
         final byte[] salt = password.getSalt();
 
         if(trace) log.tracef("[S] Salt: %s%n", ByteIterator.ofBytes(salt).hexEncode().drainToString());
-        if(trace) log.tracef("[S] Salted password: %s%n", ByteIterator.ofBytes(saltedPasswordBytes).hexEncode().drainToString());
 
         ByteStringBuilder b = new ByteStringBuilder();
 
@@ -355,28 +365,41 @@ public final class ScramServer {
 
         ByteStringBuilder b = new ByteStringBuilder();
 
+        Mac mac = null;
+        MessageDigest messageDigest = null;
         try {
 
-            final Mac mac = Mac.getInstance(getMechanism().getHmacName());
-            final MessageDigest messageDigest = MessageDigest.getInstance(getMechanism().getMessageDigestName());
+            mac = CryptoPrimitiveCache.getMac(getMechanism().getHmacName());
+            messageDigest = CryptoPrimitiveCache.getMessageDigest(getMechanism().getMessageDigestName());
 
             // == verify proof ==
 
-            // client key
-            byte[] clientKey;
-            mac.reset();
-            byte[] saltedPassword = initialResult.getScramDigestPassword().getDigest();
-            mac.init(new SecretKeySpec(saltedPassword, mac.getAlgorithm()));
-            mac.update(ScramUtil.CLIENT_KEY_BYTES);
-            clientKey = mac.doFinal();
-            if(trace) log.tracef("[S] Client key: %s%n", ByteIterator.ofBytes(clientKey).hexEncode().drainToString());
-
-            // stored key
-            byte[] storedKey;
-            messageDigest.reset();
-            messageDigest.update(clientKey);
-            storedKey = messageDigest.digest();
+            final ScramDigestPassword password = initialResult.getScramDigestPassword();
+            byte[] storedKey = password.getStoredKey();
+            byte[] serverKey = password.getServerKey();
+            if (storedKey == null || serverKey == null) {
+                byte[] saltedPassword = password.getDigest();
+
+                // client key
+                mac.reset();
+                mac.init(new SecretKeySpec(saltedPassword, mac.getAlgorithm()));
+                mac.update(ScramUtil.CLIENT_KEY_BYTES);
+                byte[] clientKey = mac.doFinal();
+                if(trace) log.tracef("[S] Client key: %s%n", ByteIterator.ofBytes(clientKey).hexEncode().drainToString());
+
+                // stored key
+                messageDigest.reset();
+                messageDigest.update(clientKey);
+                storedKey = messageDigest.digest();
+
+                // server key
+                mac.reset();
+                mac.init(new SecretKeySpec(saltedPassword, mac.getAlgorithm()));
+                mac.update(ScramUtil.SERVER_KEY_BYTES);
+                serverKey = mac.doFinal();
+            }
             if(trace) log.tracef("[S] Stored key: %s%n", ByteIterator.ofBytes(storedKey).hexEncode().drainToString());
+            if(trace) log.tracef("[S] Server key: %s%n", ByteIterator.ofBytes(serverKey).hexEncode().drainToString());
 
             // client signature
             mac.reset();
@@ -397,14 +420,6 @@ public final class ScramServer {
             byte[] clientSignature = mac.doFinal();
             if(trace) log.tracef("[S] Client signature: %s%n", ByteIterator.ofBytes(clientSignature).hexEncode().drainToString());
 
-            // server key
-            byte[] serverKey;
-            mac.reset();
-            mac.init(new SecretKeySpec(saltedPassword, mac.getAlgorithm()));
-            mac.update(ScramUtil.SERVER_KEY_BYTES);
-            serverKey = mac.doFinal();
-            if(trace) log.tracef("[S] Server key: %s%n", ByteIterator.ofBytes(serverKey).hexEncode().drainToString());
-
             // server signature
             byte[] serverSignature;
             mac.reset();
@@ -424,7 +439,8 @@ public final class ScramServer {
             byte[] recoveredClientKey = clientSignature.clone();
             ScramUtil.xor(recoveredClientKey, recoveredClientProof);
             if(trace) log.tracef("[S] Recovered client key: %s%n", ByteIterator.ofBytes(recoveredClientKey).hexEncode().drainToString());
-            if (! Arrays.equals(recoveredClientKey, clientKey)) {
+            messageDigest.reset();
+            if (! MessageDigest.isEqual(messageDigest.digest(recoveredClientKey), storedKey)) {
                 throw log.mechAuthenticationRejectedInvalidProof(mechanism.toString());
             }
 
@@ -455,6 +471,9 @@ public final class ScramServer {
             return new ScramFinalServerMessage(serverSignature, b.toArray());
         } catch (NoSuchAlgorithmException | InvalidKeyException e) {
             throw log.mechMacAlgorithmNotSupported(mechanism.toString(), e);
+        } finally {
+            CryptoPrimitiveCache.release(messageDigest);
+            CryptoPrimitiveCache.release(mac);
         }
     }
 
@@ -467,7 +486,7 @@ public final class ScramServer {
     }
 
     Random getRandom() {
-        return random != null ? random : ThreadLocalRandom.current();
+        return random != null ? random : SecureRandomSource.getSecureRandom();
     }
 
     public byte[] getBindingData() {
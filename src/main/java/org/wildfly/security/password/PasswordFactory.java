@@ -29,6 +29,8 @@ import java.security.Security;
 import java.security.spec.AlgorithmParameterSpec;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.KeySpec;
+import java.util.Arrays;
+import java.util.concurrent.CompletionStage;
 import java.util.function.Supplier;
 
 import org.wildfly.common.Assert;
@@ -209,6 +211,37 @@ public final class PasswordFactory {
         return spi.engineVerify(algorithm, password, guess);
     }
 
+    /**
+     * Verify a password guess on the {@linkplain PasswordVerificationExecutor#getDefault() default verification executor}
+     * rather than on the calling thread.
+     *
+     * @param password the password object
+     * @param guess the guessed password characters, which are copied so the caller may clear them at once
+     * @return the stage which is completed with {@code true} if the guess matches the password or {@code false} otherwise,
+     *  or exceptionally if the password is not supported by this factory or the verification was rejected
+     * @see PasswordVerificationExecutor#submit(java.util.concurrent.Callable)
+     */
+    public CompletionStage<Boolean> verifyAsync(Password password, char[] guess) {
+        return verifyAsync(password, guess, PasswordVerificationExecutor.getDefault());
+    }
+
+    /**
+     * Verify a password guess on the given verification executor rather than on the calling thread.
+     *
+     * @param password the password object
+     * @param guess the guessed password characters, which are copied so the caller may clear them at once
+     * @param executor the executor to run the verification on (must not be {@code null})
+     * @return the stage which is completed with {@code true} if the guess matches the password or {@code false} otherwise,
+     *  or exceptionally if the password is not supported by this factory or the verification was rejected
+     * @see PasswordVerificationExecutor#submit(java.util.concurrent.Callable)
+     */
+    public CompletionStage<Boolean> verifyAsync(Password password, char[] guess, PasswordVerificationExecutor executor) {
+        Assert.checkNotNullParam("guess", guess);
+        Assert.checkNotNullParam("executor", executor);
+        final char[] copy = guess.clone();
+        return executor.submit(() -> Boolean.valueOf(verify(password, copy))).whenComplete((result, failure) -> Arrays.fill(copy, '\0'));
+    }
+
     /**
      * Transform a password with new parameters.  Not every transformation is allowed, but iterative password types
      * generally should allow increasing the number of iterations.
@@ -0,0 +1,180 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.password;
+
+import static org.wildfly.security._private.ElytronMessages.log;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.wildfly.common.Assert;
+
+/**
+ * A bounded pool of threads for running expensive password verifications, such as bcrypt or iterated crypt hashes, away
+ * from the calling thread.  This allows callers running on I/O or event loop threads to verify passwords without
+ * blocking other requests.
+ * <p>
+ * The number of verifications waiting for a thread is limited by the maximum queue depth.  Once the queue is full,
+ * further tasks are not queued and their stage is instead completed exceptionally with a
+ * {@link RejectedExecutionException}, so a burst of authentications is turned away rather than blocking the caller
+ * or growing without bound.
+ * <p>
+ * Dependent stages created with the non-{@code async} methods of the returned {@link CompletionStage} run on the
+ * verification thread; callers which need to continue on their own thread should use the {@code async} variants with
+ * their own executor.
+ */
+public final class PasswordVerificationExecutor {
+
+    private static final int DEFAULT_QUEUE_DEPTH_PER_THREAD = 64;
+    private static final AtomicInteger poolCount = new AtomicInteger();
+
+    private static volatile PasswordVerificationExecutor defaultExecutor;
+
+    private final int maxQueueDepth;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * Construct a new instance.
+     *
+     * @param threads the maximum number of verifications to run at once (must be at least 1)
+     * @param maxQueueDepth the maximum number of verifications waiting for a thread (must be at least 1)
+     */
+    public PasswordVerificationExecutor(final int threads, final int maxQueueDepth) {
+        Assert.checkMinimumParameter("threads", 1, threads);
+        Assert.checkMinimumParameter("maxQueueDepth", 1, maxQueueDepth);
+        this.maxQueueDepth = maxQueueDepth;
+        final String prefix = "password-verification-" + poolCount.incrementAndGet() + "-";
+        final AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(maxQueueDepth), r -> {
+            final Thread thread = new Thread(r, prefix + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Get the shared default instance, creating it if needed.  The default instance has one thread for each available
+     * processor.
+     *
+     * @return the default instance
+     */
+    public static PasswordVerificationExecutor getDefault() {
+        PasswordVerificationExecutor executor = defaultExecutor;
+        if (executor == null) {
+            synchronized (PasswordVerificationExecutor.class) {
+                executor = defaultExecutor;
+                if (executor == null) {
+                    final int threads = Runtime.getRuntime().availableProcessors();
+                    defaultExecutor = executor = new PasswordVerificationExecutor(threads, threads * DEFAULT_QUEUE_DEPTH_PER_THREAD);
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Run a verification task on this executor.
+     *
+     * @param task the task (must not be {@code null})
+     * @param <T> the result type of the task
+     * @return the stage which is completed with the result of the task, or exceptionally with the exception thrown by the
+     *  task, or with a {@link RejectedExecutionException} if the queue is full or the executor has been shut down
+     */
+    public <T> CompletionStage<T> submit(final Callable<T> task) {
+        Assert.checkNotNullParam("task", task);
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                final T result;
+                try {
+                    result = task.call();
+                } catch (Throwable t) {
+                    completedCount.incrementAndGet();
+                    future.completeExceptionally(t);
+                    return;
+                }
+                completedCount.incrementAndGet();
+                future.complete(result);
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            future.completeExceptionally(executor.isShutdown() ? e : log.passwordVerificationQueueFull(maxQueueDepth));
+        }
+        return future;
+    }
+
+    /**
+     * Stop accepting new tasks.  Tasks which are already queued are still run.  The {@linkplain #getDefault() default
+     * instance} is shared by the whole process and cannot be shut down; its idle threads exit by themselves.
+     *
+     * @throws IllegalStateException if this is the default instance
+     */
+    public void shutdown() {
+        if (this == defaultExecutor) {
+            throw log.cannotShutdownDefaultPasswordVerificationExecutor();
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * Get the number of verifications waiting for a thread.
+     *
+     * @return the queue depth
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * Get the number of verifications currently running.
+     *
+     * @return the number of active verifications
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Get the number of verifications which have been run.
+     *
+     * @return the number of completed verifications
+     */
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    /**
+     * Get the number of verifications which were rejected because the queue was full or the executor was shut down.
+     *
+     * @return the number of rejected verifications
+     */
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+}
@@ -22,13 +22,13 @@ import static org.wildfly.security._private.ElytronMessages.log;
 
 import java.io.NotSerializableException;
 import java.io.ObjectInputStream;
-import java.io.Serializable;
 import java.security.InvalidKeyException;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.KeySpec;
 import java.util.Arrays;
 
 import org.wildfly.common.Assert;
+import org.wildfly.security.password.util.PasswordCostCalibrator;
 import org.wildfly.security.password.util.PasswordUtil;
 import org.wildfly.security.password.util.ModularCrypt;
 import org.wildfly.security.password.interfaces.BCryptPassword;
@@ -73,7 +73,7 @@ class BCryptPasswordImpl extends AbstractPasswordImpl implements BCryptPassword
 
     BCryptPasswordImpl(final ClearPasswordSpec clearPasswordSpec) {
         this.salt = PasswordUtil.generateRandomSalt(BCRYPT_SALT_SIZE);
-        this.iterationCount = DEFAULT_ITERATION_COUNT;
+        this.iterationCount = PasswordCostCalibrator.getDefaultIterationCount(ALGORITHM_BCRYPT, DEFAULT_ITERATION_COUNT);
         this.hash = bcrypt(this.iterationCount, this.salt, getNormalizedPasswordBytes(clearPasswordSpec.getEncodedPassword()));
     }
 
@@ -83,7 +83,7 @@ class BCryptPasswordImpl extends AbstractPasswordImpl implements BCryptPassword
 
     private BCryptPasswordImpl(final char[] password, final IteratedSaltedPasswordAlgorithmSpec spec) throws InvalidKeySpecException {
         this.salt = spec.getSalt() == null ? PasswordUtil.generateRandomSalt(BCRYPT_SALT_SIZE) : spec.getSalt().clone();
-        this.iterationCount = spec.getIterationCount() == 0 ? DEFAULT_ITERATION_COUNT : spec.getIterationCount();
+        this.iterationCount = spec.getIterationCount() == 0 ? PasswordCostCalibrator.getDefaultIterationCount(ALGORITHM_BCRYPT, DEFAULT_ITERATION_COUNT) : spec.getIterationCount();
         this.hash = bcrypt(this.iterationCount, this.salt, getNormalizedPasswordBytes(password));
     }
 
@@ -276,11 +276,6 @@ class BCryptPasswordImpl extends AbstractPasswordImpl implements BCryptPassword
             0x4f727068, 0x65616e42, 0x65686f6c, 0x64657253, 0x63727944, 0x6f756274
     };
 
-    // 128-bit salt that has all bits set to zero (used in the enhanced key schedule).
-    private static final byte[] zeroedSalt = {
-            0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00
-    };
-
     /**
      * <p>
      * Hashes the password with the given salt and cost using the bcrypt algorithm. The algorithm is defined as follows:
@@ -329,13 +324,24 @@ class BCryptPasswordImpl extends AbstractPasswordImpl implements BCryptPassword
             byte[] paddedKey = new byte[key.length + 1];
             System.arraycopy(password, 0, paddedKey, 0, key.length);
             paddedKey[key.length] = 0;
+            Arrays.fill(key, (byte) 0);
             key = paddedKey;
         }
 
-        BCryptState state = eksBlowfishSetup(cost, salt, key);
+        // init the state; these arrays are the only ones used by the key schedule, which allocates nothing itself
+        final int[] P = Parray.clone();
+        final int[] S = Sboxes.clone();
+        final int[] keyWords = cyclicWords(key, P.length);
+        final int[] saltWords = cyclicWords(salt, P.length);
+        final int[] block = new int[2];
+        Arrays.fill(key, (byte) 0);
+
+        eksBlowfishSetup(cost, P, S, saltWords, keyWords, block);
         int[] ctext = orpheanBeholderScryDoubt.clone();
         for (int i = 0; i < 64; i++) {
-            encrypt(state, ctext);
+            for (int j = 0; j < ctext.length; j += 2) {
+                encrypt(P, S, ctext, j);
+            }
         }
 
         // convert the ctext array to a byte array
@@ -349,9 +355,13 @@ class BCryptPasswordImpl extends AbstractPasswordImpl implements BCryptPassword
                 result[j++] = (byte) (ctext[i] & 0xff);
         }
 
-        // clear the bcrypt state and the encrypted orpheanBeholderScryDoubt string
+        // clear the bcrypt state, the key material and the encrypted orpheanBeholderScryDoubt string
         Arrays.fill(ctext, 0);
-        state.clear();
+        Arrays.fill(P, 0);
+        Arrays.fill(S, 0);
+        Arrays.fill(keyWords, 0);
+        Arrays.fill(saltWords, 0);
+        Arrays.fill(block, 0);
 
         return result;
     }
@@ -374,21 +384,21 @@ class BCryptPasswordImpl extends AbstractPasswordImpl implements BCryptPassword
      * @param cost the cost of the bcrypt algorithm. It represents the log value of the number of rounds to be applied. Thus,
      *             a cost value of 6 means that a total of 2^6 = 64 rounds will be applied, while a cost value of 20 means
      *             that a total of 2^20 = 1.048.576 rounds will be applied. It must be a value between 4 and 31 (inclusive).
-     * @param salt the 128-bit salt to be used. It is represented by a 16-byte array.
-     * @param key  the password being hashed, in its byte array form.
+     * @param P the P-array, initialized with the digits of pi.
+     * @param S the S-boxes, initialized with the digits of pi.
+     * @param saltWords the 128-bit salt, read cyclically into one int for each entry of the P-array.
+     * @param keyWords the password being hashed, read cyclically into one int for each entry of the P-array.
+     * @param block a two int scratch block.
      */
-    private static BCryptState eksBlowfishSetup(final int cost, final byte[] salt, final byte[] key) {
-        // init the state
-        BCryptState state = new BCryptState(Parray.clone(), Sboxes.clone());
+    private static void eksBlowfishSetup(final int cost, final int[] P, final int[] S, final int[] saltWords, final int[] keyWords, final int[] block) {
         // expand key using both salt and key
-        expandKey(state, salt, key);
+        expandKey(P, S, saltWords, keyWords, block);
         // repeat (2^cost) rounds
         final int rounds = 1 << cost;
         for (int i = 0; i < rounds; i++) {
-            expandKey(state, zeroedSalt, key);
-            expandKey(state, zeroedSalt, salt);
+            expandKey(P, S, keyWords, block);
+            expandKey(P, S, saltWords, block);
         }
-        return state;
     }
 
     /**
@@ -414,36 +424,68 @@ class BCryptPasswordImpl extends AbstractPasswordImpl implements BCryptPassword
      *         return state;
      * </pre>
      * </p>
+     * <p>
+     * The salt is 128 bits long, so it repeats every four ints.
+     * </p>
      *
-     * @param state the current bcrypt state (P-array and S-boxes).
-     * @param salt the 128-bit salt to be used. It is represented by a 16-byte array.
-     * @param key  the password being hashed, in its byte array form.
+     * @param P the P-array.
+     * @param S the S-boxes.
+     * @param saltWords the 128-bit salt, read cyclically into ints.
+     * @param keyWords the key, read cyclically into one int for each entry of the P-array.
+     * @param block a two int scratch block.
      */
-    private static void expandKey(final BCryptState state, final byte[] salt, final byte[] key) {
-        CyclicByteBuffer keyBuffer = new CyclicByteBuffer(key);
-        CyclicByteBuffer saltBuffer = new CyclicByteBuffer(salt);
-        int[] P = state.getPArray();
-        int[] S = state.getSBoxes();
-
+    private static void expandKey(final int[] P, final int[] S, final int[] saltWords, final int[] keyWords, final int[] block) {
         for (int i = 0; i < P.length; i++) {
-            P[i] = P[i] ^ keyBuffer.readNextInt();
+            P[i] ^= keyWords[i];
         }
-        int[] ctext = {0, 0};
+        block[0] = 0;
+        block[1] = 0;
+        int s = 0;
         for (int i = 0; i < P.length; i += 2) {
-            ctext[0] ^= saltBuffer.readNextInt();
-            ctext[1] ^= saltBuffer.readNextInt();
-            encrypt(state, ctext);
-            P[i] = ctext[0];
-            P[i+1] = ctext[1];
+            block[0] ^= saltWords[s];
+            block[1] ^= saltWords[s + 1];
+            s = (s + 2) & 3;
+            encrypt(P, S, block, 0);
+            P[i] = block[0];
+            P[i + 1] = block[1];
         }
         for (int i = 0; i < S.length; i += 2) {
-            ctext[0] ^= saltBuffer.readNextInt();
-            ctext[1] ^= saltBuffer.readNextInt();
-            encrypt(state, ctext);
-            S[i] = ctext[0];
-            S[i+1] = ctext[1];
+            block[0] ^= saltWords[s];
+            block[1] ^= saltWords[s + 1];
+            s = (s + 2) & 3;
+            encrypt(P, S, block, 0);
+            S[i] = block[0];
+            S[i + 1] = block[1];
         }
+    }
 
+    /**
+     * <p>
+     * Performs the expandKey step with an all-zero salt, as used by the rounds of the expensive key schedule setup.
+     * Since xoring with zero leaves the block unchanged, each block is simply the encryption of the previous one.
+     * </p>
+     *
+     * @param P the P-array.
+     * @param S the S-boxes.
+     * @param keyWords the key, read cyclically into one int for each entry of the P-array.
+     * @param block a two int scratch block.
+     */
+    private static void expandKey(final int[] P, final int[] S, final int[] keyWords, final int[] block) {
+        for (int i = 0; i < P.length; i++) {
+            P[i] ^= keyWords[i];
+        }
+        block[0] = 0;
+        block[1] = 0;
+        for (int i = 0; i < P.length; i += 2) {
+            encrypt(P, S, block, 0);
+            P[i] = block[0];
+            P[i + 1] = block[1];
+        }
+        for (int i = 0; i < S.length; i += 2) {
+            encrypt(P, S, block, 0);
+            S[i] = block[0];
+            S[i + 1] = block[1];
+        }
     }
 
     /**
@@ -470,116 +512,52 @@ class BCryptPasswordImpl extends AbstractPasswordImpl implements BCryptPassword
      * </pre>
      * </p>
      * <p>
-     * This method takes the 64-bit blocks as pairs of integers (32-bits each) in the value parameter and encrypts each
-     * pair separately. Encryption happens in place - i.e. the encrypted values are written back to the incoming array,
-     * replacing the previous values.
+     * This method encrypts the 64-bit block held as a pair of integers (32-bits each) at the given offset of the value
+     * parameter. Encryption happens in place - i.e. the encrypted values are written back to the incoming array,
+     * replacing the previous values. The rounds are unrolled in pairs so that the halves never need to be swapped.
      * </p>
      *
-     * @param state the current bcrypt state (P-array and S-boxes).
-     * @param value a int[] containing the 32-bit pairs that must be encrypted.
-     */
-    private static void encrypt(final BCryptState state, int[] value) {
-
-        int[] P = state.getPArray();
-        int[] S = state.getSBoxes();
-
-        for (int i = 0; i < value.length; i += 2) {
-            int left = value[i];
-            int right = value[i+1];
-            int previousRight = 0;
-
-            for (int j = 1; j <= 16; j++) {
-                previousRight = right;
-                right = left ^ P[j-1];
-                // F(Ri) - Feistel substitution
-                int n = S[(right >> 24) & 0xff];
-                n += S[0x100 | ((right >> 16) & 0xff)];
-                n ^= S[0x200 | ((right >> 8) & 0xff)];
-                n += S[0x300 | (right & 0xff)];
-                left = previousRight ^ n;
-            }
-            // last round: left side is xored directly with the final subkey (P[17])
-            previousRight = right;
-            right = left ^ P[16];
-            left = previousRight ^ P[17];
-
-            // set the encrypted values in the incoming array
-            value[i] = left;
-            value[i+1] = right;
-        }
-    }
-
-    /**
-     * <p>
-     * Class that represents the bcrypt state.
-     * </p>
+     * @param P the P-array.
+     * @param S the S-boxes.
+     * @param value a int[] containing the 32-bit pair that must be encrypted.
+     * @param offset the offset of the pair in the value array.
      */
-    private static class BCryptState implements Serializable {
-
-        private int[] Parray;
-        private int[] Sboxes;
-
-        BCryptState(int[] Parray, int[] Sboxes) {
-            this.Parray = Parray;
-            this.Sboxes = Sboxes;
-        }
-
-        int[] getPArray() {
-            return this.Parray;
-        }
-
-        int[] getSBoxes() {
-            return this.Sboxes;
-        }
-
-        void clear() {
-            Arrays.fill(Parray, 0);
-            Arrays.fill(Sboxes, 0);
+    private static void encrypt(final int[] P, final int[] S, final int[] value, final int offset) {
+        int left = value[offset] ^ P[0];
+        int right = value[offset + 1];
+        for (int i = 1; i < 16; i += 2) {
+            // F(left) - Feistel substitution
+            right ^= (((S[left >>> 24] + S[0x100 | ((left >>> 16) & 0xff)]) ^ S[0x200 | ((left >>> 8) & 0xff)]) + S[0x300 | (left & 0xff)]) ^ P[i];
+            // F(right)
+            left ^= (((S[right >>> 24] + S[0x100 | ((right >>> 16) & 0xff)]) ^ S[0x200 | ((right >>> 8) & 0xff)]) + S[0x300 | (right & 0xff)]) ^ P[i + 1];
         }
+        // set the encrypted values in the incoming array, swapping the halves and xoring with the final subkey
+        value[offset] = right ^ P[17];
+        value[offset + 1] = left;
     }
 
     /**
      * <p>
-     * This class implements a cyclic byte buffer. It defines utility methods to retrieve the next byte or int from the
-     * underlying byte[] in a cyclic manner.
+     * Reads the given bytes as a cyclic stream of big-endian ints.
      * </p>
+     *
+     * @param bytes the bytes to read, which must not be empty.
+     * @param count the number of ints to read.
+     * @return the ints read.
      */
-    private static class CyclicByteBuffer implements Serializable {
-
-        private byte[] buffer;
-        private int position;
-
-        CyclicByteBuffer(byte[] buffer) {
-            Assert.checkNotNullParam("buffer", buffer);
-            if (buffer.length == 0) throw log.emptyParameter("buffer");
-            this.buffer = buffer;
-            this.position = 0;
-        }
-
-        /**
-         * Reads the next byte from the buffer. The current position is incremented by one (mod buffer.length).
-         *
-         * @return the byte that was read from the cyclic buffer.
-         */
-        byte readNextByte() {
-            byte value = this.buffer[this.position];
-            this.position = (this.position + 1) % this.buffer.length;
-            return value;
-        }
-
-        /**
-         * Reads the next int (four bytes) from the buffer. The current position is incremented by four (mod buffer.length).
-         *
-         * @return the int that was read from the cyclic buffer.
-         */
-        int readNextInt() {
+    private static int[] cyclicWords(final byte[] bytes, final int count) {
+        if (bytes.length == 0) throw log.emptyParameter("bytes");
+        final int[] words = new int[count];
+        int position = 0;
+        for (int i = 0; i < count; i++) {
             int value = 0;
-            for (int i = 0; i < 4; i++) {
-                value = (value << 8) | (this.buffer[this.position] & 0xff);
-                this.position = (this.position + 1) % this.buffer.length;
+            for (int j = 0; j < 4; j++) {
+                value = (value << 8) | (bytes[position] & 0xff);
+                if (++position == bytes.length) position = 0;
             }
-            return value;
+            words[i] = value;
         }
+        return words;
     }
 
     private void readObject(ObjectInputStream ignored) throws NotSerializableException {
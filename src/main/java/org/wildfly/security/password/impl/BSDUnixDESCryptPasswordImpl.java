@@ -28,7 +28,6 @@ import java.security.spec.InvalidKeySpecException;
 import java.security.spec.InvalidParameterSpecException;
 import java.security.spec.KeySpec;
 import java.util.Arrays;
-import java.util.concurrent.ThreadLocalRandom;
 
 import org.wildfly.security.password.interfaces.BSDUnixDESCryptPassword;
 import org.wildfly.security.password.spec.ClearPasswordSpec;
@@ -36,6 +35,8 @@ import org.wildfly.security.password.spec.EncryptablePasswordSpec;
 import org.wildfly.security.password.spec.IteratedSaltedPasswordAlgorithmSpec;
 import org.wildfly.security.password.spec.IteratedSaltedHashPasswordSpec;
 import org.wildfly.security.password.spec.SaltedHashPasswordSpec;
+import org.wildfly.security.password.util.PasswordCostCalibrator;
+import org.wildfly.security.util.SecureRandomSource;
 
 /**
  * Implementation of the BSD variant of the Unix DES Crypt password.
@@ -69,8 +70,8 @@ class BSDUnixDESCryptPasswordImpl extends AbstractPasswordImpl implements BSDUni
     }
 
     BSDUnixDESCryptPasswordImpl(final ClearPasswordSpec passwordSpec) {
-        this.salt = ThreadLocalRandom.current().nextInt() & 0xffffff;
-        this.iterationCount = DEFAULT_ITERATION_COUNT;
+        this.salt = SecureRandomSource.getSecureRandom().nextInt() & 0xffffff;
+        this.iterationCount = PasswordCostCalibrator.getDefaultIterationCount(ALGORITHM_BSD_CRYPT_DES, DEFAULT_ITERATION_COUNT);
         this.hash = generateHash(salt, iterationCount, passwordSpec.getEncodedPassword());
     }
 
@@ -87,10 +88,10 @@ class BSDUnixDESCryptPasswordImpl extends AbstractPasswordImpl implements BSDUni
             }
             saltInt = (saltBytes[0] & 0xff) << 16 | (saltBytes[1] & 0xff) << 8 | (saltBytes[2] & 0xff);
         } else {
-            saltInt = ThreadLocalRandom.current().nextInt() & 0xffffff;
+            saltInt = SecureRandomSource.getSecureRandom().nextInt() & 0xffffff;
         }
         this.salt = saltInt;
-        this.iterationCount = spec.getIterationCount() == 0 ? DEFAULT_ITERATION_COUNT : spec.getIterationCount();
+        this.iterationCount = spec.getIterationCount() == 0 ? PasswordCostCalibrator.getDefaultIterationCount(ALGORITHM_BSD_CRYPT_DES, DEFAULT_ITERATION_COUNT) : spec.getIterationCount();
         this.hash = generateHash(salt, iterationCount, password);
     }
 
@@ -33,6 +33,7 @@ import org.wildfly.security.password.interfaces.DigestPassword;
 import org.wildfly.security.password.spec.DigestPasswordAlgorithmSpec;
 import org.wildfly.security.password.spec.DigestPasswordSpec;
 import org.wildfly.security.password.spec.EncryptablePasswordSpec;
+import org.wildfly.security.util.CryptoPrimitiveCache;
 
 /**
  * Pre-digested (DigestMD5) credential type implementation.
@@ -76,7 +77,7 @@ class DigestPasswordImpl extends AbstractPasswordImpl implements DigestPassword
         this.username = spec.getUsername();
         this.realm = spec.getRealm();
         try {
-            this.digest = userRealmPasswordDigest(getMessageDigest(algorithm), spec.getUsername(), spec.getRealm(), password);
+            this.digest = digestOf(algorithm, spec.getUsername(), spec.getRealm(), password);
         } catch (NoSuchAlgorithmException e) {
             throw log.invalidKeySpecNoSuchMessageDigestAlgorithm(algorithm);
         }
@@ -113,7 +114,7 @@ class DigestPasswordImpl extends AbstractPasswordImpl implements DigestPassword
     @Override
     boolean verify(char[] guess) throws InvalidKeyException {
         try {
-            byte[] guessDigest = userRealmPasswordDigest(getMessageDigest(algorithm), username, realm, guess);
+            byte[] guessDigest = digestOf(algorithm, username, realm, guess);
             return Arrays.equals(digest, guessDigest);
         } catch (NoSuchAlgorithmException e) {
             throw log.invalidKeyNoSuchMessageDigestAlgorithm(algorithm);
@@ -125,18 +126,27 @@ class DigestPasswordImpl extends AbstractPasswordImpl implements DigestPassword
         return keySpecType.isAssignableFrom(DigestPasswordSpec.class);
     }
 
+    private static byte[] digestOf(final String algorithm, final String username, final String realm, final char[] password) throws NoSuchAlgorithmException {
+        final MessageDigest messageDigest = getMessageDigest(algorithm);
+        try {
+            return userRealmPasswordDigest(messageDigest, username, realm, password);
+        } finally {
+            CryptoPrimitiveCache.release(messageDigest);
+        }
+    }
+
     private static MessageDigest getMessageDigest(final String algorithm) throws NoSuchAlgorithmException {
         switch (algorithm) {
             case ALGORITHM_DIGEST_MD5:
-                return MessageDigest.getInstance("MD5");
+                return CryptoPrimitiveCache.getMessageDigest("MD5");
             case ALGORITHM_DIGEST_SHA:
-                return MessageDigest.getInstance("SHA-1");
+                return CryptoPrimitiveCache.getMessageDigest("SHA-1");
             case ALGORITHM_DIGEST_SHA_256:
-                return MessageDigest.getInstance("SHA-256");
+                return CryptoPrimitiveCache.getMessageDigest("SHA-256");
             case ALGORITHM_DIGEST_SHA_384:
-                return MessageDigest.getInstance("SHA-384");
+                return CryptoPrimitiveCache.getMessageDigest("SHA-384");
             case ALGORITHM_DIGEST_SHA_512:
-                return MessageDigest.getInstance("SHA-512");
+                return CryptoPrimitiveCache.getMessageDigest("SHA-512");
             default:
                 throw log.noSuchAlgorithmInvalidAlgorithm(algorithm);
         }
@@ -59,6 +59,7 @@ import org.wildfly.security.password.spec.DigestPasswordSpec;
 import org.wildfly.security.password.spec.IteratedSaltedHashPasswordSpec;
 import org.wildfly.security.password.spec.OneTimePasswordSpec;
 import org.wildfly.security.password.spec.SaltedHashPasswordSpec;
+import org.wildfly.security.password.spec.ScramKeysPasswordSpec;
 import org.wildfly.security.password.spec.HashPasswordSpec;
 import org.wildfly.security.password.spec.EncryptablePasswordSpec;
 
@@ -327,6 +328,12 @@ public final class PasswordFactorySpiImpl extends PasswordFactorySpi {
                     } catch (IllegalArgumentException | NullPointerException e) {
                         throw new InvalidKeySpecException(e);
                     }
+                } else if (keySpec instanceof ScramKeysPasswordSpec) {
+                    try {
+                        return new ScramDigestPasswordImpl(algorithm, (ScramKeysPasswordSpec) keySpec);
+                    } catch (IllegalArgumentException | NullPointerException e) {
+                        throw new InvalidKeySpecException(e);
+                    }
                 } else if (keySpec instanceof SaltedHashPasswordSpec) {
                     try {
                         return new ScramDigestPasswordImpl(algorithm, (SaltedHashPasswordSpec) keySpec);
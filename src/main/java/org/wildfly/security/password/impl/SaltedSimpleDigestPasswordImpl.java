@@ -36,6 +36,7 @@ import org.wildfly.security.password.spec.ClearPasswordSpec;
 import org.wildfly.security.password.spec.EncryptablePasswordSpec;
 import org.wildfly.security.password.spec.SaltedHashPasswordSpec;
 import org.wildfly.security.password.spec.SaltedPasswordAlgorithmSpec;
+import org.wildfly.security.util.CryptoPrimitiveCache;
 
 /**
  * A {@code Password} implementation for {@link SaltedSimpleDigestPassword}.
@@ -134,34 +135,38 @@ class SaltedSimpleDigestPasswordImpl extends AbstractPasswordImpl implements Sal
             throws NoSuchAlgorithmException {
         boolean saltFirst = isSaltFirst(algorithm);
         MessageDigest md = getMessageDigest(algorithm);
-        byte[] passwordBytes = new String(password).getBytes(StandardCharsets.UTF_8);
-        if (saltFirst) {
-            md.update(salt);
-            md.update(passwordBytes);
-        } else {
-            md.update(passwordBytes);
-            md.update(salt);
+        try {
+            byte[] passwordBytes = new String(password).getBytes(StandardCharsets.UTF_8);
+            if (saltFirst) {
+                md.update(salt);
+                md.update(passwordBytes);
+            } else {
+                md.update(passwordBytes);
+                md.update(salt);
+            }
+            return md.digest();
+        } finally {
+            CryptoPrimitiveCache.release(md);
         }
-        return md.digest();
     }
 
     private static MessageDigest getMessageDigest(final String algorithm) throws NoSuchAlgorithmException {
         switch (algorithm) {
             case ALGORITHM_PASSWORD_SALT_DIGEST_MD5:
             case ALGORITHM_SALT_PASSWORD_DIGEST_MD5:
-                return MessageDigest.getInstance("MD5");
+                return CryptoPrimitiveCache.getMessageDigest("MD5");
             case ALGORITHM_PASSWORD_SALT_DIGEST_SHA_1:
             case ALGORITHM_SALT_PASSWORD_DIGEST_SHA_1:
-                return MessageDigest.getInstance("SHA-1");
+                return CryptoPrimitiveCache.getMessageDigest("SHA-1");
             case ALGORITHM_PASSWORD_SALT_DIGEST_SHA_256:
             case ALGORITHM_SALT_PASSWORD_DIGEST_SHA_256:
-                return MessageDigest.getInstance("SHA-256");
+                return CryptoPrimitiveCache.getMessageDigest("SHA-256");
             case ALGORITHM_PASSWORD_SALT_DIGEST_SHA_384:
             case ALGORITHM_SALT_PASSWORD_DIGEST_SHA_384:
-                return MessageDigest.getInstance("SHA-384");
+                return CryptoPrimitiveCache.getMessageDigest("SHA-384");
             case ALGORITHM_PASSWORD_SALT_DIGEST_SHA_512:
             case ALGORITHM_SALT_PASSWORD_DIGEST_SHA_512:
-                return MessageDigest.getInstance("SHA-512");
+                return CryptoPrimitiveCache.getMessageDigest("SHA-512");
             default:
                 throw log.noSuchAlgorithmInvalidAlgorithm(algorithm);
         }
@@ -26,6 +26,7 @@ import java.nio.charset.StandardCharsets;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.Key;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.spec.AlgorithmParameterSpec;
 import java.security.spec.InvalidKeySpecException;
@@ -36,6 +37,7 @@ import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 
 import org.wildfly.security.password.Password;
+import org.wildfly.security.password.util.PasswordCostCalibrator;
 import org.wildfly.security.password.util.PasswordUtil;
 import org.wildfly.security.password.interfaces.ScramDigestPassword;
 import org.wildfly.security.password.spec.ClearPasswordSpec;
@@ -43,6 +45,8 @@ import org.wildfly.security.password.spec.EncryptablePasswordSpec;
 import org.wildfly.security.password.spec.IteratedSaltedPasswordAlgorithmSpec;
 import org.wildfly.security.password.spec.IteratedSaltedHashPasswordSpec;
 import org.wildfly.security.password.spec.SaltedHashPasswordSpec;
+import org.wildfly.security.password.spec.ScramKeysPasswordSpec;
+import org.wildfly.security.util.CryptoPrimitiveCache;
 
 /**
  * A {@link org.wildfly.security.password.Password} implementation for {@link org.wildfly.security.password.interfaces.ScramDigestPassword}.
@@ -58,10 +62,17 @@ class ScramDigestPasswordImpl extends AbstractPasswordImpl implements ScramDiges
     private static final String HMAC_SHA384_ALGORITHM = "HmacSHA384";
     private static final String HMAC_SHA512_ALGORITHM = "HmacSHA512";
 
+    private static final byte[] CLIENT_KEY_BYTES = "Client Key".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SERVER_KEY_BYTES = "Server Key".getBytes(StandardCharsets.UTF_8);
+
     private final String algorithm;
+    // null if only the keys are known
     private final byte[] digest;
     private final byte[] salt;
     private final int iterationCount;
+    // derived from the digest on first use unless given
+    private volatile byte[] storedKey;
+    private volatile byte[] serverKey;
 
     ScramDigestPasswordImpl(final String algorithm, final byte[] digest, final byte[] salt, final int iterationCount) {
         this.algorithm = algorithm;
@@ -71,7 +82,30 @@ class ScramDigestPasswordImpl extends AbstractPasswordImpl implements ScramDiges
     }
 
     ScramDigestPasswordImpl(final ScramDigestPassword password) {
-        this(password.getAlgorithm(), password.getDigest().clone(), password.getSalt().clone(), password.getIterationCount());
+        this.algorithm = password.getAlgorithm();
+        this.salt = password.getSalt().clone();
+        this.iterationCount = password.getIterationCount();
+        final byte[] storedKey = password.getStoredKey();
+        final byte[] serverKey = password.getServerKey();
+        if (storedKey != null && serverKey != null) {
+            this.storedKey = storedKey.clone();
+            this.serverKey = serverKey.clone();
+            byte[] digest;
+            try {
+                digest = password.getDigest().clone();
+            } catch (IllegalStateException ignored) {
+                digest = null;
+            }
+            this.digest = digest;
+        } else {
+            this.digest = password.getDigest().clone();
+        }
+    }
+
+    ScramDigestPasswordImpl(final String algorithm, final ScramKeysPasswordSpec spec) {
+        this(algorithm, null, spec.getSalt().clone(), spec.getIterationCount());
+        this.storedKey = spec.getStoredKey().clone();
+        this.serverKey = spec.getServerKey().clone();
     }
 
     ScramDigestPasswordImpl(final String algorithm, final IteratedSaltedHashPasswordSpec spec) {
@@ -85,7 +119,7 @@ class ScramDigestPasswordImpl extends AbstractPasswordImpl implements ScramDiges
     ScramDigestPasswordImpl(final String algorithm, final ClearPasswordSpec spec) throws InvalidKeySpecException {
         this.algorithm = algorithm;
         this.salt = PasswordUtil.generateRandomSalt(DEFAULT_SALT_SIZE);
-        this.iterationCount = DEFAULT_ITERATION_COUNT;
+        this.iterationCount = PasswordCostCalibrator.getDefaultIterationCount(algorithm, DEFAULT_ITERATION_COUNT);
         try {
             this.digest = scramDigest(this.algorithm, getNormalizedPasswordBytes(spec.getEncodedPassword()),
                     this.salt, this.iterationCount);
@@ -101,7 +135,7 @@ class ScramDigestPasswordImpl extends AbstractPasswordImpl implements ScramDiges
     private ScramDigestPasswordImpl(final String algorithm, final char[] password, final IteratedSaltedPasswordAlgorithmSpec spec) throws InvalidKeySpecException {
         this.algorithm = algorithm;
         this.salt = spec.getSalt() == null ? PasswordUtil.generateRandomSalt(DEFAULT_SALT_SIZE) : spec.getSalt().clone();
-        this.iterationCount = spec.getIterationCount() == 0 ? DEFAULT_ITERATION_COUNT : spec.getIterationCount();
+        this.iterationCount = spec.getIterationCount() == 0 ? PasswordCostCalibrator.getDefaultIterationCount(algorithm, DEFAULT_ITERATION_COUNT) : spec.getIterationCount();
         try {
             this.digest = scramDigest(algorithm, getNormalizedPasswordBytes(password), salt, iterationCount);
         } catch (Exception e) {
@@ -116,20 +150,56 @@ class ScramDigestPasswordImpl extends AbstractPasswordImpl implements ScramDiges
 
     @Override
     public byte[] getDigest() {
-        try {
-            return this.digest.clone();
-        } catch (NullPointerException npe) {
+        final byte[] digest = this.digest;
+        if (digest == null) {
             throw new IllegalStateException();
         }
+        return digest.clone();
     }
 
     @Override
-    public byte[] getSalt() {
+    public byte[] getStoredKey() {
+        deriveKeys();
+        return storedKey.clone();
+    }
+
+    @Override
+    public byte[] getServerKey() {
+        deriveKeys();
+        return serverKey.clone();
+    }
+
+    private void deriveKeys() {
+        if (serverKey != null) {
+            return;
+        }
+        // racing threads derive the same values
+        Mac hmac = null;
+        MessageDigest messageDigest = null;
         try {
-            return this.salt.clone();
-        } catch (NullPointerException npe) {
+            hmac = getMacInstance(algorithm, digest);
+            messageDigest = getMessageDigestInstance(algorithm);
+            final byte[] clientKey = hmac.doFinal(CLIENT_KEY_BYTES);
+            final byte[] storedKey = messageDigest.digest(clientKey);
+            hmac.reset();
+            final byte[] serverKey = hmac.doFinal(SERVER_KEY_BYTES);
+            this.storedKey = storedKey;
+            this.serverKey = serverKey;
+        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            CryptoPrimitiveCache.release(messageDigest);
+            CryptoPrimitiveCache.release(hmac);
+        }
+    }
+
+    @Override
+    public byte[] getSalt() {
+        final byte[] salt = this.salt;
+        if (salt == null) {
             throw new IllegalStateException();
         }
+        return salt.clone();
     }
 
     @Override
@@ -139,7 +209,7 @@ class ScramDigestPasswordImpl extends AbstractPasswordImpl implements ScramDiges
 
     @Override
     <T extends KeySpec> boolean convertibleTo(Class<T> keySpecType) {
-        return keySpecType.isAssignableFrom(IteratedSaltedHashPasswordSpec.class);
+        return digest != null && keySpecType.isAssignableFrom(IteratedSaltedHashPasswordSpec.class) || keySpecType.isAssignableFrom(ScramKeysPasswordSpec.class);
     }
 
     @Override
@@ -157,11 +227,19 @@ class ScramDigestPasswordImpl extends AbstractPasswordImpl implements ScramDiges
             if (updateIterationCount == this.iterationCount) {
                 return this;
             }
+            if (this.digest == null) {
+                // the keys cannot be derived again without the salted password
+                throw new InvalidAlgorithmParameterException();
+            }
             byte[] digest = this.digest.clone();
+            Mac hmac = null;
             try {
-                addIterations(digest, getMacInstance(algorithm, digest), this.iterationCount, updateIterationCount);
+                hmac = getMacInstance(algorithm, digest);
+                addIterations(digest, hmac, this.iterationCount, updateIterationCount);
             } catch (NoSuchAlgorithmException | InvalidKeyException e) {
                 throw new InvalidKeyException(e);
+            } finally {
+                CryptoPrimitiveCache.release(hmac);
             }
             return new ScramDigestPasswordImpl(algorithm, digest, updateSalt, updateIterationCount);
         }
@@ -172,7 +250,19 @@ class ScramDigestPasswordImpl extends AbstractPasswordImpl implements ScramDiges
     boolean verify(char[] guess) throws InvalidKeyException {
         try {
             byte[] output = scramDigest(this.getAlgorithm(), getNormalizedPasswordBytes(guess), this.getSalt(), this.getIterationCount());
-            return Arrays.equals(this.digest, output);
+            if (this.digest != null) {
+                return Arrays.equals(this.digest, output);
+            }
+            Mac hmac = null;
+            MessageDigest messageDigest = null;
+            try {
+                hmac = getMacInstance(algorithm, output);
+                messageDigest = getMessageDigestInstance(algorithm);
+                return MessageDigest.isEqual(this.storedKey, messageDigest.digest(hmac.doFinal(CLIENT_KEY_BYTES)));
+            } finally {
+                CryptoPrimitiveCache.release(messageDigest);
+                CryptoPrimitiveCache.release(hmac);
+            }
         } catch (NoSuchAlgorithmException nsae) {
             throw new InvalidKeyException(nsae);
         }
@@ -180,8 +270,10 @@ class ScramDigestPasswordImpl extends AbstractPasswordImpl implements ScramDiges
 
     @Override
     <S extends KeySpec> S getKeySpec(Class<S> keySpecType) throws InvalidKeySpecException {
-        if (keySpecType.isAssignableFrom(IteratedSaltedHashPasswordSpec.class)) {
+        if (digest != null && keySpecType.isAssignableFrom(IteratedSaltedHashPasswordSpec.class)) {
             return keySpecType.cast(new IteratedSaltedHashPasswordSpec(this.getDigest(), this.getSalt(), this.getIterationCount()));
+        } else if (keySpecType.isAssignableFrom(ScramKeysPasswordSpec.class)) {
+            return keySpecType.cast(new ScramKeysPasswordSpec(this.getStoredKey(), this.getServerKey(), this.getSalt(), this.getIterationCount()));
         }
         throw new InvalidKeySpecException();
     }
@@ -217,13 +309,16 @@ class ScramDigestPasswordImpl extends AbstractPasswordImpl implements ScramDiges
             throws NoSuchAlgorithmException, InvalidKeyException {
 
         Mac hmac = getMacInstance(algorithm, password);
-
-        // compute U1 (see Hi function description in the javadoc).
-        hmac.update(salt);
-        hmac.update("\00\00\00\01".getBytes(StandardCharsets.UTF_8));
-        byte[] hi = hmac.doFinal();
-        addIterations(hi, hmac, 1, iterationCount);
-        return hi;
+        try {
+            // compute U1 (see Hi function description in the javadoc).
+            hmac.update(salt);
+            hmac.update("\00\00\00\01".getBytes(StandardCharsets.UTF_8));
+            byte[] hi = hmac.doFinal();
+            addIterations(hi, hmac, 1, iterationCount);
+            return hi;
+        } finally {
+            CryptoPrimitiveCache.release(hmac);
+        }
     }
 
     static void addIterations(final byte[] hi, final Mac hmac, final int currentIterationCount, final int newIterationCount) {
@@ -240,7 +335,8 @@ class ScramDigestPasswordImpl extends AbstractPasswordImpl implements ScramDiges
 
     /**
      * <p>
-     * Builds a {@link Mac} instance using the specified algorithm and password.
+     * Obtains a {@link Mac} instance for the specified algorithm from the {@link CryptoPrimitiveCache} and initializes it
+     * with the password; the caller should release it after use.
      * </p>
      *
      * @param algorithm the algorithm that should be used to hash the password.
@@ -250,25 +346,25 @@ class ScramDigestPasswordImpl extends AbstractPasswordImpl implements ScramDiges
     private static Mac getMacInstance(final String algorithm, final byte[] password) throws NoSuchAlgorithmException, InvalidKeyException {
         switch (algorithm) {
             case ALGORITHM_SCRAM_SHA_1: {
-                Mac hmac = Mac.getInstance(HMAC_SHA1_ALGORITHM);
+                Mac hmac = CryptoPrimitiveCache.getMac(HMAC_SHA1_ALGORITHM);
                 Key key = new SecretKeySpec(password, HMAC_SHA1_ALGORITHM);
                 hmac.init(key);
                 return hmac;
             }
             case ALGORITHM_SCRAM_SHA_256: {
-                Mac hmac = Mac.getInstance(HMAC_SHA256_ALGORITHM);
+                Mac hmac = CryptoPrimitiveCache.getMac(HMAC_SHA256_ALGORITHM);
                 Key key = new SecretKeySpec(password, HMAC_SHA256_ALGORITHM);
                 hmac.init(key);
                 return hmac;
             }
             case ALGORITHM_SCRAM_SHA_384: {
-                Mac hmac = Mac.getInstance(HMAC_SHA384_ALGORITHM);
+                Mac hmac = CryptoPrimitiveCache.getMac(HMAC_SHA384_ALGORITHM);
                 Key key = new SecretKeySpec(password, HMAC_SHA384_ALGORITHM);
                 hmac.init(key);
                 return hmac;
             }
             case ALGORITHM_SCRAM_SHA_512: {
-                Mac hmac = Mac.getInstance(HMAC_SHA512_ALGORITHM);
+                Mac hmac = CryptoPrimitiveCache.getMac(HMAC_SHA512_ALGORITHM);
                 Key key = new SecretKeySpec(password, HMAC_SHA512_ALGORITHM);
                 hmac.init(key);
                 return hmac;
@@ -278,11 +374,33 @@ class ScramDigestPasswordImpl extends AbstractPasswordImpl implements ScramDiges
         }
     }
 
+    private static MessageDigest getMessageDigestInstance(final String algorithm) throws NoSuchAlgorithmException {
+        switch (algorithm) {
+            case ALGORITHM_SCRAM_SHA_1: {
+                return CryptoPrimitiveCache.getMessageDigest("SHA-1");
+            }
+            case ALGORITHM_SCRAM_SHA_256: {
+                return CryptoPrimitiveCache.getMessageDigest("SHA-256");
+            }
+            case ALGORITHM_SCRAM_SHA_384: {
+                return CryptoPrimitiveCache.getMessageDigest("SHA-384");
+            }
+            case ALGORITHM_SCRAM_SHA_512: {
+                return CryptoPrimitiveCache.getMessageDigest("SHA-512");
+            }
+            default:
+                throw log.noSuchAlgorithmInvalidAlgorithm(algorithm);
+        }
+    }
+
     private void readObject(ObjectInputStream ignored) throws NotSerializableException {
         throw new NotSerializableException();
     }
 
     Object writeReplace() {
+        if (digest == null) {
+            return ScramDigestPassword.createRaw(algorithm, storedKey, serverKey, salt, iterationCount);
+        }
         return ScramDigestPassword.createRaw(algorithm, digest, salt, iterationCount);
     }
 }
@@ -34,6 +34,7 @@ import org.wildfly.security.password.interfaces.SimpleDigestPassword;
 import org.wildfly.security.password.spec.ClearPasswordSpec;
 import org.wildfly.security.password.spec.EncryptablePasswordSpec;
 import org.wildfly.security.password.spec.HashPasswordSpec;
+import org.wildfly.security.util.CryptoPrimitiveCache;
 
 /**
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
@@ -87,18 +88,22 @@ class SimpleDigestPasswordImpl extends AbstractPasswordImpl implements SimpleDig
 
     static byte[] getDigestOf(String algorithm, char[] chars) throws NoSuchAlgorithmException {
         final MessageDigest md = getMessageDigest(algorithm);
-        md.update(new String(chars).getBytes(StandardCharsets.UTF_8));
-        return md.digest();
+        try {
+            md.update(new String(chars).getBytes(StandardCharsets.UTF_8));
+            return md.digest();
+        } finally {
+            CryptoPrimitiveCache.release(md);
+        }
     }
 
     static MessageDigest getMessageDigest(String algorithm) throws NoSuchAlgorithmException {
         switch (algorithm) {
-            case ALGORITHM_SIMPLE_DIGEST_MD2:     return MessageDigest.getInstance("MD2");
-            case ALGORITHM_SIMPLE_DIGEST_MD5:     return MessageDigest.getInstance("MD5");
-            case ALGORITHM_SIMPLE_DIGEST_SHA_1:   return MessageDigest.getInstance("SHA-1");
-            case ALGORITHM_SIMPLE_DIGEST_SHA_256: return MessageDigest.getInstance("SHA-256");
-            case ALGORITHM_SIMPLE_DIGEST_SHA_384: return MessageDigest.getInstance("SHA-384");
-            case ALGORITHM_SIMPLE_DIGEST_SHA_512: return MessageDigest.getInstance("SHA-512");
+            case ALGORITHM_SIMPLE_DIGEST_MD2:     return CryptoPrimitiveCache.getMessageDigest("MD2");
+            case ALGORITHM_SIMPLE_DIGEST_MD5:     return CryptoPrimitiveCache.getMessageDigest("MD5");
+            case ALGORITHM_SIMPLE_DIGEST_SHA_1:   return CryptoPrimitiveCache.getMessageDigest("SHA-1");
+            case ALGORITHM_SIMPLE_DIGEST_SHA_256: return CryptoPrimitiveCache.getMessageDigest("SHA-256");
+            case ALGORITHM_SIMPLE_DIGEST_SHA_384: return CryptoPrimitiveCache.getMessageDigest("SHA-384");
+            case ALGORITHM_SIMPLE_DIGEST_SHA_512: return CryptoPrimitiveCache.getMessageDigest("SHA-512");
             default: throw log.noSuchAlgorithmInvalidAlgorithm(algorithm);
         }
     }
@@ -31,6 +31,7 @@ import java.security.spec.KeySpec;
 import java.util.Arrays;
 
 import org.wildfly.common.Assert;
+import org.wildfly.security.password.util.PasswordCostCalibrator;
 import org.wildfly.security.password.util.PasswordUtil;
 import org.wildfly.security.password.interfaces.SunUnixMD5CryptPassword;
 import org.wildfly.security.password.spec.ClearPasswordSpec;
@@ -124,7 +125,7 @@ final class SunUnixMD5CryptPasswordImpl extends AbstractPasswordImpl implements
     SunUnixMD5CryptPasswordImpl(final ClearPasswordSpec spec) throws NoSuchAlgorithmException {
         this.algorithm = ALGORITHM_SUN_CRYPT_MD5;
         this.salt = PasswordUtil.generateRandomSalt(DEFAULT_SALT_SIZE);
-        this.iterationCount = DEFAULT_ITERATION_COUNT;
+        this.iterationCount = PasswordCostCalibrator.getDefaultIterationCount(ALGORITHM_SUN_CRYPT_MD5, DEFAULT_ITERATION_COUNT);
         this.hash = sunMD5Crypt(algorithm, getNormalizedPasswordBytes(spec.getEncodedPassword()), salt, iterationCount);
     }
 
@@ -29,13 +29,13 @@ import java.security.spec.InvalidKeySpecException;
 import java.security.spec.InvalidParameterSpecException;
 import java.security.spec.KeySpec;
 import java.util.Arrays;
-import java.util.concurrent.ThreadLocalRandom;
 
 import org.wildfly.security.password.interfaces.UnixDESCryptPassword;
 import org.wildfly.security.password.spec.ClearPasswordSpec;
 import org.wildfly.security.password.spec.EncryptablePasswordSpec;
 import org.wildfly.security.password.spec.IteratedSaltedPasswordAlgorithmSpec;
 import org.wildfly.security.password.spec.SaltedHashPasswordSpec;
+import org.wildfly.security.util.SecureRandomSource;
 
 /**
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
@@ -56,7 +56,7 @@ class UnixDESCryptPasswordImpl extends AbstractPasswordImpl implements UnixDESCr
     }
 
     UnixDESCryptPasswordImpl(final ClearPasswordSpec spec) throws InvalidKeySpecException {
-        this.salt = (short) (ThreadLocalRandom.current().nextInt() & 0xfff);
+        this.salt = (short) (SecureRandomSource.getSecureRandom().nextInt() & 0xfff);
         this.hash = generateHash(this.salt, spec.getEncodedPassword().clone());
     }
 
@@ -64,7 +64,7 @@ class UnixDESCryptPasswordImpl extends AbstractPasswordImpl implements UnixDESCr
         AlgorithmParameterSpec parameterSpec = spec.getAlgorithmParameterSpec();
         short salt;
         if (parameterSpec == null) {
-            salt = (short) (ThreadLocalRandom.current().nextInt() & 0xfff);
+            salt = (short) (SecureRandomSource.getSecureRandom().nextInt() & 0xfff);
         } else if (parameterSpec instanceof IteratedSaltedPasswordAlgorithmSpec) {
             final byte[] saltBytes = ((IteratedSaltedPasswordAlgorithmSpec) parameterSpec).getSalt();
             if (saltBytes != null) {
@@ -73,7 +73,7 @@ class UnixDESCryptPasswordImpl extends AbstractPasswordImpl implements UnixDESCr
                 }
                 salt = (short) ((saltBytes[0] & 0x0f) << 8 | saltBytes[1] & 0xff);
             } else {
-                salt = (short) (ThreadLocalRandom.current().nextInt() & 0xfff);
+                salt = (short) (SecureRandomSource.getSecureRandom().nextInt() & 0xfff);
             }
         } else {
             throw log.invalidParameterSpecUnsupportedParameterSpec();
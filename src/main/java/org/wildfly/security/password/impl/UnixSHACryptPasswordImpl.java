@@ -33,6 +33,7 @@ import java.security.spec.KeySpec;
 import java.util.Arrays;
 
 import org.wildfly.common.Assert;
+import org.wildfly.security.password.util.PasswordCostCalibrator;
 import org.wildfly.security.password.util.PasswordUtil;
 import org.wildfly.security.password.interfaces.UnixSHACryptPassword;
 import org.wildfly.security.password.spec.ClearPasswordSpec;
@@ -81,7 +82,7 @@ final class UnixSHACryptPasswordImpl extends AbstractPasswordImpl implements Uni
     UnixSHACryptPasswordImpl(final String algorithm, final ClearPasswordSpec spec) throws NoSuchAlgorithmException {
         this.algorithm = algorithm;
         this.salt = PasswordUtil.generateRandomSalt(SALT_SIZE);
-        this.iterationCount = DEFAULT_ITERATION_COUNT;
+        this.iterationCount = PasswordCostCalibrator.getDefaultIterationCount(algorithm, DEFAULT_ITERATION_COUNT);
         this.hash = doEncode(algorithm, getNormalizedPasswordBytes(spec.getEncodedPassword()), this.salt, this.iterationCount);
     }
 
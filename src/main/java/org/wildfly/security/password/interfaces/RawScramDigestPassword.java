@@ -23,20 +23,44 @@ class RawScramDigestPassword extends RawPassword implements ScramDigestPassword
     private static final long serialVersionUID = -6829330384649271844L;
 
     private final byte[] digest;
+    private final byte[] storedKey;
+    private final byte[] serverKey;
     private final byte[] salt;
     private final int iterationCount;
 
     RawScramDigestPassword(final String algorithm, final byte[] digest, final byte[] salt, final int iterationCount) {
         super(algorithm);
         this.digest = digest;
+        this.storedKey = null;
+        this.serverKey = null;
+        this.salt = salt;
+        this.iterationCount = iterationCount;
+    }
+
+    RawScramDigestPassword(final String algorithm, final byte[] storedKey, final byte[] serverKey, final byte[] salt, final int iterationCount) {
+        super(algorithm);
+        this.digest = null;
+        this.storedKey = storedKey;
+        this.serverKey = serverKey;
         this.salt = salt;
         this.iterationCount = iterationCount;
     }
 
     public byte[] getDigest() {
+        if (digest == null) {
+            throw new IllegalStateException();
+        }
         return digest.clone();
     }
 
+    public byte[] getStoredKey() {
+        return storedKey == null ? null : storedKey.clone();
+    }
+
+    public byte[] getServerKey() {
+        return serverKey == null ? null : serverKey.clone();
+    }
+
     public byte[] getSalt() {
         return salt.clone();
     }
@@ -64,9 +64,30 @@ public interface ScramDigestPassword extends OneWayPassword {
      * Get the digest represented by this {@linkplain Password password}.
      *
      * @return the digest represented by this {@linkplain Password password}
+     * @throws IllegalStateException if this password is only represented by its {@code StoredKey} and {@code ServerKey}
      */
     byte[] getDigest();
 
+    /**
+     * Get the SCRAM {@code StoredKey} of this {@linkplain Password password}, the hash of the {@code ClientKey}.
+     *
+     * @return the stored key, or {@code null} if this password does not provide it, in which case it has to be derived
+     *  from the {@linkplain #getDigest() digest}
+     */
+    default byte[] getStoredKey() {
+        return null;
+    }
+
+    /**
+     * Get the SCRAM {@code ServerKey} of this {@linkplain Password password}.
+     *
+     * @return the server key, or {@code null} if this password does not provide it, in which case it has to be derived
+     *  from the {@linkplain #getDigest() digest}
+     */
+    default byte[] getServerKey() {
+        return null;
+    }
+
     /**
      * Get the salt used to generate the digest.
      *
@@ -98,4 +119,25 @@ public interface ScramDigestPassword extends OneWayPassword {
         Assert.checkNotNullParam("salt", salt);
         return new RawScramDigestPassword(algorithm, digest.clone(), salt.clone(), iterationCount);
     }
+
+    /**
+     * Create a raw implementation of this password type which is only represented by its {@code StoredKey} and
+     * {@code ServerKey}.  No validation of the content is performed, and the password must be "adopted" in to a
+     * {@link PasswordFactory} (via the {@link PasswordFactory#translate(Password)} method) before it can be validated
+     * and used to verify guesses.
+     *
+     * @param algorithm the algorithm name
+     * @param storedKey the stored key
+     * @param serverKey the server key
+     * @param salt the salt
+     * @param iterationCount the iteration count
+     * @return the raw password implementation
+     */
+    static ScramDigestPassword createRaw(String algorithm, byte[] storedKey, byte[] serverKey, byte[] salt, int iterationCount) {
+        Assert.checkNotNullParam("algorithm", algorithm);
+        Assert.checkNotNullParam("storedKey", storedKey);
+        Assert.checkNotNullParam("serverKey", serverKey);
+        Assert.checkNotNullParam("salt", salt);
+        return new RawScramDigestPassword(algorithm, storedKey.clone(), serverKey.clone(), salt.clone(), iterationCount);
+    }
 }
\ No newline at end of file
@@ -42,6 +42,7 @@ public final class BasicPasswordSpecEncoding {
     private static final byte HASH_PASSWORD_SPEC_ID = 3;
     private static final byte SALTED_HASH_PASSWORD_SPEC_ID = 4;
     private static final byte ITERATED_SALTED_HASH_SPEC_ID = 5;
+    private static final byte SCRAM_KEYS_PASSWORD_SPEC_ID = 6;
 
     private BasicPasswordSpecEncoding() {}
 
@@ -60,6 +61,8 @@ public final class BasicPasswordSpecEncoding {
             return encodeSaltedHashPasswordSpec((SaltedHashPasswordSpec) passwordSpec);
         } else if (passwordSpec instanceof IteratedSaltedHashPasswordSpec) {
             return encodeIteratedSaltedHashSpec((IteratedSaltedHashPasswordSpec) passwordSpec);
+        } else if (passwordSpec instanceof ScramKeysPasswordSpec) {
+            return encodeScramKeysPasswordSpec((ScramKeysPasswordSpec) passwordSpec);
         } else if (passwordSpec instanceof HashPasswordSpec) {
             return encodeHashPasswordSpec((HashPasswordSpec) passwordSpec);
         }
@@ -84,6 +87,8 @@ public final class BasicPasswordSpecEncoding {
             return encodeSaltedHashPasswordSpec(passwordFactory.getKeySpec(password, SaltedHashPasswordSpec.class));
         } else if (passwordFactory.convertibleToKeySpec(password, IteratedSaltedHashPasswordSpec.class)) {
             return encodeIteratedSaltedHashSpec(passwordFactory.getKeySpec(password, IteratedSaltedHashPasswordSpec.class));
+        } else if (passwordFactory.convertibleToKeySpec(password, ScramKeysPasswordSpec.class)) {
+            return encodeScramKeysPasswordSpec(passwordFactory.getKeySpec(password, ScramKeysPasswordSpec.class));
         } else if (passwordFactory.convertibleToKeySpec(password, HashPasswordSpec.class)) {
             return encodeHashPasswordSpec(passwordFactory.getKeySpec(password, HashPasswordSpec.class));
         }
@@ -119,6 +124,8 @@ public final class BasicPasswordSpecEncoding {
                 return decodeSaltedHashPasswordSpec(iterator);
             case ITERATED_SALTED_HASH_SPEC_ID:
                 return decodeIteratedSaltedHashPasswordSpec(iterator);
+            case SCRAM_KEYS_PASSWORD_SPEC_ID:
+                return decodeScramKeysPasswordSpec(iterator);
             default:
                 return null;
         }
@@ -137,6 +144,22 @@ public final class BasicPasswordSpecEncoding {
         return new IteratedSaltedHashPasswordSpec(hash, salt, iterationCount);
     }
 
+    private static byte[] encodeScramKeysPasswordSpec(ScramKeysPasswordSpec keySpec) throws InvalidKeySpecException {
+        byte[] salt = keySpec.getSalt();
+        byte[] storedKey = keySpec.getStoredKey();
+        return new ByteStringBuilder().append(SCRAM_KEYS_PASSWORD_SPEC_ID)
+                .appendPackedUnsignedBE(keySpec.getIterationCount()).appendPackedUnsignedBE(salt.length).append(salt)
+                .appendPackedUnsignedBE(storedKey.length).append(storedKey).append(keySpec.getServerKey()).toArray();
+    }
+
+    private static PasswordSpec decodeScramKeysPasswordSpec(ByteIterator iterator) {
+        int iterationCount = iterator.getPackedBE32();
+        byte[] salt = iterator.drain(iterator.getPackedBE32());
+        byte[] storedKey = iterator.drain(iterator.getPackedBE32());
+        byte[] serverKey = iterator.drain();
+        return new ScramKeysPasswordSpec(storedKey, serverKey, salt, iterationCount);
+    }
+
     private static byte[] encodeSaltedHashPasswordSpec(SaltedHashPasswordSpec keySpec) throws InvalidKeySpecException {
         byte[] salt = keySpec.getSalt();
         return new ByteStringBuilder().append(SALTED_HASH_PASSWORD_SPEC_ID)
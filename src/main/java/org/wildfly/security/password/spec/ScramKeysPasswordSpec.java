@@ -0,0 +1,56 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.password.spec;
+
+/**
+ * A {@link PasswordSpec} for a SCRAM password represented by its {@code StoredKey} and {@code ServerKey}, together with
+ * the salt and iteration count they were derived with, which is the storage form recommended by
+ * <a href="http://tools.ietf.org/html/rfc5802#section-3">RFC 5802</a>.  Unlike the salted password, these keys cannot
+ * be used to impersonate the user to another server.
+ */
+public class ScramKeysPasswordSpec implements PasswordSpec {
+
+    private final byte[] storedKey;
+    private final byte[] serverKey;
+    private final byte[] salt;
+    private final int iterationCount;
+
+    public ScramKeysPasswordSpec(byte[] storedKey, byte[] serverKey, byte[] salt, int iterationCount) {
+        this.storedKey = storedKey;
+        this.serverKey = serverKey;
+        this.salt = salt;
+        this.iterationCount = iterationCount;
+    }
+
+    public byte[] getStoredKey() {
+        return this.storedKey;
+    }
+
+    public byte[] getServerKey() {
+        return this.serverKey;
+    }
+
+    public byte[] getSalt() {
+        return this.salt;
+    }
+
+    public int getIterationCount() {
+        return this.iterationCount;
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.password.util;
+
+import static org.wildfly.security._private.ElytronMessages.log;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.wildfly.common.Assert;
+import org.wildfly.security.password.Password;
+import org.wildfly.security.password.PasswordFactory;
+import org.wildfly.security.password.interfaces.BCryptPassword;
+import org.wildfly.security.password.interfaces.BSDUnixDESCryptPassword;
+import org.wildfly.security.password.interfaces.ScramDigestPassword;
+import org.wildfly.security.password.interfaces.SunUnixMD5CryptPassword;
+import org.wildfly.security.password.interfaces.UnixSHACryptPassword;
+import org.wildfly.security.password.spec.EncryptablePasswordSpec;
+import org.wildfly.security.password.spec.IteratedSaltedPasswordAlgorithmSpec;
+import org.wildfly.security.permission.ElytronPermission;
+
+/**
+ * A utility to choose iteration counts for the iterated password algorithms to suit the host they run on, and to hold
+ * the default iteration counts used when a password is generated without an explicit iteration count.
+ * <p>
+ * The built-in defaults, such as {@link BCryptPassword#DEFAULT_ITERATION_COUNT}, are fixed at compile time.
+ * {@link #calibrate(String, long, TimeUnit)} instead measures how long a verification takes on this host and recommends
+ * the highest iteration count whose verification stays within a target latency.  A recommendation is never lower than
+ * the built-in default, which is the minimum cost considered acceptable.
+ * <p>
+ * Recommended counts can be installed as defaults with {@link #setDefaultIterationCount(String, int)}, for example at
+ * start up from the result of {@link #calibrateAll(long, TimeUnit)}, in which case they are used by the password
+ * implementations and the SCRAM server whenever no iteration count is specified.  As the defaults apply to the whole
+ * process, changing them requires the {@code setDefaultIterationCount} {@link ElytronPermission} when a security
+ * manager is installed.
+ */
+public final class PasswordCostCalibrator {
+
+    private static final char[] SAMPLE_PASSWORD = "calibration-sample-password".toCharArray();
+    private static final int MEASUREMENTS = 3;
+
+    private static final Map<String, Cost> COSTS;
+
+    static {
+        final Map<String, Cost> costs = new LinkedHashMap<>();
+        costs.put(BCryptPassword.ALGORITHM_BCRYPT, new Cost(BCryptPassword.DEFAULT_ITERATION_COUNT, 4, 31, true));
+        costs.put(BSDUnixDESCryptPassword.ALGORITHM_BSD_CRYPT_DES, new Cost(BSDUnixDESCryptPassword.DEFAULT_ITERATION_COUNT, 1, 0xffffff, false));
+        costs.put(UnixSHACryptPassword.ALGORITHM_CRYPT_SHA_256, new Cost(UnixSHACryptPassword.DEFAULT_ITERATION_COUNT, 1_000, 999_999_999, false));
+        costs.put(UnixSHACryptPassword.ALGORITHM_CRYPT_SHA_512, new Cost(UnixSHACryptPassword.DEFAULT_ITERATION_COUNT, 1_000, 999_999_999, false));
+        costs.put(SunUnixMD5CryptPassword.ALGORITHM_SUN_CRYPT_MD5, new Cost(SunUnixMD5CryptPassword.DEFAULT_ITERATION_COUNT, 0, Integer.MAX_VALUE, false));
+        costs.put(SunUnixMD5CryptPassword.ALGORITHM_SUN_CRYPT_MD5_BARE_SALT, new Cost(SunUnixMD5CryptPassword.DEFAULT_ITERATION_COUNT, 0, Integer.MAX_VALUE, false));
+        costs.put(ScramDigestPassword.ALGORITHM_SCRAM_SHA_1, new Cost(ScramDigestPassword.DEFAULT_ITERATION_COUNT, 1, Integer.MAX_VALUE, false));
+        costs.put(ScramDigestPassword.ALGORITHM_SCRAM_SHA_256, new Cost(ScramDigestPassword.DEFAULT_ITERATION_COUNT, 1, Integer.MAX_VALUE, false));
+        costs.put(ScramDigestPassword.ALGORITHM_SCRAM_SHA_384, new Cost(ScramDigestPassword.DEFAULT_ITERATION_COUNT, 1, Integer.MAX_VALUE, false));
+        costs.put(ScramDigestPassword.ALGORITHM_SCRAM_SHA_512, new Cost(ScramDigestPassword.DEFAULT_ITERATION_COUNT, 1, Integer.MAX_VALUE, false));
+        COSTS = Collections.unmodifiableMap(costs);
+    }
+
+    private static final ConcurrentHashMap<String, Integer> defaultIterationCounts = new ConcurrentHashMap<>();
+
+    private static final ElytronPermission SET_DEFAULT_ITERATION_COUNT_PERMISSION = new ElytronPermission("setDefaultIterationCount");
+
+    private PasswordCostCalibrator() {
+    }
+
+    /**
+     * Get the default iteration count for the given algorithm.
+     *
+     * @param algorithm the password algorithm (must not be {@code null})
+     * @param builtInDefault the value to return if no default has been set for the algorithm
+     * @return the default iteration count set for the algorithm, or {@code builtInDefault} if there is none
+     */
+    public static int getDefaultIterationCount(String algorithm, int builtInDefault) {
+        Assert.checkNotNullParam("algorithm", algorithm);
+        final Integer iterationCount = defaultIterationCounts.get(algorithm);
+        return iterationCount == null ? builtInDefault : iterationCount.intValue();
+    }
+
+    /**
+     * Set the default iteration count for the given algorithm, used whenever a password of that algorithm is generated
+     * without an explicit iteration count.  Passwords which have already been generated are not affected.
+     *
+     * @param algorithm the password algorithm, which must be one of the iterated algorithms supported by this class
+     *  (must not be {@code null})
+     * @param iterationCount the iteration count, which must be within the range accepted by the algorithm
+     * @throws SecurityException if a security manager is installed and the caller does not have the
+     *  {@code setDefaultIterationCount} {@link ElytronPermission}
+     */
+    public static void setDefaultIterationCount(String algorithm, int iterationCount) {
+        checkPermission();
+        final Cost cost = getCost(algorithm);
+        Assert.checkMinimumParameter("iterationCount", cost.minimum, iterationCount);
+        Assert.checkMaximumParameter("iterationCount", cost.maximum, iterationCount);
+        defaultIterationCounts.put(algorithm, Integer.valueOf(iterationCount));
+    }
+
+    /**
+     * Remove all default iteration counts which have been set, restoring the built-in defaults.
+     *
+     * @throws SecurityException if a security manager is installed and the caller does not have the
+     *  {@code setDefaultIterationCount} {@link ElytronPermission}
+     */
+    public static void clearDefaultIterationCounts() {
+        checkPermission();
+        defaultIterationCounts.clear();
+    }
+
+    /**
+     * Measure the given algorithm on this host and recommend the highest iteration count whose verification takes no
+     * longer than the target latency, but no less than the built-in default.
+     *
+     * @param algorithm the password algorithm (must not be {@code null})
+     * @param targetLatency the target verification latency (must be at least 1)
+     * @param unit the unit of the target latency (must not be {@code null})
+     * @return the recommended iteration count
+     * @throws NoSuchAlgorithmException if the algorithm is not an iterated algorithm supported by this class or no
+     *  provider supports it
+     */
+    public static int calibrate(String algorithm, long targetLatency, TimeUnit unit) throws NoSuchAlgorithmException {
+        Assert.checkNotNullParam("algorithm", algorithm);
+        Assert.checkMinimumParameter("targetLatency", 1L, targetLatency);
+        Assert.checkNotNullParam("unit", unit);
+        final Cost cost = COSTS.get(algorithm);
+        if (cost == null) {
+            throw log.noSuchAlgorithmInvalidAlgorithm(algorithm);
+        }
+        final PasswordFactory passwordFactory = PasswordFactory.getInstance(algorithm);
+        final long target = unit.toNanos(targetLatency);
+
+        int low = cost.builtInDefault;
+        long lowTime = measure(passwordFactory, low);
+        if (lowTime >= target) {
+            return low;
+        }
+        // raise the cost until the target is exceeded, doubling the work each time
+        for (;;) {
+            final int high = cost.logarithmic ? low + 1 : (int) Math.min(cost.maximum, 2L * low);
+            if (high == low || high > cost.maximum) {
+                return low;
+            }
+            final long highTime = measure(passwordFactory, high);
+            if (highTime > target) {
+                if (cost.logarithmic || highTime <= lowTime) {
+                    return low;
+                }
+                // the time grows linearly with the iteration count between the two measurements
+                return (int) (low + (high - low) * (double) (target - lowTime) / (highTime - lowTime));
+            }
+            low = high;
+            lowTime = highTime;
+        }
+    }
+
+    /**
+     * Measure every supported iterated algorithm which is available on this host and recommend an iteration count for
+     * each, as by {@link #calibrate(String, long, TimeUnit)}.
+     *
+     * @param targetLatency the target verification latency (must be at least 1)
+     * @param unit the unit of the target latency (must not be {@code null})
+     * @return the recommended iteration counts by algorithm name
+     */
+    public static Map<String, Integer> calibrateAll(long targetLatency, TimeUnit unit) {
+        final Map<String, Integer> result = new LinkedHashMap<>();
+        for (String algorithm : COSTS.keySet()) {
+            try {
+                result.put(algorithm, Integer.valueOf(calibrate(algorithm, targetLatency, unit)));
+            } catch (NoSuchAlgorithmException ignored) {
+                // not available on this host
+            }
+        }
+        return result;
+    }
+
+    private static long measure(PasswordFactory passwordFactory, int iterationCount) throws NoSuchAlgorithmException {
+        final Password password;
+        try {
+            password = passwordFactory.generatePassword(new EncryptablePasswordSpec(SAMPLE_PASSWORD, new IteratedSaltedPasswordAlgorithmSpec(iterationCount, null)));
+        } catch (InvalidKeySpecException e) {
+            throw log.noSuchAlgorithmInvalidAlgorithm(passwordFactory.getAlgorithm());
+        }
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < MEASUREMENTS; i++) {
+            final long start = System.nanoTime();
+            try {
+                passwordFactory.verify(password, SAMPLE_PASSWORD);
+            } catch (InvalidKeyException e) {
+                throw log.noSuchAlgorithmInvalidAlgorithm(passwordFactory.getAlgorithm());
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return best;
+    }
+
+    private static void checkPermission() {
+        final SecurityManager sm = System.getSecurityManager();
+        if (sm != null) {
+            sm.checkPermission(SET_DEFAULT_ITERATION_COUNT_PERMISSION);
+        }
+    }
+
+    private static Cost getCost(String algorithm) {
+        Assert.checkNotNullParam("algorithm", algorithm);
+        final Cost cost = COSTS.get(algorithm);
+        if (cost == null) {
+            throw log.unrecognizedAlgorithm(algorithm);
+        }
+        return cost;
+    }
+
+    static final class Cost {
+        final int builtInDefault;
+        final int minimum;
+        final int maximum;
+        final boolean logarithmic;
+
+        Cost(final int builtInDefault, final int minimum, final int maximum, final boolean logarithmic) {
+            this.builtInDefault = builtInDefault;
+            this.minimum = minimum;
+            this.maximum = maximum;
+            this.logarithmic = logarithmic;
+        }
+    }
+}
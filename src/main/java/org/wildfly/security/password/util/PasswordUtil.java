@@ -17,7 +17,7 @@
  */
 package org.wildfly.security.password.util;
 
-import java.util.concurrent.ThreadLocalRandom;
+import org.wildfly.security.util.SecureRandomSource;
 
 /**
  * Helper utility methods for operations on passwords.
@@ -35,7 +35,7 @@ public final class PasswordUtil {
      */
     public static byte[] generateRandomSalt(int saltSize) {
         byte[] randomSalt = new byte[saltSize];
-        ThreadLocalRandom.current().nextBytes(randomSalt);
+        SecureRandomSource.getSecureRandom().nextBytes(randomSalt);
         return randomSalt;
     }
 }
@@ -0,0 +1,276 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.permission;
+
+import static org.wildfly.security.permission.PermissionUtil.ALL_PERMISSIONS;
+import static org.wildfly.security.permission.PermissionUtil.EMPTY_PERMISSION_COLLECTION;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.security.AllPermission;
+import java.security.Permission;
+import java.security.PermissionCollection;
+import java.security.Permissions;
+import java.security.UnresolvedPermission;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.wildfly.security._private.ElytronMessages;
+
+/**
+ * An immutable permission collection compiled from another collection, indexed by permission class.  Each class gets
+ * the collection its permissions provide, so name set and boolean permissions are held as bit sets; permissions which
+ * provide no collection of their own are indexed by name.  Checking a permission costs one class lookup followed by
+ * the check of that class's collection, without locking the index.
+ * <p>
+ * Only collections whose implication rules are known, namely {@link Permissions} and the collections of this package,
+ * are indexed; as with those collections, a permission is only implied by permissions of the same class.  Any other
+ * collection is kept as it is and checked after the index.  {@link UnresolvedPermission}s are kept in a
+ * {@link Permissions} of their own, which resolves them when a permission of their type is first checked.
+ */
+final class CompiledPermissionCollection extends PermissionCollection {
+    private static final long serialVersionUID = -2830196880283306187L;
+
+    private final HashMap<Class<?>, PermissionCollection> byClass;
+    private final PermissionCollection[] others;
+
+    private CompiledPermissionCollection(final HashMap<Class<?>, PermissionCollection> byClass, final PermissionCollection[] others) {
+        this.byClass = byClass;
+        this.others = others;
+        setReadOnly();
+    }
+
+    static PermissionCollection compile(final PermissionCollection source) {
+        final HashMap<Class<?>, PermissionCollection> byClass = new HashMap<>();
+        final List<PermissionCollection> others = new ArrayList<>(0);
+        if (! collect(source, byClass, others)) {
+            return ALL_PERMISSIONS;
+        }
+        if (byClass.isEmpty()) {
+            if (others.isEmpty()) {
+                return EMPTY_PERMISSION_COLLECTION;
+            } else if (others.size() == 1) {
+                return others.get(0);
+            }
+        }
+        for (PermissionCollection collection : byClass.values()) {
+            collection.setReadOnly();
+        }
+        return new CompiledPermissionCollection(byClass, others.toArray(new PermissionCollection[others.size()]));
+    }
+
+    /**
+     * Add the permissions of a collection to the class index.
+     *
+     * @return {@code false} if the collection contains {@link AllPermission}, {@code true} otherwise
+     */
+    private static boolean collect(final PermissionCollection source, final Map<Class<?>, PermissionCollection> byClass, final List<PermissionCollection> others) {
+        if (source instanceof CompiledPermissionCollection) {
+            final CompiledPermissionCollection compiled = (CompiledPermissionCollection) source;
+            for (PermissionCollection collection : compiled.byClass.values()) {
+                if (! collect(collection, byClass, others)) return false;
+            }
+            Collections.addAll(others, compiled.others);
+            return true;
+        }
+        if (source instanceof UnionPermissionCollection) {
+            final UnionPermissionCollection union = (UnionPermissionCollection) source;
+            return collect(union.getFirst(), byClass, others) && collect(union.getSecond(), byClass, others);
+        }
+        if (source instanceof IntersectionPermissionCollection) {
+            // the halves are compiled on their own; permissions of an intersection cannot be enumerated
+            final IntersectionPermissionCollection intersection = (IntersectionPermissionCollection) source;
+            others.add(PermissionUtil.intersection(compile(intersection.getFirst()), compile(intersection.getSecond())));
+            return true;
+        }
+        if (source.getClass() != Permissions.class && ! (source instanceof AbstractPermissionCollection)) {
+            // the implication rules of other collections are unknown, so they are checked as they are
+            others.add(source);
+            return true;
+        }
+        Permissions unresolved = null;
+        final Enumeration<Permission> elements = source.elements();
+        while (elements.hasMoreElements()) {
+            final Permission permission = elements.nextElement();
+            if (permission instanceof AllPermission) {
+                return false;
+            }
+            if (permission instanceof UnresolvedPermission) {
+                if (unresolved == null) {
+                    unresolved = new Permissions();
+                }
+                unresolved.add(permission);
+                continue;
+            }
+            PermissionCollection collection = byClass.get(permission.getClass());
+            if (collection == null) {
+                collection = permission.newPermissionCollection();
+                if (collection == null) {
+                    collection = new NameIndexedPermissionCollection();
+                }
+                byClass.put(permission.getClass(), collection);
+            }
+            collection.add(permission);
+        }
+        if (unresolved != null) {
+            unresolved.setReadOnly();
+            others.add(unresolved);
+        }
+        return true;
+    }
+
+    public void add(final Permission permission) {
+        throw ElytronMessages.log.readOnlyPermissionCollection();
+    }
+
+    public boolean implies(final Permission permission) {
+        final PermissionCollection collection = byClass.get(permission.getClass());
+        if (collection != null && collection.implies(permission)) {
+            return true;
+        }
+        for (PermissionCollection other : others) {
+            if (other.implies(permission)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public Enumeration<Permission> elements() {
+        final List<PermissionCollection> collections = new ArrayList<>(byClass.values());
+        Collections.addAll(collections, others);
+        final Iterator<PermissionCollection> iterator = collections.iterator();
+        return new Enumeration<Permission>() {
+            private Enumeration<Permission> current = Collections.emptyEnumeration();
+
+            public boolean hasMoreElements() {
+                while (! current.hasMoreElements()) {
+                    if (! iterator.hasNext()) {
+                        return false;
+                    }
+                    current = iterator.next().elements();
+                }
+                return true;
+            }
+
+            public Permission nextElement() {
+                hasMoreElements();
+                return current.nextElement();
+            }
+        };
+    }
+
+    private void readObject(ObjectInputStream ois) throws IOException, ClassNotFoundException {
+        ois.defaultReadObject();
+        if (byClass == null) {
+            throw ElytronMessages.log.invalidObjectNull("byClass");
+        }
+        if (others == null) {
+            throw ElytronMessages.log.invalidObjectNull("others");
+        }
+    }
+
+    /**
+     * The collection for a permission class which provides no collection of its own.  Permissions are indexed by name,
+     * and those whose name ends with {@code *} by the part of the name before it, so that the permissions which are
+     * likely to imply a permission are checked first.  Since the implication rules of the class are unknown, the
+     * remaining permissions are checked only if none of those implies the permission.
+     */
+    static final class NameIndexedPermissionCollection extends PermissionCollection {
+        private static final long serialVersionUID = 4707906437410036925L;
+
+        private final HashMap<String, List<Permission>> byName = new HashMap<>();
+        private final HashMap<String, List<Permission>> byPrefix = new HashMap<>();
+        private final BitSet prefixLengths = new BitSet();
+        private final ArrayList<Permission> permissions = new ArrayList<>();
+
+        public void add(final Permission permission) {
+            if (isReadOnly()) {
+                throw ElytronMessages.log.readOnlyPermissionCollection();
+            }
+            final String name = permission.getName();
+            if (name != null && name.endsWith("*")) {
+                final String prefix = name.substring(0, name.length() - 1);
+                byPrefix.computeIfAbsent(prefix, n -> new ArrayList<>(1)).add(permission);
+                prefixLengths.set(prefix.length());
+            } else {
+                byName.computeIfAbsent(name, n -> new ArrayList<>(1)).add(permission);
+            }
+            permissions.add(permission);
+        }
+
+        public boolean implies(final Permission permission) {
+            final String name = permission.getName();
+            if (impliedBy(byName.get(name), permission)) {
+                return true;
+            }
+            if (name != null) {
+                for (int length = prefixLengths.nextSetBit(0); length != -1 && length <= name.length(); length = prefixLengths.nextSetBit(length + 1)) {
+                    if (impliedBy(byPrefix.get(name.substring(0, length)), permission)) {
+                        return true;
+                    }
+                }
+            }
+            // only the permissions the index did not already offer are left
+            for (Permission candidate : permissions) {
+                if (! isIndexedFor(candidate.getName(), name) && candidate.implies(permission)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean impliedBy(final List<Permission> candidates, final Permission permission) {
+            if (candidates != null) {
+                for (Permission candidate : candidates) {
+                    if (candidate.implies(permission)) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        private static boolean isIndexedFor(final String candidateName, final String name) {
+            if (candidateName == null || name == null) {
+                return candidateName == name;
+            }
+            if (candidateName.endsWith("*")) {
+                final int prefixLength = candidateName.length() - 1;
+                return name.length() >= prefixLength && name.regionMatches(0, candidateName, 0, prefixLength);
+            }
+            return candidateName.equals(name);
+        }
+
+        public Enumeration<Permission> elements() {
+            return Collections.enumeration(permissions);
+        }
+
+        public void setReadOnly() {
+            permissions.trimToSize();
+            super.setReadOnly();
+        }
+    }
+}
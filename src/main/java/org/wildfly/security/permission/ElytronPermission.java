@@ -27,6 +27,8 @@ import org.wildfly.security.util.StringMapping;
  *     <li>{@code createAuthenticator}</li>
  *     <li>{@code createAuthenticationContextConfigurationClient}</li>
  *     <li>{@code createSecurityDomain}</li>
+ *     <li>{@code setDefaultIterationCount}</li>
+ *     <li>{@code setSecureRandomSupplier}</li>
  * </ul>
  * The {@code actions} are not used and should be empty or {@code null}.
  *
@@ -39,7 +41,9 @@ public final class ElytronPermission extends AbstractNameSetOnlyPermission<Elytr
     private static final StringEnumeration strings = StringEnumeration.of(
         "createAuthenticator",
         "createAuthenticationContextConfigurationClient",
-        "createSecurityDomain"
+        "createSecurityDomain",
+        "setDefaultIterationCount",
+        "setSecureRandomSupplier"
     );
 
     static final StringMapping<ElytronPermission> mapping = new StringMapping<>(strings, ElytronPermission::new);
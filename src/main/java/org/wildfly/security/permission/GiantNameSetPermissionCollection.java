@@ -0,0 +1,170 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.permission;
+
+import java.security.Permission;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.wildfly.security.util.EnumerationIterator;
+import org.wildfly.security.util.StringEnumeration;
+
+/**
+ * A name set permission collection for name enumerations too large for a single {@code long}, based on a bit set held
+ * in an {@link AtomicIntegerArray}.  Adding is lock-free and checking a name costs one index lookup and one array read.
+ */
+final class GiantNameSetPermissionCollection extends NameSetPermissionCollection {
+
+    private final AtomicIntegerArray bitSet;
+
+    GiantNameSetPermissionCollection(final AbstractPermission<?> sourcePermission, final StringEnumeration nameEnumeration) {
+        super(sourcePermission, nameEnumeration);
+        bitSet = new AtomicIntegerArray((nameEnumeration.size() + 31) >>> 5);
+    }
+
+    private Permission permissionFor(int id) {
+        return ((AbstractNamedPermission<?>)getSourcePermission()).withName(getNameEnumeration().nameOf(id));
+    }
+
+    protected void doAdd(final AbstractPermission<?> permission) {
+        final String name = permission.getName();
+        if ("*".equals(name)) {
+            // add all names
+            final int words = bitSet.length();
+            for (int i = 0; i < words; i ++) {
+                setBits(i, getWordMask(i));
+            }
+        } else {
+            final int index = getNameEnumeration().indexOf(name);
+            setBits(index >>> 5, 1 << index);
+        }
+    }
+
+    private void setBits(final int word, final int setBits) {
+        final AtomicIntegerArray bitSet = this.bitSet;
+        int oldVal;
+        do {
+            oldVal = bitSet.get(word);
+            if ((oldVal & setBits) == setBits) {
+                return;
+            }
+        } while (! bitSet.compareAndSet(word, oldVal, oldVal | setBits));
+    }
+
+    public boolean implies(final Permission permission) {
+        if (permission.getClass() != getSourcePermission().getClass()) {
+            return false;
+        }
+        final String name = permission.getName();
+        if ("*".equals(name)) {
+            return isFull();
+        }
+        final int index = getNameEnumeration().indexOf(name);
+        return (bitSet.get(index >>> 5) & 1 << index) != 0;
+    }
+
+    public int size() {
+        final AtomicIntegerArray bitSet = this.bitSet;
+        final int words = bitSet.length();
+        int size = 0;
+        for (int i = 0; i < words; i ++) {
+            size += Integer.bitCount(bitSet.get(i));
+        }
+        return size == getNameEnumeration().size() ? 1 : size;
+    }
+
+    public EnumerationIterator<Permission> iterator() {
+        return new Iter(isFull());
+    }
+
+    public EnumerationIterator<Permission> elements() {
+        return iterator();
+    }
+
+    /**
+     * Get the mask of the bits of a word of the bit set which correspond to names.
+     */
+    private int getWordMask(final int word) {
+        final int remaining = getNameEnumeration().size() - (word << 5);
+        return remaining >= 32 ? -1 : -1 >>> (32 - remaining);
+    }
+
+    private boolean isFull() {
+        final AtomicIntegerArray bitSet = this.bitSet;
+        final int words = bitSet.length();
+        for (int i = 0; i < words; i ++) {
+            final int mask = getWordMask(i);
+            if ((bitSet.get(i) & mask) != mask) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * An iterator which reads the bit set one word at a time; names added while iterating may or may not be seen.
+     */
+    private class Iter implements EnumerationIterator<Permission> {
+        private boolean all;
+        private int word = -1;
+        private int bits;
+
+        Iter(final boolean all) {
+            this.all = all;
+            if (! all) {
+                advance();
+            }
+        }
+
+        private void advance() {
+            final AtomicIntegerArray bitSet = GiantNameSetPermissionCollection.this.bitSet;
+            final int words = bitSet.length();
+            while (bits == 0 && ++ word < words) {
+                bits = bitSet.get(word);
+            }
+        }
+
+        public boolean hasMoreElements() {
+            return all || bits != 0;
+        }
+
+        public Permission nextElement() {
+            if (all) {
+                all = false;
+                return ((AbstractNamedPermission<?>) getSourcePermission()).withName("*");
+            }
+            final int bits = this.bits;
+            if (bits == 0) throw new NoSuchElementException();
+            final int bit = Integer.lowestOneBit(bits);
+            this.bits = bits & ~bit;
+            final Permission permission = permissionFor((word << 5) + Integer.numberOfTrailingZeros(bit));
+            advance();
+            return permission;
+        }
+
+        public boolean hasNext() {
+            return hasMoreElements();
+        }
+
+        public Permission next() {
+            return nextElement();
+        }
+    }
+
+}
@@ -76,7 +76,7 @@ final class IntNameSetPermissionCollection extends NameSetPermissionCollection {
         final StringEnumeration nameEnumeration = getNameEnumeration();
         if ("*".equals(name)) {
             // add all names
-            bits = (1 << nameEnumeration.size()) - 1;
+            bits = -1 >>> (32 - nameEnumeration.size());
         } else {
             bits = 1 << nameEnumeration.indexOf(name);
         }
@@ -41,6 +41,14 @@ final class IntersectionPermissionCollection extends PermissionCollection {
         throw ElytronMessages.log.readOnlyPermissionCollection();
     }
 
+    PermissionCollection getFirst() {
+        return pc1;
+    }
+
+    PermissionCollection getSecond() {
+        return pc2;
+    }
+
     public boolean implies(final Permission permission) {
         return pc1.implies(permission) && pc2.implies(permission);
     }
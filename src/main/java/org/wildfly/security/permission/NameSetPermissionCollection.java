@@ -58,8 +58,7 @@ public abstract class NameSetPermissionCollection extends AbstractPermissionColl
         } else if (size <= 64) {
             return new LongNameSetPermissionCollection(sourcePermission, nameEnumeration);
         } else {
-            // TODO: add GiantNameSetPermissionCollection which uses AtomicIntegerArray
-            throw Assert.unsupported();
+            return new GiantNameSetPermissionCollection(sourcePermission, nameEnumeration);
         }
     }
 
@@ -325,6 +325,29 @@ public final class PermissionUtil {
         }
     }
 
+    /**
+     * Compile a permission collection into a read-only collection which is indexed by permission class.  Permissions
+     * of the same class are held in the collection provided by that class, so for example name set and boolean
+     * permissions are checked against a bit set, and unions of collections are flattened into a single index.  Checking
+     * a permission against the result costs a class lookup and a check of that class's collection, which makes it
+     * suitable for collections which are computed once and checked many times, such as the permissions mapped for an identity.
+     * <p>
+     * Only {@link Permissions} instances and the collections of this package are indexed, since a permission of those
+     * is only implied by permissions of the same class or by {@link AllPermission}; other collections are retained as
+     * they are and checked after the index.  The result is a snapshot, so permissions added to {@code pc} afterwards
+     * are not reflected.
+     *
+     * @param pc the permission collection to compile (must not be {@code null})
+     * @return the compiled permission collection (not {@code null})
+     */
+    public static PermissionCollection compile(PermissionCollection pc) {
+        Assert.checkNotNullParam("pc", pc);
+        if (pc instanceof CompiledPermissionCollection || pc == ALL_PERMISSIONS || pc == EMPTY_PERMISSION_COLLECTION) {
+            return pc;
+        }
+        return CompiledPermissionCollection.compile(pc);
+    }
+
     /**
      * Determine if one collection implies all the permissions in the other collection.
      *
@@ -42,6 +42,14 @@ final class UnionPermissionCollection extends PermissionCollection {
         throw ElytronMessages.log.readOnlyPermissionCollection();
     }
 
+    PermissionCollection getFirst() {
+        return pc1;
+    }
+
+    PermissionCollection getSecond() {
+        return pc2;
+    }
+
     public boolean implies(final Permission permission) {
         return pc1.implies(permission) || pc2.implies(permission);
     }
@@ -74,6 +74,20 @@ public final class WildFlySasl {
      */
     public static final String SCRAM_MAX_ITERATION_COUNT = "wildfly.sasl.scram.max-iteration-count";
 
+    /**
+     * Property name for a {@link org.wildfly.security.mechanism.scram.ScramDerivedKeyCache} instance which the SCRAM
+     * server uses to avoid deriving the salted password again on each authentication when only a clear password is
+     * available for the identity.  By default no cache is used.
+     */
+    public static final String SCRAM_DERIVED_KEY_CACHE = "wildfly.sasl.scram.derived-key-cache";
+
+    /**
+     * Property name for a {@link org.wildfly.security.sasl.digest.DigestNonceStore} instance which the {@code DIGEST-MD5}
+     * server uses to accept subsequent authentications reusing the nonce of an earlier authentication.  By default
+     * subsequent authentication is not supported.
+     */
+    public static final String DIGEST_NONCE_STORE = "wildfly.sasl.digest.nonce-store";
+
     /**
      * Property name for the algorithm name of a {@link SecureRandom} implementation to use.  Using this property can
      * improve security, at the cost of performance.
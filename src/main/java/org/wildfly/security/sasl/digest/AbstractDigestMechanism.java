@@ -21,16 +21,16 @@ package org.wildfly.security.sasl.digest;
 import static org.wildfly.security._private.ElytronMessages.log;
 import static org.wildfly.security.sasl.digest._private.DigestUtil.HASH_algorithm;
 import static org.wildfly.security.sasl.digest._private.DigestUtil.HMAC_algorithm;
-import static org.wildfly.security.sasl.digest._private.DigestUtil.computeHMAC;
 import static org.wildfly.security.sasl.digest._private.DigestUtil.create3desSecretKey;
 import static org.wildfly.security.sasl.digest._private.DigestUtil.createDesSecretKey;
-import static org.wildfly.security.sasl.digest._private.DigestUtil.decodeByteOrderedInteger;
-import static org.wildfly.security.sasl.digest._private.DigestUtil.integerByteOrdered;
 import static org.wildfly.security.sasl.digest._private.DigestUtil.messageDigestAlgorithm;
 import static org.wildfly.security.sasl.digest._private.DigestUtil.userRealmPasswordDigest;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
@@ -40,6 +40,7 @@ import java.util.HashMap;
 import javax.crypto.Cipher;
 import javax.crypto.Mac;
 import javax.crypto.SecretKey;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.IvParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
 import javax.security.auth.DestroyFailedException;
@@ -63,10 +64,10 @@ import org.wildfly.security.sasl.util.SaslMechanismInformation;
 import org.wildfly.security.sasl.util.SaslWrapper;
 import org.wildfly.security.util.ByteIterator;
 import org.wildfly.security.util.ByteStringBuilder;
+import org.wildfly.security.util.SecureRandomSource;
 import org.wildfly.security.util.DefaultTransformationMapper;
 import org.wildfly.security.util.TransformationMapper;
 import org.wildfly.security.util.TransformationSpec;
-import org.wildfly.security.util._private.Arrays2;
 
 /**
  *
@@ -106,8 +107,9 @@ abstract class AbstractDigestMechanism extends AbstractSaslParticipant {
     // H(A1)
     protected byte[] hA1;
 
-    protected SecureRandom secureRandomGenerator;
     protected Mac hmacMD5;
+    private Mac wrapMac;
+    private Mac unwrapMac;
 
     protected Cipher wrapCipher = null;
     protected Cipher unwrapCipher = null;
@@ -126,7 +128,6 @@ abstract class AbstractDigestMechanism extends AbstractSaslParticipant {
     public AbstractDigestMechanism(String mechanismName, String protocol, String serverName, CallbackHandler callbackHandler, FORMAT format, Charset charset, String[] ciphers) throws SaslException {
         super(mechanismName, protocol, serverName, callbackHandler);
 
-        secureRandomGenerator = new SecureRandom();
         hmacMD5 = getHmac();
 
         try { // H()
@@ -194,7 +195,7 @@ abstract class AbstractDigestMechanism extends AbstractSaslParticipant {
     }
 
     static byte[] generateNonce() {
-        SecureRandom random = new SecureRandom();
+        SecureRandom random = SecureRandomSource.getSecureRandom();
         byte[] nonceData = new byte[NONCE_SIZE];
         random.nextBytes(nonceData);
         return ByteIterator.ofBytes(nonceData).base64Encode().drainToString().getBytes(StandardCharsets.US_ASCII);
@@ -359,22 +360,42 @@ abstract class AbstractDigestMechanism extends AbstractSaslParticipant {
          */
         @Override
         public byte[] wrap(byte[] outgoing, int offset, int len) throws SaslException {
+            byte[] result = new byte[confidential ? getConfidentialityProtectedLength(len) : len + 16];
+            wrap(ByteBuffer.wrap(outgoing, offset, len), ByteBuffer.wrap(result));
+            return result;
+        }
+
+        /* (non-Javadoc)
+         * @see org.wildfly.security.sasl.util.SaslWrapper#unwrap(byte[], int, int)
+         */
+        @Override
+        public byte[] unwrap(byte[] incoming, int offset, int len) throws SaslException {
+            ByteBuffer target = ByteBuffer.allocate(len);
+            int count = unwrap(ByteBuffer.wrap(incoming, offset, len), target);
+            return count == 0 ? NO_BYTES : Arrays.copyOf(target.array(), count);
+        }
+
+        /* (non-Javadoc)
+         * @see org.wildfly.security.sasl.util.SaslWrapper#wrap(java.nio.ByteBuffer, java.nio.ByteBuffer)
+         */
+        @Override
+        public int wrap(ByteBuffer outgoing, ByteBuffer target) throws SaslException {
             if (confidential) {
-                return AbstractDigestMechanism.this.wrapConfidentialityProtectedMessage(outgoing, offset, len);
+                return AbstractDigestMechanism.this.wrapConfidentialityProtectedMessage(outgoing, target);
             } else {
-                return AbstractDigestMechanism.this.wrapIntegrityProtectedMessage(outgoing, offset, len);
+                return AbstractDigestMechanism.this.wrapIntegrityProtectedMessage(outgoing, target);
             }
         }
 
         /* (non-Javadoc)
-         * @see org.wildfly.security.sasl.util.SaslWrapper#unwrap(byte[], int, int)
+         * @see org.wildfly.security.sasl.util.SaslWrapper#unwrap(java.nio.ByteBuffer, java.nio.ByteBuffer)
          */
         @Override
-        public byte[] unwrap(byte[] incoming, int offset, int len) throws SaslException {
+        public int unwrap(ByteBuffer incoming, ByteBuffer target) throws SaslException {
             if (confidential) {
-                return AbstractDigestMechanism.this.unwrapConfidentialityProtectedMessage(incoming, offset, len);
+                return AbstractDigestMechanism.this.unwrapConfidentialityProtectedMessage(incoming, target);
             } else {
-                return AbstractDigestMechanism.this.unwrapIntegrityProtectedMessage(incoming, offset, len);
+                return AbstractDigestMechanism.this.unwrapIntegrityProtectedMessage(incoming, target);
             }
         }
 
@@ -383,141 +404,204 @@ abstract class AbstractDigestMechanism extends AbstractSaslParticipant {
     private static final String CLIENT_MAGIC_INTEGRITY = "Digest session key to client-to-server signing key magic constant";
     private static final String SERVER_MAGIC_INTEGRITY = "Digest session key to server-to-client signing key magic constant";
 
-    private byte[] wrapIntegrityProtectedMessage(byte[] message, int offset, int len) throws SaslException {
+    // the wrapped messages end with a 10 byte MAC (inside the encrypted part if confidential), a 2 byte message type
+    // and a 4 byte sequence number; nothing is allocated per message
+    private static final int MAC_LENGTH = 10;
+    private static final int TRAILER_LENGTH = 6;
 
-        byte[] messageMac = computeHMAC(wrapHmacKeyIntegrity, wrapSeqNum, hmacMD5, message, offset, len);
+    private byte[] wrapMacBuffer;
+    private byte[] unwrapMacBuffer;
+    private ByteBuffer wrapPaddingBuffer;
 
-        byte[] result = new byte[len + 16];
-        System.arraycopy(message, offset, result, 0, len);
-        System.arraycopy(messageMac, 0, result, len, 10);
-        integerByteOrdered(1, result, len + 10, 2);  // 2-byte message type number in network byte order with value 1
-        integerByteOrdered(wrapSeqNum, result, len + 12, 4); // 4-byte sequence number in network byte order
-        wrapSeqNum++;
-        return result;
-    }
+    private int wrapIntegrityProtectedMessage(ByteBuffer message, ByteBuffer target) throws SaslException {
+        int len = message.remaining();
+        if (target.remaining() < len + MAC_LENGTH + TRAILER_LENGTH) {
+            throw new BufferOverflowException();
+        }
 
-    private byte[] unwrapIntegrityProtectedMessage(byte[] message, int offset, int len) throws SaslException {
+        computeMac(wrapMac, wrapSeqNum, message.duplicate(), wrapMacBuffer);
 
-        int messageType = decodeByteOrderedInteger(message, offset + len - 6, 2);
-        int extractedSeqNum = decodeByteOrderedInteger(message, offset + len - 4, 4);
+        target.put(message);
+        target.put(wrapMacBuffer, 0, MAC_LENGTH);
+        putTrailer(target, wrapSeqNum);
+        wrapSeqNum++;
+        return len + MAC_LENGTH + TRAILER_LENGTH;
+    }
 
-        if (messageType != 1) {
-            throw log.mechMessageTypeMustEqual(getMechanismName(), 1, messageType).toSaslException();
+    private int unwrapIntegrityProtectedMessage(ByteBuffer message, ByteBuffer target) throws SaslException {
+        int len = message.remaining();
+        int start = message.position();
+        int extractedSeqNum = checkTrailer(message, unwrapSeqNum);
+        if (len < MAC_LENGTH + TRAILER_LENGTH) {
+            message.position(start + len);
+            return 0;
         }
 
-        if (extractedSeqNum != unwrapSeqNum) {
-            throw log.mechBadSequenceNumberWhileUnwrapping(getMechanismName(), unwrapSeqNum, extractedSeqNum).toSaslException();
+        int messageLength = len - MAC_LENGTH - TRAILER_LENGTH;
+        if (target.remaining() < messageLength) {
+            throw new BufferOverflowException();
         }
 
-        byte[] extractedMessageMac = new byte[10];
-        byte[] extractedMessage = new byte[len - 16];
-        System.arraycopy(message, offset, extractedMessage, 0, len - 16);
-        System.arraycopy(message, offset + len - 16, extractedMessageMac, 0, 10);
-
-        byte[] expectedHmac = computeHMAC(unwrapHmacKeyIntegrity, extractedSeqNum, hmacMD5, extractedMessage, 0, extractedMessage.length);
+        ByteBuffer extractedMessage = message.duplicate();
+        extractedMessage.limit(start + messageLength);
+        computeMac(unwrapMac, extractedSeqNum, extractedMessage.duplicate(), unwrapMacBuffer);
 
+        message.position(start + len);
         // validate MAC block
-        if (Arrays2.equals(expectedHmac, 0, extractedMessageMac, 0, 10) == false) {
-            return NO_BYTES;
+        if (! macEquals(unwrapMacBuffer, message, start + messageLength)) {
+            return 0;
         }
 
+        target.put(extractedMessage);
         unwrapSeqNum++; // increment only if MAC is valid
-        return extractedMessage;
+        return messageLength;
     }
 
-    private byte[] wrapConfidentialityProtectedMessage(byte[] message, int offset, int len) throws SaslException {
-
-        byte[] messageMac = computeHMAC(wrapHmacKeyIntegrity, wrapSeqNum, hmacMD5, message, offset, len);
-
-        int paddingLength = 0;
-        byte[] pad = null;
+    private int getConfidentialityProtectedLength(int len) {
         int blockSize = wrapCipher.getBlockSize();
-        if (blockSize > 0) {
-            paddingLength = blockSize - ((len + 10) % blockSize);
-            pad = new byte[paddingLength];
-            Arrays.fill(pad, (byte)paddingLength);
+        int paddingLength = blockSize > 0 ? blockSize - ((len + MAC_LENGTH) % blockSize) : 0;
+        return len + paddingLength + MAC_LENGTH + TRAILER_LENGTH;
+    }
+
+    private int wrapConfidentialityProtectedMessage(ByteBuffer message, ByteBuffer target) throws SaslException {
+        int len = message.remaining();
+        int wrappedLength = getConfidentialityProtectedLength(len);
+        if (target.remaining() < wrappedLength) {
+            throw new BufferOverflowException();
         }
 
-        byte[] toCipher = new byte[len + paddingLength + 10];
-        System.arraycopy(message, offset, toCipher, 0, len);
-        if (paddingLength > 0) {
-            System.arraycopy(pad, 0, toCipher, len, paddingLength);
+        computeMac(wrapMac, wrapSeqNum, message.duplicate(), wrapMacBuffer);
+
+        // padding and MAC follow the message in the encrypted part
+        int paddingLength = wrappedLength - len - MAC_LENGTH - TRAILER_LENGTH;
+        ByteBuffer padding = wrapPaddingBuffer;
+        padding.clear();
+        for (int i = 0; i < paddingLength; i++) {
+            padding.put((byte) paddingLength);
         }
-        System.arraycopy(messageMac, 0, toCipher, len + paddingLength, 10);
+        padding.put(wrapMacBuffer, 0, MAC_LENGTH);
+        padding.flip();
 
-        byte[] cipheredPart = null;
         try {
-            cipheredPart = wrapCipher.update(toCipher);
+            wrapCipher.update(message, target);
+            wrapCipher.update(padding, target);
         } catch (Exception e) {
             throw log.mechProblemDuringCrypt(getMechanismName(), e).toSaslException();
         }
 
-        byte[] result = new byte[cipheredPart.length + 6];
-        System.arraycopy(cipheredPart, 0, result, 0, cipheredPart.length);
-        integerByteOrdered(1, result, cipheredPart.length, 2);  // 2-byte message type number in network byte order with value 1
-        integerByteOrdered(wrapSeqNum, result, cipheredPart.length + 2, 4); // 4-byte sequence number in network byte order
-
+        putTrailer(target, wrapSeqNum);
         wrapSeqNum++;
-        return result;
+        return wrappedLength;
     }
 
-    private byte[] unwrapConfidentialityProtectedMessage(byte[] message, int offset, int len) throws SaslException {
-
-        int messageType = decodeByteOrderedInteger(message, offset + len - 6, 2);
-        int extractedSeqNum = decodeByteOrderedInteger(message, offset + len - 4, 4);
-
-        if (messageType != 1) {
-            throw log.mechMessageTypeMustEqual(getMechanismName(), 1, messageType).toSaslException();
-        }
-
-        if (extractedSeqNum != unwrapSeqNum) {
-            throw log.mechBadSequenceNumberWhileUnwrapping(getMechanismName(), unwrapSeqNum, extractedSeqNum).toSaslException();
+    private int unwrapConfidentialityProtectedMessage(ByteBuffer message, ByteBuffer target) throws SaslException {
+        int len = message.remaining();
+        int start = message.position();
+        int extractedSeqNum = checkTrailer(message, unwrapSeqNum);
+        if (target.remaining() < len - TRAILER_LENGTH) {
+            throw new BufferOverflowException();
         }
 
-        byte[] clearText = null;
+        // decrypt in place into the target buffer, then strip the padding and MAC
+        int targetStart = target.position();
+        ByteBuffer cipheredPart = message.duplicate();
+        cipheredPart.limit(start + len - TRAILER_LENGTH);
+        int clearTextLength;
         try {
-            clearText = unwrapCipher.update(message, offset, len - 6);
+            clearTextLength = unwrapCipher.update(cipheredPart, target);
         } catch (Exception e) {
             throw log.mechProblemDuringDecrypt(getMechanismName(), e).toSaslException();
         }
+        message.position(start + len);
+        target.position(targetStart);
 
-        byte[] hmac = new byte[10];
-        System.arraycopy(clearText, clearText.length - 10, hmac, 0, 10);
-
-        byte[] decryptedMessage = null;
-        // strip potential padding
-        if (unwrapCipher.getBlockSize() > 0) {
-            int padSize = clearText[clearText.length - 10 - 1];
-            int decryptedMessageSize = clearText.length - 10;
-            if (padSize < 8) {
-                int i = clearText.length - 10 - 1;
-                while (clearText[i] == padSize) {
-                    i--;
-                }
-                decryptedMessageSize = i + 1;
+        int decryptedMessageSize = clearTextLength - MAC_LENGTH;
+        int blockSize = unwrapCipher.getBlockSize();
+        if (blockSize > 0 && decryptedMessageSize > 0) {
+            int padSize = target.get(targetStart + decryptedMessageSize - 1) & 0xff;
+            if (padSize == 0 || padSize > blockSize || padSize > decryptedMessageSize) {
+                return 0;
             }
-            decryptedMessage = new byte[decryptedMessageSize];
-            System.arraycopy(clearText, 0, decryptedMessage, 0, decryptedMessageSize);
-        } else {
-            decryptedMessage = new byte[clearText.length - 10];
-            System.arraycopy(clearText, 0, decryptedMessage, 0, clearText.length - 10);
+            decryptedMessageSize -= padSize;
+        }
+        if (decryptedMessageSize < 0) {
+            return 0;
         }
 
-        byte[] expectedHmac = computeHMAC(unwrapHmacKeyIntegrity, extractedSeqNum, hmacMD5, decryptedMessage, 0, decryptedMessage.length);
+        ByteBuffer decryptedMessage = target.duplicate();
+        decryptedMessage.limit(targetStart + decryptedMessageSize);
+        computeMac(unwrapMac, extractedSeqNum, decryptedMessage, unwrapMacBuffer);
 
         // check hmac-s
-        if (Arrays2.equals(expectedHmac, 0, hmac, 0, 10) == false) {
-            return NO_BYTES;
+        if (! macEquals(unwrapMacBuffer, target, targetStart + clearTextLength - MAC_LENGTH)) {
+            return 0;
         }
 
+        target.position(targetStart + decryptedMessageSize);
         unwrapSeqNum++; // increment only if MAC is valid
-        return decryptedMessage;
+        return decryptedMessageSize;
+    }
+
+    private static void computeMac(Mac mac, int sequenceNumber, ByteBuffer message, byte[] output) throws SaslException {
+        mac.update((byte) (sequenceNumber >>> 24));
+        mac.update((byte) (sequenceNumber >>> 16));
+        mac.update((byte) (sequenceNumber >>> 8));
+        mac.update((byte) sequenceNumber);
+        mac.update(message);
+        try {
+            mac.doFinal(output, 0);
+        } catch (ShortBufferException e) {
+            // the output buffer is sized from the MAC length
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static boolean macEquals(byte[] expected, ByteBuffer buffer, int offset) {
+        int diff = 0;
+        for (int i = 0; i < MAC_LENGTH; i++) {
+            diff |= expected[i] ^ buffer.get(offset + i);
+        }
+        return diff == 0;
+    }
+
+    private static void putTrailer(ByteBuffer target, int sequenceNumber) {
+        // 2-byte message type number in network byte order with value 1
+        target.put((byte) 0);
+        target.put((byte) 1);
+        // 4-byte sequence number in network byte order
+        target.put((byte) (sequenceNumber >>> 24));
+        target.put((byte) (sequenceNumber >>> 16));
+        target.put((byte) (sequenceNumber >>> 8));
+        target.put((byte) sequenceNumber);
+    }
+
+    private int checkTrailer(ByteBuffer message, int expectedSeqNum) throws SaslException {
+        int end = message.limit();
+        if (message.remaining() < TRAILER_LENGTH) {
+            throw log.mechMessageTypeMustEqual(getMechanismName(), 1, -1).toSaslException();
+        }
+        int messageType = (message.get(end - 6) & 0xff) << 8 | message.get(end - 5) & 0xff;
+        int extractedSeqNum = (message.get(end - 4) & 0xff) << 24 | (message.get(end - 3) & 0xff) << 16
+                | (message.get(end - 2) & 0xff) << 8 | message.get(end - 1) & 0xff;
+
+        if (messageType != 1) {
+            throw log.mechMessageTypeMustEqual(getMechanismName(), 1, messageType).toSaslException();
+        }
+
+        if (extractedSeqNum != expectedSeqNum) {
+            throw log.mechBadSequenceNumberWhileUnwrapping(getMechanismName(), expectedSeqNum, extractedSeqNum).toSaslException();
+        }
+        return extractedSeqNum;
     }
 
     protected void createCiphersAndKeys() throws SaslException {
 
         wrapHmacKeyIntegrity = createIntegrityKey(true);
         unwrapHmacKeyIntegrity = createIntegrityKey(false);
+        wrapMac = createIntegrityMac(wrapHmacKeyIntegrity);
+        unwrapMac = createIntegrityMac(unwrapHmacKeyIntegrity);
+        wrapMacBuffer = new byte[wrapMac.getMacLength()];
+        unwrapMacBuffer = new byte[unwrapMac.getMacLength()];
 
         if (cipher == null || cipher.length() == 0) {
             return;
@@ -525,6 +609,17 @@ abstract class AbstractDigestMechanism extends AbstractSaslParticipant {
 
         wrapCipher = createCipher(true);
         unwrapCipher = createCipher(false);
+        wrapPaddingBuffer = ByteBuffer.allocate(Math.max(wrapCipher.getBlockSize(), 0) + MAC_LENGTH);
+    }
+
+    private Mac createIntegrityMac(byte[] key) throws SaslException {
+        Mac mac = getHmac();
+        try {
+            mac.init(new SecretKeySpec(key, HMAC_algorithm));
+        } catch (InvalidKeyException e) {
+            throw log.mechInvalidKeyForDigestHMAC().toSaslException();
+        }
+        return mac;
     }
 
     protected byte[] createIntegrityKey(boolean wrap){
@@ -585,9 +680,9 @@ abstract class AbstractDigestMechanism extends AbstractSaslParticipant {
             }
 
             if (IV != null) {
-                ciph.init((wrap ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE), cipherKey, new IvParameterSpec(IV), secureRandomGenerator);
+                ciph.init((wrap ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE), cipherKey, new IvParameterSpec(IV), SecureRandomSource.getSecureRandom());
             } else {
-                ciph.init((wrap ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE), cipherKey, secureRandomGenerator);
+                ciph.init((wrap ? Cipher.ENCRYPT_MODE : Cipher.DECRYPT_MODE), cipherKey, SecureRandomSource.getSecureRandom());
             }
         } catch (Exception e) {
             throw log.mechProblemGettingRequiredCipher(getMechanismName(), e).toSaslException();
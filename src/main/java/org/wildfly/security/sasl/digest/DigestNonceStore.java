@@ -0,0 +1,197 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.sasl.digest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.wildfly.common.Assert;
+
+/**
+ * A server-side store of the nonces issued by {@code DIGEST-MD5} servers, allowing clients to use the subsequent
+ * authentication of RFC 2831 section 2.2.
+ * <p>
+ * After a successful authentication the nonce and its nonce count are kept in the store, bound to the user name and
+ * realm which were authenticated.  A client which reconnects may then send a digest response as its initial response,
+ * reusing the nonce with the next nonce count and a new client nonce for the same user name and realm, and so skip
+ * the server challenge.  Each nonce count is only accepted once and only in sequence, so a captured
+ * response cannot be replayed.  A nonce which is unknown, has expired, has been evicted or was issued to another user
+ * name or realm is reported to the client as stale, and the client falls back to a full authentication.
+ * <p>
+ * The store is bounded, evicting the least recently used nonce, and nonces expire after a maximum age.  An instance is
+ * meant to be shared between servers by passing it to the {@code DIGEST-MD5} SASL server factory using the
+ * {@link org.wildfly.security.sasl.WildFlySasl#DIGEST_NONCE_STORE} property.
+ */
+public final class DigestNonceStore {
+
+    private final int maxEntries;
+    private final long maxAgeNanos;
+    private final LinkedHashMap<String, Entry> nonces;
+    private final AtomicLong reuseCount = new AtomicLong();
+    private final AtomicLong staleCount = new AtomicLong();
+
+    /**
+     * Construct a new instance.
+     *
+     * @param maxEntries the maximum number of nonces to keep (must be at least 1)
+     * @param maxAge the time in milliseconds after which a nonce can no longer be reused, or {@code -1} to keep it until
+     *  it is evicted
+     */
+    public DigestNonceStore(final int maxEntries, final long maxAge) {
+        Assert.checkMinimumParameter("maxEntries", 1, maxEntries);
+        Assert.checkMinimumParameter("maxAge", -1L, maxAge);
+        this.maxEntries = maxEntries;
+        this.maxAgeNanos = maxAge == -1 ? -1 : TimeUnit.MILLISECONDS.toNanos(maxAge);
+        this.nonces = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            protected boolean removeEldestEntry(final Map.Entry<String, Entry> eldest) {
+                return size() > DigestNonceStore.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Record a nonce which has been used for a successful authentication.
+     *
+     * @param nonce the nonce
+     * @param nonceCount the nonce count of the authentication
+     * @param username the user name sent by the client
+     * @param realm the realm sent by the client, or {@code null} if none was sent
+     */
+    void add(final byte[] nonce, final int nonceCount, final byte[] username, final byte[] realm) {
+        final Entry entry = new Entry(nonceCount, System.nanoTime(), username, realm);
+        synchronized (nonces) {
+            nonces.put(key(nonce), entry);
+        }
+    }
+
+    /**
+     * Get the last nonce count accepted for a nonce.
+     *
+     * @param nonce the nonce sent by the client
+     * @param username the user name sent by the client
+     * @param realm the realm sent by the client, or {@code null} if none was sent
+     * @return the last accepted nonce count, or {@code -1} if the nonce is unknown, has expired or was recorded for
+     *  another user name or realm
+     */
+    int getNonceCount(final byte[] nonce, final byte[] username, final byte[] realm) {
+        final String key = key(nonce);
+        synchronized (nonces) {
+            final Entry entry = nonces.get(key);
+            if (entry != null) {
+                if (maxAgeNanos != -1 && System.nanoTime() - entry.created >= maxAgeNanos) {
+                    nonces.remove(key);
+                } else if (entry.isFor(username, realm)) {
+                    return entry.nonceCount;
+                }
+            }
+        }
+        staleCount.incrementAndGet();
+        return -1;
+    }
+
+    /**
+     * Advance the nonce count of a nonce, if it has not been advanced since it was read.  This is the step which prevents
+     * replay: of two authentications using the same nonce count only one is able to advance it.
+     *
+     * @param nonce the nonce
+     * @param previousCount the nonce count previously returned by {@link #getNonceCount(byte[], byte[], byte[])}
+     * @param nonceCount the new nonce count
+     * @param username the user name sent by the client
+     * @param realm the realm sent by the client, or {@code null} if none was sent
+     * @return {@code true} if the nonce count was advanced, {@code false} otherwise
+     */
+    boolean advance(final byte[] nonce, final int previousCount, final int nonceCount, final byte[] username, final byte[] realm) {
+        synchronized (nonces) {
+            final Entry entry = nonces.get(key(nonce));
+            if (entry == null || entry.nonceCount != previousCount || ! entry.isFor(username, realm)) {
+                return false;
+            }
+            entry.nonceCount = nonceCount;
+        }
+        reuseCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Remove all nonces, forcing every client to perform a full authentication.
+     */
+    public void clear() {
+        synchronized (nonces) {
+            nonces.clear();
+        }
+    }
+
+    /**
+     * Get the number of nonces currently held.
+     *
+     * @return the number of nonces
+     */
+    public int size() {
+        synchronized (nonces) {
+            return nonces.size();
+        }
+    }
+
+    /**
+     * Get the number of subsequent authentications which reused a nonce.
+     *
+     * @return the reuse count
+     */
+    public long getReuseCount() {
+        return reuseCount.get();
+    }
+
+    /**
+     * Get the number of subsequent authentication attempts with an unknown or expired nonce, or with a nonce recorded
+     * for another user name or realm.
+     *
+     * @return the stale count
+     */
+    public long getStaleCount() {
+        return staleCount.get();
+    }
+
+    private static String key(final byte[] nonce) {
+        return new String(nonce, StandardCharsets.ISO_8859_1);
+    }
+
+    static final class Entry {
+        int nonceCount;
+        final long created;
+        final byte[] username;
+        final byte[] realm;
+
+        Entry(final int nonceCount, final long created, final byte[] username, final byte[] realm) {
+            this.nonceCount = nonceCount;
+            this.created = created;
+            this.username = username;
+            this.realm = realm;
+        }
+
+        boolean isFor(final byte[] username, final byte[] realm) {
+            return Arrays.equals(this.username, username) && Arrays.equals(this.realm, realm);
+        }
+    }
+}
@@ -42,11 +42,12 @@ import javax.security.sasl.SaslServer;
  */
 class DigestSaslServer extends AbstractDigestMechanism implements SaslServer {
 
-    DigestSaslServer(String[] realms, String mechanismName, String protocol, String serverName, CallbackHandler callbackHandler, Charset charset, String[] qops, String[] ciphers) throws SaslException {
+    DigestSaslServer(String[] realms, String mechanismName, String protocol, String serverName, CallbackHandler callbackHandler, Charset charset, String[] qops, String[] ciphers, DigestNonceStore nonceStore) throws SaslException {
         super(mechanismName, protocol, serverName, callbackHandler, FORMAT.SERVER, charset, ciphers);
         this.realms = realms;
         this.supportedCiphers = getSupportedCiphers(ciphers);
         this.qops = qops;
+        this.nonceStore = nonceStore;
     }
 
     private static final byte STEP_ONE = 1;
@@ -57,6 +58,7 @@ class DigestSaslServer extends AbstractDigestMechanism implements SaslServer {
     private int receivingMaxBuffSize = DEFAULT_MAXBUF;
     private String[] qops;
     private int nonceCount = -1;
+    private final DigestNonceStore nonceStore;
 
     /**
      * Generates a digest challenge
@@ -82,9 +84,10 @@ class DigestSaslServer extends AbstractDigestMechanism implements SaslServer {
      *   cipher-value      = "3des" | "des" | "rc4-40" | "rc4" |
      *                       "rc4-56" | token
      *   auth-param        = token "=" ( token | quoted-string )
+     * @param stale {@code true} if the client attempted a subsequent authentication with a stale nonce
      * @return
      */
-    private byte[] generateChallenge() {
+    private byte[] generateChallenge(boolean stale) {
         ByteStringBuilder challenge = new ByteStringBuilder();
 
         // realms
@@ -102,6 +105,11 @@ class DigestSaslServer extends AbstractDigestMechanism implements SaslServer {
         challenge.append(SaslQuote.quote(nonce));
         challenge.append("\"").append(DELIMITER);
 
+        // stale
+        if (stale) {
+            challenge.append("stale=true").append(DELIMITER);
+        }
+
         // qop
         if (qops != null) {
             challenge.append("qop=\"");
@@ -143,7 +151,11 @@ class DigestSaslServer extends AbstractDigestMechanism implements SaslServer {
     private void noteDigestResponseData(HashMap<String, byte[]> parsedDigestResponse) {
         byte[] data = parsedDigestResponse.get("nc");
         if (data != null) {
-            nonceCount = Integer.parseInt(new String(data, StandardCharsets.UTF_8));
+            try {
+                nonceCount = Integer.parseInt(new String(data, StandardCharsets.UTF_8), 16);
+            } catch (NumberFormatException e) {
+                nonceCount = -1;
+            }
         } else {
             nonceCount = -1;
         }
@@ -163,9 +175,9 @@ class DigestSaslServer extends AbstractDigestMechanism implements SaslServer {
         }
     }
 
-    private byte[] validateDigestResponse(HashMap<String, byte[]> parsedDigestResponse) throws SaslException {
-        if (nonceCount != 1) {
-            throw log.mechNonceCountMustEqual(getMechanismName(), 1, nonceCount).toSaslException();
+    private byte[] validateDigestResponse(HashMap<String, byte[]> parsedDigestResponse, int expectedNonceCount) throws SaslException {
+        if (nonceCount != expectedNonceCount) {
+            throw log.mechNonceCountMustEqual(getMechanismName(), expectedNonceCount, nonceCount).toSaslException();
         }
 
         Charset clientCharset = StandardCharsets.ISO_8859_1;
@@ -318,10 +330,13 @@ class DigestSaslServer extends AbstractDigestMechanism implements SaslServer {
         switch (state) {
             case STEP_ONE:
                 if (message != null && message.length != 0) {
-                    throw log.mechInitialChallengeMustBeEmpty(getMechanismName()).toSaslException();
+                    if (nonceStore == null) {
+                        throw log.mechInitialChallengeMustBeEmpty(getMechanismName()).toSaslException();
+                    }
+                    return evaluateSubsequentResponse(message);
                 }
                 setNegotiationState(STEP_THREE);
-                return generateChallenge();
+                return generateChallenge(false);
             case STEP_THREE:
                 if (message == null || message.length == 0) {
                     throw log.mechClientRefusesToInitiateAuthentication(getMechanismName()).toSaslException();
@@ -332,12 +347,44 @@ class DigestSaslServer extends AbstractDigestMechanism implements SaslServer {
                 noteDigestResponseData(parsedDigestResponse);
 
                 // validate
-                byte[] response = validateDigestResponse(parsedDigestResponse);
+                byte[] response = validateDigestResponse(parsedDigestResponse, 1);
 
+                if (nonceStore != null) {
+                    nonceStore.add(nonce, nonceCount, parsedDigestResponse.get("username"), parsedDigestResponse.get("realm"));
+                }
                 negotiationComplete();
                 return response;
         }
         throw Assert.impossibleSwitchCase(state);
     }
 
+    /**
+     * Evaluate a digest response sent as the initial response, reusing the nonce of an earlier authentication
+     * (RFC 2831 section 2.2).  If the nonce is not known for the user name and realm of the response a challenge with a
+     * fresh nonce is returned instead, marked as stale so the client performs a full authentication.
+     */
+    private byte[] evaluateSubsequentResponse(final byte[] message) throws SaslException {
+        HashMap<String, byte[]> parsedDigestResponse = parseResponse(message);
+        byte[] nonceFromClient = parsedDigestResponse.get("nonce");
+        // the nonce is only reused for the user name and realm it was issued to
+        byte[] username = parsedDigestResponse.get("username");
+        byte[] realm = parsedDigestResponse.get("realm");
+        int previousCount = nonceFromClient == null ? -1 : nonceStore.getNonceCount(nonceFromClient, username, realm);
+        if (previousCount == -1) {
+            setNegotiationState(STEP_THREE);
+            return generateChallenge(true);
+        }
+        noteDigestResponseData(parsedDigestResponse);
+        nonce = nonceFromClient;
+
+        byte[] response = validateDigestResponse(parsedDigestResponse, previousCount + 1);
+
+        // a concurrent authentication may have used the same nonce count
+        if (! nonceStore.advance(nonce, previousCount, nonceCount, username, realm)) {
+            throw log.mechNonceCountMustEqual(getMechanismName(), previousCount + 1, nonceCount).toSaslException();
+        }
+        negotiationComplete();
+        return response;
+    }
+
 }
@@ -90,7 +90,10 @@ public class DigestServerFactory extends AbstractDigestFactory implements SaslSe
         String supportedCipherOpts = (String)props.get(WildFlySasl.SUPPORTED_CIPHER_NAMES);
         String[] cipherOpts = (supportedCipherOpts == null ? null : supportedCipherOpts.split(","));
 
-        final DigestSaslServer server = new DigestSaslServer(realms, mechanism, protocol, serverName, cbh, charset, qops, cipherOpts);
+        final Object nonceStoreProperty = props.get(WildFlySasl.DIGEST_NONCE_STORE);
+        final DigestNonceStore nonceStore = nonceStoreProperty instanceof DigestNonceStore ? (DigestNonceStore) nonceStoreProperty : null;
+
+        final DigestSaslServer server = new DigestSaslServer(realms, mechanism, protocol, serverName, cbh, charset, qops, cipherOpts, nonceStore);
         server.init();
         return server;
     }
@@ -42,7 +42,6 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.Random;
-import java.util.concurrent.ThreadLocalRandom;
 
 import javax.security.auth.x500.X500Principal;
 
@@ -50,6 +49,7 @@ import org.wildfly.common.Assert;
 import org.wildfly.security.asn1.ASN1Exception;
 import org.wildfly.security.asn1.DERDecoder;
 import org.wildfly.security.asn1.DEREncoder;
+import org.wildfly.security.util.SecureRandomSource;
 import org.wildfly.security.x500.X500;
 import org.wildfly.security.x500.X500PrincipalUtil;
 
@@ -286,7 +286,7 @@ class EntityUtil {
      * @param secureRandom the secure random to use (may be null)
      */
     public static byte[] encodeRandomNumber(final DEREncoder encoder, SecureRandom secureRandom) {
-        Random random = secureRandom != null ? secureRandom : ThreadLocalRandom.current();
+        Random random = secureRandom != null ? secureRandom : SecureRandomSource.getSecureRandom();
         byte[] randomA = generateRandomString(48, random);
         encoder.encodeOctetString(randomA);
         return randomA;
@@ -23,7 +23,6 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
-import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.Map;
 import java.util.Random;
@@ -39,6 +38,7 @@ import org.wildfly.common.Assert;
 import org.wildfly.security.manager.WildFlySecurityManager;
 import org.wildfly.security.sasl.util.AbstractSaslServer;
 import org.wildfly.security.util.CodePointIterator;
+import org.wildfly.security.util.SecureRandomSource;
 import org.wildfly.security.util._private.Arrays2;
 
 import static org.wildfly.security._private.ElytronMessages.log;
@@ -123,7 +123,7 @@ public final class LocalUserServer extends AbstractSaslServer implements SaslSer
 
     private Random getRandom() {
         if (useSecureRandom) {
-            return new SecureRandom();
+            return SecureRandomSource.getSecureRandom();
         } else {
             return new Random();
         }
@@ -27,7 +27,6 @@ import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.Arrays;
 import java.util.Random;
-import java.util.concurrent.ThreadLocalRandom;
 
 import javax.security.auth.callback.CallbackHandler;
 import javax.security.auth.callback.NameCallback;
@@ -42,6 +41,7 @@ import org.wildfly.security.sasl.util.AbstractSaslClient;
 import org.wildfly.security.sasl.util.StringPrep;
 import org.wildfly.security.util.ByteStringBuilder;
 import org.wildfly.security.util.CodePointIterator;
+import org.wildfly.security.util.SecureRandomSource;
 
 /**
  * SaslClient for the OTP SASL mechanism as defined by
@@ -198,7 +198,7 @@ final class OTPSaslClient extends AbstractSaslClient {
                 String newOTP, newSeed, newAlgorithm;
                 int newSequenceNumber;
                 do {
-                    Random random = secureRandom != null ? secureRandom : ThreadLocalRandom.current();
+                    Random random = secureRandom != null ? secureRandom : SecureRandomSource.getSecureRandom();
                     newSeed = generateRandomAlphanumericString(DEFAULT_SEED_LENGTH, random);
                 } while (newSeed.equals(seed));
 
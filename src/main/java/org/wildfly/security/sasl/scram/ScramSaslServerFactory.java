@@ -33,6 +33,7 @@ import javax.security.sasl.SaslServerFactory;
 import org.kohsuke.MetaInfServices;
 import org.wildfly.security.auth.callback.ChannelBindingCallback;
 import org.wildfly.security.mechanism.AuthenticationMechanismException;
+import org.wildfly.security.mechanism.scram.ScramDerivedKeyCache;
 import org.wildfly.security.mechanism.scram.ScramMechanism;
 import org.wildfly.security.sasl.WildFlySasl;
 import org.wildfly.security.sasl.util.SaslMechanismInformation;
@@ -60,47 +61,49 @@ public final class ScramSaslServerFactory implements SaslServerFactory {
         boolean bindingRequired = "true".equals(props.get(WildFlySasl.CHANNEL_BINDING_REQUIRED));
         int minimumIterationCount = ScramUtil.getIntProperty(props, WildFlySasl.SCRAM_MIN_ITERATION_COUNT, 4096);
         int maximumIterationCount = ScramUtil.getIntProperty(props, WildFlySasl.SCRAM_MAX_ITERATION_COUNT, 32768);
+        final Object cacheProperty = props.get(WildFlySasl.SCRAM_DERIVED_KEY_CACHE);
+        final ScramDerivedKeyCache derivedKeyCache = cacheProperty instanceof ScramDerivedKeyCache ? (ScramDerivedKeyCache) cacheProperty : null;
         try {
             switch (mechanism) {
                 case SaslMechanismInformation.Names.SCRAM_SHA_1_PLUS:
                     if (! bindingOk) return null;
                     return new ScramSaslServer(mechanism, protocol, serverName, cbh, ScramMechanism.SCRAM_SHA_1_PLUS.createServer(
-                        cbh, ScramUtil.getSecureRandom(props), callback, minimumIterationCount, maximumIterationCount
+                        cbh, ScramUtil.getSecureRandom(props), callback, minimumIterationCount, maximumIterationCount, derivedKeyCache
                     ), callback);
                 case SaslMechanismInformation.Names.SCRAM_SHA_1:
                     if (bindingRequired) return null;
                     return new ScramSaslServer(mechanism, protocol, serverName, cbh, ScramMechanism.SCRAM_SHA_1.createServer(
-                        cbh, ScramUtil.getSecureRandom(props), callback, minimumIterationCount, maximumIterationCount
+                        cbh, ScramUtil.getSecureRandom(props), callback, minimumIterationCount, maximumIterationCount, derivedKeyCache
                     ), callback);
                 case SaslMechanismInformation.Names.SCRAM_SHA_256_PLUS:
                     if (! bindingOk) return null;
                     return new ScramSaslServer(mechanism, protocol, serverName, cbh, ScramMechanism.SCRAM_SHA_256_PLUS.createServer(
-                        cbh, ScramUtil.getSecureRandom(props), callback, minimumIterationCount, maximumIterationCount
+                        cbh, ScramUtil.getSecureRandom(props), callback, minimumIterationCount, maximumIterationCount, derivedKeyCache
                     ), callback);
                 case SaslMechanismInformation.Names.SCRAM_SHA_256:
                     if (bindingRequired) return null;
                     return new ScramSaslServer(mechanism, protocol, serverName, cbh, ScramMechanism.SCRAM_SHA_256.createServer(
-                        cbh, ScramUtil.getSecureRandom(props), callback, minimumIterationCount, maximumIterationCount
+                        cbh, ScramUtil.getSecureRandom(props), callback, minimumIterationCount, maximumIterationCount, derivedKeyCache
                     ), callback);
                 case SaslMechanismInformation.Names.SCRAM_SHA_384_PLUS:
                     if (! bindingOk) return null;
                     return new ScramSaslServer(mechanism, protocol, serverName, cbh, ScramMechanism.SCRAM_SHA_384_PLUS.createServer(
-                        cbh, ScramUtil.getSecureRandom(props), callback, minimumIterationCount, maximumIterationCount
+                        cbh, ScramUtil.getSecureRandom(props), callback, minimumIterationCount, maximumIterationCount, derivedKeyCache
                     ), callback);
                 case SaslMechanismInformation.Names.SCRAM_SHA_384:
                     if (bindingRequired) return null;
                     return new ScramSaslServer(mechanism, protocol, serverName, cbh, ScramMechanism.SCRAM_SHA_384.createServer(
-                        cbh, ScramUtil.getSecureRandom(props), callback, minimumIterationCount, maximumIterationCount
+                        cbh, ScramUtil.getSecureRandom(props), callback, minimumIterationCount, maximumIterationCount, derivedKeyCache
                     ), callback);
                 case SaslMechanismInformation.Names.SCRAM_SHA_512_PLUS:
                     if (! bindingOk) return null;
                     return new ScramSaslServer(mechanism, protocol, serverName, cbh, ScramMechanism.SCRAM_SHA_512_PLUS.createServer(
-                        cbh, ScramUtil.getSecureRandom(props), callback, minimumIterationCount, maximumIterationCount
+                        cbh, ScramUtil.getSecureRandom(props), callback, minimumIterationCount, maximumIterationCount, derivedKeyCache
                     ), callback);
                 case SaslMechanismInformation.Names.SCRAM_SHA_512:
                     if (bindingRequired) return null;
                     return new ScramSaslServer(mechanism, protocol, serverName, cbh, ScramMechanism.SCRAM_SHA_512.createServer(
-                        cbh, ScramUtil.getSecureRandom(props), callback, minimumIterationCount, maximumIterationCount
+                        cbh, ScramUtil.getSecureRandom(props), callback, minimumIterationCount, maximumIterationCount, derivedKeyCache
                     ), callback);
                 default: {
                     return null;
@@ -18,6 +18,8 @@
 
 package org.wildfly.security.sasl.util;
 
+import java.nio.ByteBuffer;
+
 import javax.security.sasl.SaslClient;
 import javax.security.sasl.SaslException;
 
@@ -66,6 +68,14 @@ public abstract class AbstractDelegatingSaslClient implements SaslClient, SaslWr
         return delegate.wrap(outgoing, offset, len);
     }
 
+    public int unwrap(final ByteBuffer incoming, final ByteBuffer target) throws SaslException {
+        return delegate instanceof SaslWrapper ? ((SaslWrapper) delegate).unwrap(incoming, target) : SaslWrapper.super.unwrap(incoming, target);
+    }
+
+    public int wrap(final ByteBuffer outgoing, final ByteBuffer target) throws SaslException {
+        return delegate instanceof SaslWrapper ? ((SaslWrapper) delegate).wrap(outgoing, target) : SaslWrapper.super.wrap(outgoing, target);
+    }
+
     public Object getNegotiatedProperty(final String propName) {
         return delegate.getNegotiatedProperty(propName);
     }
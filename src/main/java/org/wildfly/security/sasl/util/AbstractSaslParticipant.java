@@ -20,6 +20,7 @@ package org.wildfly.security.sasl.util;
 
 import static org.wildfly.security._private.ElytronMessages.log;
 
+import java.nio.ByteBuffer;
 import java.util.Map;
 
 import javax.security.auth.callback.Callback;
@@ -237,6 +238,48 @@ public abstract class AbstractSaslParticipant implements SaslWrapper {
         return wrapper.unwrap(incoming, offset, len);
     }
 
+    /**
+     * Wraps the remaining bytes of a buffer to be sent to the other participant into the target buffer.
+     *
+     * @param outgoing the buffer holding the bytes to encode
+     * @param target the buffer to write the encoded bytes to
+     * @return the number of bytes written to the target buffer
+     * @exception SaslException if wrapping fails
+     * @exception IllegalStateException if wrapping is not configured
+     * @see SaslWrapper#wrap(ByteBuffer, ByteBuffer)
+     */
+    public int wrap(final ByteBuffer outgoing, final ByteBuffer target) throws SaslException {
+        SaslWrapper wrapper = this.wrapper;
+        if (wrapper == null) {
+            throw log.wrappingNotConfigured(getMechanismName());
+        }
+        if (! outgoing.hasRemaining()) {
+            return 0;
+        }
+        return wrapper.wrap(outgoing, target);
+    }
+
+    /**
+     * Unwraps the remaining bytes of a buffer received from the other participant into the target buffer.
+     *
+     * @param incoming the buffer holding the bytes to decode
+     * @param target the buffer to write the decoded bytes to
+     * @return the number of bytes written to the target buffer
+     * @exception SaslException if wrapping fails
+     * @exception IllegalStateException if wrapping is not configured
+     * @see SaslWrapper#unwrap(ByteBuffer, ByteBuffer)
+     */
+    public int unwrap(final ByteBuffer incoming, final ByteBuffer target) throws SaslException {
+        SaslWrapper wrapper = this.wrapper;
+        if (wrapper == null) {
+            throw log.wrappingNotConfigured(getMechanismName());
+        }
+        if (! incoming.hasRemaining()) {
+            return 0;
+        }
+        return wrapper.unwrap(incoming, target);
+    }
+
     /**
      * Determine whether the authentication exchange has completed.
      *
@@ -18,6 +18,8 @@
 
 package org.wildfly.security.sasl.util;
 
+import java.nio.ByteBuffer;
+
 import javax.security.sasl.SaslClient;
 import javax.security.sasl.SaslException;
 
@@ -45,4 +47,12 @@ public final class ClientSaslWrapper implements SaslWrapper {
     public byte[] unwrap(final byte[] incoming, final int offset, final int len) throws SaslException {
         return saslClient.unwrap(incoming, offset, len);
     }
+
+    public int wrap(final ByteBuffer outgoing, final ByteBuffer target) throws SaslException {
+        return saslClient instanceof SaslWrapper ? ((SaslWrapper) saslClient).wrap(outgoing, target) : SaslWrapper.super.wrap(outgoing, target);
+    }
+
+    public int unwrap(final ByteBuffer incoming, final ByteBuffer target) throws SaslException {
+        return saslClient instanceof SaslWrapper ? ((SaslWrapper) saslClient).unwrap(incoming, target) : SaslWrapper.super.unwrap(incoming, target);
+    }
 }
@@ -22,6 +22,7 @@ import static java.security.AccessController.doPrivileged;
 import static org.wildfly.security.manager.WildFlySecurityManager.doPrivilegedWithParameter;
 
 import java.lang.reflect.UndeclaredThrowableException;
+import java.nio.ByteBuffer;
 import java.security.AccessControlContext;
 import java.security.AccessController;
 import java.security.PrivilegedActionException;
@@ -93,4 +94,32 @@ public final class PrivilegedSaslClient extends AbstractDelegatingSaslClient imp
             }
         }
     }
+
+    public int unwrap(final ByteBuffer incoming, final ByteBuffer target) throws SaslException {
+        try {
+            return doPrivileged((PrivilegedExceptionAction<Integer>) () -> Integer.valueOf(super.unwrap(incoming, target)), accessControlContext).intValue();
+        } catch (PrivilegedActionException pae) {
+            try {
+                throw pae.getCause();
+            } catch (SaslException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable throwable) {
+                throw new UndeclaredThrowableException(throwable);
+            }
+        }
+    }
+
+    public int wrap(final ByteBuffer outgoing, final ByteBuffer target) throws SaslException {
+        try {
+            return doPrivileged((PrivilegedExceptionAction<Integer>) () -> Integer.valueOf(super.wrap(outgoing, target)), accessControlContext).intValue();
+        } catch (PrivilegedActionException pae) {
+            try {
+                throw pae.getCause();
+            } catch (SaslException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable throwable) {
+                throw new UndeclaredThrowableException(throwable);
+            }
+        }
+    }
 }
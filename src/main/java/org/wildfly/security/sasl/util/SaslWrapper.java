@@ -18,11 +18,20 @@
 
 package org.wildfly.security.sasl.util;
 
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 
 import javax.security.sasl.SaslException;
 
 /**
+ * A wrapper which encodes and decodes the messages of a negotiated SASL security layer.
+ * <p>
+ * Besides the byte array methods of {@link javax.security.sasl.SaslClient} and {@link javax.security.sasl.SaslServer},
+ * messages can be wrapped and unwrapped between {@link ByteBuffer}s, heap or direct, writing into a buffer supplied by
+ * the caller.  Mechanisms which support it do so without allocating per message; for other mechanisms the buffer
+ * methods are implemented on top of the byte array methods.
+ *
  * @author <a href="mailto:david.lloyd@redhat.com">David M. Lloyd</a>
  */
 public interface SaslWrapper {
@@ -36,7 +45,7 @@ public interface SaslWrapper {
             if (offset == 0 && outgoing.length == len) {
                 return outgoing;
             } else {
-                return Arrays.copyOfRange(outgoing, offset, len);
+                return Arrays.copyOfRange(outgoing, offset, offset + len);
             }
         }
 
@@ -44,12 +53,88 @@ public interface SaslWrapper {
             if (offset == 0 && incoming.length == len) {
                 return incoming;
             } else {
-                return Arrays.copyOfRange(incoming, offset, len);
+                return Arrays.copyOfRange(incoming, offset, offset + len);
             }
         }
+
+        public int wrap(final ByteBuffer outgoing, final ByteBuffer target) throws SaslException {
+            final int len = outgoing.remaining();
+            target.put(outgoing);
+            return len;
+        }
+
+        public int unwrap(final ByteBuffer incoming, final ByteBuffer target) throws SaslException {
+            final int len = incoming.remaining();
+            target.put(incoming);
+            return len;
+        }
     };
 
     byte[] wrap(byte[] outgoing, final int offset, final int len) throws SaslException;
 
     byte[] unwrap(byte[] incoming, final int offset, final int len) throws SaslException;
+
+    /**
+     * Wrap the remaining bytes of a buffer to be sent to the other participant, writing the wrapped message into the
+     * target buffer.  On return the source buffer has been consumed and the position of the target buffer has been
+     * advanced past the wrapped message.  The two buffers must not share content.
+     * <p>
+     * If the target buffer does not have room for the wrapped message a {@link BufferOverflowException} is thrown.  The
+     * room needed depends on the mechanism and negotiated layer; for example {@code DIGEST-MD5} adds at most 24 bytes to
+     * each message.
+     *
+     * @param outgoing the buffer holding the message to wrap (must not be {@code null})
+     * @param target the buffer to write the wrapped message to (must not be {@code null})
+     * @return the number of bytes written to the target buffer
+     * @throws SaslException if wrapping fails
+     * @throws BufferOverflowException if the target buffer is too small
+     */
+    default int wrap(ByteBuffer outgoing, ByteBuffer target) throws SaslException {
+        final byte[] wrapped;
+        if (outgoing.hasArray()) {
+            wrapped = wrap(outgoing.array(), outgoing.arrayOffset() + outgoing.position(), outgoing.remaining());
+        } else {
+            final byte[] bytes = new byte[outgoing.remaining()];
+            outgoing.duplicate().get(bytes);
+            wrapped = wrap(bytes, 0, bytes.length);
+        }
+        if (target.remaining() < wrapped.length) {
+            throw new BufferOverflowException();
+        }
+        outgoing.position(outgoing.limit());
+        target.put(wrapped);
+        return wrapped.length;
+    }
+
+    /**
+     * Unwrap the remaining bytes of a buffer received from the other participant, writing the message into the target
+     * buffer.  On return the source buffer has been consumed and the position of the target buffer has been advanced
+     * past the message.  The two buffers must not share content.
+     * <p>
+     * A target buffer with as much room as the remaining bytes of the source buffer is always large enough; if the
+     * target buffer does not have room for the message a {@link BufferOverflowException} is thrown.  Bytes of the target
+     * buffer beyond its final position may have been overwritten.
+     *
+     * @param incoming the buffer holding the message to unwrap (must not be {@code null})
+     * @param target the buffer to write the unwrapped message to (must not be {@code null})
+     * @return the number of bytes written to the target buffer, which may be zero if the message was discarded
+     * @throws SaslException if unwrapping fails
+     * @throws BufferOverflowException if the target buffer is too small
+     */
+    default int unwrap(ByteBuffer incoming, ByteBuffer target) throws SaslException {
+        final byte[] unwrapped;
+        if (incoming.hasArray()) {
+            unwrapped = unwrap(incoming.array(), incoming.arrayOffset() + incoming.position(), incoming.remaining());
+        } else {
+            final byte[] bytes = new byte[incoming.remaining()];
+            incoming.duplicate().get(bytes);
+            unwrapped = unwrap(bytes, 0, bytes.length);
+        }
+        if (target.remaining() < unwrapped.length) {
+            throw new BufferOverflowException();
+        }
+        incoming.position(incoming.limit());
+        target.put(unwrapped);
+        return unwrapped.length;
+    }
 }
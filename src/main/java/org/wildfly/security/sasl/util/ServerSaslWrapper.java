@@ -18,6 +18,8 @@
 
 package org.wildfly.security.sasl.util;
 
+import java.nio.ByteBuffer;
+
 import javax.security.sasl.SaslServer;
 import javax.security.sasl.SaslException;
 
@@ -45,4 +47,12 @@ public final class ServerSaslWrapper implements SaslWrapper {
     public byte[] unwrap(final byte[] incoming, final int offset, final int len) throws SaslException {
         return saslServer.unwrap(incoming, offset, len);
     }
+
+    public int wrap(final ByteBuffer outgoing, final ByteBuffer target) throws SaslException {
+        return saslServer instanceof SaslWrapper ? ((SaslWrapper) saslServer).wrap(outgoing, target) : SaslWrapper.super.wrap(outgoing, target);
+    }
+
+    public int unwrap(final ByteBuffer incoming, final ByteBuffer target) throws SaslException {
+        return saslServer instanceof SaslWrapper ? ((SaslWrapper) saslServer).unwrap(incoming, target) : SaslWrapper.super.unwrap(incoming, target);
+    }
 }
@@ -0,0 +1,167 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.util;
+
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A per-thread cache of {@link MessageDigest} and {@link Mac} instances, to avoid the provider lookup and construction
+ * cost of {@code getInstance} on every operation.
+ * <p>
+ * An instance obtained from this cache belongs to the caller until it is handed back with the matching
+ * {@code release} method; it is never given out twice, so nested or concurrent use of the same algorithm is safe.
+ * Releasing an instance is optional, and instances which are not released are simply garbage collected.
+ * <p>
+ * The idle instances of each thread are keyed by algorithm and provider.  Only instances of the provider which the
+ * default provider list selected for the algorithm when this thread first obtained it are kept, and only if that
+ * provider was loaded by the bootstrap or platform class loader, so that a thread never holds on to the class loader
+ * of a deployment.  Any other instance handed to {@code release}, including one released on a thread which never
+ * obtained the algorithm from this cache, is discarded.
+ * <p>
+ * A {@link Mac} obtained from this cache is in an unspecified state and must always be initialized before use.
+ * Released {@code Mac} instances are re-initialized with a dummy key so that the key of their last use is not retained.
+ * Ciphers are deliberately not cached, as a released cipher would retain its key.
+ */
+public final class CryptoPrimitiveCache {
+
+    private static final int MAX_IDLE = 4;
+    private static final byte[] SCRUB_KEY = new byte[1];
+    private static final ClassLoader PLATFORM_CLASS_LOADER = ClassLoader.getSystemClassLoader().getParent();
+
+    private static final ThreadLocal<Map<String, Idle>> idle = ThreadLocal.withInitial(HashMap::new);
+
+    private CryptoPrimitiveCache() {
+    }
+
+    /**
+     * Get a message digest for the given algorithm, in its initial state.
+     *
+     * @param algorithm the algorithm name
+     * @return the message digest
+     * @throws NoSuchAlgorithmException if no provider supports the algorithm
+     */
+    public static MessageDigest getMessageDigest(String algorithm) throws NoSuchAlgorithmException {
+        final String key = "MessageDigest." + algorithm;
+        final MessageDigest messageDigest = (MessageDigest) poll(key);
+        if (messageDigest != null) {
+            return messageDigest;
+        }
+        final MessageDigest created = MessageDigest.getInstance(algorithm);
+        register(key, created.getProvider());
+        return created;
+    }
+
+    /**
+     * Get a MAC for the given algorithm.  The MAC must be initialized before use.
+     *
+     * @param algorithm the algorithm name
+     * @return the MAC
+     * @throws NoSuchAlgorithmException if no provider supports the algorithm
+     */
+    public static Mac getMac(String algorithm) throws NoSuchAlgorithmException {
+        final String key = "Mac." + algorithm;
+        final Mac mac = (Mac) poll(key);
+        if (mac != null) {
+            return mac;
+        }
+        final Mac created = Mac.getInstance(algorithm);
+        register(key, created.getProvider());
+        return created;
+    }
+
+    /**
+     * Return a message digest to the cache.
+     *
+     * @param messageDigest the message digest, or {@code null} for none
+     */
+    public static void release(MessageDigest messageDigest) {
+        if (messageDigest != null) {
+            messageDigest.reset();
+            offer("MessageDigest." + messageDigest.getAlgorithm(), messageDigest.getProvider(), messageDigest);
+        }
+    }
+
+    /**
+     * Return a MAC to the cache.
+     *
+     * @param mac the MAC, or {@code null} for none
+     */
+    public static void release(Mac mac) {
+        if (mac != null) {
+            try {
+                mac.init(new SecretKeySpec(SCRUB_KEY, mac.getAlgorithm()));
+            } catch (InvalidKeyException | IllegalArgumentException ignored) {
+                // the key could not be replaced, so do not keep this instance
+                return;
+            }
+            offer("Mac." + mac.getAlgorithm(), mac.getProvider(), mac);
+        }
+    }
+
+    private static Object poll(final String key) {
+        final Idle entry = idle.get().get(key);
+        return entry == null ? null : entry.instances.pollLast();
+    }
+
+    private static void register(final String key, final Provider provider) {
+        final ClassLoader classLoader = provider.getClass().getClassLoader();
+        if (classLoader == null || classLoader == PLATFORM_CLASS_LOADER) {
+            idle.get().putIfAbsent(key, new Idle(provider));
+        }
+    }
+
+    private static void offer(final String key, final Provider provider, final Object instance) {
+        final Idle entry = idle.get().get(key);
+        if (entry == null || entry.provider != provider) {
+            return;
+        }
+        final ArrayDeque<Object> deque = entry.instances;
+        if (deque.size() < MAX_IDLE && ! containsInstance(deque, instance)) {
+            deque.addLast(instance);
+        }
+    }
+
+    private static boolean containsInstance(final ArrayDeque<Object> deque, final Object instance) {
+        // guard against an instance being released twice
+        for (Object item : deque) {
+            if (item == instance) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static final class Idle {
+        final Provider provider;
+        final ArrayDeque<Object> instances = new ArrayDeque<>(MAX_IDLE);
+
+        Idle(final Provider provider) {
+            this.provider = provider;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.util;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.function.Supplier;
+
+import org.wildfly.security.permission.ElytronPermission;
+
+/**
+ * The shared source of strong random numbers for nonces, salts and other random values generated by the mechanisms and
+ * password implementations.
+ * <p>
+ * Each thread is given its own generator, so that generators are created and seeded once per thread rather than for
+ * every authentication, and threads do not contend on a single generator.  The generator is a non-blocking one: a
+ * {@code DRBG} where the platform has one, otherwise {@code NativePRNGNonBlocking}, falling back to the default
+ * {@link SecureRandom} where neither is available.
+ * <p>
+ * The source can be replaced with {@link #setSecureRandomSupplier(Supplier)}, for example with a seeded generator to
+ * make tests deterministic.
+ */
+public final class SecureRandomSource {
+
+    private static final String[] ALGORITHMS = { "DRBG", "NativePRNGNonBlocking" };
+
+    private static final ThreadLocal<SecureRandom> threadRandom = ThreadLocal.withInitial(SecureRandomSource::createSecureRandom);
+
+    private static final ElytronPermission SET_SECURE_RANDOM_SUPPLIER_PERMISSION = new ElytronPermission("setSecureRandomSupplier");
+
+    private static volatile Supplier<SecureRandom> supplier;
+
+    private SecureRandomSource() {
+    }
+
+    /**
+     * Get the secure random generator to use on the calling thread.
+     *
+     * @return the secure random generator
+     */
+    public static SecureRandom getSecureRandom() {
+        final Supplier<SecureRandom> supplier = SecureRandomSource.supplier;
+        return supplier == null ? threadRandom.get() : supplier.get();
+    }
+
+    /**
+     * Replace the source of secure random generators, or restore the default per-thread generators.
+     *
+     * @param supplier the supplier of the generator to return from {@link #getSecureRandom()}, or {@code null} to
+     *  restore the default
+     */
+    public static void setSecureRandomSupplier(Supplier<SecureRandom> supplier) {
+        final SecurityManager sm = System.getSecurityManager();
+        if (sm != null) {
+            sm.checkPermission(SET_SECURE_RANDOM_SUPPLIER_PERMISSION);
+        }
+        SecureRandomSource.supplier = supplier;
+    }
+
+    private static SecureRandom createSecureRandom() {
+        for (String algorithm : ALGORITHMS) {
+            try {
+                return SecureRandom.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException ignored) {
+                // try the next one
+            }
+        }
+        return new SecureRandom();
+    }
+}
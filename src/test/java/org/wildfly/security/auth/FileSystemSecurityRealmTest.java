@@ -25,6 +25,9 @@ import org.wildfly.security.WildFlyElytronProvider;
 import org.wildfly.security.auth.realm.FileSystemSecurityRealm;
 import org.wildfly.security.auth.server.CloseableIterator;
 import org.wildfly.security.auth.server.ModifiableRealmIdentity;
+import org.wildfly.security.auth.server.NameRewriter;
+import org.wildfly.security.auth.server.RealmIdentity;
+import org.wildfly.security.auth.server.RealmUnavailableException;
 import org.wildfly.security.authz.Attributes;
 import org.wildfly.security.authz.AuthorizationIdentity;
 import org.wildfly.security.authz.MapAttributes;
@@ -45,6 +48,7 @@ import org.wildfly.security.password.spec.DigestPasswordAlgorithmSpec;
 import org.wildfly.security.password.spec.EncryptablePasswordSpec;
 import org.wildfly.security.password.spec.IteratedSaltedPasswordAlgorithmSpec;
 import org.wildfly.security.password.spec.OneTimePasswordSpec;
+import org.wildfly.security.password.spec.ScramKeysPasswordSpec;
 import org.wildfly.security.password.spec.SaltedPasswordAlgorithmSpec;
 import org.wildfly.security.password.util.PasswordUtil;
 import org.wildfly.security.util.CodePointIterator;
@@ -65,7 +69,13 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
@@ -207,6 +217,26 @@ public class FileSystemSecurityRealmTest {
         assertCreateIdentityWithPassword(actualPassword, scramPassword);
     }
 
+    @Test
+    public void testCreateIdentityWithScramKeysCredential() throws Exception {
+        char[] actualPassword = "secretPassword".toCharArray();
+        byte[] salt = PasswordUtil.generateRandomSalt(BCRYPT_SALT_SIZE);
+        PasswordFactory factory = PasswordFactory.getInstance(ScramDigestPassword.ALGORITHM_SCRAM_SHA_256);
+        EncryptablePasswordSpec encSpec = new EncryptablePasswordSpec(actualPassword, new IteratedSaltedPasswordAlgorithmSpec(4096, salt));
+        ScramKeysPasswordSpec keysSpec = factory.getKeySpec(factory.generatePassword(encSpec), ScramKeysPasswordSpec.class);
+        ScramDigestPassword keysOnlyPassword = (ScramDigestPassword) factory.generatePassword(keysSpec);
+
+        assertCreateIdentityWithPassword(actualPassword, keysOnlyPassword);
+
+        FileSystemSecurityRealm securityRealm = new FileSystemSecurityRealm(getRootPath(false), 1);
+        ScramDigestPassword loaded = securityRealm.getRealmIdentity("plainUser", null, null).getCredential(PasswordCredential.class).getPassword(ScramDigestPassword.class);
+        ScramKeysPasswordSpec loadedSpec = factory.getKeySpec(loaded, ScramKeysPasswordSpec.class);
+        assertArrayEquals(keysSpec.getStoredKey(), loadedSpec.getStoredKey());
+        assertArrayEquals(keysSpec.getServerKey(), loadedSpec.getServerKey());
+        assertArrayEquals(salt, loadedSpec.getSalt());
+        assertEquals(4096, loadedSpec.getIterationCount());
+    }
+
     @Test
     public void testCreateIdentityWithDigest() throws Exception {
         char[] actualPassword = "secretPassword".toCharArray();
@@ -388,6 +418,152 @@ public class FileSystemSecurityRealmTest {
         getRootPath(); // will fail on windows if iterator not closed correctly
     }
 
+    @Test
+    public void testStreaming() throws Exception {
+        FileSystemSecurityRealm securityRealm = new FileSystemSecurityRealm(getRootPath(), 2);
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < 200; i ++) {
+            names.add("user" + Integer.toString(i * 7919, 36));
+        }
+        // shorter than the number of levels
+        names.add("a");
+        for (String name : names) {
+            ModifiableRealmIdentity identity = securityRealm.getRealmIdentityForUpdate(name, null, null);
+            identity.create();
+            MapAttributes attributes = new MapAttributes();
+            attributes.addFirst("name", name);
+            identity.setAttributes(attributes);
+        }
+
+        try (Stream<ModifiableRealmIdentity> stream = securityRealm.getRealmIdentityStream()) {
+            assertEquals(names.size(), stream.count());
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Set<String> streamed = pool.submit(() -> securityRealm.getRealmIdentityStream().parallel()
+                    .map(this::getName)
+                    .collect(Collectors.toSet())).get();
+            assertEquals(names, streamed);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private String getName(ModifiableRealmIdentity identity) {
+        try {
+            return identity.getAuthorizationIdentity().getAttributes().getFirst("name");
+        } catch (RealmUnavailableException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Test
+    public void testIndexedIdentityReused() throws Exception {
+        FileSystemSecurityRealm securityRealm = new FileSystemSecurityRealm(getRootPath(), NameRewriter.IDENTITY_REWRITER, 1, 10, -1);
+        ModifiableRealmIdentity identity = securityRealm.getRealmIdentityForUpdate("plainUser", null, null);
+        identity.create();
+        MapAttributes attributes = new MapAttributes();
+        attributes.addFirst("roles", "Employee");
+        identity.setAttributes(attributes);
+
+        for (int i = 0; i < 3; i ++) {
+            AuthorizationIdentity authorizationIdentity = securityRealm.getRealmIdentity("plainUser", null, null).getAuthorizationIdentity();
+            assertEquals("Employee", authorizationIdentity.getAttributes().getFirst("roles"));
+        }
+        assertEquals(2, securityRealm.getIndexHitCount());
+
+        // a change made behind the realm's back replaces the file, so it is parsed again
+        FileSystemSecurityRealm otherRealm = new FileSystemSecurityRealm(getRootPath(false), 1);
+        attributes.addFirst("roles", "Manager");
+        otherRealm.getRealmIdentityForUpdate("plainUser", null, null).setAttributes(attributes);
+
+        long misses = securityRealm.getIndexMissCount();
+        assertEquals("Manager", securityRealm.getRealmIdentity("plainUser", null, null).getAuthorizationIdentity().getAttributes().getFirst("roles"));
+        assertEquals(misses + 1, securityRealm.getIndexMissCount());
+
+        otherRealm.getRealmIdentityForUpdate("plainUser", null, null).delete();
+        assertFalse(securityRealm.getRealmIdentity("plainUser", null, null).exists());
+        assertEquals(0, securityRealm.getRealmIdentity("plainUser", null, null).getAuthorizationIdentity().getAttributes().size());
+    }
+
+    @Test
+    public void testWriteBehindCoalescesChanges() throws Exception {
+        FileSystemSecurityRealm securityRealm = new FileSystemSecurityRealm(getRootPath(), NameRewriter.IDENTITY_REWRITER, 1, 10, TimeUnit.HOURS.toMillis(1));
+        ModifiableRealmIdentity identity = securityRealm.getRealmIdentityForUpdate("plainUser", null, null);
+        identity.create();
+
+        MapAttributes attributes = new MapAttributes();
+        for (int i = 0; i < 5; i ++) {
+            attributes.addFirst("counter", Integer.toString(i));
+            identity.setAttributes(attributes);
+        }
+        PasswordFactory passwordFactory = PasswordFactory.getInstance(BCryptPassword.ALGORITHM_BCRYPT);
+        Password password = passwordFactory.generatePassword(
+                new EncryptablePasswordSpec("secret".toCharArray(), new IteratedSaltedPasswordAlgorithmSpec(4, PasswordUtil.generateRandomSalt(BCRYPT_SALT_SIZE)))
+        );
+        identity.setCredentials(Collections.singleton(new PasswordCredential(password)));
+        assertEquals(1, securityRealm.getPendingWriteCount());
+
+        // visible through this realm, but not yet on disk
+        assertEquals("4", securityRealm.getRealmIdentity("plainUser", null, null).getAuthorizationIdentity().getAttributes().getFirst("counter"));
+        assertTrue(securityRealm.getRealmIdentity("plainUser", null, null).verifyEvidence(new PasswordGuessEvidence("secret".toCharArray())));
+        FileSystemSecurityRealm otherRealm = new FileSystemSecurityRealm(getRootPath(false), 1);
+        assertEquals(0, otherRealm.getRealmIdentity("plainUser", null, null).getAuthorizationIdentity().getAttributes().size());
+
+        securityRealm.flush();
+        assertEquals(0, securityRealm.getPendingWriteCount());
+        RealmIdentity existingIdentity = otherRealm.getRealmIdentity("plainUser", null, null);
+        assertEquals("4", existingIdentity.getAuthorizationIdentity().getAttributes().getFirst("counter"));
+        assertTrue(existingIdentity.verifyEvidence(new PasswordGuessEvidence("secret".toCharArray())));
+
+        // a deleted identity is not written back
+        identity.setAttributes(attributes);
+        identity.delete();
+        assertEquals(0, securityRealm.getPendingWriteCount());
+        securityRealm.flush();
+        assertFalse(otherRealm.getRealmIdentity("plainUser", null, null).exists());
+    }
+
+    @Test
+    public void testWriteBehindFlushesAfterDelay() throws Exception {
+        FileSystemSecurityRealm securityRealm = new FileSystemSecurityRealm(getRootPath(), NameRewriter.IDENTITY_REWRITER, 1, 0, 10);
+        ModifiableRealmIdentity identity = securityRealm.getRealmIdentityForUpdate("plainUser", null, null);
+        identity.create();
+        MapAttributes attributes = new MapAttributes();
+        attributes.addFirst("roles", "Employee");
+        identity.setAttributes(attributes);
+
+        for (int i = 0; i < 100 && securityRealm.getPendingWriteCount() > 0; i ++) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, securityRealm.getPendingWriteCount());
+        FileSystemSecurityRealm otherRealm = new FileSystemSecurityRealm(getRootPath(false), 1);
+        assertEquals("Employee", otherRealm.getRealmIdentity("plainUser", null, null).getAuthorizationIdentity().getAttributes().getFirst("roles"));
+    }
+
+    @Test
+    public void testCloseFlushesPendingWrites() throws Exception {
+        FileSystemSecurityRealm securityRealm = new FileSystemSecurityRealm(getRootPath(), NameRewriter.IDENTITY_REWRITER, 1, 0, TimeUnit.HOURS.toMillis(1));
+        ModifiableRealmIdentity identity = securityRealm.getRealmIdentityForUpdate("plainUser", null, null);
+        identity.create();
+        MapAttributes attributes = new MapAttributes();
+        attributes.addFirst("roles", "Employee");
+        identity.setAttributes(attributes);
+        assertEquals(1, securityRealm.getPendingWriteCount());
+
+        securityRealm.close();
+        assertEquals(0, securityRealm.getPendingWriteCount());
+        FileSystemSecurityRealm otherRealm = new FileSystemSecurityRealm(getRootPath(false), 1);
+        assertEquals("Employee", otherRealm.getRealmIdentity("plainUser", null, null).getAuthorizationIdentity().getAttributes().getFirst("roles"));
+
+        // once closed, changes are written immediately
+        attributes.addFirst("roles", "Manager");
+        identity.setAttributes(attributes);
+        assertEquals(0, securityRealm.getPendingWriteCount());
+        assertEquals("Manager", otherRealm.getRealmIdentity("plainUser", null, null).getAuthorizationIdentity().getAttributes().getFirst("roles"));
+    }
+
     private void assertCreateIdentityWithPassword(char[] actualPassword, Password credential) throws Exception {
         FileSystemSecurityRealm securityRealm = new FileSystemSecurityRealm(getRootPath(), 1);
         ModifiableRealmIdentity newIdentity = securityRealm.getRealmIdentityForUpdate("plainUser", null, null);
@@ -0,0 +1,292 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.auth.realm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.Principal;
+import java.security.Provider;
+import java.security.Security;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wildfly.security.WildFlyElytronProvider;
+import org.wildfly.security.auth.principal.NamePrincipal;
+import org.wildfly.security.auth.server.ModifiableRealmIdentity;
+import org.wildfly.security.auth.server.RealmIdentity;
+import org.wildfly.security.auth.server.RealmUnavailableException;
+import org.wildfly.security.auth.server.SecurityRealm;
+import org.wildfly.security.auth.server.SupportLevel;
+import org.wildfly.security.auth.server.event.RealmFailedAuthenticationEvent;
+import org.wildfly.security.authz.MapAttributes;
+import org.wildfly.security.credential.Credential;
+import org.wildfly.security.credential.PasswordCredential;
+import org.wildfly.security.evidence.Evidence;
+import org.wildfly.security.evidence.PasswordGuessEvidence;
+import org.wildfly.security.password.PasswordFactory;
+import org.wildfly.security.password.interfaces.ClearPassword;
+import org.wildfly.security.password.spec.ClearPasswordSpec;
+
+/**
+ * Tests for {@link CachingSecurityRealm} and {@link CachingModifiableSecurityRealm}.
+ */
+public class CachingSecurityRealmTest {
+
+    private static final Provider provider = new WildFlyElytronProvider();
+
+    @BeforeClass
+    public static void add() {
+        Security.addProvider(provider);
+    }
+
+    @AfterClass
+    public static void remove() {
+        Security.removeProvider(provider.getName());
+    }
+
+    @Test
+    public void testCredentialsAndAttributesAreCached() throws Exception {
+        SimpleMapBackedSecurityRealm backing = new SimpleMapBackedSecurityRealm();
+        MapAttributes attributes = new MapAttributes();
+        attributes.addFirst("roles", "admin");
+        backing.setPasswordMap("elytron", clearPassword("passwd12#$"), attributes);
+        CountingSecurityRealm counting = new CountingSecurityRealm(backing);
+        CachingSecurityRealm realm = new CachingSecurityRealm(counting, 10, -1);
+
+        for (int i = 0; i < 3; i ++) {
+            RealmIdentity identity = realm.getRealmIdentity("elytron", null, null);
+            assertTrue(identity.exists());
+            assertNotNull(identity.getCredential(PasswordCredential.class));
+            assertTrue(identity.verifyEvidence(new PasswordGuessEvidence("passwd12#$".toCharArray())));
+            assertFalse(identity.verifyEvidence(new PasswordGuessEvidence("wrong".toCharArray())));
+            assertEquals("admin", identity.getAuthorizationIdentity().getAttributes().getFirst("roles"));
+            identity.dispose();
+        }
+
+        assertEquals(1, counting.lookups.get());
+        assertEquals(1, realm.getCacheSize());
+        assertTrue(realm.getHitCount() > realm.getMissCount());
+    }
+
+    @Test
+    public void testNonExistentIdentity() throws Exception {
+        CountingSecurityRealm counting = new CountingSecurityRealm(new SimpleMapBackedSecurityRealm());
+        CachingSecurityRealm realm = new CachingSecurityRealm(counting, 10, -1);
+
+        for (int i = 0; i < 3; i ++) {
+            RealmIdentity identity = realm.getRealmIdentity("nobody", null, null);
+            assertFalse(identity.exists());
+            identity.dispose();
+        }
+
+        assertEquals(1, counting.lookups.get());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() throws Exception {
+        CountingSecurityRealm counting = new CountingSecurityRealm(new SimpleMapBackedSecurityRealm());
+        CachingSecurityRealm realm = new CachingSecurityRealm(counting, 2, -1);
+
+        realm.getRealmIdentity("a", null, null).exists();
+        realm.getRealmIdentity("b", null, null).exists();
+        realm.getRealmIdentity("a", null, null).exists();
+        realm.getRealmIdentity("c", null, null).exists();
+        assertEquals(2, realm.getCacheSize());
+        assertEquals(3, counting.lookups.get());
+
+        // "b" was the least recently used entry
+        realm.getRealmIdentity("a", null, null).exists();
+        assertEquals(3, counting.lookups.get());
+        realm.getRealmIdentity("b", null, null).exists();
+        assertEquals(4, counting.lookups.get());
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        CountingSecurityRealm counting = new CountingSecurityRealm(new SimpleMapBackedSecurityRealm());
+        CachingSecurityRealm realm = new CachingSecurityRealm(counting, 10, 1);
+
+        realm.getRealmIdentity("a", null, null).exists();
+        Thread.sleep(10);
+        realm.getRealmIdentity("a", null, null).exists();
+        assertEquals(2, counting.lookups.get());
+    }
+
+    @Test
+    public void testFailedAuthenticationInvalidates() throws Exception {
+        SimpleMapBackedSecurityRealm backing = new SimpleMapBackedSecurityRealm();
+        backing.setPasswordMap("elytron", clearPassword("old"));
+        CachingSecurityRealm realm = new CachingSecurityRealm(backing, 10, -1);
+
+        RealmIdentity identity = realm.getRealmIdentity("elytron", null, null);
+        assertTrue(identity.verifyEvidence(new PasswordGuessEvidence("old".toCharArray())));
+        identity.dispose();
+
+        backing.setPasswordMap("elytron", clearPassword("new"));
+
+        identity = realm.getRealmIdentity("elytron", null, null);
+        assertFalse(identity.verifyEvidence(new PasswordGuessEvidence("new".toCharArray())));
+        SecurityRealm.safeHandleRealmEvent(realm, new RealmFailedAuthenticationEvent(identity, null, null));
+        identity.dispose();
+
+        identity = realm.getRealmIdentity("elytron", null, null);
+        assertTrue(identity.verifyEvidence(new PasswordGuessEvidence("new".toCharArray())));
+        identity.dispose();
+    }
+
+    @Test
+    public void testPrincipalIsPartOfKey() throws Exception {
+        CountingSecurityRealm counting = new CountingSecurityRealm(new SimpleMapBackedSecurityRealm());
+        CachingSecurityRealm realm = new CachingSecurityRealm(counting, 10, -1);
+
+        realm.getRealmIdentity("a", new NamePrincipal("x"), null).exists();
+        realm.getRealmIdentity("a", new NamePrincipal("y"), null).exists();
+        realm.getRealmIdentity("a", new NamePrincipal("x"), null).exists();
+        assertEquals(2, realm.getCacheSize());
+        assertEquals(2, counting.lookups.get());
+
+        realm.removeFromCache(new NamePrincipal("x"));
+        assertEquals(1, realm.getCacheSize());
+        realm.getRealmIdentity("a", new NamePrincipal("x"), null).exists();
+        assertEquals(3, counting.lookups.get());
+
+        realm.removeFromCache("a");
+        assertEquals(0, realm.getCacheSize());
+    }
+
+    @Test
+    public void testUnavailableRealmIsNotCached() throws Exception {
+        SimpleMapBackedSecurityRealm backing = new SimpleMapBackedSecurityRealm();
+        backing.setPasswordMap("elytron", clearPassword("passwd12#$"));
+        AtomicInteger failures = new AtomicInteger(1);
+        CachingSecurityRealm realm = new CachingSecurityRealm(new CountingSecurityRealm(backing) {
+            public RealmIdentity getRealmIdentity(final String name, final Principal principal, final Evidence evidence) throws RealmUnavailableException {
+                if (failures.getAndDecrement() > 0) {
+                    throw new RealmUnavailableException();
+                }
+                return super.getRealmIdentity(name, principal, evidence);
+            }
+        }, 10, -1);
+
+        RealmIdentity identity = realm.getRealmIdentity("elytron", null, null);
+        try {
+            identity.getRealmIdentityPrincipal();
+            fail("Expected exception");
+        } catch (RuntimeException expected) {
+            assertTrue(expected.getCause() instanceof RealmUnavailableException);
+        }
+        identity.dispose();
+
+        identity = realm.getRealmIdentity("elytron", null, null);
+        assertTrue(identity.exists());
+        identity.dispose();
+    }
+
+    @Test
+    public void testModifiableRealmInvalidatesOnWrite() throws Exception {
+        FileSystemSecurityRealm backing = new FileSystemSecurityRealm(getRootPath(), 1);
+        CachingModifiableSecurityRealm realm = new CachingModifiableSecurityRealm(backing, 10, -1);
+
+        RealmIdentity identity = realm.getRealmIdentity("plainUser", null, null);
+        assertFalse(identity.exists());
+        identity.dispose();
+
+        ModifiableRealmIdentity update = realm.getRealmIdentityForUpdate("plainUser", null, null);
+        update.create();
+        update.setCredentials(Collections.singleton(new PasswordCredential(clearPassword("secret"))));
+        update.dispose();
+
+        identity = realm.getRealmIdentity("plainUser", null, null);
+        assertTrue(identity.exists());
+        assertEquals(SupportLevel.SUPPORTED, identity.getEvidenceVerifySupport(PasswordGuessEvidence.class, null));
+        assertTrue(identity.verifyEvidence(new PasswordGuessEvidence("secret".toCharArray())));
+        identity.dispose();
+
+        update = realm.getRealmIdentityForUpdate("plainUser", null, null);
+        update.setCredentials(Collections.singleton(new PasswordCredential(clearPassword("changed"))));
+        update.dispose();
+
+        identity = realm.getRealmIdentity("plainUser", null, null);
+        assertFalse(identity.verifyEvidence(new PasswordGuessEvidence("secret".toCharArray())));
+        assertTrue(identity.verifyEvidence(new PasswordGuessEvidence("changed".toCharArray())));
+        identity.dispose();
+    }
+
+    private static ClearPassword clearPassword(String password) throws Exception {
+        PasswordFactory factory = PasswordFactory.getInstance(ClearPassword.ALGORITHM_CLEAR);
+        return (ClearPassword) factory.generatePassword(new ClearPasswordSpec(password.toCharArray()));
+    }
+
+    private Path getRootPath() throws Exception {
+        Path rootPath = Paths.get(getClass().getResource(File.separator).toURI()).resolve("caching-filesystem-realm");
+        if (rootPath.toFile().exists()) {
+            Files.walkFileTree(rootPath, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    Files.delete(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                    Files.delete(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        }
+        return Files.createDirectories(rootPath);
+    }
+
+    static class CountingSecurityRealm implements SecurityRealm {
+        private final SecurityRealm realm;
+        private final AtomicInteger lookups = new AtomicInteger();
+
+        CountingSecurityRealm(final SecurityRealm realm) {
+            this.realm = realm;
+        }
+
+        public RealmIdentity getRealmIdentity(final String name, final Principal principal, final Evidence evidence) throws RealmUnavailableException {
+            lookups.incrementAndGet();
+            return realm.getRealmIdentity(name, principal, evidence);
+        }
+
+        public SupportLevel getCredentialAcquireSupport(final Class<? extends Credential> credentialType, final String algorithmName) throws RealmUnavailableException {
+            return realm.getCredentialAcquireSupport(credentialType, algorithmName);
+        }
+
+        public SupportLevel getEvidenceVerifySupport(final Class<? extends Evidence> evidenceType, final String algorithmName) throws RealmUnavailableException {
+            return realm.getEvidenceVerifySupport(evidenceType, algorithmName);
+        }
+    }
+}
@@ -24,9 +24,17 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.Provider;
 import java.security.Security;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -35,6 +43,7 @@ import org.wildfly.security.WildFlyElytronProvider;
 import org.wildfly.security.auth.server.RealmIdentity;
 import org.wildfly.security.auth.server.SecurityRealm;
 import org.wildfly.security.auth.server.SupportLevel;
+import org.wildfly.security.authz.Attributes;
 import org.wildfly.security.credential.Credential;
 import org.wildfly.security.credential.PasswordCredential;
 import org.wildfly.security.evidence.PasswordGuessEvidence;
@@ -174,4 +183,98 @@ public class LegacyPropertiesSecurityRealmTest {
 
         badIdentity.dispose();
     }
+
+    /**
+     * Test that lines are accepted or rejected exactly as by the patterns the realm used to match them with.
+     */
+    @Test
+    public void testLineParsing() throws Exception {
+        Pattern hashedPattern = Pattern.compile("#??([^#]*)=(([\\da-f]{2})+)$");
+        Pattern plainPattern = Pattern.compile("#??([^#]*)=([^=]*)");
+        String[] lines = {
+                "user=c588863654f886d1caae4d8af47107b7", "user=C588863654F886D1CAAE4D8AF47107B7", "user=abc", "user=",
+                "us=er=abcd", "us#er=abcd", "#user=abcd", "user=pass#word", "user=pass=word", "=abcd", "user", "user = abcd"
+        };
+
+        for (boolean plainText : new boolean[] { true, false }) {
+            Pattern pattern = plainText ? plainPattern : hashedPattern;
+            for (String line : lines) {
+                LegacyPropertiesSecurityRealm realm = LegacyPropertiesSecurityRealm.builder()
+                        .setPasswordsStream(new ByteArrayInputStream(("#$REALM_NAME=ElytronRealm$\n" + line + "\n").getBytes(StandardCharsets.UTF_8)))
+                        .setPlainText(plainText)
+                        .build();
+
+                Matcher matcher = pattern.matcher(line);
+                boolean expected = matcher.matches() && ! line.startsWith("#");
+                assertEquals(line, expected ? 1 : 0, realm.getEntryCount());
+                if (expected) {
+                    RealmIdentity identity = realm.getRealmIdentity(matcher.group(1), null, null);
+                    assertTrue(line, identity.exists());
+                    if (plainText) {
+                        ClearPassword password = identity.getCredential(PasswordCredential.class, ClearPassword.ALGORITHM_CLEAR).getPassword(ClearPassword.class);
+                        assertEquals(line, matcher.group(2), new String(password.getPassword()));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that a realm built from files picks up changes to the files.
+     */
+    @Test
+    public void testWatchedFilesReload() throws Exception {
+        Path directory = Files.createTempDirectory("legacy-properties");
+        Path users = directory.resolve("users.properties");
+        Path groups = directory.resolve("groups.properties");
+        Files.write(users, Arrays.asList("#$REALM_NAME=ElytronRealm$", "elytron=" + ELYTRON_PASSWORD_CLEAR, "other=secret"), StandardCharsets.UTF_8);
+        Files.write(groups, Arrays.asList("elytron=admin"), StandardCharsets.UTF_8);
+
+        LegacyPropertiesSecurityRealm realm = LegacyPropertiesSecurityRealm.builder()
+                .setPasswordsFile(users)
+                .setGroupsFile(groups)
+                .setPlainText(true)
+                .setWatchFiles(true)
+                .build();
+        try {
+            assertEquals(2, realm.getEntryCount());
+            assertEquals(1, realm.getReloadCount());
+            assertTrue(realm.getLastLoadDuration(TimeUnit.NANOSECONDS) > 0);
+
+            long reloads = realm.getReloadCount();
+            Files.write(users, Arrays.asList("#$REALM_NAME=ElytronRealm$", "elytron=" + ELYTRON_PASSWORD_CLEAR, "other=changed", "added=secret"), StandardCharsets.UTF_8);
+            awaitReload(realm, reloads);
+
+            assertEquals(3, realm.getEntryCount());
+            assertTrue(realm.getRealmIdentity("other", null, null).verifyEvidence(new PasswordGuessEvidence("changed".toCharArray())));
+            assertTrue(realm.getRealmIdentity("added", null, null).exists());
+
+            reloads = realm.getReloadCount();
+            Files.write(groups, Arrays.asList("elytron=admin,user"), StandardCharsets.UTF_8);
+            awaitReload(realm, reloads);
+
+            Attributes attributes = realm.getRealmIdentity("elytron", null, null).getAuthorizationIdentity().getAttributes();
+            assertEquals(2, attributes.get("groups").size());
+
+            // an invalid file leaves the previous accounts in place
+            Files.write(users, Arrays.asList("elytron=" + ELYTRON_PASSWORD_CLEAR), StandardCharsets.UTF_8);
+            Thread.sleep(500);
+            assertEquals(3, realm.getEntryCount());
+        } finally {
+            realm.close();
+            Files.deleteIfExists(users);
+            Files.deleteIfExists(groups);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private static void awaitReload(LegacyPropertiesSecurityRealm realm, long previousCount) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (realm.getReloadCount() == previousCount && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue("Realm was not reloaded", realm.getReloadCount() > previousCount);
+        // let any further events from the same write settle
+        Thread.sleep(200);
+    }
 }
@@ -0,0 +1,291 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.auth.realm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.Principal;
+import java.security.Provider;
+import java.security.Security;
+import java.security.spec.KeySpec;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wildfly.security.WildFlyElytronProvider;
+import org.wildfly.security.auth.server.ModifiableRealmIdentity;
+import org.wildfly.security.auth.server.ModifiableSecurityRealm;
+import org.wildfly.security.auth.server.RealmIdentity;
+import org.wildfly.security.auth.server.RealmUnavailableException;
+import org.wildfly.security.auth.server.SupportLevel;
+import org.wildfly.security.authz.Attributes;
+import org.wildfly.security.credential.Credential;
+import org.wildfly.security.credential.PasswordCredential;
+import org.wildfly.security.evidence.Evidence;
+import org.wildfly.security.evidence.PasswordGuessEvidence;
+import org.wildfly.security.password.Password;
+import org.wildfly.security.password.PasswordFactory;
+import org.wildfly.security.password.interfaces.BCryptPassword;
+import org.wildfly.security.password.interfaces.DigestPassword;
+import org.wildfly.security.password.interfaces.SimpleDigestPassword;
+import org.wildfly.security.password.spec.ClearPasswordSpec;
+import org.wildfly.security.password.spec.DigestPasswordAlgorithmSpec;
+import org.wildfly.security.password.spec.EncryptablePasswordSpec;
+import org.wildfly.security.password.spec.IteratedSaltedPasswordAlgorithmSpec;
+
+/**
+ * Tests for {@link PasswordUpgradingSecurityRealm}.
+ */
+public class PasswordUpgradingSecurityRealmTest {
+
+    private static final Provider provider = new WildFlyElytronProvider();
+
+    @BeforeClass
+    public static void add() {
+        Security.addProvider(provider);
+    }
+
+    @AfterClass
+    public static void remove() {
+        Security.removeProvider(provider.getName());
+    }
+
+    @Test
+    public void testLegacyPasswordUpgraded() throws Exception {
+        FileSystemSecurityRealm backing = new FileSystemSecurityRealm(getRootPath(), 1);
+        createIdentity(backing, "legacy", SimpleDigestPassword.ALGORITHM_SIMPLE_DIGEST_MD5, new ClearPasswordSpec("passwd12#$".toCharArray()));
+        PasswordUpgradingSecurityRealm realm = new PasswordUpgradingSecurityRealm(backing, BCryptPassword.ALGORITHM_BCRYPT, new IteratedSaltedPasswordAlgorithmSpec(5, null));
+
+        assertFalse(verify(realm, "legacy", "wrong"));
+        assertEquals(SimpleDigestPassword.ALGORITHM_SIMPLE_DIGEST_MD5, getPassword(backing, "legacy").getAlgorithm());
+        assertEquals(0, realm.getUpgradeCount());
+
+        assertTrue(verify(realm, "legacy", "passwd12#$"));
+        Password upgraded = getPassword(backing, "legacy");
+        assertEquals(BCryptPassword.ALGORITHM_BCRYPT, upgraded.getAlgorithm());
+        assertEquals(5, ((BCryptPassword) upgraded).getIterationCount());
+        assertEquals(1, realm.getUpgradeCount());
+
+        // the upgraded password is already at the target, so it is left alone
+        assertTrue(verify(realm, "legacy", "passwd12#$"));
+        assertFalse(verify(realm, "legacy", "wrong"));
+        assertEquals(1, realm.getUpgradeCount());
+        assertEquals(0, realm.getUpgradeFailureCount());
+    }
+
+    @Test
+    public void testOtherCredentialsKept() throws Exception {
+        FileSystemSecurityRealm backing = new FileSystemSecurityRealm(getRootPath(), 1);
+        Password legacy = PasswordFactory.getInstance(SimpleDigestPassword.ALGORITHM_SIMPLE_DIGEST_MD5).generatePassword(new ClearPasswordSpec("passwd12#$".toCharArray()));
+        Password digest = PasswordFactory.getInstance(DigestPassword.ALGORITHM_DIGEST_MD5).generatePassword(
+                new EncryptablePasswordSpec("passwd12#$".toCharArray(), new DigestPasswordAlgorithmSpec("legacy", "realm")));
+        ModifiableRealmIdentity identity = backing.getRealmIdentityForUpdate("legacy", null, null);
+        identity.create();
+        identity.setCredentials(Arrays.asList(new PasswordCredential(legacy), new PasswordCredential(digest)));
+        identity.dispose();
+        PasswordUpgradingSecurityRealm realm = new PasswordUpgradingSecurityRealm(backing, BCryptPassword.ALGORITHM_BCRYPT, new IteratedSaltedPasswordAlgorithmSpec(5, null));
+
+        assertTrue(verify(realm, "legacy", "passwd12#$"));
+        assertEquals(1, realm.getUpgradeCount());
+        RealmIdentity upgraded = backing.getRealmIdentity("legacy", null, null);
+        try {
+            assertEquals(BCryptPassword.ALGORITHM_BCRYPT, upgraded.getCredential(PasswordCredential.class).getAlgorithm());
+            assertNotNull(upgraded.getCredential(PasswordCredential.class, DigestPassword.ALGORITHM_DIGEST_MD5));
+            assertNull(upgraded.getCredential(PasswordCredential.class, SimpleDigestPassword.ALGORITHM_SIMPLE_DIGEST_MD5));
+        } finally {
+            upgraded.dispose();
+        }
+    }
+
+    @Test
+    public void testUpgradeSkippedWithoutReplaceSupport() throws Exception {
+        FileSystemSecurityRealm backing = new FileSystemSecurityRealm(getRootPath(), 1);
+        createIdentity(backing, "legacy", SimpleDigestPassword.ALGORITHM_SIMPLE_DIGEST_MD5, new ClearPasswordSpec("passwd12#$".toCharArray()));
+        PasswordUpgradingSecurityRealm realm = new PasswordUpgradingSecurityRealm(new SetOnlyRealm(backing), BCryptPassword.ALGORITHM_BCRYPT, new IteratedSaltedPasswordAlgorithmSpec(5, null));
+
+        assertTrue(verify(realm, "legacy", "passwd12#$"));
+        assertEquals(SimpleDigestPassword.ALGORITHM_SIMPLE_DIGEST_MD5, getPassword(backing, "legacy").getAlgorithm());
+        assertEquals(0, realm.getUpgradeCount());
+        assertEquals(1, realm.getUpgradeSkippedCount());
+        assertEquals(0, realm.getUpgradeFailureCount());
+    }
+
+    @Test
+    public void testIterationCountRaised() throws Exception {
+        FileSystemSecurityRealm backing = new FileSystemSecurityRealm(getRootPath(), 1);
+        createIdentity(backing, "cheap", BCryptPassword.ALGORITHM_BCRYPT, new EncryptablePasswordSpec("passwd12#$".toCharArray(), new IteratedSaltedPasswordAlgorithmSpec(4, null)));
+        createIdentity(backing, "strong", BCryptPassword.ALGORITHM_BCRYPT, new EncryptablePasswordSpec("passwd12#$".toCharArray(), new IteratedSaltedPasswordAlgorithmSpec(6, null)));
+        PasswordUpgradingSecurityRealm realm = new PasswordUpgradingSecurityRealm(backing, BCryptPassword.ALGORITHM_BCRYPT, new IteratedSaltedPasswordAlgorithmSpec(5, null));
+
+        assertTrue(verify(realm, "cheap", "passwd12#$"));
+        assertEquals(5, ((BCryptPassword) getPassword(backing, "cheap")).getIterationCount());
+        assertTrue(verify(realm, "strong", "passwd12#$"));
+        assertEquals(6, ((BCryptPassword) getPassword(backing, "strong")).getIterationCount());
+        assertEquals(1, realm.getUpgradeCount());
+    }
+
+    @Test
+    public void testPolicyRestrictsUpgrade() throws Exception {
+        FileSystemSecurityRealm backing = new FileSystemSecurityRealm(getRootPath(), 1);
+        createIdentity(backing, "legacy", SimpleDigestPassword.ALGORITHM_SIMPLE_DIGEST_SHA_1, new ClearPasswordSpec("passwd12#$".toCharArray()));
+        PasswordUpgradingSecurityRealm realm = new PasswordUpgradingSecurityRealm(backing, BCryptPassword.ALGORITHM_BCRYPT, new IteratedSaltedPasswordAlgorithmSpec(4, null),
+                (identity, password) -> false);
+
+        assertTrue(verify(realm, "legacy", "passwd12#$"));
+        assertEquals(SimpleDigestPassword.ALGORITHM_SIMPLE_DIGEST_SHA_1, getPassword(backing, "legacy").getAlgorithm());
+        assertEquals(0, realm.getUpgradeCount());
+    }
+
+    private static void createIdentity(FileSystemSecurityRealm realm, String name, String algorithm, KeySpec keySpec) throws Exception {
+        Password password = PasswordFactory.getInstance(algorithm).generatePassword(keySpec);
+        ModifiableRealmIdentity identity = realm.getRealmIdentityForUpdate(name, null, null);
+        identity.create();
+        identity.setCredentials(Collections.singleton(new PasswordCredential(password)));
+        identity.dispose();
+    }
+
+    private static boolean verify(PasswordUpgradingSecurityRealm realm, String name, String guess) throws Exception {
+        RealmIdentity identity = realm.getRealmIdentity(name, null, null);
+        try {
+            return identity.verifyEvidence(new PasswordGuessEvidence(guess.toCharArray()));
+        } finally {
+            identity.dispose();
+        }
+    }
+
+    private static Password getPassword(FileSystemSecurityRealm realm, String name) throws Exception {
+        RealmIdentity identity = realm.getRealmIdentity(name, null, null);
+        try {
+            return identity.getCredential(PasswordCredential.class).getPassword();
+        } finally {
+            identity.dispose();
+        }
+    }
+
+    /**
+     * A realm whose identities can only have their whole credential set replaced.
+     */
+    static final class SetOnlyRealm implements ModifiableSecurityRealm {
+
+        private final ModifiableSecurityRealm realm;
+
+        SetOnlyRealm(final ModifiableSecurityRealm realm) {
+            this.realm = realm;
+        }
+
+        public RealmIdentity getRealmIdentity(final String name, final Principal principal, final Evidence evidence) throws RealmUnavailableException {
+            return realm.getRealmIdentity(name, principal, evidence);
+        }
+
+        public SupportLevel getCredentialAcquireSupport(final Class<? extends Credential> credentialType, final String algorithmName) throws RealmUnavailableException {
+            return realm.getCredentialAcquireSupport(credentialType, algorithmName);
+        }
+
+        public SupportLevel getEvidenceVerifySupport(final Class<? extends Evidence> evidenceType, final String algorithmName) throws RealmUnavailableException {
+            return realm.getEvidenceVerifySupport(evidenceType, algorithmName);
+        }
+
+        public ModifiableRealmIdentity getRealmIdentityForUpdate(final String name, final Principal principal, final Evidence evidence) throws RealmUnavailableException {
+            final ModifiableRealmIdentity identity = realm.getRealmIdentityForUpdate(name, principal, evidence);
+            return new ModifiableRealmIdentity() {
+                public SupportLevel getCredentialAcquireSupport(final Class<? extends Credential> credentialType, final String algorithmName) throws RealmUnavailableException {
+                    return identity.getCredentialAcquireSupport(credentialType, algorithmName);
+                }
+
+                public <C extends Credential> C getCredential(final Class<C> credentialType) throws RealmUnavailableException {
+                    return identity.getCredential(credentialType);
+                }
+
+                public SupportLevel getEvidenceVerifySupport(final Class<? extends Evidence> evidenceType, final String algorithmName) throws RealmUnavailableException {
+                    return identity.getEvidenceVerifySupport(evidenceType, algorithmName);
+                }
+
+                public boolean verifyEvidence(final Evidence evidence) throws RealmUnavailableException {
+                    return identity.verifyEvidence(evidence);
+                }
+
+                public boolean exists() throws RealmUnavailableException {
+                    return identity.exists();
+                }
+
+                public void delete() throws RealmUnavailableException {
+                    identity.delete();
+                }
+
+                public void create() throws RealmUnavailableException {
+                    identity.create();
+                }
+
+                public void setCredentials(final Collection<? extends Credential> credentials) throws RealmUnavailableException {
+                    identity.setCredentials(credentials);
+                }
+
+                public void setAttributes(final Attributes attributes) throws RealmUnavailableException {
+                    identity.setAttributes(attributes);
+                }
+
+                public void dispose() {
+                    identity.dispose();
+                }
+            };
+        }
+
+        public Iterator<ModifiableRealmIdentity> getRealmIdentityIterator() throws RealmUnavailableException {
+            return realm.getRealmIdentityIterator();
+        }
+    }
+
+    private Path getRootPath() throws Exception {
+        Path rootPath = Paths.get(getClass().getResource(File.separator).toURI()).resolve("upgrading-filesystem-realm");
+        if (! rootPath.toFile().exists()) {
+            return Files.createDirectories(rootPath);
+        }
+        return Files.walkFileTree(rootPath, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exc) throws IOException {
+                if (! dir.equals(rootPath)) {
+                    Files.delete(dir);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
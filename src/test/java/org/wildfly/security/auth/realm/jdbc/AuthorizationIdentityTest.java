@@ -17,15 +17,25 @@
  */
 package org.wildfly.security.auth.realm.jdbc;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
 import org.junit.Test;
+import org.wildfly.security.auth.realm.jdbc.mapper.AttributeMapper;
 import org.wildfly.security.auth.realm.jdbc.mapper.PasswordKeyMapper;
 import org.wildfly.security.auth.server.RealmIdentity;
 import org.wildfly.security.authz.AuthorizationIdentity;
+import org.wildfly.security.credential.PasswordCredential;
+import org.wildfly.security.evidence.PasswordGuessEvidence;
 import org.wildfly.security.password.interfaces.ClearPassword;
 
 /**
@@ -78,4 +88,55 @@ public class AuthorizationIdentityTest extends AbstractJdbcSecurityRealmTest {
         assertNotSame(AuthorizationIdentity.EMPTY, authorizationIdentity);
         assertTrue(plainUser.exists());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testQueriesExecutedOncePerIdentity() throws Exception {
+        createUserTable();
+        insertUser("plainUser", "plainPassword", "John", "Smith", "jsmith@elytron.org");
+
+        AtomicInteger connections = new AtomicInteger();
+        AtomicInteger statements = new AtomicInteger();
+        DataSource dataSource = (DataSource) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { DataSource.class }, (proxy, method, args) -> {
+            if (method.getName().equals("getConnection")) {
+                connections.incrementAndGet();
+                Connection connection = (Connection) method.invoke(getDataSource(), args);
+                return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class }, (connectionProxy, connectionMethod, connectionArgs) -> {
+                    if (connectionMethod.getName().equals("prepareStatement")) {
+                        statements.incrementAndGet();
+                    }
+                    return connectionMethod.invoke(connection, connectionArgs);
+                });
+            }
+            return method.invoke(getDataSource(), args);
+        });
+
+        PasswordKeyMapper passwordKeyMapper = PasswordKeyMapper.builder()
+            .setDefaultAlgorithm(ClearPassword.ALGORITHM_CLEAR)
+            .setHashColumn(1)
+            .build();
+
+        JdbcSecurityRealm securityRealm = JdbcSecurityRealm.builder()
+                .principalQuery("SELECT password FROM user_table WHERE name = ?")
+                    .withMapper(passwordKeyMapper)
+                    .from(dataSource)
+                .principalQuery("SELECT firstName, lastName FROM user_table WHERE name = ?")
+                    .withMapper(new AttributeMapper(1, "firstName"), new AttributeMapper(2, "lastName"))
+                    .from(dataSource)
+                .build();
+
+        RealmIdentity plainUser = securityRealm.getRealmIdentity("plainUser", null, null);
+
+        assertTrue(plainUser.getCredentialAcquireSupport(PasswordCredential.class, null).mayBeSupported());
+        assertTrue(plainUser.getEvidenceVerifySupport(PasswordGuessEvidence.class, null).mayBeSupported());
+        assertTrue(plainUser.verifyEvidence(new PasswordGuessEvidence("plainPassword".toCharArray())));
+        // the attribute query is not needed to verify the password
+        assertEquals(1, statements.get());
+        assertTrue(plainUser.exists());
+        assertEquals("John", plainUser.getAuthorizationIdentity().getAttributes().getFirst("firstName"));
+        assertEquals("Smith", plainUser.getAuthorizationIdentity().getAttributes().getFirst("lastName"));
+
+        assertEquals(1, connections.get());
+        assertEquals(2, statements.get());
+        plainUser.dispose();
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.auth.realm.oauth2;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.wildfly.security.auth.server.RealmIdentity;
+import org.wildfly.security.auth.server.RealmUnavailableException;
+import org.wildfly.security.evidence.BearerTokenEvidence;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests for {@link OAuth2SecurityRealm} against a local token introspection endpoint.
+ */
+public class OAuth2SecurityRealmHttpTest {
+
+    private HttpServer server;
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    @Before
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/introspect", exchange -> {
+            requests.incrementAndGet();
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            final String form = read(exchange.getRequestBody());
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            final byte[] response;
+            if (form.contains("token=large")) {
+                response = new byte[OAuth2Util.MAX_RESPONSE_SIZE + 1];
+                Arrays.fill(response, (byte) ' ');
+            } else if (form.contains("token=valid")) {
+                response = "{\"active\":true,\"username\":\"elytron\"}".getBytes(UTF_8);
+            } else {
+                response = "{\"active\":false}".getBytes(UTF_8);
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(response);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void stopServer() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    public void testConnectionsAreReused() throws Exception {
+        OAuth2SecurityRealm securityRealm = builder().build();
+
+        for (int i = 0; i < 5; i ++) {
+            RealmIdentity identity = securityRealm.getRealmIdentity(null, null, new BearerTokenEvidence("valid"));
+            assertTrue(identity.exists());
+            assertEquals("elytron", identity.getRealmIdentityPrincipal().getName());
+            identity = securityRealm.getRealmIdentity(null, null, new BearerTokenEvidence("invalid"));
+            assertFalse(identity.exists());
+        }
+
+        assertEquals(10, requests.get());
+        assertEquals(1, clientPorts.size());
+    }
+
+    @Test
+    public void testResponseSizeIsLimited() throws Exception {
+        OAuth2SecurityRealm securityRealm = builder().build();
+
+        RealmIdentity identity = securityRealm.getRealmIdentity(null, null, new BearerTokenEvidence("large"));
+        try {
+            identity.exists();
+            fail("Expected the response to be rejected");
+        } catch (RealmUnavailableException expected) {
+        }
+    }
+
+    @Test
+    public void testAsyncIntrospection() throws Exception {
+        OAuth2SecurityRealm securityRealm = builder().build();
+
+        RealmIdentity identity = securityRealm.getRealmIdentityAsync(new BearerTokenEvidence("valid")).toCompletableFuture().get(10, TimeUnit.SECONDS);
+        int before = requests.get();
+        assertTrue(identity.exists());
+        assertEquals("elytron", identity.getRealmIdentityPrincipal().getName());
+        assertEquals("the resolved identity must not introspect again", before, requests.get());
+
+        identity = securityRealm.getRealmIdentityAsync(new BearerTokenEvidence("invalid")).toCompletableFuture().get(10, TimeUnit.SECONDS);
+        assertFalse(identity.exists());
+    }
+
+    @Test
+    public void testInFlightLimit() throws Exception {
+        release = new CountDownLatch(1);
+        OAuth2SecurityRealm securityRealm = builder().maxInFlightIntrospections(2).build();
+
+        CompletableFuture<RealmIdentity> first = securityRealm.getRealmIdentityAsync(new BearerTokenEvidence("valid")).toCompletableFuture();
+        CompletableFuture<RealmIdentity> second = securityRealm.getRealmIdentityAsync(new BearerTokenEvidence("valid")).toCompletableFuture();
+        CompletableFuture<RealmIdentity> third = securityRealm.getRealmIdentityAsync(new BearerTokenEvidence("valid")).toCompletableFuture();
+
+        try {
+            third.get(10, TimeUnit.SECONDS);
+            fail("Expected the in-flight limit to be exceeded");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RealmUnavailableException);
+        }
+
+        release.countDown();
+        assertTrue(first.get(10, TimeUnit.SECONDS).exists());
+        assertTrue(second.get(10, TimeUnit.SECONDS).exists());
+
+        // permits are returned once the introspections complete
+        assertTrue(securityRealm.getRealmIdentityAsync(new BearerTokenEvidence("valid")).toCompletableFuture().get(10, TimeUnit.SECONDS).exists());
+    }
+
+    private OAuth2SecurityRealm.Builder builder() throws Exception {
+        return OAuth2SecurityRealm.builder()
+                .clientId("wildfly-elytron")
+                .clientSecret("dont_tell_me")
+                .tokenIntrospectionUrl(new URL("http://localhost:" + server.getAddress().getPort() + "/introspect"))
+                .requestTimeout(10000);
+    }
+
+    private static String read(InputStream is) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int res;
+        while ((res = is.read(buffer)) != -1) {
+            out.write(buffer, 0, res);
+        }
+        return new String(out.toByteArray(), UTF_8);
+    }
+}
@@ -22,12 +22,22 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.net.URL;
 import java.security.Principal;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 import javax.json.Json;
@@ -36,6 +46,7 @@ import javax.json.JsonObject;
 import javax.json.JsonObjectBuilder;
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
 
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -182,6 +193,140 @@ public class OAuth2SecurityRealmTest {
                 .build();
     }
 
+    @Test
+    public void testTokenCache() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        configureTokenIntrospectionEndpoint(s -> {
+            calls.incrementAndGet();
+            return Json.createReader(new ByteArrayInputStream(s.getBytes())).readObject();
+        });
+
+        OAuth2SecurityRealm securityRealm = OAuth2SecurityRealm.builder()
+                .clientId("wildfly-elytron")
+                .clientSecret("dont_tell_me")
+                .tokenIntrospectionUrl(new URL("http://as.test.org/oauth2/token/introspect"))
+                .tokenCacheMaxEntries(10)
+                .build();
+
+        String activeToken = Json.createObjectBuilder().add("active", true).add("username", "elytron@jboss.org").build().toString();
+        String inactiveToken = Json.createObjectBuilder().add("active", false).build().toString();
+        String expiredToken = Json.createObjectBuilder().add("active", true).add("username", "elytron@jboss.org").add("exp", System.currentTimeMillis() / 1000 - 60).build().toString();
+
+        for (int i = 0; i < 3; i ++) {
+            RealmIdentity realmIdentity = securityRealm.getRealmIdentity(null, null, new BearerTokenEvidence(activeToken));
+            assertTrue(realmIdentity.verifyEvidence(new BearerTokenEvidence(activeToken)));
+            assertEquals("elytron@jboss.org", realmIdentity.getRealmIdentityPrincipal().getName());
+            assertFalse(securityRealm.getRealmIdentity(null, null, new BearerTokenEvidence(inactiveToken)).exists());
+        }
+
+        assertEquals(2, calls.get());
+
+        securityRealm.getRealmIdentity(null, null, new BearerTokenEvidence(expiredToken)).exists();
+        securityRealm.getRealmIdentity(null, null, new BearerTokenEvidence(expiredToken)).exists();
+
+        assertEquals(4, calls.get());
+        assertEquals(4, securityRealm.getIntrospectionCount());
+        assertEquals(4, securityRealm.getTokenCacheMissCount());
+        assertTrue(securityRealm.getTokenCacheHitCount() > 0);
+    }
+
+    @Test
+    public void testConcurrentLookupsShareIntrospection() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch introspecting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        configureTokenIntrospectionEndpoint(s -> {
+            calls.incrementAndGet();
+            introspecting.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+            return Json.createReader(new ByteArrayInputStream(s.getBytes())).readObject();
+        });
+
+        OAuth2SecurityRealm securityRealm = OAuth2SecurityRealm.builder()
+                .clientId("wildfly-elytron")
+                .clientSecret("dont_tell_me")
+                .tokenIntrospectionUrl(new URL("http://as.test.org/oauth2/token/introspect"))
+                .tokenCacheMaxEntries(10)
+                .build();
+
+        String token = Json.createObjectBuilder().add("active", true).add("username", "elytron@jboss.org").build().toString();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            results.add(executor.submit(() -> securityRealm.getRealmIdentity(null, null, new BearerTokenEvidence(token)).exists()));
+            introspecting.await();
+            for (int i = 0; i < 3; i ++) {
+                results.add(executor.submit(() -> securityRealm.getRealmIdentity(null, null, new BearerTokenEvidence(token)).exists()));
+            }
+            release.countDown();
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void testErrorDuringIntrospectionReleasesWaiters() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch introspecting = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        configureTokenIntrospectionEndpoint(s -> {
+            if (calls.incrementAndGet() == 1) {
+                introspecting.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+                throw new StackOverflowError();
+            }
+            return Json.createReader(new ByteArrayInputStream(s.getBytes())).readObject();
+        });
+
+        OAuth2SecurityRealm securityRealm = OAuth2SecurityRealm.builder()
+                .clientId("wildfly-elytron")
+                .clientSecret("dont_tell_me")
+                .tokenIntrospectionUrl(new URL("http://as.test.org/oauth2/token/introspect"))
+                .tokenCacheMaxEntries(10)
+                .build();
+
+        String token = Json.createObjectBuilder().add("active", true).add("username", "elytron@jboss.org").build().toString();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<Boolean> failing = executor.submit(() -> securityRealm.getRealmIdentity(null, null, new BearerTokenEvidence(token)).exists());
+            introspecting.await();
+            Future<Boolean> waiting = executor.submit(() -> securityRealm.getRealmIdentity(null, null, new BearerTokenEvidence(token)).exists());
+            release.countDown();
+            try {
+                failing.get(10, TimeUnit.SECONDS);
+                fail("Expected the error to be thrown");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof StackOverflowError);
+            }
+            try {
+                // a waiter either shares the failed introspection or, if it arrived after it, introspects again
+                assertTrue(waiting.get(10, TimeUnit.SECONDS));
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RealmUnavailableException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // the failed introspection is not cached
+        assertTrue(securityRealm.getRealmIdentity(null, null, new BearerTokenEvidence(token)).exists());
+    }
+
     private void configureReplayTokenIntrospection() {
         configureTokenIntrospectionEndpoint(s -> Json.createReader(new ByteArrayInputStream(s.getBytes())).readObject());
     }
@@ -195,7 +340,7 @@ public class OAuth2SecurityRealmTest {
         }
         new MockUp<Object>(classToMock){
             @Mock
-            public JsonObject introspectAccessToken(URL tokenIntrospectionUrl, String clientId, String clientSecret, String token, SSLContext sslContext, HostnameVerifier hostnameVerifier) throws IOException {
+            public JsonObject introspectAccessToken(URL tokenIntrospectionUrl, String clientId, String clientSecret, String token, SSLSocketFactory sslSocketFactory, HostnameVerifier hostnameVerifier, int timeout) throws IOException {
                 return introspector.apply(token);
             }
         };
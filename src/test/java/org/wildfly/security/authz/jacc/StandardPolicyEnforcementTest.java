@@ -25,6 +25,7 @@ import javax.security.jacc.PolicyContext;
 import javax.security.jacc.WebResourcePermission;
 import java.security.Policy;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -119,4 +120,73 @@ public class StandardPolicyEnforcementTest extends AbstractAuthorizationTestCase
 
         policyConfiguration.delete();
     }
+
+    @Test
+    public void testRecommittedPolicy() throws Exception {
+        String contextID = "third-party-app";
+
+        PolicyConfiguration policyConfiguration = createPolicyConfiguration(contextID, toConfigure -> {
+            toConfigure.addToRole("Administrator", new WebResourcePermission("/webResource", "POST"));
+        });
+
+        policyConfiguration.commit();
+
+        PolicyContext.setContextID(contextID);
+        Policy policy = Policy.getPolicy();
+
+        assertTrue(policy.implies(createProtectionDomain(new NamePrincipal("Administrator")), new WebResourcePermission("/webResource", "POST")));
+        assertFalse(policy.implies(createProtectionDomain(new NamePrincipal("Administrator")), new WebResourcePermission("/webResource", "PUT")));
+
+        // decisions use the permissions published by the last commit
+        policyConfiguration = createPolicyConfiguration(contextID, toConfigure -> {
+            toConfigure.addToRole("Administrator", new WebResourcePermission("/webResource", "PUT"));
+        });
+
+        policyConfiguration.commit();
+
+        assertTrue(policy.implies(createProtectionDomain(new NamePrincipal("Administrator")), new WebResourcePermission("/webResource", "POST")));
+        assertTrue(policy.implies(createProtectionDomain(new NamePrincipal("Administrator")), new WebResourcePermission("/webResource", "PUT")));
+
+        policyConfiguration.delete();
+    }
+
+    @Test
+    public void testDecisionCache() throws Exception {
+        String contextID = "third-party-app";
+
+        PolicyConfiguration policyConfiguration = createPolicyConfiguration(contextID, toConfigure -> {
+            toConfigure.addToRole("Administrator", new WebResourcePermission("/webResource", "POST"));
+        });
+
+        policyConfiguration.commit();
+
+        PolicyContext.setContextID(contextID);
+        JaccDelegatingPolicy policy = new JaccDelegatingPolicy(Policy.getPolicy(), JaccDelegatingPolicy.DEFAULT_DECISION_CACHE_SIZE, true);
+        long hits = policy.getDecisionCacheHitCount();
+        long misses = policy.getDecisionCacheMissCount();
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(policy.implies(createProtectionDomain(new NamePrincipal("Administrator")), new WebResourcePermission("/webResource", "POST")));
+            assertFalse(policy.implies(createProtectionDomain(new NamePrincipal("Manager")), new WebResourcePermission("/webResource", "POST")));
+        }
+
+        assertEquals(misses + 2, policy.getDecisionCacheMissCount());
+        assertEquals(hits + 4, policy.getDecisionCacheHitCount());
+
+        long decisions = 0;
+
+        for (long count : policy.getDecisionTimeHistogram()) {
+            decisions += count;
+        }
+
+        assertTrue(decisions >= 6);
+
+        JaccDelegatingPolicy defaultPolicy = (JaccDelegatingPolicy) Policy.getPolicy();
+
+        assertTrue(defaultPolicy.implies(createProtectionDomain(new NamePrincipal("Administrator")), new WebResourcePermission("/webResource", "POST")));
+        assertEquals(0, defaultPolicy.getDecisionCacheHitCount());
+        assertEquals(0, defaultPolicy.getDecisionCacheMissCount());
+
+        policyConfiguration.delete();
+    }
 }
@@ -25,6 +25,7 @@ import java.security.Permissions;
 
 import org.wildfly.security.auth.permission.LoginPermission;
 import org.wildfly.security.auth.realm.ldap.AttributeMapping;
+import org.wildfly.security.auth.realm.ldap.DirContextFactory;
 import org.wildfly.security.auth.realm.ldap.LdapSecurityRealmBuilder;
 import org.wildfly.security.auth.server.RealmUnavailableException;
 import org.wildfly.security.auth.server.SecurityDomain;
@@ -50,12 +51,16 @@ public abstract class AbstractAttributeMappingSuiteChild {
     }
 
     protected void assertAttributes(String principalName, AssertResultHandler handler, AttributeMapping... expectedAttributes) throws RealmUnavailableException {
+        assertAttributes(LdapTestSuite.dirContextFactory.create(), principalName, handler, expectedAttributes);
+    }
+
+    protected void assertAttributes(DirContextFactory dirContextFactory, String principalName, AssertResultHandler handler, AttributeMapping... expectedAttributes) throws RealmUnavailableException {
         SecurityDomain.Builder builder = SecurityDomain.builder();
 
         builder.setDefaultRealmName("default")
                 .addRealm("default",
                         LdapSecurityRealmBuilder.builder()
-                                .setDirContextFactory(LdapTestSuite.dirContextFactory.create())
+                                .setDirContextFactory(dirContextFactory)
                                 .identityMapping()
                                         .setSearchDn("dc=elytron,dc=wildfly,dc=org")
                                         .searchRecursive()
@@ -76,6 +76,14 @@ public class DirContextFactoryRule implements TestRule {
                 .build();
     }
 
+    public SimpleDirContextFactoryBuilder pooledBuilder() {
+        return SimpleDirContextFactoryBuilder.builder()
+                .setProviderUrl(String.format("ldap://localhost:%d/", LDAP_PORT))
+                .setSecurityPrincipal(SERVER_DN)
+                .setSecurityCredential(SERVER_CREDENTIAL)
+                .setPoolMaxSize(2);
+    }
+
     private LdapService startEmbeddedServer() {
         try {
             return LdapService.builder()
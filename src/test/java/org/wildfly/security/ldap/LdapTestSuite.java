@@ -32,6 +32,7 @@ import org.junit.runners.Suite;
         ModifiabilitySuiteChild.class,
         PasswordSupportSuiteChild.class,
         PasswordValidationSuiteChild.class,
+        PooledDirContextFactorySuiteChild.class,
         PrincipalMappingSuiteChild.class,
         RoleMappingSuiteChild.class
 })
@@ -0,0 +1,152 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.ldap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.naming.NamingException;
+import javax.naming.directory.DirContext;
+
+import org.junit.Test;
+import org.wildfly.security.auth.realm.ldap.LdapSecurityRealmBuilder;
+import org.wildfly.security.auth.realm.ldap.PooledDirContextFactory;
+import org.wildfly.security.auth.server.RealmIdentity;
+import org.wildfly.security.auth.server.SecurityRealm;
+import org.wildfly.security.evidence.PasswordGuessEvidence;
+
+/**
+ * Tests for the pooling {@link org.wildfly.security.auth.realm.ldap.DirContextFactory}.
+ */
+public class PooledDirContextFactorySuiteChild {
+
+    @Test
+    public void testBindContextsAreReused() throws Exception {
+        PooledDirContextFactory factory = (PooledDirContextFactory) LdapTestSuite.dirContextFactory.pooledBuilder().build();
+        try {
+            SecurityRealm securityRealm = createRealm(factory);
+
+            for (int i = 0; i < 5; i ++) {
+                RealmIdentity realmIdentity = securityRealm.getRealmIdentity("plainUser", null, null);
+                assertTrue(realmIdentity.exists());
+                realmIdentity.dispose();
+            }
+
+            PooledDirContextFactory.PoolMetrics metrics = factory.getBindPoolMetrics();
+            assertEquals(1, metrics.getCreatedCount());
+            assertEquals(5, metrics.getBorrowCount());
+            assertEquals(1, metrics.getIdleCount());
+            assertEquals(0, metrics.getActiveCount());
+        } finally {
+            factory.close();
+        }
+    }
+
+    @Test
+    public void testUserBindsUseSeparatePool() throws Exception {
+        PooledDirContextFactory factory = (PooledDirContextFactory) LdapTestSuite.dirContextFactory.pooledBuilder().build();
+        try {
+            SecurityRealm securityRealm = createRealm(factory);
+
+            RealmIdentity realmIdentity = securityRealm.getRealmIdentity("plainUser", null, null);
+            for (int i = 0; i < 3; i ++) {
+                assertTrue(realmIdentity.verifyEvidence(new PasswordGuessEvidence("plainPassword".toCharArray())));
+            }
+            // a context whose bind failed is not reused
+            assertFalse(realmIdentity.verifyEvidence(new PasswordGuessEvidence("wrongPassword".toCharArray())));
+            assertTrue(realmIdentity.verifyEvidence(new PasswordGuessEvidence("plainPassword".toCharArray())));
+            realmIdentity.dispose();
+
+            PooledDirContextFactory.PoolMetrics userMetrics = factory.getUserBindPoolMetrics();
+            assertEquals(2, userMetrics.getCreatedCount());
+            assertEquals(1, userMetrics.getDestroyedCount());
+            assertEquals(5, userMetrics.getBorrowCount());
+            assertEquals(1, userMetrics.getIdleCount());
+            assertEquals(1, factory.getBindPoolMetrics().getCreatedCount());
+        } finally {
+            factory.close();
+        }
+    }
+
+    @Test
+    public void testPoolExhausted() throws Exception {
+        PooledDirContextFactory factory = (PooledDirContextFactory) LdapTestSuite.dirContextFactory.pooledBuilder()
+                .setPoolMaxSize(1)
+                .setPoolMaxWait(50)
+                .build();
+        try {
+            DirContext context = factory.obtainDirContext(null);
+            try {
+                factory.obtainDirContext(null);
+                fail("Expected the pool to be exhausted");
+            } catch (NamingException expected) {
+            }
+            factory.returnContext(context);
+
+            context = factory.obtainDirContext(null);
+            factory.returnContext(context);
+
+            PooledDirContextFactory.PoolMetrics metrics = factory.getBindPoolMetrics();
+            assertEquals(1, metrics.getCreatedCount());
+            assertTrue(metrics.getMaxWaitTime(TimeUnit.MILLISECONDS) >= 50);
+        } finally {
+            factory.close();
+        }
+    }
+
+    @Test
+    public void testIdleContextsExpire() throws Exception {
+        PooledDirContextFactory factory = (PooledDirContextFactory) LdapTestSuite.dirContextFactory.pooledBuilder()
+                .setPoolMinSize(1)
+                .setPoolIdleTimeout(1)
+                .build();
+        try {
+            DirContext first = factory.obtainDirContext(null);
+            DirContext second = factory.obtainDirContext(null);
+            factory.returnContext(first);
+            factory.returnContext(second);
+            Thread.sleep(10);
+
+            // expired contexts above the minimum size are closed
+            factory.returnContext(factory.obtainDirContext(null));
+
+            PooledDirContextFactory.PoolMetrics metrics = factory.getBindPoolMetrics();
+            assertEquals(2, metrics.getCreatedCount());
+            assertEquals(1, metrics.getDestroyedCount());
+            assertEquals(1, metrics.getIdleCount());
+        } finally {
+            factory.close();
+        }
+    }
+
+    private static SecurityRealm createRealm(PooledDirContextFactory factory) {
+        return LdapSecurityRealmBuilder.builder()
+                .setDirContextFactory(factory)
+                .identityMapping()
+                    .setSearchDn("dc=elytron,dc=wildfly,dc=org")
+                    .setRdnIdentifier("uid")
+                    .build()
+                .addDirectEvidenceVerification()
+                .build();
+    }
+}
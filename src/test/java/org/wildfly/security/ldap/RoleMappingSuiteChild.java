@@ -22,6 +22,7 @@ import static org.junit.Assert.assertEquals;
 
 import org.junit.Test;
 import org.wildfly.security.auth.realm.ldap.AttributeMapping;
+import org.wildfly.security.auth.realm.ldap.PooledDirContextFactory;
 import org.wildfly.security.authz.RoleDecoder;
 
 /**
@@ -60,4 +61,34 @@ public class RoleMappingSuiteChild extends AbstractAttributeMappingSuiteChild {
             assertAttributeValue(attributes.get(RoleDecoder.KEY_ROLES), "RoleFromBaseDN");
         }, AttributeMapping.fromFilter("(&(objectClass=groupOfNames)(member={0}))", "CN").to(RoleDecoder.KEY_ROLES));
     }
+
+    @Test
+    public void testRoleMappingsSharingSearch() throws Exception {
+        assertAttributes("userWithRoles", attributes -> {
+            assertEquals("Expected two attributes.", 2, attributes.size());
+            assertAttributeValue(attributes.get(RoleDecoder.KEY_ROLES), "RoleFromRolesOu", "RoleFromBaseDN");
+            assertAttributeValue(attributes.get("groups"), "RoleFromRolesOu", "RoleFromBaseDN");
+            assertEquals(2, attributes.get(RoleDecoder.KEY_ROLES).size());
+        }, AttributeMapping.fromFilter("(&(objectClass=groupOfNames)(member={0}))", "CN").to(RoleDecoder.KEY_ROLES),
+           AttributeMapping.fromFilter("(&(objectClass=groupOfNames)(member={0}))", "CN").to("groups"));
+    }
+
+    @Test
+    public void testRoleMappingSearchesShareOnePooledContext() throws Exception {
+        PooledDirContextFactory factory = (PooledDirContextFactory) LdapTestSuite.dirContextFactory.pooledBuilder().build();
+        try {
+            assertAttributes(factory, "userWithRoles", attributes -> {
+                assertEquals("Expected a single attribute.", 1, attributes.size());
+                assertEquals(3, attributes.get(RoleDecoder.KEY_ROLES).size());
+                assertAttributeValue(attributes.get(RoleDecoder.KEY_ROLES), "RoleFromRolesOu", "RoleFromBaseDN");
+            }, AttributeMapping.fromFilter("ou=Roles,dc=elytron,dc=wildfly,dc=org", "(&(objectClass=groupOfNames)(member={0}))", "CN").to(RoleDecoder.KEY_ROLES),
+               AttributeMapping.fromFilter("(&(objectClass=groupOfNames)(member={0}))", "CN").to(RoleDecoder.KEY_ROLES));
+
+            // both filtered searches ran on the context of the identity search
+            assertEquals(0, factory.getBindPoolMetrics().getActiveCount());
+            assertEquals(1, factory.getBindPoolMetrics().getCreatedCount());
+        } finally {
+            factory.close();
+        }
+    }
 }
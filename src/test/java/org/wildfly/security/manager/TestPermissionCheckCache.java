@@ -0,0 +1,187 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.manager;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.security.BasicPermission;
+import java.security.CodeSource;
+import java.security.Permission;
+import java.security.PermissionCollection;
+import java.security.Permissions;
+import java.security.Policy;
+import java.security.ProtectionDomain;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link PermissionCheckCache}.
+ */
+public final class TestPermissionCheckCache {
+
+    private static final Policy STATIC_POLICY = new CacheInvalidatingPolicy(Policy.getPolicy());
+
+    @Test
+    public void testGrantsAreCached() {
+        final CountingProtectionDomain domain = new CountingProtectionDomain(new RuntimePermission("granted"));
+        final ProtectionDomain[] domains = new ProtectionDomain[] { domain };
+        final PermissionCheckCache cache = new PermissionCheckCache(16);
+
+        for (int i = 0; i < 3; i ++) {
+            assertTrue(cache.impliesAll(STATIC_POLICY, new RuntimePermission("granted"), domains));
+        }
+        assertEquals(1, domain.checks);
+
+        // denials are evaluated every time
+        for (int i = 0; i < 3; i ++) {
+            assertFalse(cache.impliesAll(STATIC_POLICY, new RuntimePermission("denied"), domains));
+        }
+        assertEquals(4, domain.checks);
+
+        PermissionCheckCache.invalidateAll();
+        assertTrue(cache.impliesAll(STATIC_POLICY, new RuntimePermission("granted"), domains));
+        assertEquals(5, domain.checks);
+    }
+
+    @Test
+    public void testApplicationPermissionsAreNotCached() {
+        final CountingProtectionDomain domain = new CountingProtectionDomain(new ApplicationPermission("granted"));
+        final ProtectionDomain[] domains = new ProtectionDomain[] { domain };
+        final PermissionCheckCache cache = new PermissionCheckCache(16);
+
+        assertTrue(cache.impliesAll(STATIC_POLICY, new ApplicationPermission("granted"), domains));
+        assertTrue(cache.impliesAll(STATIC_POLICY, new ApplicationPermission("granted"), domains));
+        assertEquals(2, domain.checks);
+    }
+
+    @Test
+    public void testBounded() {
+        final CountingProtectionDomain domain = new CountingProtectionDomain(new RuntimePermission("*"));
+        final ProtectionDomain[] domains = new ProtectionDomain[] { domain };
+        final PermissionCheckCache cache = new PermissionCheckCache(2);
+
+        assertTrue(cache.impliesAll(STATIC_POLICY, new RuntimePermission("a"), domains));
+        assertTrue(cache.impliesAll(STATIC_POLICY, new RuntimePermission("b"), domains));
+        assertTrue(cache.impliesAll(STATIC_POLICY, new RuntimePermission("a"), domains));
+        assertEquals(2, domain.checks);
+        // the cache is full, so it is cleared to make room
+        assertTrue(cache.impliesAll(STATIC_POLICY, new RuntimePermission("c"), domains));
+        assertTrue(cache.impliesAll(STATIC_POLICY, new RuntimePermission("a"), domains));
+        assertEquals(4, domain.checks);
+    }
+
+    @Test
+    public void testDynamicPolicyIsNotCached() {
+        final CountingProtectionDomain domain = new CountingProtectionDomain(new RuntimePermission("granted"));
+        final ProtectionDomain[] domains = new ProtectionDomain[] { domain };
+        final PermissionCheckCache cache = new PermissionCheckCache(16);
+        // e.g. a JACC policy, which also grants the permissions of the current identity
+        final Policy dynamicPolicy = new Policy() {};
+
+        assertTrue(cache.impliesAll(STATIC_POLICY, new RuntimePermission("granted"), domains));
+        assertEquals(1, domain.checks);
+        assertTrue(cache.impliesAll(dynamicPolicy, new RuntimePermission("granted"), domains));
+        assertTrue(cache.impliesAll(dynamicPolicy, new RuntimePermission("granted"), domains));
+        assertEquals(3, domain.checks);
+        assertTrue(cache.impliesAll(null, new RuntimePermission("granted"), domains));
+        assertEquals(4, domain.checks);
+        // the file based policy is only cached once it is wrapped
+        assertTrue(cache.impliesAll(Policy.getPolicy(), new RuntimePermission("granted"), domains));
+        assertEquals(5, domain.checks);
+    }
+
+    @Test
+    public void testRefreshInvalidates() {
+        final MutablePolicy delegate = new MutablePolicy();
+        delegate.permissions.add(new RuntimePermission("revoked"));
+        final Policy policy = new CacheInvalidatingPolicy(delegate);
+        final ProtectionDomain[] domains = new ProtectionDomain[] { new PolicyProtectionDomain(policy) };
+        final PermissionCheckCache cache = new PermissionCheckCache(16);
+
+        assertTrue(cache.impliesAll(policy, new RuntimePermission("revoked"), domains));
+        delegate.permissions = new Permissions();
+        // the grant is still cached until the policy is refreshed
+        assertTrue(cache.impliesAll(policy, new RuntimePermission("revoked"), domains));
+        policy.refresh();
+        assertEquals(1, delegate.refreshes);
+        assertFalse(cache.impliesAll(policy, new RuntimePermission("revoked"), domains));
+    }
+
+    static final class MutablePolicy extends Policy {
+        volatile Permissions permissions = new Permissions();
+        int refreshes;
+
+        public PermissionCollection getPermissions(final CodeSource codeSource) {
+            return permissions;
+        }
+
+        public boolean implies(final ProtectionDomain domain, final Permission permission) {
+            return permissions.implies(permission);
+        }
+
+        public void refresh() {
+            refreshes ++;
+        }
+    }
+
+    /**
+     * A domain which consults the given policy rather than the installed one, as a dynamic domain does.
+     */
+    static final class PolicyProtectionDomain extends ProtectionDomain {
+        private final Policy policy;
+
+        PolicyProtectionDomain(final Policy policy) {
+            super(null, null, null, null);
+            this.policy = policy;
+        }
+
+        public boolean implies(final Permission permission) {
+            return policy.implies(this, permission);
+        }
+    }
+
+    static final class CountingProtectionDomain extends ProtectionDomain {
+        int checks;
+
+        CountingProtectionDomain(final Permission permission) {
+            super(null, permissionsOf(permission));
+        }
+
+        public boolean implies(final Permission permission) {
+            checks ++;
+            return super.implies(permission);
+        }
+
+        private static Permissions permissionsOf(final Permission permission) {
+            final Permissions permissions = new Permissions();
+            permissions.add(permission);
+            return permissions;
+        }
+    }
+
+    static final class ApplicationPermission extends BasicPermission {
+        private static final long serialVersionUID = 1L;
+
+        ApplicationPermission(final String name) {
+            super(name);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.password;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.security.Provider;
+import java.security.Security;
+import java.util.Arrays;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wildfly.security.WildFlyElytronProvider;
+import org.wildfly.security.password.interfaces.BCryptPassword;
+import org.wildfly.security.password.spec.EncryptablePasswordSpec;
+import org.wildfly.security.password.spec.IteratedSaltedPasswordAlgorithmSpec;
+
+/**
+ * Tests of {@link PasswordVerificationExecutor}.
+ */
+public class PasswordVerificationExecutorTest {
+
+    private static final Provider provider = new WildFlyElytronProvider();
+
+    @BeforeClass
+    public static void registerProvider() {
+        Security.addProvider(provider);
+    }
+
+    @AfterClass
+    public static void removeProvider() {
+        Security.removeProvider(provider.getName());
+    }
+
+    @Test
+    public void testVerifyAsync() throws Exception {
+        final PasswordFactory factory = PasswordFactory.getInstance(BCryptPassword.ALGORITHM_BCRYPT);
+        final Password password = factory.generatePassword(new EncryptablePasswordSpec("secret".toCharArray(), new IteratedSaltedPasswordAlgorithmSpec(4, null)));
+        final PasswordVerificationExecutor executor = new PasswordVerificationExecutor(2, 4);
+        try {
+            final char[] guess = "secret".toCharArray();
+            final CompletionStage<Boolean> stage = factory.verifyAsync(password, guess, executor);
+            // the guess is copied, so clearing it does not affect the verification
+            Arrays.fill(guess, '\0');
+            assertTrue(stage.toCompletableFuture().get(10, TimeUnit.SECONDS));
+            assertFalse(factory.verifyAsync(password, "wrong".toCharArray(), executor).toCompletableFuture().get(10, TimeUnit.SECONDS));
+            assertEquals(2, executor.getCompletedCount());
+            assertEquals(0, executor.getRejectedCount());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testQueueFullRejected() throws Exception {
+        final PasswordVerificationExecutor executor = new PasswordVerificationExecutor(1, 1);
+        final CountDownLatch running = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            final CompletionStage<Boolean> blocking = executor.submit(() -> {
+                running.countDown();
+                return Boolean.valueOf(release.await(10, TimeUnit.SECONDS));
+            });
+            assertTrue(running.await(10, TimeUnit.SECONDS));
+            final CompletionStage<Boolean> queued = executor.submit(() -> Boolean.TRUE);
+            final CompletionStage<Boolean> rejected = executor.submit(() -> Boolean.TRUE);
+            try {
+                rejected.toCompletableFuture().get(10, TimeUnit.SECONDS);
+                fail("Expected the verification to be rejected");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof RejectedExecutionException);
+            }
+            assertEquals(1, executor.getRejectedCount());
+            assertEquals(1, executor.getQueueDepth());
+
+            release.countDown();
+            assertTrue(blocking.toCompletableFuture().get(10, TimeUnit.SECONDS));
+            assertTrue(queued.toCompletableFuture().get(10, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testDefaultCannotBeShutDown() throws Exception {
+        final PasswordVerificationExecutor executor = PasswordVerificationExecutor.getDefault();
+        try {
+            executor.shutdown();
+            fail("Expected the default executor to refuse to shut down");
+        } catch (IllegalStateException expected) {
+        }
+        assertTrue(executor.submit(() -> Boolean.TRUE).toCompletableFuture().get(10, TimeUnit.SECONDS));
+    }
+}
@@ -18,6 +18,7 @@
 
 package org.wildfly.security.password.impl;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -25,10 +26,14 @@ import static org.wildfly.security.password.interfaces.ScramDigestPassword.ALGOR
 import static org.wildfly.security.password.interfaces.ScramDigestPassword.ALGORITHM_SCRAM_SHA_256;
 
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.security.Provider;
 import java.security.Security;
 import java.util.Arrays;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
 import org.junit.AfterClass;
 import org.junit.Assert;
 import org.junit.BeforeClass;
@@ -39,6 +44,7 @@ import org.wildfly.security.password.interfaces.ScramDigestPassword;
 import org.wildfly.security.password.spec.EncryptablePasswordSpec;
 import org.wildfly.security.password.spec.IteratedSaltedPasswordAlgorithmSpec;
 import org.wildfly.security.password.spec.IteratedSaltedHashPasswordSpec;
+import org.wildfly.security.password.spec.ScramKeysPasswordSpec;
 import org.wildfly.security.util.Alphabet.Base64Alphabet;
 import org.wildfly.security.util.ByteIterator;
 import org.wildfly.security.util.CodePointIterator;
@@ -121,6 +127,34 @@ public class ScramDigestPasswordTest {
         this.performTest(ALGORITHM_SCRAM_SHA_256, "a\u0438\u4F60\uD83C\uDCA1", "99376f7a5a7b1ff232e148a7b6d6d5c07520cb79c32cfb744b38e3458c8380bf", "\uD83C\uDCA1\u4F60\u0438a", 1000);
     }
 
+    @Test
+    public void testStoredAndServerKeys() throws Exception {
+        byte[] digest = CodePointIterator.ofString("1d96ee3a529b5a5f9e47c01f229a2cb8a6e15f7d").hexDecode().drain();
+        byte[] salt = CodePointIterator.ofString("QSXCR+Q6sek8bf92").base64Decode().drain();
+        Mac mac = Mac.getInstance("HmacSHA1");
+        mac.init(new SecretKeySpec(digest, "HmacSHA1"));
+        byte[] storedKey = MessageDigest.getInstance("SHA-1").digest(mac.doFinal("Client Key".getBytes(StandardCharsets.UTF_8)));
+        byte[] serverKey = mac.doFinal("Server Key".getBytes(StandardCharsets.UTF_8));
+
+        PasswordFactory factory = PasswordFactory.getInstance(ALGORITHM_SCRAM_SHA_1);
+        ScramDigestPassword password = (ScramDigestPassword) factory.generatePassword(new IteratedSaltedHashPasswordSpec(digest, salt, 4096));
+        assertArrayEquals(storedKey, password.getStoredKey());
+        assertArrayEquals(serverKey, password.getServerKey());
+
+        ScramKeysPasswordSpec keysSpec = factory.getKeySpec(password, ScramKeysPasswordSpec.class);
+        ScramDigestPassword keysPassword = (ScramDigestPassword) factory.generatePassword(keysSpec);
+        assertArrayEquals(storedKey, keysPassword.getStoredKey());
+        assertArrayEquals(serverKey, keysPassword.getServerKey());
+        assertArrayEquals(salt, keysPassword.getSalt());
+        assertEquals(4096, keysPassword.getIterationCount());
+        assertTrue(factory.verify(keysPassword, "pencil".toCharArray()));
+        assertFalse(factory.verify(keysPassword, "pen".toCharArray()));
+        assertFalse(factory.convertibleToKeySpec(keysPassword, IteratedSaltedHashPasswordSpec.class));
+
+        ScramDigestPassword translated = (ScramDigestPassword) factory.translate(ScramDigestPassword.createRaw(ALGORITHM_SCRAM_SHA_1, storedKey, serverKey, salt, 4096));
+        assertTrue(factory.verify(translated, "pencil".toCharArray()));
+    }
+
     @Test
     public void testNormalization(){
         byte[] normalized;
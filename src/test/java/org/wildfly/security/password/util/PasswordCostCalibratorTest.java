@@ -0,0 +1,102 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.password.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.security.Security;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.wildfly.security.WildFlyElytronProvider;
+import org.wildfly.security.password.PasswordFactory;
+import org.wildfly.security.password.interfaces.BCryptPassword;
+import org.wildfly.security.password.interfaces.ScramDigestPassword;
+import org.wildfly.security.password.interfaces.UnixSHACryptPassword;
+import org.wildfly.security.password.spec.ClearPasswordSpec;
+import org.wildfly.security.password.spec.EncryptablePasswordSpec;
+import org.wildfly.security.password.spec.IteratedSaltedPasswordAlgorithmSpec;
+
+/**
+ * Tests of {@link PasswordCostCalibrator}.
+ */
+public class PasswordCostCalibratorTest {
+
+    private static final Provider provider = new WildFlyElytronProvider();
+
+    @BeforeClass
+    public static void registerProvider() {
+        Security.addProvider(provider);
+    }
+
+    @AfterClass
+    public static void removeProvider() {
+        Security.removeProvider(provider.getName());
+    }
+
+    @After
+    public void clearDefaults() {
+        PasswordCostCalibrator.clearDefaultIterationCounts();
+    }
+
+    @Test
+    public void testRecommendationNeverBelowBuiltInDefault() throws Exception {
+        assertEquals(BCryptPassword.DEFAULT_ITERATION_COUNT, PasswordCostCalibrator.calibrate(BCryptPassword.ALGORITHM_BCRYPT, 1, TimeUnit.NANOSECONDS));
+        assertEquals(ScramDigestPassword.DEFAULT_ITERATION_COUNT, PasswordCostCalibrator.calibrate(ScramDigestPassword.ALGORITHM_SCRAM_SHA_256, 1, TimeUnit.NANOSECONDS));
+    }
+
+    @Test
+    public void testHigherTargetRaisesRecommendation() throws Exception {
+        int iterationCount = PasswordCostCalibrator.calibrate(ScramDigestPassword.ALGORITHM_SCRAM_SHA_1, 200, TimeUnit.MILLISECONDS);
+        assertTrue(iterationCount > ScramDigestPassword.DEFAULT_ITERATION_COUNT);
+    }
+
+    @Test(expected = NoSuchAlgorithmException.class)
+    public void testCalibrateNonIteratedAlgorithm() throws Exception {
+        PasswordCostCalibrator.calibrate("clear", 100, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testDefaultIterationCountUsed() throws Exception {
+        PasswordFactory passwordFactory = PasswordFactory.getInstance(BCryptPassword.ALGORITHM_BCRYPT);
+        PasswordCostCalibrator.setDefaultIterationCount(BCryptPassword.ALGORITHM_BCRYPT, 5);
+
+        BCryptPassword password = (BCryptPassword) passwordFactory.generatePassword(new EncryptablePasswordSpec("password".toCharArray(), new IteratedSaltedPasswordAlgorithmSpec(0, null)));
+        assertEquals(5, password.getIterationCount());
+        password = (BCryptPassword) passwordFactory.generatePassword(new ClearPasswordSpec("password".toCharArray()));
+        assertEquals(5, password.getIterationCount());
+        // an explicit iteration count is still honoured
+        password = (BCryptPassword) passwordFactory.generatePassword(new EncryptablePasswordSpec("password".toCharArray(), new IteratedSaltedPasswordAlgorithmSpec(4, null)));
+        assertEquals(4, password.getIterationCount());
+
+        PasswordCostCalibrator.clearDefaultIterationCounts();
+        assertEquals(BCryptPassword.DEFAULT_ITERATION_COUNT, PasswordCostCalibrator.getDefaultIterationCount(BCryptPassword.ALGORITHM_BCRYPT, BCryptPassword.DEFAULT_ITERATION_COUNT));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDefaultIterationCountOutOfRange() {
+        PasswordCostCalibrator.setDefaultIterationCount(UnixSHACryptPassword.ALGORITHM_CRYPT_SHA_256, 999);
+    }
+}
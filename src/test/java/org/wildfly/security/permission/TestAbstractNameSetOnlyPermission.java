@@ -104,6 +104,74 @@ public class TestAbstractNameSetOnlyPermission {
         assertFalse(iterator.hasNext());
     }
 
+    @Test
+    public void testLongCollection() {
+        testLargeCollection(50, LongNameSetPermissionCollection.class);
+        testLargeCollection(64, LongNameSetPermissionCollection.class);
+    }
+
+    @Test
+    public void testGiantCollection() {
+        testLargeCollection(65, GiantNameSetPermissionCollection.class);
+        testLargeCollection(300, GiantNameSetPermissionCollection.class);
+    }
+
+    private void testLargeCollection(int size, Class<?> expectedType) {
+        final StringEnumeration names = largeEnumeration(size);
+        final AbstractPermissionCollection collection = new LargePermission("name0", names).newPermissionCollection();
+        assertEquals(expectedType, collection.getClass());
+        assertEquals(0, collection.size());
+        assertFalse(collection.iterator().hasNext());
+
+        collection.add(new LargePermission("name1", names));
+        collection.add(new LargePermission("name" + (size - 1), names));
+        collection.add(new LargePermission("name" + (size - 1), names));
+        assertEquals(2, collection.size());
+        assertTrue(collection.implies(new LargePermission("name1", names)));
+        assertTrue(collection.implies(new LargePermission("name" + (size - 1), names)));
+        assertFalse(collection.implies(new LargePermission("name0", names)));
+        assertFalse(collection.implies(new LargePermission("name33", names)));
+        assertFalse(collection.implies(new LargePermission("*", names)));
+        assertFalse(collection.implies(new SomePermission("name1")));
+        Iterator<Permission> iterator = collection.iterator();
+        assertEquals(new LargePermission("name1", names), iterator.next());
+        assertEquals(new LargePermission("name" + (size - 1), names), iterator.next());
+        assertFalse(iterator.hasNext());
+
+        for (int i = 0; i < size - 1; i ++) {
+            collection.add(new LargePermission("name" + i, names));
+        }
+        assertEquals(1, collection.size());
+        assertTrue(collection.implies(new LargePermission("*", names)));
+        iterator = collection.iterator();
+        assertEquals(new LargePermission("*", names), iterator.next());
+        assertFalse(iterator.hasNext());
+
+        final AbstractPermissionCollection all = new LargePermission("name0", names).newPermissionCollection();
+        all.add(new LargePermission("*", names));
+        assertEquals(1, all.size());
+        assertTrue(all.implies(new LargePermission("name" + (size - 1), names)));
+        assertTrue(all.implies(new LargePermission("*", names)));
+    }
+
+    private static StringEnumeration largeEnumeration(int size) {
+        final String[] names = new String[size];
+        for (int i = 0; i < size; i ++) {
+            names[i] = "name" + i;
+        }
+        return StringEnumeration.of(names);
+    }
+
+    public static final class LargePermission extends AbstractNameSetOnlyPermission<LargePermission> {
+        public LargePermission(final String name, final StringEnumeration names) {
+            super(name, names);
+        }
+
+        public LargePermission withName(final String name) {
+            return new LargePermission(name, getNameEnumeration());
+        }
+    }
+
     public static final class SomePermission extends AbstractNameSetOnlyPermission<SomePermission> {
         public SomePermission(final String name) {
             super(name, StringEnumeration.of("name1", "name2", "name3"));
@@ -0,0 +1,205 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.permission;
+
+import static org.junit.Assert.*;
+
+import java.security.Permission;
+import java.security.PermissionCollection;
+import java.security.Permissions;
+import java.security.UnresolvedPermission;
+import java.util.PropertyPermission;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link PermissionUtil#compile(PermissionCollection)}.
+ */
+public class TestCompiledPermissionCollection {
+
+    @Test
+    public void testImplies() {
+        final Permissions permissions = new Permissions();
+        permissions.add(new RuntimePermission("foo.*"));
+        permissions.add(new PropertyPermission("user.home", "read"));
+        permissions.add(new TestAbstractBooleanPermission.SomePermission());
+        permissions.add(new PrefixPermission("abc"));
+        permissions.setReadOnly();
+
+        final PermissionCollection compiled = PermissionUtil.compile(permissions);
+        assertTrue(compiled.isReadOnly());
+        assertTrue(compiled.implies(new RuntimePermission("foo.bar")));
+        assertFalse(compiled.implies(new RuntimePermission("bar")));
+        assertTrue(compiled.implies(new PropertyPermission("user.home", "read")));
+        assertFalse(compiled.implies(new PropertyPermission("user.home", "write")));
+        assertTrue(compiled.implies(new TestAbstractBooleanPermission.SomePermission()));
+        assertFalse(compiled.implies(new TestAbstractBooleanPermission.SomeOtherPermission()));
+        assertTrue(compiled.implies(new PrefixPermission("abc")));
+        assertTrue(compiled.implies(new PrefixPermission("abcdef")));
+        assertFalse(compiled.implies(new PrefixPermission("ab")));
+        assertFalse(compiled.implies(PermissionUtil.ALL_PERMISSION));
+        assertEquals(4, countElements(compiled));
+        assertSame(compiled, PermissionUtil.compile(compiled));
+        try {
+            compiled.add(new RuntimePermission("bar"));
+            fail("Expected exception");
+        } catch (SecurityException ignored) {}
+    }
+
+    @Test
+    public void testUnionAndIntersection() {
+        final PermissionCollection first = readOnly(new RuntimePermission("a"), new RuntimePermission("b"));
+        final PermissionCollection second = readOnly(new RuntimePermission("b"), new RuntimePermission("c"));
+        final PermissionCollection third = readOnly(new PrefixPermission("x"));
+
+        final PermissionCollection union = PermissionUtil.compile(PermissionUtil.union(first, PermissionUtil.union(second, third)));
+        assertTrue(union.implies(new RuntimePermission("a")));
+        assertTrue(union.implies(new RuntimePermission("c")));
+        assertTrue(union.implies(new PrefixPermission("xy")));
+        assertFalse(union.implies(new RuntimePermission("d")));
+        assertEquals(4, countElements(union));
+
+        final PermissionCollection intersection = PermissionUtil.compile(PermissionUtil.union(third, PermissionUtil.intersection(first, second)));
+        assertFalse(intersection.implies(new RuntimePermission("a")));
+        assertTrue(intersection.implies(new RuntimePermission("b")));
+        assertFalse(intersection.implies(new RuntimePermission("c")));
+        assertTrue(intersection.implies(new PrefixPermission("xy")));
+    }
+
+    @Test
+    public void testAllAndEmpty() {
+        assertSame(PermissionUtil.ALL_PERMISSIONS, PermissionUtil.compile(readOnly(new RuntimePermission("a"), PermissionUtil.ALL_PERMISSION)));
+        assertSame(PermissionUtil.EMPTY_PERMISSION_COLLECTION, PermissionUtil.compile(readOnly()));
+    }
+
+    @Test
+    public void testUnknownCollectionKept() {
+        final PermissionCollection unknown = new RuntimePermission("a").newPermissionCollection();
+        unknown.add(new RuntimePermission("a"));
+        unknown.setReadOnly();
+        assertSame(unknown, PermissionUtil.compile(unknown));
+
+        final PermissionCollection union = PermissionUtil.compile(PermissionUtil.union(unknown, readOnly(new PrefixPermission("x"))));
+        assertTrue(union.implies(new RuntimePermission("a")));
+        assertTrue(union.implies(new PrefixPermission("xy")));
+        assertFalse(union.implies(new RuntimePermission("b")));
+    }
+
+    @Test
+    public void testWildcardNames() {
+        final PermissionCollection compiled = PermissionUtil.compile(readOnly(new WildcardPermission("a.b.*"), new WildcardPermission("c"), new PrefixPermission("x"), new WildcardPermission("*.d")));
+        assertTrue(compiled.implies(new WildcardPermission("a.b.c")));
+        assertTrue(compiled.implies(new WildcardPermission("a.b.")));
+        assertFalse(compiled.implies(new WildcardPermission("a.c")));
+        assertTrue(compiled.implies(new WildcardPermission("c")));
+        assertFalse(compiled.implies(new WildcardPermission("c.d")));
+        assertTrue(compiled.implies(new WildcardPermission("e.d")));
+        assertTrue(compiled.implies(new PrefixPermission("xyz")));
+        assertEquals(4, countElements(compiled));
+    }
+
+    @Test
+    public void testUnresolvedPermissionResolvedLazily() {
+        final PermissionCollection compiled = PermissionUtil.compile(readOnly(new UnresolvedPermission(RuntimePermission.class.getName(), "foo", null, null), new PrefixPermission("x")));
+        assertTrue(compiled.implies(new RuntimePermission("foo")));
+        assertFalse(compiled.implies(new RuntimePermission("bar")));
+        assertTrue(compiled.implies(new PrefixPermission("xy")));
+    }
+
+    private static PermissionCollection readOnly(Permission... permissions) {
+        final Permissions collection = new Permissions();
+        for (Permission permission : permissions) {
+            collection.add(permission);
+        }
+        collection.setReadOnly();
+        return collection;
+    }
+
+    private static int countElements(PermissionCollection collection) {
+        int count = 0;
+        for (Permission ignored : PermissionUtil.iterable(collection)) {
+            count ++;
+        }
+        return count;
+    }
+
+    /**
+     * A permission which provides no collection of its own and implies any permission whose name starts with its name.
+     */
+    static final class PrefixPermission extends Permission {
+        private static final long serialVersionUID = 1L;
+
+        PrefixPermission(final String name) {
+            super(name);
+        }
+
+        public boolean implies(final Permission permission) {
+            return permission instanceof PrefixPermission && permission.getName().startsWith(getName());
+        }
+
+        public boolean equals(final Object obj) {
+            return obj instanceof PrefixPermission && ((PrefixPermission) obj).getName().equals(getName());
+        }
+
+        public int hashCode() {
+            return getName().hashCode();
+        }
+
+        public String getActions() {
+            return "";
+        }
+    }
+
+    /**
+     * A permission which provides no collection of its own and whose names may end or start with a wildcard.
+     */
+    static final class WildcardPermission extends Permission {
+        private static final long serialVersionUID = 1L;
+
+        WildcardPermission(final String name) {
+            super(name);
+        }
+
+        public boolean implies(final Permission permission) {
+            if (! (permission instanceof WildcardPermission)) {
+                return false;
+            }
+            final String name = getName();
+            if (name.endsWith("*")) {
+                return permission.getName().startsWith(name.substring(0, name.length() - 1));
+            }
+            if (name.startsWith("*")) {
+                return permission.getName().endsWith(name.substring(1));
+            }
+            return permission.getName().equals(name);
+        }
+
+        public boolean equals(final Object obj) {
+            return obj instanceof WildcardPermission && ((WildcardPermission) obj).getName().equals(getName());
+        }
+
+        public int hashCode() {
+            return getName().hashCode();
+        }
+
+        public String getActions() {
+            return "";
+        }
+    }
+}
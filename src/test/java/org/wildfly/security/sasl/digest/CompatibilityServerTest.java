@@ -24,6 +24,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -34,6 +35,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.wildfly.security.password.interfaces.ClearPassword;
 import org.wildfly.security.password.spec.ClearPasswordSpec;
+import org.wildfly.security.sasl.WildFlySasl;
+import org.wildfly.security.sasl.digest._private.DigestUtil;
 import org.wildfly.security.sasl.test.BaseTestCase;
 import org.wildfly.security.sasl.test.SaslServerBuilder;
 import org.wildfly.security.sasl.util.SaslMechanismInformation;
@@ -726,4 +729,124 @@ public class CompatibilityServerTest extends BaseTestCase {
         assertEquals("chris", server.getAuthorizationID());
     }
 
-}
\ No newline at end of file
+
+    /**
+     * Test subsequent authentication (RFC 2831 section 2.2) reusing the nonce of the first example in RFC 2831
+     */
+    @Test
+    public void testSubsequentAuthentication() throws Exception {
+        mockNonce("OA6MG9tEQGm2hh");
+
+        DigestNonceStore nonceStore = new DigestNonceStore(10, -1);
+        Map<String, Object> serverProps = new HashMap<String, Object>();
+        serverProps.put(REALM_PROPERTY, "elwood.innosoft.com");
+        serverProps.put(WildFlySasl.DIGEST_NONCE_STORE, nonceStore);
+
+        SaslServer server = createRfc2831Server(serverProps);
+        server.evaluateResponse(new byte[0]);
+        byte[] message2 = "charset=utf-8,username=\"chris\",realm=\"elwood.innosoft.com\",nonce=\"OA6MG9tEQGm2hh\",nc=00000001,cnonce=\"OA6MHXh6VqTrRk\",digest-uri=\"imap/elwood.innosoft.com\",response=d388dad90d4bbd760a152321f2143af7,qop=auth".getBytes(StandardCharsets.UTF_8);
+        server.evaluateResponse(message2);
+        assertTrue(server.isComplete());
+        assertEquals(1, nonceStore.size());
+
+        // the client reconnects and sends its response straight away, skipping the challenge
+        for (int nonceCount = 2; nonceCount <= 17; nonceCount++) {
+            server = createRfc2831Server(serverProps);
+            server.evaluateResponse(subsequentResponse("OA6MG9tEQGm2hh", nonceCount, "OA6MHXh6VqTr" + nonceCount));
+            assertTrue(server.isComplete());
+            assertEquals("chris", server.getAuthorizationID());
+        }
+        assertEquals(16, nonceStore.getReuseCount());
+
+        // a replayed nonce count is rejected
+        server = createRfc2831Server(serverProps);
+        try {
+            server.evaluateResponse(subsequentResponse("OA6MG9tEQGm2hh", 17, "OA6MHXh6VqTr17"));
+            fail("Replayed nonce count accepted");
+        } catch (SaslException expected) {
+        }
+        assertFalse(server.isComplete());
+    }
+
+    /**
+     * Test subsequent authentication with a nonce unknown to the server falls back to a full authentication
+     */
+    @Test
+    public void testSubsequentAuthenticationStaleNonce() throws Exception {
+        mockNonce("OA6MG9tEQGm2hh");
+
+        DigestNonceStore nonceStore = new DigestNonceStore(10, -1);
+        Map<String, Object> serverProps = new HashMap<String, Object>();
+        serverProps.put(REALM_PROPERTY, "elwood.innosoft.com");
+        serverProps.put(WildFlySasl.DIGEST_NONCE_STORE, nonceStore);
+
+        SaslServer server = createRfc2831Server(serverProps);
+        byte[] message1 = server.evaluateResponse(subsequentResponse("OA9BSXrbuRhWay", 2, "OA9BSuZWMSpW8m"));
+        assertEquals("realm=\"elwood.innosoft.com\",nonce=\"OA6MG9tEQGm2hh\",stale=true,charset=utf-8,algorithm=md5-sess", new String(message1, "UTF-8"));
+        assertFalse(server.isComplete());
+        assertEquals(1, nonceStore.getStaleCount());
+
+        byte[] message2 = "charset=utf-8,username=\"chris\",realm=\"elwood.innosoft.com\",nonce=\"OA6MG9tEQGm2hh\",nc=00000001,cnonce=\"OA6MHXh6VqTrRk\",digest-uri=\"imap/elwood.innosoft.com\",response=d388dad90d4bbd760a152321f2143af7,qop=auth".getBytes(StandardCharsets.UTF_8);
+        byte[] message3 = server.evaluateResponse(message2);
+        assertEquals("rspauth=ea40f60335c427b5527b84dbabcdfffd", new String(message3, "UTF-8"));
+        assertTrue(server.isComplete());
+    }
+
+    /**
+     * Test subsequent authentication with a nonce issued to another user falls back to a full authentication
+     */
+    @Test
+    public void testSubsequentAuthenticationOtherUser() throws Exception {
+        mockNonce("OA6MG9tEQGm2hh");
+
+        DigestNonceStore nonceStore = new DigestNonceStore(10, -1);
+        Map<String, Object> serverProps = new HashMap<String, Object>();
+        serverProps.put(REALM_PROPERTY, "elwood.innosoft.com");
+        serverProps.put(WildFlySasl.DIGEST_NONCE_STORE, nonceStore);
+
+        SaslServer server = createRfc2831Server(serverProps);
+        server.evaluateResponse(new byte[0]);
+        byte[] message2 = "charset=utf-8,username=\"chris\",realm=\"elwood.innosoft.com\",nonce=\"OA6MG9tEQGm2hh\",nc=00000001,cnonce=\"OA6MHXh6VqTrRk\",digest-uri=\"imap/elwood.innosoft.com\",response=d388dad90d4bbd760a152321f2143af7,qop=auth".getBytes(StandardCharsets.UTF_8);
+        server.evaluateResponse(message2);
+        assertTrue(server.isComplete());
+
+        server = createRfc2831Server(serverProps);
+        byte[] message3 = server.evaluateResponse(subsequentResponse("mallory", "OA6MG9tEQGm2hh", 2, "OA6MHXh6VqTr2"));
+        assertTrue(new String(message3, "UTF-8").contains("stale=true"));
+        assertFalse(server.isComplete());
+        assertEquals(1, nonceStore.getStaleCount());
+        assertEquals(0, nonceStore.getReuseCount());
+
+        // the nonce is still usable by the user it was issued to
+        server = createRfc2831Server(serverProps);
+        server.evaluateResponse(subsequentResponse("OA6MG9tEQGm2hh", 2, "OA6MHXh6VqTr2"));
+        assertTrue(server.isComplete());
+        assertEquals(1, nonceStore.getReuseCount());
+    }
+
+    private static SaslServer createRfc2831Server(Map<String, Object> serverProps) throws Exception {
+        return new SaslServerBuilder(DigestServerFactory.class, SaslMechanismInformation.Names.DIGEST_MD5)
+                .setUserName("chris")
+                .setPassword(ClearPassword.ALGORITHM_CLEAR, new ClearPasswordSpec("secret".toCharArray()))
+                .setProtocol("imap").setServerName("elwood.innosoft.com")
+                .setProperties(serverProps)
+                .build();
+    }
+
+    private static byte[] subsequentResponse(String nonce, int nonceCount, String cnonce) throws Exception {
+        return subsequentResponse("chris", nonce, nonceCount, cnonce);
+    }
+
+    private static byte[] subsequentResponse(String username, String nonce, int nonceCount, String cnonce) throws Exception {
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        byte[] nonceBytes = nonce.getBytes(StandardCharsets.UTF_8);
+        byte[] cnonceBytes = cnonce.getBytes(StandardCharsets.UTF_8);
+        byte[] urp = DigestUtil.userRealmPasswordDigest(md5, username, "elwood.innosoft.com", "secret".toCharArray());
+        byte[] hA1 = DigestUtil.H_A1(md5, urp, nonceBytes, cnonceBytes, null, StandardCharsets.UTF_8);
+        byte[] response = DigestUtil.digestResponse(md5, hA1, nonceBytes, nonceCount, cnonceBytes, null, "auth", "imap/elwood.innosoft.com", true);
+        String nc = new String(DigestUtil.convertToHexBytesWithLeftPadding(nonceCount, 8), StandardCharsets.US_ASCII);
+        return ("charset=utf-8,username=\"" + username + "\",realm=\"elwood.innosoft.com\",nonce=\"" + nonce + "\",nc=" + nc + ",cnonce=\"" + cnonce
+                + "\",digest-uri=\"imap/elwood.innosoft.com\",response=" + new String(response, StandardCharsets.US_ASCII) + ",qop=auth").getBytes(StandardCharsets.UTF_8);
+    }
+
+}
@@ -27,11 +27,13 @@ import static org.wildfly.security.sasl.digest.DigestCallbackHandlerUtils.create
 import static org.wildfly.security.sasl.digest.DigestCallbackHandlerUtils.createDigestPwdClientCallbackHandler;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
 import java.security.Provider;
 import java.security.Security;
 import java.security.spec.KeySpec;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -56,7 +58,10 @@ import org.wildfly.security.password.spec.DigestPasswordSpec;
 import org.wildfly.security.sasl.WildFlySasl;
 import org.wildfly.security.sasl.test.BaseTestCase;
 import org.wildfly.security.sasl.test.SaslServerBuilder;
+import org.wildfly.security.sasl.util.ClientSaslWrapper;
 import org.wildfly.security.sasl.util.SaslMechanismInformation;
+import org.wildfly.security.sasl.util.SaslWrapper;
+import org.wildfly.security.sasl.util.ServerSaslWrapper;
 import org.wildfly.security.sasl.util.UsernamePasswordHashUtil;
 
 /**
@@ -730,6 +735,76 @@ public class DigestTest extends BaseTestCase {
         Assert.assertArrayEquals(new byte[]{(byte)0xAB,(byte)0xCD,(byte)0xEF}, server.unwrap(message, 0, message.length));
     }
 
+    /**
+     * Test wrapping and unwrapping between direct buffers, over enough messages to use every padding length and multi
+     * byte sequence numbers
+     */
+    @Test
+    public void testByteBufferWrapping() throws Exception {
+        testByteBufferWrapping("auth-int", "3des");
+        testByteBufferWrapping("auth-conf", "3des");
+        testByteBufferWrapping("auth-conf", "des");
+        testByteBufferWrapping("auth-conf", "rc4");
+    }
+
+    private void testByteBufferWrapping(String qop, String clientCipher) throws Exception {
+        Map<String, Object> serverProps = new HashMap<String, Object>();
+        serverProps.put(QOP_PROPERTY, qop);
+        serverProps.put(WildFlySasl.SUPPORTED_CIPHER_NAMES, "des,3des,rc4,rc4-40,rc4-56");
+        SaslServer server = new SaslServerBuilder(DigestServerFactory.class, DIGEST)
+                .setUserName("George")
+                .setPassword("gpwd".toCharArray())
+                .setProperties(serverProps)
+                .setProtocol("TestProtocol")
+                .setServerName("TestServer")
+                .build();
+
+        CallbackHandler clientCallback = createClearPwdClientCallbackHandler("George", "gpwd", null);
+        Map<String, Object> clientProps = new HashMap<String, Object>();
+        clientProps.put(QOP_PROPERTY, qop);
+        clientProps.put(WildFlySasl.SUPPORTED_CIPHER_NAMES, clientCipher);
+        SaslClient client = Sasl.createSaslClient(new String[]{DIGEST}, "George", "TestProtocol", "TestServer", clientProps, clientCallback);
+
+        byte[] message = new byte[0];
+        message = server.evaluateResponse(message);
+        message = client.evaluateChallenge(message);
+        message = server.evaluateResponse(message);
+        client.evaluateChallenge(message);
+        assertTrue(server.isComplete());
+
+        SaslWrapper serverWrapper = new ServerSaslWrapper(server);
+        SaslWrapper clientWrapper = new ClientSaslWrapper(client);
+        ByteBuffer outgoing = ByteBuffer.allocateDirect(512);
+        ByteBuffer wrapped = ByteBuffer.allocateDirect(512);
+        ByteBuffer incoming = ByteBuffer.allocateDirect(512);
+        for (int i = 1; i <= 300; i++) {
+            byte[] data = new byte[i % 40 + 1];
+            Arrays.fill(data, (byte) (i % 9));
+
+            boolean fromServer = i % 2 == 0;
+            outgoing.clear();
+            outgoing.put(data).flip();
+            wrapped.clear();
+            int wrappedLength = (fromServer ? serverWrapper : clientWrapper).wrap(outgoing, wrapped);
+            assertFalse(outgoing.hasRemaining());
+            assertEquals(wrappedLength, wrapped.position());
+            assertTrue(wrappedLength <= data.length + 24);
+            wrapped.flip();
+
+            incoming.clear();
+            assertEquals(data.length, (fromServer ? clientWrapper : serverWrapper).unwrap(wrapped, incoming));
+            assertFalse(wrapped.hasRemaining());
+            incoming.flip();
+            byte[] unwrapped = new byte[incoming.remaining()];
+            incoming.get(unwrapped);
+            Assert.assertArrayEquals(data, unwrapped);
+        }
+
+        // the byte array methods still interoperate after the buffer methods have been used
+        message = server.wrap(new byte[]{0x12,0x34,0x56}, 0, 3);
+        Assert.assertArrayEquals(new byte[]{0x12,0x34,0x56}, client.unwrap(message, 0, message.length));
+    }
+
     private KeySpec getDigestKeySpec(String username, String password, String realm) throws NoSuchAlgorithmException {
         byte[] urpHash = new UsernamePasswordHashUtil().generateHashedURP(username, realm, password.toCharArray());
         return new DigestPasswordSpec(username, realm, urpHash);
@@ -18,6 +18,7 @@
 
 package org.wildfly.security.sasl.scram;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 import static org.wildfly.security.sasl.scram.ScramCallbackHandlerUtils.createClientCallbackHandler;
@@ -41,11 +42,15 @@ import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 import org.wildfly.security.WildFlyElytronProvider;
+import org.wildfly.security.mechanism.scram.ScramDerivedKeyCache;
 import org.wildfly.security.password.Password;
 import org.wildfly.security.password.PasswordFactory;
 import org.wildfly.security.password.interfaces.ClearPassword;
 import org.wildfly.security.password.spec.ClearPasswordSpec;
+import org.wildfly.security.password.spec.EncryptablePasswordSpec;
 import org.wildfly.security.password.spec.IteratedSaltedHashPasswordSpec;
+import org.wildfly.security.password.spec.IteratedSaltedPasswordAlgorithmSpec;
+import org.wildfly.security.password.spec.ScramKeysPasswordSpec;
 import org.wildfly.security.sasl.WildFlySasl;
 import org.wildfly.security.sasl.test.BaseTestCase;
 import org.wildfly.security.sasl.test.SaslServerBuilder;
@@ -156,6 +161,38 @@ public class BasicScramSelfTest extends BaseTestCase {
         testAuthentication(SaslMechanismInformation.Names.SCRAM_SHA_1, saslServer, clientHandler, "user", EMPTY);
     }
 
+    @Test
+    public void testAuthenticationSha1ScramKeysCredential() throws Exception {
+        byte[] digest = new byte[]{(byte) 0x1d, (byte) 0x96, (byte) 0xee, (byte) 0x3a, (byte) 0x52, (byte) 0x9b, (byte) 0x5a, (byte) 0x5f, (byte) 0x9e, (byte) 0x47, (byte) 0xc0, (byte) 0x1f, (byte) 0x22, (byte) 0x9a, (byte) 0x2c, (byte) 0xb8, (byte) 0xa6, (byte) 0xe1, (byte) 0x5f, (byte) 0x7d};
+        byte[] salt = new byte[]{(byte) 0x41, (byte) 0x25, (byte) 0xc2, (byte) 0x47, (byte) 0xe4, (byte) 0x3a, (byte) 0xb1, (byte) 0xe9, (byte) 0x3c, (byte) 0x6d, (byte) 0xff, (byte) 0x76};
+        PasswordFactory passwordFactory = PasswordFactory.getInstance(ALGORITHM_SCRAM_SHA_1);
+        Password password = passwordFactory.generatePassword(new IteratedSaltedHashPasswordSpec(digest, salt, 4096));
+        ScramKeysPasswordSpec keysSpec = passwordFactory.getKeySpec(password, ScramKeysPasswordSpec.class);
+        final SaslServer saslServer =
+                new SaslServerBuilder(ScramSaslServerFactory.class, SaslMechanismInformation.Names.SCRAM_SHA_1)
+                        .setUserName("user")
+                        .setPassword(ALGORITHM_SCRAM_SHA_1, keysSpec)
+                        .build();
+
+        CallbackHandler clientHandler = createClientCallbackHandler("user", "pencil".toCharArray());
+        testAuthentication(SaslMechanismInformation.Names.SCRAM_SHA_1, saslServer, clientHandler, "user", EMPTY);
+    }
+
+    @Test(expected = SaslException.class)
+    public void testAuthenticationSha1ScramKeysCredentialBadPassword() throws Exception {
+        PasswordFactory passwordFactory = PasswordFactory.getInstance(ALGORITHM_SCRAM_SHA_1);
+        Password password = passwordFactory.generatePassword(new EncryptablePasswordSpec("pencil".toCharArray(), new IteratedSaltedPasswordAlgorithmSpec(4096, null)));
+        ScramKeysPasswordSpec keysSpec = passwordFactory.getKeySpec(password, ScramKeysPasswordSpec.class);
+        final SaslServer saslServer =
+                new SaslServerBuilder(ScramSaslServerFactory.class, SaslMechanismInformation.Names.SCRAM_SHA_1)
+                        .setUserName("user")
+                        .setPassword(ALGORITHM_SCRAM_SHA_1, keysSpec)
+                        .build();
+
+        CallbackHandler clientHandler = createClientCallbackHandler("user", "pen".toCharArray());
+        testAuthentication(SaslMechanismInformation.Names.SCRAM_SHA_1, saslServer, clientHandler, "user", EMPTY);
+    }
+
     @Test
     public void testAuthenticationSha1ScramCredentialBindingData() throws Exception {
         byte[] digest = new byte[]{(byte) 0x1d, (byte) 0x96, (byte) 0xee, (byte) 0x3a, (byte) 0x52, (byte) 0x9b, (byte) 0x5a, (byte) 0x5f, (byte) 0x9e, (byte) 0x47, (byte) 0xc0, (byte) 0x1f, (byte) 0x22, (byte) 0x9a, (byte) 0x2c, (byte) 0xb8, (byte) 0xa6, (byte) 0xe1, (byte) 0x5f, (byte) 0x7d};
@@ -191,6 +228,39 @@ public class BasicScramSelfTest extends BaseTestCase {
         testAuthentication(SaslMechanismInformation.Names.SCRAM_SHA_1_PLUS, saslServer, clientFactory, clientHandler, "user", props);
     }
 
+    @Test
+    public void testAuthenticationSha256ClearPasswordDerivedKeyCache() throws Exception {
+        final ScramDerivedKeyCache cache = new ScramDerivedKeyCache(10, -1);
+        final Map<String, Object> serverProps = Collections.<String, Object>singletonMap(WildFlySasl.SCRAM_DERIVED_KEY_CACHE, cache);
+        for (int i = 0; i < 3; i ++) {
+            final SaslServer saslServer =
+                    new SaslServerBuilder(ScramSaslServerFactory.class, SaslMechanismInformation.Names.SCRAM_SHA_256)
+                            .setUserName("user")
+                            .setPassword("pencil".toCharArray())
+                            .setProperties(serverProps)
+                            .build();
+            CallbackHandler clientHandler = createClientCallbackHandler("user", "pencil".toCharArray());
+            testAuthentication(SaslMechanismInformation.Names.SCRAM_SHA_256, saslServer, clientHandler, "user", EMPTY);
+        }
+        assertEquals(1, cache.getMissCount());
+        assertEquals(2, cache.getHitCount());
+
+        // the stored password changed, so the cached salted password must not be used
+        final SaslServer saslServer =
+                new SaslServerBuilder(ScramSaslServerFactory.class, SaslMechanismInformation.Names.SCRAM_SHA_256)
+                        .setUserName("user")
+                        .setPassword("eraser".toCharArray())
+                        .setProperties(serverProps)
+                        .build();
+        CallbackHandler clientHandler = createClientCallbackHandler("user", "eraser".toCharArray());
+        testAuthentication(SaslMechanismInformation.Names.SCRAM_SHA_256, saslServer, clientHandler, "user", EMPTY);
+        assertEquals(2, cache.getMissCount());
+        assertEquals(1, cache.size());
+
+        cache.invalidate("user");
+        assertEquals(0, cache.size());
+    }
+
     private void testAuthentication(String mechanism, SaslServer saslServer, CallbackHandler clientHandler, String authorizationId, Map<String, ?> clientProps) throws Exception {
         final SaslClientFactory clientFactory = obtainSaslClientFactory();
         assertNotNull(clientFactory);
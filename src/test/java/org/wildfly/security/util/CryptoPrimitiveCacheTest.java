@@ -0,0 +1,105 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.security.MessageDigest;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+
+/**
+ * Tests of {@link CryptoPrimitiveCache}.
+ */
+public class CryptoPrimitiveCacheTest {
+
+    @Test
+    public void testMessageDigestReusedAfterRelease() throws Exception {
+        final MessageDigest first = CryptoPrimitiveCache.getMessageDigest("SHA-256");
+        final MessageDigest second = CryptoPrimitiveCache.getMessageDigest("SHA-256");
+        assertNotSame(first, second);
+
+        first.update("partial".getBytes(UTF_8));
+        CryptoPrimitiveCache.release(first);
+        CryptoPrimitiveCache.release(first);
+
+        final MessageDigest reused = CryptoPrimitiveCache.getMessageDigest("SHA-256");
+        assertSame(first, reused);
+        assertNotSame(first, CryptoPrimitiveCache.getMessageDigest("SHA-256"));
+        // released instances are reset
+        assertArrayEquals(MessageDigest.getInstance("SHA-256").digest("abc".getBytes(UTF_8)), reused.digest("abc".getBytes(UTF_8)));
+        CryptoPrimitiveCache.release(reused);
+        CryptoPrimitiveCache.release(second);
+    }
+
+    @Test
+    public void testMacReusedAfterRelease() throws Exception {
+        final byte[] key = "key".getBytes(UTF_8);
+        final byte[] data = "data".getBytes(UTF_8);
+        final Mac expected = Mac.getInstance("HmacSHA256");
+        expected.init(new SecretKeySpec(key, "HmacSHA256"));
+
+        final Mac mac = CryptoPrimitiveCache.getMac("HmacSHA256");
+        mac.init(new SecretKeySpec(key, "HmacSHA256"));
+        assertArrayEquals(expected.doFinal(data), mac.doFinal(data));
+        CryptoPrimitiveCache.release(mac);
+
+        final Mac reused = CryptoPrimitiveCache.getMac("HmacSHA256");
+        assertSame(mac, reused);
+        reused.init(new SecretKeySpec(key, "HmacSHA256"));
+        assertArrayEquals(expected.doFinal(data), reused.doFinal(data));
+        CryptoPrimitiveCache.release(reused);
+    }
+
+    @Test
+    public void testOnlyDefaultProviderInstancesKept() throws Exception {
+        final MessageDigest cached = CryptoPrimitiveCache.getMessageDigest("SHA-512");
+        CryptoPrimitiveCache.release(cached);
+        assertSame(cached, CryptoPrimitiveCache.getMessageDigest("SHA-512"));
+
+        // an instance which was not obtained from the cache is discarded rather than handed out
+        final MessageDigest foreign = MessageDigest.getInstance("SHA-384");
+        CryptoPrimitiveCache.release(foreign);
+        assertNotSame(foreign, CryptoPrimitiveCache.getMessageDigest("SHA-384"));
+    }
+
+    @Test
+    public void testInstancesNotSharedBetweenThreads() throws Exception {
+        final MessageDigest digest = CryptoPrimitiveCache.getMessageDigest("SHA-1");
+        CryptoPrimitiveCache.release(digest);
+        final MessageDigest[] other = new MessageDigest[1];
+        final Thread thread = new Thread(() -> {
+            try {
+                other[0] = CryptoPrimitiveCache.getMessageDigest("SHA-1");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        thread.start();
+        thread.join();
+        assertNotSame(digest, other[0]);
+        assertSame(digest, CryptoPrimitiveCache.getMessageDigest("SHA-1"));
+    }
+}
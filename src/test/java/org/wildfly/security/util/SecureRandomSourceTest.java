@@ -0,0 +1,79 @@
+/*
+ * JBoss, Home of Professional Open Source.
+ * Copyright 2016 Red Hat, Inc., and individual contributors
+ * as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.security.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+import org.wildfly.security.password.util.PasswordUtil;
+
+/**
+ * Tests of {@link SecureRandomSource}.
+ */
+public class SecureRandomSourceTest {
+
+    @After
+    public void restoreDefault() {
+        SecureRandomSource.setSecureRandomSupplier(null);
+    }
+
+    @Test
+    public void testGeneratorReusedPerThread() throws Exception {
+        final SecureRandom random = SecureRandomSource.getSecureRandom();
+        assertNotNull(random);
+        assertSame(random, SecureRandomSource.getSecureRandom());
+
+        final AtomicReference<SecureRandom> other = new AtomicReference<>();
+        final Thread thread = new Thread(() -> other.set(SecureRandomSource.getSecureRandom()));
+        thread.start();
+        thread.join();
+        assertNotNull(other.get());
+        assertNotSame(random, other.get());
+    }
+
+    @Test
+    public void testSupplierMakesSaltsDeterministic() throws Exception {
+        SecureRandomSource.setSecureRandomSupplier(() -> seeded());
+        final byte[] first = PasswordUtil.generateRandomSalt(16);
+        final byte[] second = PasswordUtil.generateRandomSalt(16);
+        assertArrayEquals(first, second);
+
+        SecureRandomSource.setSecureRandomSupplier(null);
+        final SecureRandom random = SecureRandomSource.getSecureRandom();
+        assertSame(random, SecureRandomSource.getSecureRandom());
+    }
+
+    private static SecureRandom seeded() {
+        try {
+            final SecureRandom random = SecureRandom.getInstance("SHA1PRNG");
+            random.setSeed(42L);
+            return random;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}